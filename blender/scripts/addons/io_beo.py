@@ -1,5 +1,6 @@
 ﻿import bpy
 import struct
+import io
 import mathutils
 from mathutils import Matrix, Euler
 from math import degrees
@@ -350,7 +351,157 @@ def exportArmature(context, fw):
         
     scene.frame_set(currentFrame)
     
-def do_export(context, props, filepath, animation, action, selected, object2D, textureCoords, normals, raw):
+##### BINARY (.beo-bin) #######
+# mirrors com.base.lib.engine.common.file.BeoBinary, little-endian, blocks aligned to 4 bytes
+
+BIN_VERSION = 1
+
+def binTag(tag):
+    return struct.unpack('<i', tag.encode('ascii'))[0]
+
+class BinChunk():
+    
+    def __init__(self, tag):
+        self.tag = binTag(tag)
+        self.data = bytearray()
+        
+    def pad(self):
+        while len(self.data) % 4 != 0:
+            self.data += b'\0'
+        
+    def int(self, value):
+        self.data += struct.pack('<i', value)
+        
+    def float(self, value):
+        self.data += struct.pack('<f', value)
+        
+    def string(self, value):
+        b = value.encode('utf8')
+        self.int(len(b))
+        self.data += b
+        self.pad()
+        
+    def floats(self, values):
+        self.int(len(values))
+        self.data += struct.pack('<%if' % len(values), *values)
+        
+    def shorts(self, values):
+        self.int(len(values))
+        self.data += struct.pack('<%ih' % len(values), *values)
+        self.pad()
+        
+    def bytes(self):
+        return struct.pack('<ii', self.tag, len(self.data)) + bytes(self.data)
+
+def beoToBinary(text):
+    lines = iter(text.split('\n'))
+    chunks = []
+    obj = None
+    groups = None
+    groupMode = 0
+    skelet = None
+    frames = None
+    
+    def flush(obj):
+        if obj != None:
+            c = BinChunk('OBJ ')
+            c.string(obj['name'])
+            c.int(obj['cpv'])
+            for s in obj['bbox']:
+                c.float(s)
+            c.floats(obj['v'])
+            c.floats(obj['n'])
+            c.floats(obj['t'])
+            c.shorts(obj['f'])
+            chunks.append(c)
+    
+    for line in lines:
+        token = line.split()
+        if len(token) == 0:
+            continue
+        key = token[0]
+        if key == 'ob':
+            flush(obj)
+            obj = {'name': token[1], 'cpv': 3, 'bbox': [0.0, 0.0, 0.0], 'v': [], 'n': [], 't': [], 'f': []}
+        elif key == 'cpv':
+            obj['cpv'] = int(token[1])
+        elif key == 'bbox':
+            obj['bbox'] = [float(t) for t in token[1:4]]
+        elif key == 'a' or key == 'af':
+            groupMode = 1 if key == 'a' else 2
+            groups = []
+        elif key == 'v':
+            count = int(token[1])
+            if groupMode == 0:
+                obj['v'] = [float(t) for t in token[3:3+count]]
+            else:
+                line = next(lines)
+                while line.strip() != '}':
+                    vtoken = line.split()
+                    if len(vtoken) > 0:
+                        if groupMode == 1:
+                            verts = [float(t) for t in vtoken[2:2+int(vtoken[1])]]
+                            obj['v'] += verts
+                        else:
+                            verts = [float(t) for t in vtoken[1:1+count]]
+                        groups.append((vtoken[0], verts))
+                    line = next(lines)
+                if groupMode == 2:
+                    obj['v'] = [0.0] * count
+        elif key == 'n':
+            obj['n'] = [float(t) for t in token[3:3+int(token[1])]]
+        elif key == 't':
+            obj['t'] = [float(t) for t in token[3:3+int(token[1])]]
+        elif key == 'f':
+            obj['f'] = [int(t) for t in token[3:3+int(token[1])]]
+        elif key == 'skelet':
+            flush(obj)
+            obj = None
+            c = BinChunk('SKEL')
+            c.int(int(token[1]))
+            line = next(lines)
+            while line.strip() != '}':
+                btoken = line.split()
+                c.string(btoken[0])
+                c.int(int(btoken[1]))
+                for t in btoken[4:10]:
+                    c.float(float(t))
+                line = next(lines)
+            skelet = c
+        elif key == 'frames':
+            count = int(token[1])
+            rot = []
+            line = next(lines, '}')
+            while line.strip() != '}':
+                rot += [float(t) for t in line.split()]
+                line = next(lines, '}')
+            frames = BinChunk('FRMS')
+            frames.int(count)
+            frames.int(len(rot) // (count * 3) if count > 0 else 0)
+            frames.data += struct.pack('<%if' % len(rot), *rot)
+    flush(obj)
+    
+    if groups != None:
+        c = BinChunk('GRPS')
+        c.int(groupMode)
+        c.int(len(groups))
+        for name, verts in groups:
+            c.string(name)
+            c.floats(verts)
+        chunks.append(c)
+    
+    # skelet must be read before its frames
+    if skelet != None:
+        chunks.append(skelet)
+    if frames != None:
+        chunks.append(frames)
+    
+    out = struct.pack('<4sii', b'BEOB', BIN_VERSION, len(chunks))
+    for c in chunks:
+        out += c.bytes()
+    return out
+    
+def do_export(context, props, filepath, animation, action, selected, object2D, textureCoords, normals, raw, binary):
     """
     file = open(filepath, 'wb')
     
@@ -360,7 +511,10 @@ def do_export(context, props, filepath, animation, action, selected, object2D, t
     file.flush()
     file.close()
     """
-    file = open(filepath, "w", encoding="utf8", newline="\n")
+    if(binary):
+        file = io.StringIO()
+    else:
+        file = open(filepath, "w", encoding="utf8", newline="\n")
     fw = file.write
     
     version = '0.256'
@@ -580,6 +734,11 @@ def do_export(context, props, filepath, animation, action, selected, object2D, t
     if(animation or action):  
         exportArmature(context, fw)
     
+    if(binary):
+        out = open(filepath, 'wb')
+        out.write(beoToBinary(file.getvalue()))
+        out.close()
+    
     file.close()
     return True
 
@@ -633,12 +792,22 @@ class Export_beo(bpy.types.Operator, ExportHelper):
             default=False,
             )
     
+    binary = BoolProperty(
+            name="Binary",
+            description="Export binary .beo-bin, loaded by BeoBinary directly into buffers",
+            default=False,
+            )
+    
     def execute(self, context):
         props = self.properties
         filepath = self.filepath
-        filepath = bpy.path.ensure_ext(filepath, self.filename_ext)
+        ext = ".beo-bin" if self.binary else self.filename_ext
+        if(self.binary and filepath.endswith(self.filename_ext)):
+            filepath = filepath[:-len(self.filename_ext)]
+        filepath = bpy.path.ensure_ext(filepath, ext)
         
         keywords = self.as_keywords(ignore=("check_existing", "filter_glob"))
+        keywords["filepath"] = filepath
         
         do_export(context, props, **keywords)
         return {'FINISHED'}
@@ -15,6 +15,8 @@ import org.jbox2d.dynamics.FixtureDef;
 public class B2Drawable extends BaseDrawable implements B2BodyListener {
 
     protected Body body;
+    private int slot;
+    private final float[] transform = new float[3];
 
     public B2Drawable(){
         super();
@@ -81,8 +83,13 @@ public class B2Drawable extends BaseDrawable implements B2BodyListener {
     public void update() {
 
         if (body != null) {
-            translate(body.getPosition());
-            rotateZ(B2.toDegrees(body.getAngle()));
+            if (B2.world.transforms().get(slot, body, transform)) {
+                translate(transform[0], transform[1]);
+                rotateZ(B2.toDegrees(transform[2]));
+            } else {
+                translate(body.getPosition());
+                rotateZ(B2.toDegrees(body.getAngle()));
+            }
 
             super.update();
             super.setIdentityMM();
@@ -94,6 +101,7 @@ public class B2Drawable extends BaseDrawable implements B2BodyListener {
 
         this.body = body;
         transform(posX, posY);
+        slot = B2.world.transforms().track(body);
         rotateZ(rotZ);
         setIdentityMM();
         if(profile != null){
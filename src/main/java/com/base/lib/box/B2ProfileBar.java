@@ -0,0 +1,49 @@
+package com.base.lib.box;
+
+import com.base.lib.engine.font.BitmapFont;
+import com.base.lib.engine.font.BitmapFontRenderable;
+
+import org.jbox2d.dynamics.ProfileHistory;
+
+import java.util.Locale;
+
+/**
+ * on screen p50/p95/p99 of step phases and average counts of physics world, see {@link B2World#showProfileBar(BitmapFont)}
+ */
+public class B2ProfileBar extends BitmapFontRenderable {
+
+    private static final long REFRESH = 500; // ms
+
+    private final ProfileHistory history;
+    private final StringBuilder lines;
+    private long lastRefresh;
+
+    public B2ProfileBar(BitmapFont font, ProfileHistory history) {
+        super(font);
+
+        this.history = history;
+        lines = new StringBuilder();
+        setTextBuffer(lines);
+    }
+
+    @Override
+    public void update() {
+
+        long now = System.currentTimeMillis();
+        if (now - lastRefresh < REFRESH) {
+            return;
+        }
+        lastRefresh = now;
+
+        lines.setLength(0);
+        lines.append("ms               p50    p95    p99\n");
+        for (int i = 0; i < ProfileHistory.PHASE_COUNT; i++) {
+            lines.append(String.format(Locale.US, "%-13s %6.2f %6.2f %6.2f\n", ProfileHistory.PHASE_NAMES[i],
+                    history.getPercentile(i, 50), history.getPercentile(i, 95), history.getPercentile(i, 99)));
+        }
+        for (int i = 0; i < ProfileHistory.COUNTER_COUNT; i++) {
+            lines.append(String.format(Locale.US, "%-13s %6.0f max %d\n", ProfileHistory.COUNTER_NAMES[i],
+                    history.getAverage(i), history.getMax(i)));
+        }
+    }
+}
@@ -177,81 +177,62 @@ class B2ProfileDrawableData {
 
                  /* ---PROFILES--- */
 
-class B2PolygonProfile extends B2ProfileDrawable {
-
-    private Body body;
+class B2PolygonProfile extends B2BodyProfile {
 
     protected B2PolygonProfile(Body body, Shape shape, Colorf color){
-        super(B2ProfileDrawableData.POLYGONSHAPE((PolygonShape) shape), color);
-        this.body = body;
-    }
-
-    @Override
-    public void update() {
-
-        translate(body.getPosition());
-        rotateZ(B2.toDegrees(body.getAngle()));
-
-        super.updateModelVP();
-        super.setIdentityMM();
+        super(body, B2ProfileDrawableData.POLYGONSHAPE((PolygonShape) shape), color);
     }
 }
 
-class B2CircleProfile extends B2ProfileDrawable {
-
-    private Body body;
+class B2CircleProfile extends B2BodyProfile {
 
     protected B2CircleProfile(Body body, Shape shape, Colorf color){
-        super(B2ProfileDrawableData.CIRCLESHAPE((CircleShape) shape), color);
-        this.body = body;
-    }
-
-    @Override
-    public void update() {
-
-        translate(body.getPosition());
-        rotateZ(B2.toDegrees(body.getAngle()));
-
-        super.updateModelVP();
-        super.setIdentityMM();
+        super(body, B2ProfileDrawableData.CIRCLESHAPE((CircleShape) shape), color);
     }
 }
 
-class B2ChainProfile extends B2ProfileDrawable {
-
-    private Body body;
+class B2ChainProfile extends B2BodyProfile {
 
     protected B2ChainProfile(Body body, Shape shape, Colorf color){
-        super(B2ProfileDrawableData.CHAINSHAPE((ChainShape) shape), color);
+        super(body, B2ProfileDrawableData.CHAINSHAPE((ChainShape) shape), color);
         buffer.setGlDrawMode(GLES20.GL_LINES);
-        this.body = body;
     }
+}
 
-    @Override
-    public void update() {
-
-        translate(body.getPosition());
-        rotateZ(B2.toDegrees(body.getAngle()));
+class B2EdgeProfile extends B2BodyProfile {
 
-        super.updateModelVP();
-        super.setIdentityMM();
+    protected B2EdgeProfile(Body body, Shape shape, Colorf color){
+        super(body, B2ProfileDrawableData.EDGESHAPE((EdgeShape) shape), color);
     }
 }
 
-class B2EdgeProfile extends B2ProfileDrawable {
+/**
+ * draws body by transform interpolated between last two physics steps, see {@link B2Transforms}
+ */
+class B2BodyProfile extends B2ProfileDrawable {
 
     private Body body;
+    private B2Transforms transforms;
+    private int slot;
+    private final float[] transform = new float[3];
 
-    protected B2EdgeProfile(Body body, Shape shape, Colorf color){
-        super(B2ProfileDrawableData.EDGESHAPE((EdgeShape) shape), color);
+    B2BodyProfile(Body body, BaseDrawableData data, Colorf color){
+        super(data, color);
         this.body = body;
+        transforms = B2.world.transforms();
+        slot = transforms.track(body);
     }
 
     @Override
     public void update() {
 
-        translate(body.getPosition());
-        rotateZ(B2.toDegrees(body.getAngle()));
+        if (transforms.get(slot, body, transform)) {
+            translate(transform[0], transform[1]);
+            rotateZ(B2.toDegrees(transform[2]));
+        } else {
+            translate(body.getPosition());
+            rotateZ(B2.toDegrees(body.getAngle()));
+        }
 
         super.updateModelVP();
         super.setIdentityMM();
@@ -262,31 +243,45 @@ class B2JointProfile extends B2ProfileDrawable {
 
     private Joint joint;
     private float[] vertices;
+    private B2Transforms transforms;
+    private int slotA;
+    private int slotB;
+    private final float[] transform = new float[3];
 
     protected B2JointProfile(Joint joint, Colorf color){
         super(B2ProfileDrawableData.JOINTSHAPE(joint), color);
 
         this.joint = joint;
         vertices = new float[4];
+        transforms = B2.world.transforms();
+        slotA = transforms.track(joint.getBodyA());
+        slotB = transforms.track(joint.getBodyB());
         base.render.addDrawable(this);
     }
 
     @Override
     public void update() {
 
-        Vec2 aPos = joint.getBodyA().getPosition();
-        Vec2 bPos = joint.getBodyB().getPosition();
-
-        vertices[0] = aPos.x;
-        vertices[1] = aPos.y;
-        vertices[2] = bPos.x;
-        vertices[3] = bPos.y;
+        position(joint.getBodyA(), slotA, 0);
+        position(joint.getBodyB(), slotB, 2);
 
         getBuffer().getVerticeBuffer().put(vertices).position(0);
 
         super.updateModelVP();
         super.setIdentityMM();
     }
+
+    private void position(Body body, int slot, int index) {
+
+        if (transforms.get(slot, body, transform)) {
+            vertices[index] = transform[0];
+            vertices[index + 1] = transform[1];
+        } else {
+            Vec2 pos = body.getPosition();
+            vertices[index] = pos.x;
+            vertices[index + 1] = pos.y;
+        }
+    }
 }
 
 class B2ProfileDrawable extends BaseDrawable{
@@ -0,0 +1,200 @@
+package com.base.lib.box;
+
+import org.jbox2d.dynamics.Body;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Body transforms handed over from physics to the renderer.
+ * Physics writes the previous and the current transform of every tracked body into a free frame and publishes it,
+ * renderer takes the newest frame once per update and interpolates between the two transforms by the time passed.
+ * Frames are swapped through a triple buffer, so neither side waits for the other.
+ */
+public class B2Transforms {
+
+    // previous x, y, angle, current x, y, angle
+    private static final int STRIDE = 6;
+
+    private final AtomicReference<Frame> latest;
+    private Frame back; // physics side
+    private Frame front; // renderer side
+    private float alpha;
+
+    private Body[] bodies;
+    private int count;
+    private float[] previous;
+    private int[] free; // stack of slots freed by untrack
+    private int freeCount;
+
+    public B2Transforms() {
+
+        latest = new AtomicReference<Frame>(new Frame());
+        back = new Frame();
+        front = new Frame();
+        bodies = new Body[32];
+        previous = new float[32 * 3];
+        free = new int[32];
+        alpha = 1.0f;
+    }
+
+    /**
+     * @return slot of body, for {@link #get(int, Body, float[])}
+     */
+    public synchronized int track(Body body) {
+
+        int slot;
+        if (freeCount > 0) {
+            slot = free[--freeCount];
+        } else {
+            if (count == bodies.length) {
+                bodies = Arrays.copyOf(bodies, count * 2);
+                previous = Arrays.copyOf(previous, count * 2 * 3);
+                free = Arrays.copyOf(free, count * 2);
+            }
+            slot = count++;
+        }
+        bodies[slot] = body;
+        capture(slot, body);
+        return slot;
+    }
+
+    /**
+     * frees all slots of body
+     */
+    public synchronized void untrack(Body body) {
+
+        for (int i = 0; i < count; i++) {
+            if (bodies[i] == body) {
+                bodies[i] = null;
+                free[freeCount++] = i;
+            }
+        }
+    }
+
+    /**
+     * frees slots of all bodies, ie. after world was cleared
+     */
+    public synchronized void clear() {
+
+        Arrays.fill(bodies, 0, count, null);
+        count = 0;
+        freeCount = 0;
+    }
+
+    /**
+     * physics side, saves transforms before the last step of update
+     */
+    synchronized void capture() {
+
+        for (int i = 0; i < count; i++) {
+            Body body = bodies[i];
+            if (body != null) {
+                capture(i, body);
+            }
+        }
+    }
+
+    private void capture(int slot, Body body) {
+
+        previous[slot * 3] = body.m_xf.p.x;
+        previous[slot * 3 + 1] = body.m_xf.p.y;
+        previous[slot * 3 + 2] = body.m_sweep.a;
+    }
+
+    /**
+     * physics side, publishes captured and current transforms
+     *
+     * @param time     System.nanoTime() current transforms belong to, renderer shows them one duration later
+     * @param duration nanoseconds between captured and current transforms, 0 shows current ones only
+     */
+    synchronized void publish(long time, long duration) {
+
+        Frame frame = back;
+        frame.ensureCapacity(count);
+        float[] data = frame.data;
+        for (int i = 0; i < count; i++) {
+            Body body = bodies[i];
+            frame.bodies[i] = body;
+            if (body != null) {
+                int index = i * STRIDE;
+                data[index] = previous[i * 3];
+                data[index + 1] = previous[i * 3 + 1];
+                data[index + 2] = previous[i * 3 + 2];
+                data[index + 3] = body.m_xf.p.x;
+                data[index + 4] = body.m_xf.p.y;
+                data[index + 5] = body.m_sweep.a;
+            }
+        }
+        for (int i = count; i < frame.count; i++) {
+            frame.bodies[i] = null;
+        }
+        frame.count = count;
+        frame.time = time;
+        frame.duration = duration;
+        frame.fresh = true;
+
+        back = latest.getAndSet(frame);
+    }
+
+    /**
+     * renderer side, takes newest published frame and counts interpolation for current time
+     */
+    public void acquire() {
+
+        if (latest.get().fresh) {
+            front = latest.getAndSet(front);
+            front.fresh = false;
+        }
+
+        if (front.duration > 0) {
+            alpha = (float) (System.nanoTime() - front.time) / front.duration;
+            if (alpha < 0.0f) {
+                alpha = 0.0f;
+            } else if (alpha > 1.0f) {
+                alpha = 1.0f;
+            }
+        } else {
+            alpha = 1.0f;
+        }
+    }
+
+    /**
+     * renderer side, interpolated transform of body
+     *
+     * @param out x, y, angle in radians
+     * @return false if body was not published in slot yet
+     */
+    public boolean get(int slot, Body body, float[] out) {
+
+        Frame frame = front;
+        if (slot >= frame.count || frame.bodies[slot] != body) {
+            return false;
+        }
+
+        int index = slot * STRIDE;
+        float[] data = frame.data;
+        out[0] = data[index] + (data[index + 3] - data[index]) * alpha;
+        out[1] = data[index + 1] + (data[index + 4] - data[index + 1]) * alpha;
+        out[2] = data[index + 2] + (data[index + 5] - data[index + 2]) * alpha;
+        return true;
+    }
+
+    private static class Frame {
+
+        private float[] data = new float[32 * STRIDE];
+        private Body[] bodies = new Body[32];
+        private int count;
+        private long time;
+        private long duration;
+        private volatile boolean fresh;
+
+        private void ensureCapacity(int capacity) {
+
+            if (bodies.length < capacity) {
+                bodies = Arrays.copyOf(bodies, capacity * 2);
+                data = Arrays.copyOf(data, capacity * 2 * STRIDE);
+            }
+        }
+    }
+}
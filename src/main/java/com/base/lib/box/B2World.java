@@ -4,22 +4,27 @@ import com.base.lib.engine.Base;
 import com.base.lib.engine.BaseDrawable;
 import com.base.lib.engine.BaseRenderer;
 import com.base.lib.engine.BaseUpdateable;
+import com.base.lib.engine.common.file.FileHelper;
+import com.base.lib.engine.font.BitmapFont;
 import com.base.lib.interfaces.ActivityStateListener;
 
 import org.jbox2d.callbacks.ContactListener;
+import org.jbox2d.collision.broadphase.BroadPhaseType;
 import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.Body;
 import org.jbox2d.dynamics.BodyDef;
 import org.jbox2d.dynamics.Fixture;
 import org.jbox2d.dynamics.FixtureDef;
+import org.jbox2d.dynamics.ProfileHistory;
 import org.jbox2d.dynamics.World;
 import org.jbox2d.dynamics.joints.Joint;
 import org.jbox2d.dynamics.joints.JointDef;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 12 Created by doctor on 12.8.13.
@@ -34,11 +39,34 @@ public class B2World extends BaseUpdateable implements ActivityStateListener { /
     public static int velocityIter = 8;
     public static int positionIter = 3;
 
-    private boolean worldUpdated;
+    // set while the world steps, bodies are queued meanwhile
+    private final AtomicBoolean stepping = new AtomicBoolean();
+
+    private final B2Transforms transforms = new B2Transforms();
+
+    private float fixedStep;
+    private int maxSubSteps;
+    private float accumulator;
+
+    private volatile PhysicsThread physicsThread;
+    private boolean threadPaused;
+
+    private final List<Spawn> spawnQueue = new ArrayList<Spawn>();
+    private final List<Spawn> spawnPool = new ArrayList<Spawn>();
+    private long spawnBudget;
+
+    private final List<Created> createdPool = new ArrayList<Created>();
 
     public B2World(Base base, float gx, float gy, BaseRenderer renderer) {
+        this(base, gx, gy, renderer, BroadPhaseType.DYNAMIC_TREE);
+    }
+
+    /**
+     * @param broadPhase SWEEP_AND_PRUNE suits long levels with many static fixtures
+     */
+    public B2World(Base base, float gx, float gy, BaseRenderer renderer, BroadPhaseType broadPhase) {
         super(base);
-        init(new World(new Vec2(gx, gy)), renderer);
+        init(new World(new Vec2(gx, gy), broadPhase), renderer);
     }
 
     /**
@@ -59,7 +87,6 @@ public class B2World extends BaseUpdateable implements ActivityStateListener { /
         B2.calcRatio(base);
 
         world.setAllowSleep(true);
-        worldUpdated = true;
 
         bodyQueue = Collections.synchronizedList(new ArrayList<B2Body>());
     }
@@ -76,10 +103,71 @@ public class B2World extends BaseUpdateable implements ActivityStateListener { /
         world.setContactListener(listener);
     }
 
+    /**
+     * Steps world by fixed steps, frame delta is collected and spent by whole steps, rest is interpolated by profiles.
+     * Fixed steps keep the simulation the same on every device and fps.
+     *
+     * @param step        seconds per step, 0 steps world by frame delta
+     * @param maxSubSteps steps per update at most, time above is dropped, so slow device won't fall behind for good
+     */
+    public void setFixedTimeStep(float step, int maxSubSteps) {
+
+        fixedStep = step;
+        this.maxSubSteps = maxSubSteps;
+        accumulator = 0;
+    }
+
+    public float getFixedTimeStep() {
+
+        return fixedStep;
+    }
+
+    /**
+     * Steps world on its own thread by fixed steps (1/60 s if not set), apart from base thread.
+     * Bodies and joints created and removed by methods of this class are queued for physics thread,
+     * createBody and create(JointDef) wait until physics thread creates them. Listeners and profiles of created bodies
+     * are handed over to base thread, other changes of world should be done from contact listener.
+     */
+    public void startPhysicsThread() {
+
+        if (fixedStep <= 0) {
+            setFixedTimeStep(1.0f / 60.0f, 5);
+        }
+        if (physicsThread == null) {
+            physicsThread = new PhysicsThread();
+            physicsThread.start();
+        }
+    }
+
+    public void stopPhysicsThread() {
+
+        if (physicsThread != null) {
+            physicsThread.finish();
+            physicsThread = null;
+        }
+    }
+
+    public boolean usingPhysicsThread() {
+
+        return physicsThread != null;
+    }
+
+    /**
+     * @return transforms of bodies published by the last step, profiles and B2Drawables read them
+     */
+    public B2Transforms transforms() {
+
+        return transforms;
+    }
+
     public void remove(Body body) {
 
-        if (worldUpdated) {
-            removeBody(body);
+        if (physicsThread == null && stepping.compareAndSet(false, true)) {
+            try {
+                removeBody(body);
+            } finally {
+                stepping.set(false);
+            }
         } else {
             synchronized (bodyQueue) {
                 bodyQueue.add(new B2Body(body, Action.DESTROY));
@@ -97,6 +185,7 @@ public class B2World extends BaseUpdateable implements ActivityStateListener { /
                 fixture = null;
             }
             body.m_userData = null;
+            transforms.untrack(body);
             world.destroyBody(body);
             body = null;
         }
@@ -111,22 +200,85 @@ public class B2World extends BaseUpdateable implements ActivityStateListener { /
 
     public void remove(Joint joint) {
 
-        world.destroyJoint(joint);
+        if (onWorldThread()) {
+            world.destroyJoint(joint);
+        } else {
+            synchronized (bodyQueue) {
+                bodyQueue.add(new B2Body(joint, Action.DESTROY_JOINT));
+            }
+        }
     }
 
+    /**
+     * note: waits for physics thread if running
+     */
     public Joint create(JointDef jd) {
 
-        return world.createJoint(jd);
+        if (onWorldThread()) {
+            return world.createJoint(jd);
+        }
+        return (Joint) await(new B2Body(jd));
     }
 
+    /**
+     * note: waits for physics thread if running
+     */
     public Body createBody(BodyDef bd, FixtureDef fd) {
 
-        return world.createBody(bd).createFixture(fd).getBody();
+        if (onWorldThread()) {
+            return createBodyNow(bd, fd);
+        }
+        return (Body) await(new B2Body(null, bd, fd, Action.CREATE_BODY));
     }
 
+    /**
+     * note: waits for physics thread if running
+     */
     public Body createBody(BodyDef bd) {
 
-        return world.createBody(bd);
+        return createBody(bd, null);
+    }
+
+    private Body createBodyNow(BodyDef bd, FixtureDef fd) {
+
+        Body body = world.createBody(bd);
+        if (fd != null) {
+            body.createFixture(fd);
+        }
+        return body;
+    }
+
+    // world belongs to base thread if physics thread isn't running
+    private boolean onWorldThread() {
+
+        return physicsThread == null || Thread.currentThread() instanceof PhysicsThread;
+    }
+
+    // queues action for physics thread and waits for its result, action is done here if the thread stops meanwhile
+    private Object await(B2Body action) {
+
+        synchronized (bodyQueue) {
+            bodyQueue.add(action);
+        }
+
+        synchronized (action) {
+            while (!action.done && physicsThread != null) {
+                try {
+                    action.wait(100);
+                } catch (InterruptedException e) {
+                    Base.logE("B2World", "Monkeys can't wait for physics thread");
+                    break;
+                }
+            }
+        }
+
+        // queue is run under its lock, so the action is either done or still queued
+        synchronized (bodyQueue) {
+            if (bodyQueue.remove(action)) {
+                run(action);
+            }
+        }
+        return action.result;
     }
 
     public void create(BodyDef bd, FixtureDef fd) {
@@ -136,14 +288,18 @@ public class B2World extends BaseUpdateable implements ActivityStateListener { /
 
     public void create(B2BodyListener listener, BodyDef bd, FixtureDef fd) {
 
-        if (worldUpdated) {
-            Body body = world.createBody(bd).createFixture(fd).m_body;
-            BaseDrawable profile = B2Profile.body(body);
-            if (profile != null) {
-                profile.use();
-            }
-            if (listener != null) {
-                listener.onCreate(body, profile);
+        if (physicsThread == null && stepping.compareAndSet(false, true)) {
+            try {
+                Body body = world.createBody(bd).createFixture(fd).m_body;
+                BaseDrawable profile = B2Profile.body(body);
+                if (profile != null) {
+                    profile.use();
+                }
+                if (listener != null) {
+                    listener.onCreate(body, profile);
+                }
+            } finally {
+                stepping.set(false);
             }
         } else {
             synchronized (bodyQueue) {
@@ -153,6 +309,116 @@ public class B2World extends BaseUpdateable implements ActivityStateListener { /
         }
     }
 
+    /**
+     * Creates bodies at once in next update, one per body definition, proxies of all of them are inserted into broadphase
+     * together (see {@link World#beginBatch()}). Definitions are read when the bodies are created, so don't change them.
+     *
+     * @param listener   called for every body, may be null
+     * @param fixtureDef fixture of every body
+     */
+    public void spawn(B2BodyListener listener, BodyDef[] bodyDefs, FixtureDef fixtureDef) {
+
+        spawn(listener, bodyDefs, new FixtureDef[]{fixtureDef});
+    }
+
+    /**
+     * @param fixtureDefs fixture of body with the same index, or one fixture of every body
+     * @see #spawn(B2BodyListener, BodyDef[], FixtureDef)
+     */
+    public void spawn(B2BodyListener listener, BodyDef[] bodyDefs, FixtureDef[] fixtureDefs) {
+
+        if (fixtureDefs.length != 1 && fixtureDefs.length != bodyDefs.length) {
+            Base.logE("B2World", "Monkeys can't spawn " + bodyDefs.length + " bodies with " + fixtureDefs.length + " fixtures");
+            return;
+        }
+
+        synchronized (spawnQueue) {
+            Spawn spawn = spawnPool.isEmpty() ? new Spawn() : spawnPool.remove(spawnPool.size() - 1);
+            spawn.listener = listener;
+            spawn.bodyDefs = bodyDefs;
+            spawn.fixtureDefs = fixtureDefs;
+            spawn.next = 0;
+            spawnQueue.add(spawn);
+        }
+    }
+
+    /**
+     * Spawned bodies are created over more updates, every update creates them until the time is spent (one at least).
+     *
+     * @param millis time per update, 0 creates all spawned bodies in one update
+     */
+    public void setSpawnBudget(float millis) {
+
+        spawnBudget = (long) (millis * 1000000);
+    }
+
+    /**
+     * Keeps removed bodies and creates new ones from them, so spawning debris doesn't feed garbage collector.
+     * Removed body becomes a new one, so nothing may keep it after remove.
+     *
+     * @param capacity count of kept bodies, 0 turns pool off
+     */
+    public void setBodyPool(int capacity) {
+
+        world.setBodyPoolCapacity(capacity);
+    }
+
+    /**
+     * Records profile of every step, see {@link #getProfileHistory()}.
+     *
+     * @param steps count of last steps kept, 0 turns profiling off
+     */
+    public void enableProfiling(int steps) {
+
+        world.setProfileHistory(steps > 0 ? new ProfileHistory(steps) : null);
+    }
+
+    /**
+     * @return rolling history of step profiles, null if profiling is off
+     */
+    public ProfileHistory getProfileHistory() {
+
+        return world.getProfileHistory();
+    }
+
+    /**
+     * Shows percentiles of step phases and counts of world on screen, turns profiling on if not yet.
+     *
+     * @return added bar, remove it from renderer to hide
+     */
+    public B2ProfileBar showProfileBar(BitmapFont font) {
+
+        if (world.getProfileHistory() == null) {
+            enableProfiling(300);
+        }
+        B2ProfileBar bar = new B2ProfileBar(font, world.getProfileHistory());
+        renderer.addDrawable(bar);
+        return bar;
+    }
+
+    /**
+     * Writes recorded steps as csv to internal storage, one line per step.
+     *
+     * @param file name of private file
+     */
+    public void dumpProfile(String file) {
+
+        ProfileHistory history = world.getProfileHistory();
+        if (history == null) {
+            Base.logE("B2World", "Monkeys can't dump profile, profiling is off");
+            return;
+        }
+
+        StringBuilder csv = new StringBuilder();
+        try {
+            history.writeCsv(csv);
+        } catch (IOException e) {
+            Base.logE("B2World", "Monkeys can't write profile: " + e.getMessage());
+            return;
+        }
+        FileHelper.saveInternal(file, csv.toString());
+    }
+
     public World world() {
 
         return world;
@@ -167,58 +433,187 @@ public class B2World extends BaseUpdateable implements ActivityStateListener { /
 
         if (!bodyQueue.isEmpty()) {
             synchronized (bodyQueue) {
-                Iterator<B2Body> iterator = bodyQueue.iterator();
-                while (iterator.hasNext()) {
-                    B2Body b2 = iterator.next();
-
-                    switch (b2.act) {
-                        case CREATE:
-                            Body body = world.createBody(b2.bd);
-                            body.createFixture(b2.fd);
-
-                            BaseDrawable profile = B2Profile.body(body);
-                            if (b2.b2object != null)
-                                b2.b2object.onCreate(body, profile);
-
-                            if (profile != null)
-                                renderer.addDrawable(profile);
-                            break;
-                        case DESTROY:
-                            removeBody(b2.body);
-                            break;
+                for (int i = 0; i < bodyQueue.size(); i++) {
+                    run(bodyQueue.get(i));
+                }
+                bodyQueue.clear();
+            }
+        }
+
+        spawnBodies();
+    }
+
+    private void run(B2Body b2) {
+
+        switch (b2.act) {
+            case CREATE:
+                createQueued(b2.b2object, b2.bd, b2.fd);
+                break;
+            case DESTROY:
+                removeBody(b2.body);
+                break;
+            case CREATE_BODY:
+                b2.result = createBodyNow(b2.bd, b2.fd);
+                break;
+            case CREATE_JOINT:
+                b2.result = world.createJoint(b2.jd);
+                break;
+            case DESTROY_JOINT:
+                world.destroyJoint(b2.joint);
+                break;
+        }
+
+        synchronized (b2) {
+            b2.done = true;
+            b2.notifyAll();
+        }
+    }
+
+    private void createQueued(B2BodyListener listener, BodyDef bd, FixtureDef fd) {
+
+        Body body = world.createBody(bd);
+        body.createFixture(fd);
+
+        BaseDrawable profile = B2Profile.body(body);
+        if (listener == null && profile == null) {
+            return;
+        }
+
+        if (Thread.currentThread() instanceof PhysicsThread) {
+            // renderer and listeners belong to base thread
+            Created created;
+            synchronized (createdPool) {
+                created = createdPool.isEmpty() ? new Created() : createdPool.remove(createdPool.size() - 1);
+            }
+            created.listener = listener;
+            created.body = body;
+            created.profile = profile;
+            renderer.runOnBaseThread(created);
+        } else {
+            onCreated(listener, body, profile);
+        }
+    }
+
+    private void onCreated(B2BodyListener listener, Body body, BaseDrawable profile) {
+
+        if (listener != null)
+            listener.onCreate(body, profile);
+
+        if (profile != null)
+            renderer.addDrawable(profile);
+    }
+
+    private void spawnBodies() {
+
+        synchronized (spawnQueue) {
+            if (spawnQueue.isEmpty()) {
+                return;
+            }
+
+            long end = System.nanoTime() + spawnBudget;
+            world.beginBatch();
+            try {
+                while (!spawnQueue.isEmpty()) {
+                    Spawn spawn = spawnQueue.get(0);
+                    while (spawn.next < spawn.bodyDefs.length) {
+                        int index = spawn.next++;
+                        FixtureDef fd = spawn.fixtureDefs[spawn.fixtureDefs.length == 1 ? 0 : index];
+                        createQueued(spawn.listener, spawn.bodyDefs[index], fd);
+                        if (spawnBudget > 0 && System.nanoTime() > end) {
+                            return;
+                        }
                     }
 
-                    iterator.remove();
-                    b2 = null;
+                    spawnQueue.remove(0);
+                    spawn.listener = null;
+                    spawn.bodyDefs = null;
+                    spawn.fixtureDefs = null;
+                    spawnPool.add(spawn);
                 }
+            } finally {
+                world.endBatch();
+            }
+        }
+    }
+
+    /**
+     * @return count of spawned bodies waiting for creation
+     */
+    public int getSpawnQueueSize() {
+
+        int size = 0;
+        synchronized (spawnQueue) {
+            for (Spawn spawn : spawnQueue) {
+                size += spawn.bodyDefs.length - spawn.next;
             }
         }
+        return size;
     }
 
     @Override
     public void update() {
 
-        if (worldUpdated) {
-            worldUpdated = false;
-            preUpdate();
-            world.step(base.time.delta, velocityIter, positionIter);
-            worldUpdated = true;
+        if (physicsThread == null && stepping.compareAndSet(false, true)) {
+            try {
+                preUpdate();
+                if (fixedStep > 0) {
+                    stepFixed(base.time.delta);
+                } else {
+                    world.step(base.time.delta, velocityIter, positionIter);
+                    transforms.publish(System.nanoTime(), 0);
+                }
+            } finally {
+                stepping.set(false);
+            }
+        }
+
+        transforms.acquire();
+    }
+
+    private void stepFixed(float delta) {
+
+        accumulator += delta;
+        int steps = (int) (accumulator / fixedStep);
+        if (steps > maxSubSteps) {
+            // spiral of death, drop the time world can't catch up with
+            steps = maxSubSteps;
+            accumulator = steps * fixedStep;
+        }
+
+        for (int i = 0; i < steps; i++) {
+            if (i == steps - 1) {
+                transforms.capture();
+            }
+            world.step(fixedStep, velocityIter, positionIter);
+        }
+        accumulator -= steps * fixedStep;
+
+        if (steps > 0) {
+            transforms.publish(System.nanoTime() - (long) (accumulator * 1e9f), (long) (fixedStep * 1e9f));
         }
     }
 
     public boolean isWorldUpdated() {
 
-        return worldUpdated;
+        return !stepping.get();
     }
 
     @Override
     public void onPause() {
 
+        if (physicsThread != null) {
+            stopPhysicsThread();
+            threadPaused = true;
+        }
     }
 
     @Override
     public void onResume() {
 
+        if (threadPaused) {
+            threadPaused = false;
+            startPhysicsThread();
+        }
     }
 
     private void removeBodyIteration(Body body) {
@@ -245,15 +640,110 @@ public class B2World extends BaseUpdateable implements ActivityStateListener { /
     public void clearWorld() {
 
         removeBodyIteration(world.getBodyList());
+        transforms.clear();
     }
 
     @Override
     public void destroy() {
 
+        stopPhysicsThread();
+        synchronized (spawnQueue) {
+            spawnQueue.clear();
+        }
         clearWorld();
     }
 
-    private enum Action {CREATE, DESTROY}
+    private enum Action {CREATE, DESTROY, CREATE_BODY, CREATE_JOINT, DESTROY_JOINT}
+
+    private class PhysicsThread extends Thread {
+
+        private volatile boolean running;
+
+        private PhysicsThread() {
+            super("PhysicsThread");
+            running = true;
+        }
+
+        private void finish() {
+
+            running = false;
+            interrupt();
+            try {
+                join();
+            } catch (InterruptedException e) {
+                Base.logE("B2World", "Monkeys can't wait for physics thread");
+            }
+        }
+
+        @Override
+        public void run() {
+
+            final long stepNanos = (long) (fixedStep * 1e9f);
+            long simTime = System.nanoTime();
+
+            while (running) {
+                long lag = System.nanoTime() - simTime;
+                if (lag < stepNanos) {
+                    long wait = stepNanos - lag;
+                    try {
+                        sleep(wait / 1000000, (int) (wait % 1000000));
+                    } catch (InterruptedException e) {
+                        //finish
+                    }
+                    continue;
+                }
+
+                int steps = (int) (lag / stepNanos);
+                if (steps > maxSubSteps) {
+                    // spiral of death, drop the time world can't catch up with
+                    steps = maxSubSteps;
+                    simTime = System.nanoTime() - steps * stepNanos;
+                }
+
+                stepping.set(true);
+                try {
+                    preUpdate();
+                    for (int i = 0; i < steps; i++) {
+                        if (i == steps - 1) {
+                            transforms.capture();
+                        }
+                        world.step(fixedStep, velocityIter, positionIter);
+                        simTime += stepNanos;
+                    }
+                } finally {
+                    stepping.set(false);
+                }
+                transforms.publish(simTime, stepNanos);
+            }
+        }
+    }
+
+    private static class Spawn {
+
+        private B2BodyListener listener;
+        private BodyDef[] bodyDefs;
+        private FixtureDef[] fixtureDefs;
+        private int next;
+    }
+
+    private class Created implements Runnable {
+
+        private B2BodyListener listener;
+        private Body body;
+        private BaseDrawable profile;
+
+        @Override
+        public void run() {
+
+            onCreated(listener, body, profile);
+            listener = null;
+            body = null;
+            profile = null;
+            synchronized (createdPool) {
+                createdPool.add(this);
+            }
+        }
+    }
 
     private class B2Body {
 
@@ -262,6 +752,10 @@ public class B2World extends BaseUpdateable implements ActivityStateListener { /
         protected FixtureDef fd;
         protected Action act;
         protected Body body;
+        protected JointDef jd;
+        protected Joint joint;
+        protected Object result;
+        protected boolean done;
 
         protected B2Body(B2BodyListener listener, BodyDef bodyDef, FixtureDef fixtureDef, Action action) {
 
@@ -275,6 +769,16 @@ public class B2World extends BaseUpdateable implements ActivityStateListener { /
             this.body = body;
             act = action;
         }
+
+        protected B2Body(JointDef jointDef) {
+            jd = jointDef;
+            act = Action.CREATE_JOINT;
+        }
+
+        protected B2Body(Joint joint, Action action) {
+            this.joint = joint;
+            act = action;
+        }
     }
 
 }
@@ -6,16 +6,13 @@ import android.os.Environment;
 
 import com.base.lib.engine.Base;
 import com.base.lib.engine.common.file.FileHelper;
+import com.base.lib.engine.common.file.TextScanner;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedReader;
-import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.StringReader;
 
 /**
  *
@@ -23,12 +20,6 @@ import java.io.StringReader;
 public class BelParser {
 
     private static final double PARSERVERSION = 0.256;
-    private static final String OBJECTINFO = "ob ";
-    private static final String FILEVERSION = "version ";
-
-    private static final String LINES = "l ";
-    private static final String SENSORS = "s ";
-    private static final String BLOCKENDS = "}";
 
     private BaseLine[] lines;
     private BaseSensor[] sensors;
@@ -58,86 +49,75 @@ public class BelParser {
 
     public BelParser(byte[] bytes) {
 
-        try {
-            parser256(new BufferedReader(new StringReader(new String(bytes))));
-        } catch (IOException e) {
-            Base.logE("BelParser", e.getMessage());
-        }
+        parse(new TextScanner(bytes));
     }
 
     private void readFileFromIS(BufferedInputStream is) throws IOException {
 
-        BufferedReader br = new BufferedReader(new InputStreamReader(new DataInputStream(is)));
-        parser256(br);
-        br.close();
+        parse(TextScanner.from(is));
         is.close();
     }
 
-    private void parser256(BufferedReader br) throws IOException {
+    private void parse(TextScanner sc) {
 
         lines = new BaseLine[256];
         int currentIndex = -1;
         int cpv = 2;
-        String line;
 
-        while ((line = br.readLine()) != null) {
+        while (sc.hasNext()) {
 
             /** l */
-            if(line.startsWith(LINES)){
-
-                String[] token = line.split(" ");
+            if (sc.match("l")) {
 
-                String[] verts = new String[Integer.parseInt(token[1])];
-                System.arraycopy(token, 3, verts, 0, verts.length);
-
-                int index = 0;
+                int count = sc.nextInt();
+                sc.skipToken(); // {
 
-                lines[currentIndex].vertices = new float[verts.length];
-                lines[currentIndex].length = verts.length/cpv - 1;
-                for(int i = 0; i<verts.length; i++){
-
-                    lines[currentIndex].vertices[i] = Float.parseFloat(verts[i]);
-                }
+                lines[currentIndex].vertices = sc.nextFloats(new float[count], 0, count);
+                lines[currentIndex].length = count/cpv - 1;
+                sc.skipLine();
+                continue;
             }
 
             /** s */
-            if(line.startsWith(SENSORS)){
-
-                String[] token = line.split(" ");
+            if (sc.match("s")) {
 
-                sensors = new BaseSensor[Integer.parseInt(token[1])];
+                sensors = new BaseSensor[sc.nextInt()];
+                sc.skipLine();
 
                 int index = 0;
-                while (!BLOCKENDS.equals(line = br.readLine())){
-                    token = line.split(" ");
+                while (!sc.peek('}')) {
 
                     BaseSensor sensor = new BaseSensor();
-                    sensor.name = token[0];
-                    sensor.posX = Float.parseFloat(token[1]);
-                    sensor.posY = Float.parseFloat(token[2]);
-                    sensor.sizeX = Float.parseFloat(token[3]);
-                    sensor.sizeY = Float.parseFloat(token[4]);
-                    sensor.rotZ = Float.parseFloat(token[5]);
+                    sensor.name = sc.nextString();
+                    sensor.posX = sc.nextFloat();
+                    sensor.posY = sc.nextFloat();
+                    sensor.sizeX = sc.nextFloat();
+                    sensor.sizeY = sc.nextFloat();
+                    sensor.rotZ = sc.nextFloat();
+                    sc.skipLine();
 
                     sensors[index++] = sensor;
                 }
+
+                sc.skipLine();
+                continue;
             }
 
             /**--------- HEADER ------------*/
             /** ob */
-            if (line.startsWith(OBJECTINFO)) {
+            if (sc.match("ob")) {
 
-                String[] token = line.split(" ");
-                lines[++currentIndex] = new BaseLine(token[1]);
-                if(token.length > 2){
-                    cpv = Integer.parseInt(token[2]);
+                lines[++currentIndex] = new BaseLine(sc.nextString());
+                if (sc.hasNextOnLine()) {
+                    cpv = sc.nextInt();
                 }
+                sc.skipLine();
                 continue;
             }
 
             /** version */
-            if (line.startsWith(FILEVERSION)) {
-                final double version = Double.parseDouble(line.substring(line.indexOf(" ") + 1));
+            if (sc.match("version")) {
+                final double version = sc.nextDouble();
                 if (version != PARSERVERSION) {
                     Base.logE("BelParser", "!"
                             + "\nParser version: " + PARSERVERSION
@@ -145,6 +125,8 @@ public class BelParser {
                             + "\nIt's possible that Monkeys don't read this file preciously..");
                 }
             }
+
+            sc.skipLine();
         }
 
         BaseLine[] temp = new BaseLine[currentIndex+1];
@@ -1,6 +1,7 @@
 package com.base.lib.engine;
 
 import com.base.lib.interfaces.GLPoolRunnable;
+import com.base.lib.engine.common.TaskQueue;
 import com.base.lib.engine.common.gl.EGLHolder;
 import com.base.lib.engine.common.other.TrainedMonkey;
 
@@ -12,7 +13,7 @@ import java.util.List;
  */
 public class BaseActionPool extends Thread {
 
-    private List<Runnable> actions;
+    private TaskQueue actions;
     private List<GLPoolRunnable> glActions;
 
     private EGLHolder egl;
@@ -27,7 +28,7 @@ public class BaseActionPool extends Thread {
     public BaseActionPool() {
         setName("BaseActionPool");
 
-        actions = new ArrayList<Runnable>(64);
+        actions = new TaskQueue("BaseActionPool", 256);
         glActions = new ArrayList<GLPoolRunnable>(64);
     }
 
@@ -40,6 +41,9 @@ public class BaseActionPool extends Thread {
         start();
     }
 
+    /**
+     * adds action to pool, can be called from any thread
+     */
     public void addTask(Runnable action) {
 
         actions.add(action);
@@ -65,8 +69,18 @@ public class BaseActionPool extends Thread {
         eglInitialized = false;
         running = false;
         interrupt();
+        if (!isAlive()) {
+            clearTasks();
+        }
+    }
+
+    // queue is cleared by its consumer, pool thread clears it on exit
+    private void clearTasks() {
+
         actions.clear();
-        glActions.clear();
+        synchronized (glLock) {
+            glActions.clear();
+        }
     }
 
     @Override
@@ -86,15 +100,7 @@ public class BaseActionPool extends Thread {
 
         while (running) {
 
-            if (!actions.isEmpty()) {
-                for (Runnable action : actions) {
-                    if (action != null) {
-                        action.run();
-                    }
-                }
-
-                actions.clear();
-            }
+            actions.runAll();
 
             if (!glActions.isEmpty()) {
                 synchronized (glLock) {
@@ -115,7 +121,25 @@ public class BaseActionPool extends Thread {
                 }
             }
 
-            TrainedMonkey.wait(this);
+            synchronized (this) {
+                if (running && actions.isEmpty() && glActions.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
         }
+
+        clearTasks();
+    }
+
+    /**
+     * @return queue of actions, holds depth and drain time of last run
+     */
+    public TaskQueue getTaskQueue() {
+
+        return actions;
     }
 }
@@ -77,6 +77,12 @@ public class BaseDrawable extends DrawableModel {
         buffer.draw(this);
     }
 
+    @Override
+    public int getSortBuffer() {
+
+        return buffer.getSortId();
+    }
+
     public void drawWithProgram(){
 
         buffer.glUseProgram();
@@ -87,7 +93,7 @@ public class BaseDrawable extends DrawableModel {
 
         buffer.glPutTextureBuffer();
         buffer.glPutVerticeBuffer();
-        buffer.glPutMVPMatrix(MVPMatrix);
+        RenderQueue.glPutMVPMatrix(buffer.shader.handle[0], this);
         buffer.glPutDraw();
         buffer.glDisableAttribArray();
     }
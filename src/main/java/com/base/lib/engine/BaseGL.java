@@ -38,14 +38,22 @@ public class BaseGL extends BaseObject {
 
     private static GLTPos[] glTPos;
     private static int currentProgram;
+    private static int currentActiveTexture;
+
+    private static DrawableBuffer boundBuffer;
+    private static boolean bufferBinding;
 
     private Thread glThead;
     private BaseActionPool glPool;
+    private final TextureStreamer streamer;
+    private static GLMemory memory;
 
     public BaseGL(Base base) {
         super(base);
 
         glPool = new BaseActionPool();
+        streamer = new TextureStreamer(base);
+        memory = new GLMemory(base);
     }
 
     public void initGLPool(EGLHolder egl) {
@@ -61,10 +69,12 @@ public class BaseGL extends BaseObject {
         GLCreated = isGLContextCreated();
 
         baseTexture = factory.gen.textureResources(R.drawable.uvmap2);
+        baseTexture.loadNow(); // placeholder of streamed textures
         baseShader = factory.gen.shaderResource(BaseShader.TEXTURE, R.raw.texture_vert, R.raw.texture_frag, "u_MVPMatrix", "a_Position", "a_TexCoordinate");
         factory.gen.shaderResource(BaseShader.COLOR, R.raw.one_color_vert, R.raw.color_frag, "u_MVPMatrix", "a_Position", "u_Color");
         factory.gen.shaderResource(BaseShader.TEXTURE_COLOR, R.raw.texture_fade_vert, R.raw.texture_fade_frag, "u_MVPMatrix", "a_Position", "a_TexCoordinate", "u_Color");
         factory.gen.shaderResource(BaseShader.INSTANCING, R.raw.particle_vert, R.raw.particle_frag, "u_VPMatrix", "a_Position", "a_Texture", "a_Color", "u_ScaleRatio", "u_SpriteSize");
+        factory.gen.shaderResource(BaseShader.SKINNING, R.raw.skinning_vert, R.raw.texture_frag, "u_MVPMatrix", "a_Position", "a_TexCoordinate", "u_Bones", "a_BoneIndex", "a_BoneWeight");
 
 /*
         new BaseShader(SHADERS[1], "u_MVPMatrix", "a_Position", "a_Color")
@@ -95,6 +105,7 @@ public class BaseGL extends BaseObject {
 
         GLCreated = true;
         currentProgram = 0;
+        currentActiveTexture = GLES20.GL_TEXTURE0;
     }
 
     /**
@@ -166,6 +177,22 @@ public class BaseGL extends BaseObject {
         });
     }
 
+    /**
+     * decodes textures on background threads and uploads them on a budget per frame
+     */
+    public TextureStreamer getTextureStreamer() {
+
+        return streamer;
+    }
+
+    /**
+     * counts GL memory of textures, render targets and VBOs and keeps it within budget
+     */
+    public GLMemory getMemory() {
+
+        return memory;
+    }
+
     /**
      * perform GL action in correct thread
      */
@@ -197,10 +224,10 @@ public class BaseGL extends BaseObject {
      */
     public static void useProgram(int program) {
 
-       // if (program != currentProgram) {
+        if (program != currentProgram) {
             GLES20.glUseProgram(program);
             currentProgram = program;
-       // }
+        }
     }
 
     /**
@@ -210,10 +237,10 @@ public class BaseGL extends BaseObject {
      */
     public static void useProgram(BaseShader shader) {
 
-       // if (shader.glid != currentProgram) {
+        if (shader.glid != currentProgram) {
             GLES20.glUseProgram(shader.glid);
             currentProgram = shader.glid;
-       // }
+        }
     }
 
     public static int getCurrentProgram() {
@@ -221,6 +248,75 @@ public class BaseGL extends BaseObject {
         return currentProgram;
     }
 
+    /**
+     * forgets cached program, active texture unit and bound textures, so next use/bind call goes into GL
+     * note: call this after GL state is changed directly via GLES20 (eg. glBindTexture, glUseProgram)
+     */
+    public static void invalidateStates() {
+
+        currentProgram = -1;
+        currentActiveTexture = -1;
+        if (glTPos != null) {
+            for (GLTPos pos : glTPos) {
+                pos.glid = -1;
+            }
+        }
+    }
+
+    /**
+     * render queue keeps vertex attributes of last buffer bound between draws of its models
+     */
+    static void beginBufferBinding() {
+
+        bufferBinding = true;
+    }
+
+    /**
+     * releases last bound buffer and stops buffer binding
+     */
+    static void endBufferBinding() {
+
+        releaseDrawBuffer();
+        bufferBinding = false;
+    }
+
+    /**
+     * @return true if buffer must set its vertex attributes (buffer isn't currently bound)
+     */
+    static boolean bindDrawBuffer(DrawableBuffer buffer) {
+
+        if (boundBuffer == buffer) {
+            return false;
+        }
+
+        releaseDrawBuffer();
+        if (bufferBinding) {
+            boundBuffer = buffer;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if buffer attributes stays bound after draw
+     */
+    static boolean isDrawBufferBound(DrawableBuffer buffer) {
+
+        return boundBuffer == buffer;
+    }
+
+    /**
+     * disables vertex attributes of last bound buffer
+     */
+    static void releaseDrawBuffer() {
+
+        if (boundBuffer != null) {
+            DrawableBuffer buffer = boundBuffer;
+            boundBuffer = null;
+            buffer.glReleaseBuffer();
+        }
+    }
+
     /**
      * active gl texture unit at given position into GL
      *
@@ -228,7 +324,7 @@ public class BaseGL extends BaseObject {
      */
     public static void activeTexture(int index) {
 
-        GLES20.glActiveTexture(glTPos[index].position);
+        glTPos[index].active();
     }
 
     /**
@@ -239,7 +335,7 @@ public class BaseGL extends BaseObject {
      */
     public static void activeTexture(int index, int handle) {
 
-        GLES20.glActiveTexture(glTPos[index].position);
+        glTPos[index].active();
         GLES20.glUniform1i(handle, index);
     }
 
@@ -252,7 +348,7 @@ public class BaseGL extends BaseObject {
      */
     public static void activeTexture(int index, int handle, int sampler) {
 
-        GLES20.glActiveTexture(glTPos[index].position);
+        glTPos[index].active();
         GLES20.glUniform1i(handle, sampler);
     }
 
@@ -268,10 +364,11 @@ public class BaseGL extends BaseObject {
 
     /**
      * binds texture GL unit at current position, note: must be performed in correct GL thread
+     * base texture is bound while texture is streamed
      */
     public static void bindTexture(BaseTexture texture) {
 
-        glTPos[0].bind(texture.glid);
+        glTPos[0].bind(glid(texture));
     }
 
     /**
@@ -295,7 +392,25 @@ public class BaseGL extends BaseObject {
      */
     public static void bindTexture(BaseTexture texture, int index) {
 
-        glTPos[index].bind(texture.glid);
+        glTPos[index].bind(glid(texture));
+    }
+
+    // base texture stands in for texture not streamed yet, which goes to the front of stream
+    // texture deleted by GLMemory is streamed again
+    private static int glid(BaseTexture texture) {
+
+        texture.lastBound = memory.frame;
+        if (texture.glid == 0 && baseTexture != null) {
+            if (texture.evicted) {
+                texture.evicted = false;
+                texture.reloading = true;
+                texture.reload();
+            }
+            texture.demanded = true;
+            return baseTexture.glid;
+        }
+
+        return texture.glid;
     }
 
     /**
@@ -505,6 +620,7 @@ public class BaseGL extends BaseObject {
         GLES20.glFinish();
 
         glPool.kill();
+        streamer.kill();
         useProgram(0);
 
         for (GLStateListener glend : glends) {
@@ -513,6 +629,7 @@ public class BaseGL extends BaseObject {
 
         base.factory.clearTextures();
         base.factory.clearShaders();
+        memory.clear();
 
         glends.clear();
 
@@ -638,13 +755,21 @@ public class BaseGL extends BaseObject {
         int glid;
         int position;
 
+        void active() {
+
+            if (currentActiveTexture != position) {
+                GLES20.glActiveTexture(position);
+                currentActiveTexture = position;
+            }
+        }
+
         void bind(int nglid) {
 
-            GLES20.glActiveTexture(position);
-            //if (glid != nglid) {
+            active();
+            if (glid != nglid) {
                 GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, nglid);
                 glid = nglid;
-            //}
+            }
         }
     }
 }
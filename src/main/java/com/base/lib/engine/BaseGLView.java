@@ -293,7 +293,6 @@ public class BaseGLView extends GLSurfaceView implements ActivityStateListener {
             long cycleStart;
             long sleepDelay;
             long cycleDuration;
-            boolean requestRender;
 
             while (running) {
                 cycleStart = SystemClock.uptimeMillis();
@@ -305,6 +304,12 @@ public class BaseGLView extends GLSurfaceView implements ActivityStateListener {
                     renderer.renderDone = false;
                     requestRender();
                     framesSkipped = 0;
+
+                    // frames are handed to GL thread via FrameQueue, wait only for frames with state shared with update
+                    FrameQueue frames = renderer.getFrameQueue();
+                    while (running && !frames.awaitDrawn(100)) {
+                        //GL thread is slow or paused, check if still running
+                    }
                 } else {
                     framesSkipped++;
                 }
@@ -319,16 +324,6 @@ public class BaseGLView extends GLSurfaceView implements ActivityStateListener {
                     }
                 }
 
-                if (!renderer.renderDone) {
-                    while (!renderer.renderDone) {
-                        try {
-                            sleep(1);
-                        } catch (InterruptedException e) {
-                            //no big deal if chrashed here
-                        }
-                    }
-                }
-
                 lastFrameDelay = SystemClock.uptimeMillis() - cycleStart;
             }
         }
@@ -10,6 +10,10 @@ public abstract class BaseRenderable extends BaseUpdateable {
     protected BaseShader shader = BaseGL.baseShader;
     /** reference to camera */
     protected BaseCamera camera;
+    /** opaque objects are drawn first and sorted by texture and front to back */
+    protected boolean opaque;
+    /** translucent objects are drawn last and sorted back to front */
+    protected boolean translucent;
 
     public BaseRenderable() {
     }
@@ -39,6 +43,73 @@ public abstract class BaseRenderable extends BaseUpdateable {
         this.shader = shader;
     }
 
+    /** @return true if object is drawn as translucent */
+    public boolean isTranslucent() {
+
+        return translucent;
+    }
+
+    /** sets translucency, translucent objects keeps back to front order in render queue */
+    public void setTranslucent(boolean translucent) {
+
+        this.translucent = translucent;
+        if (translucent) {
+            opaque = false;
+        }
+    }
+
+    /** @return true if object is drawn as opaque */
+    public boolean isOpaque() {
+
+        return opaque;
+    }
+
+    /**
+     * sets opacity, render queue may reorder opaque objects by texture and depth,
+     * objects neither opaque nor translucent keeps adding order
+     */
+    public void setOpaque(boolean opaque) {
+
+        this.opaque = opaque;
+        if (opaque) {
+            translucent = false;
+        }
+    }
+
+    /** @return key for render queue, defaultly objects are ordered just by shader */
+    public long getSortKey() {
+
+        return RenderQueue.key(shader, 0, 0, 0.0f, opaque, translucent);
+    }
+
+    /**
+     * @return id of buffer which object binds while drawing, 0 if object sets vertex attributes by itself
+     * note: render queue keeps attributes of same buffer bound between draws
+     */
+    public int getSortBuffer() {
+
+        return 0;
+    }
+
+    /**
+     * @return true if all state read by draw() is copied into frame when renderable is queued (see RenderQueue),
+     * so update of next frame can run while this one is drawn. Otherwise update thread waits until frame is drawn.
+     */
+    public boolean isFrameSafe() {
+
+        return false;
+    }
+
+    /**
+     * called by update thread when renderable is queued into frame, frame safe renderable copies here its draw state
+     * into storage of given slot and draw() reads it back by {@link RenderQueue#getDrawSlot()}
+     *
+     * @param slot index of frame, 0 to {@link FrameQueue#SLOTS} - 1
+     */
+    public void onFrameQueued(int slot) {
+
+    }
+
     /** @return camera reference */
     public BaseCamera getCamera() {
 
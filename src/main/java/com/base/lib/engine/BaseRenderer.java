@@ -6,13 +6,12 @@ import android.opengl.GLSurfaceView;
 import com.base.lib.engine.builders.BaseFactory;
 import com.base.lib.engine.builders.RenderConfig;
 import com.base.lib.engine.common.BaseTimer;
+import com.base.lib.engine.common.TaskQueue;
 import com.base.lib.interfaces.ActivityStateListener;
 import com.base.lib.interfaces.BaseTouchListener;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
@@ -25,11 +24,11 @@ public abstract class BaseRenderer extends BaseObject implements GLSurfaceView.R
 
     private BaseGLView view;
 
-    private final List<Runnable> glQueueList;
-    private final List<Runnable> updateQueueList;
+    private final TaskQueue glQueue;
+    private final TaskQueue updateQueue;
     private final BaseUpdateableCollection updateables;
 
-    private final DrawCollection drawables;
+    private final FrameQueue frames;
     private final BaseRootCollection baseCollection;
 
     float requestedFPS;
@@ -42,11 +41,11 @@ public abstract class BaseRenderer extends BaseObject implements GLSurfaceView.R
         super(config.base);
         base.render = this;
 
-        glQueueList = new ArrayList<Runnable>(256);
-        updateQueueList = new ArrayList<Runnable>(256);
+        glQueue = new TaskQueue("GLQueue", 1024);
+        updateQueue = new TaskQueue("UpdateQueue", 1024);
 
         updateables = new BaseUpdateableCollection(base, 4096);
-        drawables = new DrawCollection();
+        frames = new FrameQueue(4096);
 
         baseCollection = new BaseRootCollection(base, 4096);
         updateables.add(baseCollection);
@@ -101,7 +100,32 @@ public abstract class BaseRenderer extends BaseObject implements GLSurfaceView.R
      */
     public void rebindShaderCollection() {
 
-        drawables.init(base.gl.shaders);
+        frames.init(base.gl.shaders);
+    }
+
+    /**
+     * sets if draw queue orders renderables by texture, buffer and depth to minimize GL state changes (default true),
+     * only renderables marked opaque or translucent are reordered, otherwise all are drawn by shader in adding order
+     */
+    public void setStateSorting(boolean sort) {
+
+        frames.setStateSorting(sort);
+    }
+
+    /**
+     * @return draw queue of frame which is currently filled by update thread
+     */
+    public RenderQueue getRenderQueue() {
+
+        return frames.writeFrame();
+    }
+
+    /**
+     * @return frame handoff between update and GL thread
+     */
+    public FrameQueue getFrameQueue() {
+
+        return frames;
     }
 
     /**
@@ -207,11 +231,11 @@ public abstract class BaseRenderer extends BaseObject implements GLSurfaceView.R
     }
 
     /**
-     * push renderable for next draw cycle
+     * push renderable for next draw cycle, note: must be called by update thread
      */
     public void addRenderable(BaseRenderable renderable) {
 
-        drawables.add(renderable);
+        frames.writeFrame().add(renderable);
     }
 
     /**
@@ -412,11 +436,11 @@ public abstract class BaseRenderer extends BaseObject implements GLSurfaceView.R
     }
 
     /**
-     * perform action at the end of update method
+     * perform action at the start of next update method, note: can be called from any thread
      */
     public void runOnBaseThread(Runnable runnable) {
 
-        updateQueueList.add(runnable);
+        updateQueue.add(runnable);
     }
 
     /**
@@ -427,7 +451,7 @@ public abstract class BaseRenderer extends BaseObject implements GLSurfaceView.R
         (new BaseTimer(millisecDelay) {
             @Override
             public void onDone() {
-                updateQueueList.add(runnable);
+                updateQueue.add(runnable);
             }
         }).use();
     }
@@ -441,11 +465,27 @@ public abstract class BaseRenderer extends BaseObject implements GLSurfaceView.R
     }
 
     /**
-     * perform action at the start of next Draw method
+     * perform action at the start of next Draw method, note: can be called from any thread
      */
     public void glQueueEvent(Runnable runnable) {
 
-        glQueueList.add(runnable);
+        glQueue.add(runnable);
+    }
+
+    /**
+     * @return queue of GL actions, holds depth and drain time of last frame
+     */
+    public TaskQueue getGLQueue() {
+
+        return glQueue;
+    }
+
+    /**
+     * @return queue of update actions, holds depth and drain time of last update
+     */
+    public TaskQueue getUpdateQueue() {
+
+        return updateQueue;
     }
 
     /**
@@ -453,20 +493,13 @@ public abstract class BaseRenderer extends BaseObject implements GLSurfaceView.R
      */
     protected void onUpdateFrame() {
 
-        if (!updateQueueList.isEmpty()) {
-            int count = updateQueueList.size();
-            for (int i = 0; i < count; i++) {
-                Runnable r = updateQueueList.remove(0);
-                if (r != null) {
-                    r.run();
-                    r = null;
-                }
-            }
-        }
+        updateQueue.runAll();
 
         onUpdate();
 
         updateables.update();
+
+        frames.publish();
     }
 
     /**
@@ -478,22 +511,17 @@ public abstract class BaseRenderer extends BaseObject implements GLSurfaceView.R
 
         GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
 
-        if (!glQueueList.isEmpty()) {
-            int count = glQueueList.size();
-            for (int i = 0; i < count; i++) {
-                Runnable r = glQueueList.remove(0);
-                if (r != null) {
-                    r.run();
-                    r = null;
-                }
-            }
-        }
+        glQueue.runAll();
+        base.gl.getTextureStreamer().upload();
+        base.gl.getMemory().onFrame();
+
+        BaseGL.invalidateStates();
 
         onPreDraw();
-        drawables.draw();
+        RenderQueue frame = frames.readFrame();
+        frame.draw();
         onPostDraw();
-
-        drawables.clear();
+        frames.drawn(frame);
 
         renderDone = true;
         //GLES20.glFlush(); //This is unnecessary. The SwapBuffer command takes care of flushing and command processing.
@@ -572,9 +600,10 @@ public abstract class BaseRenderer extends BaseObject implements GLSurfaceView.R
             updateable.destroy();
         }
         updateables.clear();
-        glQueueList.clear();
-        updateQueueList.clear();
+        glQueue.clear();
+        updateQueue.clear();
         clearDrawables(true);
+        frames.clear();
         view = null;
 
         onDestroy();
@@ -587,93 +616,4 @@ public abstract class BaseRenderer extends BaseObject implements GLSurfaceView.R
 
         return this;
     }
-
-
-    /*! INNER CLASSES !*/
-
-    /**
-     * holds reference for shader and objects to draw with this shader
-     */
-    class ShaderCollection extends BaseRootCollection {
-
-        protected BaseShader shader;
-
-        protected ShaderCollection(Base base, BaseShader shader) {
-            super(base, shader.getCollectionSize());
-
-            this.shader = shader;
-            index = -1;
-        }
-
-        protected void draw() {
-
-            BaseGL.glError("clear");
-
-            if (size > 0) {
-                BaseGL.useProgram(shader.glid);
-                while (++index < size) {
-                    renderables[index].draw();
-                }
-                index = -1;
-            }
-
-            BaseGL.glError(shader.toString());
-        }
-    }
-
-    /**
-     * holds all shader collections and draw them
-     */
-    class DrawCollection {
-
-        protected Map<BaseShader, ShaderCollection> shaderCollections;
-
-        protected DrawCollection() {
-
-        }
-
-        void init(List<BaseShader> shaders) {
-
-            if (shaders != null) {
-                int count = shaders.size();
-                shaderCollections = new LinkedHashMap<>(shaders.size());
-                for (int i = 0; i < count; i++) {
-                    BaseShader shader = shaders.get(i);
-                    if (shaderCollections.get(shader) == null) {
-                        shaderCollections.put(shader, new ShaderCollection(base, shader));
-                    }
-                }
-            }
-        }
-
-        void add(BaseRenderable object) {
-
-            shaderCollections.get(object.shader).add(object);
-        }
-
-        void draw() {
-
-            for (ShaderCollection collection : shaderCollections.values()) {
-                if (collection != null) {
-                    collection.draw();
-                }
-            }
-        }
-
-        void clear() {
-
-            if (shaderCollections != null) {
-                for (ShaderCollection collection : shaderCollections.values()) {
-                    if (collection != null) {
-                        collection.clear();
-                    }
-                }
-            }
-        }
-
-        void destroy() {
-
-            clear();
-        }
-    }
-}
\ No newline at end of file
+}
@@ -16,6 +16,7 @@ public class BaseShader implements Runnable {
     public static final String COLOR = "color";
     public static final String TEXTURE_COLOR = "texture_color";
     public static final String INSTANCING = "instancing";
+    public static final String SKINNING = "skinning";
 
     public int glid;
     public int[] handle;
@@ -30,6 +31,9 @@ public class BaseShader implements Runnable {
 
     private int collectionSize = 1024;
 
+    /** draw order of shader in render queue */
+    int order;
+
     private final BaseGL gl;
 
     public BaseShader(BaseGL gl, String name, String... atrs) {
@@ -195,6 +199,9 @@ public class BaseShader implements Runnable {
 
     public void delete() {
 
+        if (BaseGL.getCurrentProgram() == glid) {
+            BaseGL.useProgram(0);
+        }
         GLES20.glDeleteShader(vertexShader);
         GLES20.glDeleteShader(fragmentShader);
         GLES20.glDeleteProgram(glid);
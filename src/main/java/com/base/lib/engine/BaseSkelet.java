@@ -114,11 +114,8 @@ public class BaseSkelet {
                 float[] m = bone.transformMatrix;
                 float[] v = group.verts;
                 int index = group.startIndex;
-                for (int j = 0; j < v.length; ) {
-                    float[] p = BaseMatrix.multiplyMV(m, v[j++], v[j++], v[j++]);
-                    modifiedVerts[index++] = p[0];
-                    modifiedVerts[index++] = p[1];
-                    modifiedVerts[index++] = p[2];
+                for (int j = 0; j < v.length; j += 3, index += 3) {
+                    BaseMatrix.multiplyMV(modifiedVerts, index, m, v[j], v[j + 1], v[j + 2]);
                 }
             }
         }
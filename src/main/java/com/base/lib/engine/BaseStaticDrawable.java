@@ -90,8 +90,9 @@ public class BaseStaticDrawable extends BaseRenderable {
 
     public void glCalcAndPutMatrix(DrawableBuffer buffer) {
 
-        BaseMatrix.multiplyMM(BaseMatrix._matrix, camera.mVPMatrix, modelMatrix);
-        buffer.glPutMVPMatrix(BaseMatrix._matrix);
+        float[] matrix = BaseMatrix.threadMatrix();
+        BaseMatrix.multiplyMM(matrix, camera.mVPMatrix, modelMatrix);
+        buffer.glPutMVPMatrix(matrix);
     }
 
     @Override
@@ -99,7 +100,7 @@ public class BaseStaticDrawable extends BaseRenderable {
 
         buffer.glPutVerticeBuffer();
         buffer.glPutTextureBuffer();
-        buffer.glBindTexture(texture.glid);
+        buffer.glBindTexture(texture);
         glCalcAndPutMatrix(buffer);
         buffer.glPutDraw();
         buffer.glDisableAttribArray();
@@ -1,17 +1,24 @@
 package com.base.lib.engine;
 
+import android.content.res.AssetManager;
 import android.graphics.Bitmap;
 import android.opengl.GLES20;
+import android.os.Environment;
 
 import com.base.lib.engine.common.BitmapHelper;
 import com.base.lib.engine.common.file.FileHelper;
 import com.base.lib.interfaces.GLPoolRunnable;
+import com.base.lib.engine.common.gl.TextureCache;
 import com.base.lib.engine.common.gl.TextureHelper;
+import com.base.lib.engine.common.gl.TextureImage;
+
+import java.io.FileInputStream;
+import java.io.IOException;
 
 /**
  * holds basic informations about texture.
  */
-public class BaseTexture implements GLPoolRunnable<Bitmap> {
+public class BaseTexture implements GLPoolRunnable<Object> {
 
     private static final Options baseTextureOptions = new Options();
 
@@ -24,6 +31,16 @@ public class BaseTexture implements GLPoolRunnable<Bitmap> {
 
     private Options options = baseTextureOptions;
 
+    private byte[] bytes;
+    volatile int priority;
+    volatile boolean demanded;
+
+    // GLMemory accounting, GL thread only
+    int byteCount;
+    long lastBound;
+    boolean evicted;
+    boolean reloading;
+
     public BaseTexture(BaseGL gl) {
         this.gl = gl;
 
@@ -73,18 +90,9 @@ public class BaseTexture implements GLPoolRunnable<Bitmap> {
     public void load(final byte[] bytes) {
 
         loadingType = Type.OTHER;
-        gl.glTask(new Runnable() {
-            @Override
-            public void run() {
-                final Bitmap bitmap = BitmapHelper.loadBitmap(bytes);
-                gl.glRun(new Runnable() {
-                    @Override
-                    public void run() {
-                        glRun(bitmap);
-                    }
-                });
-            }
-        });
+        this.bytes = bytes;
+
+        gl.getTextureStreamer().request(this);
     }
 
     public void load(int resourceFile) {
@@ -92,7 +100,7 @@ public class BaseTexture implements GLPoolRunnable<Bitmap> {
         loadingType = Type.STORAGE_RESOURCE;
         loadingPath = Integer.toString(resourceFile);
 
-        gl.glTask(this);
+        gl.getTextureStreamer().request(this);
     }
 
     public void load(String path, Type storage) {
@@ -100,33 +108,81 @@ public class BaseTexture implements GLPoolRunnable<Bitmap> {
         loadingType = storage;
         loadingPath = path;
 
-        gl.glTask(this);
+        gl.getTextureStreamer().request(this);
     }
 
     @Override
-    public Bitmap run() {
+    public Object run() {
+
+        if (loadingPath != null && TextureImage.isContainer(loadingPath)) {
+            return readContainer();
+        }
 
         switch (loadingType) {
             case STORAGE_RESOURCE:
                 return BitmapHelper.loadBitmap(Integer.parseInt(loadingPath));
             case STORAGE_ASSETS:
+                if (TextureCache.isEnabled()) {
+                    TextureImage image = TextureCache.load(loadingPath, options.mipmap);
+                    if (image == null) {
+                        Bitmap bitmap = BitmapHelper.loadBitmap(loadingPath);
+                        image = bitmap != null ? TextureCache.store(loadingPath, bitmap, options.mipmap) : null;
+                    }
+                    return image;
+                }
                 return BitmapHelper.loadBitmap(loadingPath);
             case STORAGE_INTERNAL:
                 return BitmapHelper.loadBitmap(FileHelper.loadInternal(loadingPath));
             case STORAGE_SDCARD:
                 return BitmapHelper.loadBitmap(FileHelper.sdReadFile(loadingPath));
             default:
-                return null;
+                return bytes != null ? BitmapHelper.loadBitmap(bytes) : null;
+        }
+    }
+
+    // ETC1/ETC2 pkm or ktx, read straight into direct buffers
+    private TextureImage readContainer() {
+
+        try {
+            switch (loadingType) {
+                case STORAGE_ASSETS:
+                    return TextureImage.read(Base.appContext.getAssets().open(loadingPath, AssetManager.ACCESS_STREAMING));
+                case STORAGE_INTERNAL:
+                    return TextureImage.read(Base.appContext.openFileInput(loadingPath));
+                case STORAGE_SDCARD:
+                    return TextureImage.read(new FileInputStream(Environment.getExternalStorageDirectory() + "/" + loadingPath));
+                default:
+                    return null;
+            }
+        } catch (IOException e) {
+            Base.logE("BaseTexture", "Monkeys can't read texture " + loadingPath + ": " + e.getMessage());
+            return null;
         }
     }
 
     @Override
-    public void glRun(Bitmap bitmap) {
+    public void glRun(Object image) {
+
+        if (image == null) {
+            return;
+        }
 
-        if (bitmap == null) {
+        bytes = null;
+        demanded = false;
+        if (image instanceof TextureImage) {
+            TextureImage textureImage = (TextureImage) image;
+            if (glid == 0) {
+                glid = TextureHelper.loadTexture(textureImage, options);
+            } else {
+                TextureHelper.changeTexture(glid, textureImage, options);
+            }
+            boolean generated = options.mipmap && !textureImage.isCompressed() && textureImage.getLevelCount() == 1;
+            gl.getMemory().textureLoaded(this, generated ? textureImage.getByteCount() * 4 / 3 : textureImage.getByteCount());
             return;
         }
 
+        Bitmap bitmap = (Bitmap) image;
+        int byteCount = options.mipmap ? bitmap.getByteCount() * 4 / 3 : bitmap.getByteCount();
         if (glid == 0) {
             glid = TextureHelper.loadTexture(bitmap, options);
         } else {
@@ -136,16 +192,54 @@ public class BaseTexture implements GLPoolRunnable<Bitmap> {
         if (!bitmap.isRecycled()) {
             bitmap.recycle();
         }
+        gl.getMemory().textureLoaded(this, byteCount);
     }
 
     public void reload() {
 
-        gl.glTask(this);
+        gl.getTextureStreamer().request(this);
+    }
+
+    /**
+     * loads texture by GL thread right away instead of streaming it
+     */
+    public void loadNow() {
+
+        gl.getTextureStreamer().finish(this);
+    }
+
+    /**
+     * @return false while texture is streamed and base texture is drawn instead
+     */
+    public boolean isLoaded() {
+
+        return glid != 0;
+    }
+
+    /**
+     * @return true if texture can be loaded again from its storage, so {@link GLMemory} may delete it over budget
+     */
+    public boolean isReloadable() {
+
+        return loadingType != null && loadingType != Type.OTHER && loadingPath != null;
+    }
+
+    /**
+     * textures with higher priority are streamed first, textures requested by draw go before all of them
+     */
+    public void setPriority(int priority) {
+
+        this.priority = priority;
+    }
+
+    public int getPriority() {
+
+        return priority;
     }
 
     public void bind() {
 
-        BaseGL.bindTexture(glid);
+        BaseGL.bindTexture(this);
     }
 
     public String getName() {
@@ -160,6 +254,7 @@ public class BaseTexture implements GLPoolRunnable<Bitmap> {
 
     public void delete() {
 
+        gl.getTextureStreamer().cancel(this);
         removeFromGL();
     }
 
@@ -170,6 +265,7 @@ public class BaseTexture implements GLPoolRunnable<Bitmap> {
             public void run() {
                 TextureHelper.deleteTexture(glid);
                 glid = 0;
+                gl.getMemory().textureDeleted(BaseTexture.this);
             }
         });
     }
@@ -0,0 +1,290 @@
+package com.base.lib.engine;
+
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+
+import com.base.lib.engine.common.Buffers;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * dynamic batch of DrawableBuffer models
+ * <p>
+ * models are transformed on update thread and written into one interleaved vertex stream [x, y, (z), u, v],
+ * consecutive models with same texture are drawn with single glDrawElements call.
+ * Transform of model is taken from its MVP matrix (without camera), so models which reset model matrix after update
+ * (ie. super.update(); setIdentityMM();) are batched at their place too.
+ * Models which aren't batchable (or uses different camera) are drawn separately in same order.
+ * </p>
+ * note: batch works only with client side buffers and GL_TRIANGLES, GL_LINES or GL_POINTS draw mode
+ */
+public class DrawableBatch {
+
+    /**
+     * maximum count of models in one draw call
+     */
+    public static final int MAX_MODELS = 2048;
+
+    private final DrawableBuffer buffer;
+
+    private final float[] vertices;
+    private final float[] textures;
+    private final int vertexCount;
+    private final int cpv;
+    private final int cpt;
+    private final int stride;
+    private final int faceCount;
+    private final int maxModels;
+
+    private final ShortBuffer indices;
+    private final float[] VPMatrix = new float[16];
+    private final float[] inverseVPMatrix = new float[16];
+    private final float[] transform = new float[16];
+    private boolean inverseVP;
+
+    private float[] stream;
+    private FloatBuffer streamBuffer;
+    private int streamVertices;
+
+    private BaseTexture[] entryTexture;
+    private DrawableModel[] entryModel;
+    private int[] entryStart;
+    private int[] entryCount;
+    private int entries;
+
+    /**
+     * creates batch from client side buffers of DrawableBuffer, buffers must be filled and must have texture coords
+     */
+    public DrawableBatch(DrawableBuffer buffer) {
+
+        this.buffer = buffer;
+
+        cpv = buffer.getCpv();
+        cpt = buffer.getCpt();
+        stride = cpv + cpt;
+        faceCount = buffer.getFaceCount();
+
+        FloatBuffer vBuffer = buffer.getVerticeBuffer();
+        FloatBuffer tBuffer = buffer.getTextureBuffer();
+        ShortBuffer fBuffer = buffer.getFaceBuffer();
+
+        vertexCount = vBuffer.capacity() / cpv;
+        vertices = new float[vertexCount * cpv];
+        textures = new float[vertexCount * cpt];
+        short[] faces = new short[faceCount];
+
+        vBuffer.position(0);
+        vBuffer.get(vertices).position(0);
+        tBuffer.position(0);
+        tBuffer.get(textures).position(0);
+        fBuffer.position(0);
+        fBuffer.get(faces).position(0);
+
+        maxModels = Math.max(1, Math.min(MAX_MODELS, 65536 / vertexCount));
+
+        short[] batchFaces = new short[maxModels * faceCount];
+        for (int m = 0; m < maxModels; m++) {
+            int offset = m * vertexCount;
+            int index = m * faceCount;
+            for (int f = 0; f < faceCount; f++) {
+                batchFaces[index + f] = (short) (faces[f] + offset);
+            }
+        }
+        indices = Buffers.shortBuffer(batchFaces);
+
+        ensureStream(vertexCount * 64);
+        ensureEntries(16);
+    }
+
+    /**
+     * @return true if buffer can be drawn as batch
+     */
+    public static boolean isBatchable(DrawableBuffer buffer) {
+
+        int mode = buffer.getGlDrawMode();
+
+        return buffer.getVerticeBuffer() != null
+                && buffer.getTextureBuffer() != null
+                && buffer.getFaceBuffer() != null
+                && (mode == GLES20.GL_TRIANGLES || mode == GLES20.GL_LINES || mode == GLES20.GL_POINTS);
+    }
+
+    private void ensureStream(int vertexCapacity) {
+
+        int size = vertexCapacity * stride;
+        if (stream == null || stream.length < size) {
+            float[] old = stream;
+            stream = new float[size];
+            if (old != null) {
+                System.arraycopy(old, 0, stream, 0, streamVertices * stride);
+            }
+            streamBuffer = Buffers.floatBuffer(stream);
+        }
+    }
+
+    private void ensureEntries(int capacity) {
+
+        if (entryModel == null || entryModel.length < capacity) {
+            BaseTexture[] textures = new BaseTexture[capacity];
+            DrawableModel[] models = new DrawableModel[capacity];
+            int[] starts = new int[capacity];
+            int[] counts = new int[capacity];
+            if (entryModel != null) {
+                System.arraycopy(entryTexture, 0, textures, 0, entries);
+                System.arraycopy(entryModel, 0, models, 0, entries);
+                System.arraycopy(entryStart, 0, starts, 0, entries);
+                System.arraycopy(entryCount, 0, counts, 0, entries);
+            }
+            entryTexture = textures;
+            entryModel = models;
+            entryStart = starts;
+            entryCount = counts;
+        }
+    }
+
+    /**
+     * starts new frame and keeps camera matrix of this frame, called by update thread before models are added
+     */
+    public void begin() {
+
+        if (buffer.camera != null) {
+            System.arraycopy(buffer.camera.mVPMatrix, 0, VPMatrix, 0, 16);
+            inverseVP = Matrix.invertM(inverseVPMatrix, 0, VPMatrix, 0);
+        } else {
+            inverseVP = false;
+        }
+
+        for (int i = 0; i < entries; i++) {
+            entryModel[i] = null;
+            entryTexture[i] = null;
+        }
+        entries = 0;
+        streamVertices = 0;
+    }
+
+    /**
+     * transforms model into vertex stream or adds it as separate draw
+     */
+    public void add(DrawableModel model) {
+
+        if (!model.batchable || model.camera != buffer.camera) {
+            ensureEntries(entries + 1);
+            entryModel[entries] = model;
+            entryTexture[entries] = model.texture;
+            entries++;
+            return;
+        }
+
+        int last = entries - 1;
+        if (last < 0 || entryModel[last] != null || entryTexture[last] != model.texture || entryCount[last] == maxModels) {
+            ensureEntries(entries + 1);
+            entryModel[entries] = null;
+            entryTexture[entries] = model.texture;
+            entryStart[entries] = streamVertices;
+            entryCount[entries] = 0;
+            last = entries++;
+        }
+
+        if ((streamVertices + vertexCount) * stride > stream.length) {
+            ensureStream((streamVertices + vertexCount) * 2);
+        }
+
+        final float[] m;
+        if (inverseVP) {
+            // MVP = VP * M, so M = VP^-1 * MVP, model matrix itself may be already reset
+            Matrix.multiplyMM(transform, 0, inverseVPMatrix, 0, model.MVPMatrix, 0);
+            m = transform;
+        } else {
+            m = model.modelMatrix;
+        }
+        int index = streamVertices * stride;
+        int t = 0;
+        for (int v = 0; v < vertices.length; v += cpv) {
+            float x = vertices[v];
+            float y = vertices[v + 1];
+            float z = cpv > 2 ? vertices[v + 2] : 0.0f;
+
+            stream[index++] = m[0] * x + m[4] * y + m[8] * z + m[12];
+            stream[index++] = m[1] * x + m[5] * y + m[9] * z + m[13];
+            if (cpv > 2) {
+                stream[index++] = m[2] * x + m[6] * y + m[10] * z + m[14];
+            }
+            for (int c = 0; c < cpt; c++) {
+                stream[index++] = textures[t++];
+            }
+        }
+
+        streamVertices += vertexCount;
+        entryCount[last]++;
+    }
+
+    /**
+     * moves vertex stream into system buffer, called by update thread after all models are added
+     */
+    public void end() {
+
+        streamBuffer.position(0);
+        streamBuffer.put(stream, 0, streamVertices * stride).position(0);
+    }
+
+    /**
+     * draws batches and separate models, note: must be performed in correct GL thread
+     */
+    public void draw() {
+
+        final BaseShader shader = buffer.shader;
+        final int mode = buffer.getGlDrawMode();
+        final int strideBytes = stride * Buffers.BYTESPERFLOAT;
+        boolean modelPointers = false;
+
+        for (int i = 0; i < entries; i++) {
+            DrawableModel model = entryModel[i];
+            if (model != null) {
+                if (!modelPointers) {
+                    buffer.glPutTextureBuffer();
+                    buffer.glPutVerticeBuffer();
+                    modelPointers = true;
+                }
+                buffer.bindTexturePutMVPMatrix(model);
+                buffer.glPutDraw();
+            } else {
+                int offset = entryStart[i] * stride;
+
+                streamBuffer.position(offset);
+                GLES20.glVertexAttribPointer(shader.handle[1], cpv, GLES20.GL_FLOAT, false, strideBytes, streamBuffer);
+                GLES20.glEnableVertexAttribArray(shader.handle[1]);
+
+                streamBuffer.position(offset + cpv);
+                GLES20.glVertexAttribPointer(shader.handle[2], cpt, GLES20.GL_FLOAT, false, strideBytes, streamBuffer);
+                GLES20.glEnableVertexAttribArray(shader.handle[2]);
+                modelPointers = false;
+
+                BaseGL.bindTexture(entryTexture[i] != null ? entryTexture[i] : BaseGL.getBaseTexture());
+                buffer.glPutMVPMatrix(VPMatrix);
+
+                indices.position(0);
+                GLES20.glDrawElements(mode, entryCount[i] * faceCount, GLES20.GL_UNSIGNED_SHORT, indices);
+            }
+        }
+
+        streamBuffer.position(0);
+        buffer.glDisableAttribArray();
+    }
+
+    /**
+     * @return number of draw calls in last frame
+     */
+    public int getDrawCount() {
+
+        return entries;
+    }
+
+    /**
+     * @return number of models in vertex stream
+     */
+    public int getBatchedCount() {
+
+        return streamVertices / vertexCount;
+    }
+}
@@ -33,7 +33,11 @@ public class DrawableBuffer extends BaseRenderable implements GLStateListener {
 
     private int glDrawMode = GLES20.GL_TRIANGLES;
 
+    private static int sortIdCounter;
+    private final int sortId = nextSortId();
+
     protected List<DrawableModel> models;
+    protected DrawableBatch batch;
 
     public DrawableBuffer() {
             }
@@ -65,6 +69,11 @@ public class DrawableBuffer extends BaseRenderable implements GLStateListener {
         faceCount = count;
     }
 
+    public int getFaceCount() {
+
+        return faceCount;
+    }
+
     public void setCoordsPerVertice(int cpv) {
 
         this.cpv = cpv;
@@ -184,11 +193,48 @@ public class DrawableBuffer extends BaseRenderable implements GLStateListener {
         BaseGL.bindTexture(textureID);
     }
 
+    public void glBindTexture(BaseTexture texture) {
+        BaseGL.bindTexture(texture);
+    }
+
     public void glDisableAttribArray() {
         GLES20.glDisableVertexAttribArray(shader.handle[1]);
         GLES20.glDisableVertexAttribArray(shader.handle[2]);
     }
 
+    /**
+     * enables dynamic batching of models, models with same texture are pre-transformed in update
+     * and drawn by one draw call, note: buffer must be filled and can't be VBO
+     *
+     * @return true if batching is enabled
+     */
+    public synchronized boolean setBatching(boolean enable) {
+
+        if (enable) {
+            if (batch == null) {
+                if (DrawableBatch.isBatchable(this)) {
+                    batch = new DrawableBatch(this);
+                } else {
+                    Base.logE("DrawableBuffer", "Monkeys can't batch this buffer (missing buffers or unsupported draw mode)");
+                }
+            }
+        } else {
+            batch = null;
+        }
+
+        return batch != null;
+    }
+
+    public boolean isBatching() {
+
+        return batch != null;
+    }
+
+    public DrawableBatch getBatch() {
+
+        return batch;
+    }
+
     public Collection<DrawableModel> getModels() {
         return Collections.unmodifiableCollection(models);
     }
@@ -239,21 +285,37 @@ public class DrawableBuffer extends BaseRenderable implements GLStateListener {
 
     public synchronized void update() {
 
+        if (batch != null) {
+            batch.begin();
+        }
+
         Iterator<DrawableModel> iterator = models.iterator();
         while (iterator.hasNext()) {
             DrawableModel model = iterator.next();
             if (model.inUse) {
                 model.update();
+                if (batch != null) {
+                    batch.add(model);
+                }
             } else {
                 iterator.remove();
                 model.destroy();
                 model = null;
             }
         }
+
+        if (batch != null) {
+            batch.end();
+        }
     }
 
     public synchronized void draw() {
 
+        if (batch != null) {
+            batch.draw();
+            return;
+        }
+
         glPutTextureBuffer();
         glPutVerticeBuffer();
         for (DrawableModel model : models) {
@@ -265,13 +327,38 @@ public class DrawableBuffer extends BaseRenderable implements GLStateListener {
 
     public void draw(DrawableModel model) {
 
-        glPutTextureBuffer();
-        glPutVerticeBuffer();
+        if (BaseGL.bindDrawBuffer(this)) {
+            glPutTextureBuffer();
+            glPutVerticeBuffer();
+        }
         bindTexturePutMVPMatrix(model);
         glPutDraw();
+        if (!BaseGL.isDrawBufferBound(this)) {
+            glDisableAttribArray();
+        }
+    }
+
+    /**
+     * releases vertex attributes kept bound by render queue
+     */
+    protected void glReleaseBuffer() {
+
         glDisableAttribArray();
     }
 
+    /**
+     * @return id used by render queue to group models drawn from this buffer (1 - 65535)
+     */
+    public int getSortId() {
+
+        return sortId;
+    }
+
+    private static synchronized int nextSortId() {
+
+        return (sortIdCounter++ % 0xFFFF) + 1;
+    }
+
     public void drawPutModel(DrawableModel model) {
 
         bindTexturePutMVPMatrix(model);
@@ -279,8 +366,8 @@ public class DrawableBuffer extends BaseRenderable implements GLStateListener {
     }
 
     public void bindTexturePutMVPMatrix(DrawableModel model) {
-        glBindTexture(model.texture.glid);
-        glPutMVPMatrix(model.MVPMatrix);
+        glBindTexture(model.texture);
+        RenderQueue.glPutMVPMatrix(shader.handle[0], model);
     }
 
     public float getSizeX() {
@@ -330,6 +417,7 @@ public class DrawableBuffer extends BaseRenderable implements GLStateListener {
         private int glVerticeBufferID;
         private int glTextureBufferID;
         private int glFaceBufferID;
+        private int byteCount;
 
         public VBO() {
 
@@ -365,11 +453,20 @@ public class DrawableBuffer extends BaseRenderable implements GLStateListener {
             glTextureBufferID = BaseGL.genArrayFloatBuffer(textureBuffer, tBuf);
             glFaceBufferID = BaseGL.genElementShortBuffer(faceBuffer);
 
+            byteCount = (verticeBuffer.capacity() + textureBuffer.capacity()) * Buffers.BYTESPERFLOAT + faceBuffer.capacity() * Buffers.BYTESPERSHORT;
+            base.gl.getMemory().bufferAllocated(byteCount);
+
             verticeBuffer = null;
             textureBuffer = null;
             faceBuffer = null;
         }
 
+        private void releaseBytes() {
+
+            base.gl.getMemory().bufferReleased(byteCount);
+            byteCount = 0;
+        }
+
         public void glBindVerticeBuffer() {
 
             GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, glVerticeBufferID);
@@ -423,10 +520,22 @@ public class DrawableBuffer extends BaseRenderable implements GLStateListener {
         @Override
         public void draw(DrawableModel model) {
 
-            glBindTextureBuffer();
-            glBindVerticeBuffer();
+            if (BaseGL.bindDrawBuffer(this)) {
+                glBindTextureBuffer();
+                glBindVerticeBuffer();
+                glBindFaceBuffer();
+            }
             bindTexturePutMVPMatrix(model);
-            glBindDraw();
+            glDrawBindedElements();
+            if (!BaseGL.isDrawBufferBound(this)) {
+                glUnbindBuffer();
+                glDisableAttribArray();
+            }
+        }
+
+        @Override
+        protected void glReleaseBuffer() {
+
             glUnbindBuffer();
             glDisableAttribArray();
         }
@@ -441,6 +550,7 @@ public class DrawableBuffer extends BaseRenderable implements GLStateListener {
         public void onGLEnd() {
             super.onGLEnd();
             BaseGL.destroyBuffers(glVerticeBufferID, glTextureBufferID, glFaceBufferID);
+            releaseBytes();
         }
 
         @Override
@@ -448,6 +558,7 @@ public class DrawableBuffer extends BaseRenderable implements GLStateListener {
 
             BaseGL.destroyBuffers(glVerticeBufferID, glTextureBufferID, glFaceBufferID);
             base.gl.removeGLEndListener(this);
+            releaseBytes();
 
             super.destroy();
         }
@@ -31,6 +31,9 @@ public class DrawableModel extends BaseRenderable {
 
     protected BaseTexture texture = BaseGL.baseTexture;
 
+    /** batched DrawableBuffer pre-transforms this model into shared vertex stream */
+    protected boolean batchable = true;
+
     public DrawableModel() {
 
         init();
@@ -96,6 +99,17 @@ public class DrawableModel extends BaseRenderable {
 
     }
 
+    /**
+     * @return render queue key by shader, texture and depth of model origin (from MVPMatrix), if marked opaque or translucent
+     */
+    @Override
+    public long getSortKey() {
+
+        float depth = MVPMatrix[15] != 0.0f ? (MVPMatrix[14] / MVPMatrix[15]) * 0.5f + 0.5f : 0.0f;
+
+        return RenderQueue.key(shader, texture != null ? texture.glid : 0, getSortBuffer(), depth, opaque, translucent);
+    }
+
     /**
      * apply 2D translate on model matrix by Box2D Vec2
      */
@@ -296,6 +310,20 @@ public class DrawableModel extends BaseRenderable {
         this.texture = texture;
     }
 
+    /**
+     * @return true if model can be drawn within batch of its DrawableBuffer
+     */
+    public boolean isBatchable() {
+        return batchable;
+    }
+
+    /**
+     * sets if model can be drawn within batch of its DrawableBuffer, false means separate draw call
+     */
+    public void setBatchable(boolean batchable) {
+        this.batchable = batchable;
+    }
+
     /**
      * @return reference to this object instance
      */
@@ -0,0 +1,186 @@
+package com.base.lib.engine;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * lock-free triple buffer of render queues
+ * <p>
+ * update thread fills write frame and publish it, GL thread takes newest published frame.
+ * Threads never touch same frame, so update of frame N+1 can run while frame N is drawn.
+ * If GL thread is slower, older unread frames are dropped.
+ * Frames holding renderables which aren't frame safe are not dropped,
+ * update thread waits for their draw before it changes their state again, see {@link #awaitDrawn(long)}.
+ * </p>
+ */
+public class FrameQueue {
+
+    /**
+     * number of frames, update thread writes one, GL thread reads one and one waits published
+     */
+    public static final int SLOTS = 3;
+
+    private static final int INDEX_MASK = 0x3;
+    private static final int FRESH = 0x4;
+
+    private final RenderQueue[] frames;
+    private final AtomicInteger ready;
+
+    private int write;
+    private int read;
+
+    private volatile int published;
+    private volatile int dropped;
+
+    private final Object drawLock = new Object();
+    private long lastId;
+    private long syncId;
+    private long drawnId;
+
+    public FrameQueue(int capacity) {
+
+        frames = new RenderQueue[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            frames[i] = new RenderQueue(capacity, i);
+        }
+
+        write = 0;
+        ready = new AtomicInteger(1);
+        read = 2;
+    }
+
+    /**
+     * assigns shader order and reserves space in all frames
+     */
+    void init(List<BaseShader> shaders) {
+
+        for (RenderQueue frame : frames) {
+            frame.init(shaders);
+        }
+    }
+
+    /**
+     * sets state sorting for all frames
+     */
+    void setStateSorting(boolean sort) {
+
+        for (RenderQueue frame : frames) {
+            frame.setStateSorting(sort);
+        }
+    }
+
+    /**
+     * @return frame owned by update thread
+     */
+    RenderQueue writeFrame() {
+
+        return frames[write];
+    }
+
+    /**
+     * publish filled write frame and takes free one, called by update thread at the end of update
+     */
+    void publish() {
+
+        RenderQueue frame = frames[write];
+        frame.frameId = ++lastId;
+        if (frame.needsSync()) {
+            synchronized (drawLock) {
+                syncId = frame.frameId;
+            }
+        }
+
+        int previous = ready.getAndSet(write | FRESH);
+        if ((previous & FRESH) != 0) {
+            dropped++;
+        }
+
+        write = previous & INDEX_MASK;
+        frames[write].clear();
+        published++;
+    }
+
+    /**
+     * @return newest published frame, or previous one if nothing new was published. Called by GL thread.
+     */
+    RenderQueue readFrame() {
+
+        if ((ready.get() & FRESH) != 0) {
+            read = ready.getAndSet(read) & INDEX_MASK;
+        }
+
+        return frames[read];
+    }
+
+    /**
+     * marks frame as drawn and wakes update thread waiting for it, called by GL thread after frame is drawn
+     */
+    void drawn(RenderQueue frame) {
+
+        synchronized (drawLock) {
+            if (frame.frameId > drawnId) {
+                drawnId = frame.frameId;
+                if (drawnId >= syncId) {
+                    drawLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * waits until the last published frame which needs sync is drawn, called by update thread after render was requested
+     *
+     * @param timeout max wait in milliseconds
+     * @return false if frame still isn't drawn
+     */
+    public boolean awaitDrawn(long timeout) {
+
+        synchronized (drawLock) {
+            if (drawnId < syncId) {
+                try {
+                    drawLock.wait(timeout);
+                } catch (InterruptedException e) {
+                    //no big deal, caller checks again
+                }
+            }
+            return drawnId >= syncId;
+        }
+    }
+
+    /**
+     * @return true if there is published frame which wasn't taken by GL thread yet
+     */
+    public boolean hasFreshFrame() {
+
+        return (ready.get() & FRESH) != 0;
+    }
+
+    /**
+     * @return number of published frames
+     */
+    public int getPublishedCount() {
+
+        return published;
+    }
+
+    /**
+     * @return number of frames overwritten before GL thread could draw them
+     */
+    public int getDroppedCount() {
+
+        return dropped;
+    }
+
+    /**
+     * clears all frames, note: call only when both threads are stopped
+     */
+    void clear() {
+
+        for (RenderQueue frame : frames) {
+            frame.clear();
+        }
+        synchronized (drawLock) {
+            syncId = drawnId;
+        }
+    }
+}
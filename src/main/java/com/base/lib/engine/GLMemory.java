@@ -0,0 +1,249 @@
+package com.base.lib.engine;
+
+import com.base.lib.engine.common.gl.TextureHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Counts bytes of textures, render targets and VBOs living in GL and keeps them within budget.
+ * Over budget, textures not bound for given count of frames are deleted from GL, least recently bound first.
+ * Deleted texture is drawn with base texture and streamed again by its next bind, see {@link BaseGL#bindTexture(BaseTexture)}.
+ * Only textures loaded from storage can be deleted, textures of bitmaps, bytes and render targets stay.
+ * note: all methods except getters must be performed in correct GL thread
+ */
+public class GLMemory extends BaseObject {
+
+    private final List<BaseTexture> textures;
+    private final List<BaseTexture> candidates;
+    private final Comparator<BaseTexture> leastRecentlyBound;
+
+    private long budget;
+    private int evictFrames;
+    long frame;
+
+    private long textureBytes;
+    private long bufferBytes;
+    private long renderTargetBytes;
+    private long evictedBytes;
+    private long reloadedBytes;
+    private int evictions;
+    private int reloads;
+
+    public GLMemory(Base base) {
+        super(base);
+
+        textures = new ArrayList<>(64);
+        candidates = new ArrayList<>(64);
+        leastRecentlyBound = new Comparator<BaseTexture>() {
+            @Override
+            public int compare(BaseTexture a, BaseTexture b) {
+                return a.lastBound < b.lastBound ? -1 : (a.lastBound == b.lastBound ? 0 : 1);
+            }
+        };
+        evictFrames = 300;
+    }
+
+    /**
+     * @param bytes GL memory of textures, render targets and VBOs, 0 means no limit
+     */
+    public void setBudget(long bytes) {
+
+        budget = bytes;
+    }
+
+    public long getBudget() {
+
+        return budget;
+    }
+
+    /**
+     * @param frames texture must not be bound for this count of frames to be deleted over budget
+     */
+    public void setEvictFrames(int frames) {
+
+        evictFrames = frames;
+    }
+
+    public int getEvictFrames() {
+
+        return evictFrames;
+    }
+
+    /**
+     * texture was uploaded into GL
+     */
+    void textureLoaded(BaseTexture texture, int bytes) {
+
+        if (texture.reloading) {
+            texture.reloading = false;
+            reloadedBytes += bytes;
+            reloads++;
+        }
+
+        if (texture.byteCount > 0) {
+            textureBytes -= texture.byteCount;
+        } else {
+            textures.add(texture);
+        }
+        texture.byteCount = bytes;
+        texture.lastBound = frame;
+        textureBytes += bytes;
+    }
+
+    /**
+     * texture was deleted from GL
+     */
+    void textureDeleted(BaseTexture texture) {
+
+        if (texture.byteCount > 0) {
+            textures.remove(texture);
+            textureBytes -= texture.byteCount;
+            texture.byteCount = 0;
+        }
+        texture.evicted = false;
+        texture.reloading = false;
+    }
+
+    public void bufferAllocated(long bytes) {
+
+        bufferBytes += bytes;
+    }
+
+    public void bufferReleased(long bytes) {
+
+        bufferBytes -= bytes;
+    }
+
+    public void renderTargetAllocated(long bytes) {
+
+        renderTargetBytes += bytes;
+    }
+
+    public void renderTargetReleased(long bytes) {
+
+        renderTargetBytes -= bytes;
+    }
+
+    /**
+     * counts frame and evicts textures if over budget, called by renderer every frame
+     */
+    void onFrame() {
+
+        frame++;
+        if (budget <= 0 || getResidentBytes() <= budget) {
+            return;
+        }
+
+        long before = frame - evictFrames;
+        for (int i = 0; i < textures.size(); i++) {
+            BaseTexture texture = textures.get(i);
+            if (texture.lastBound < before && texture.isReloadable() && texture != BaseGL.baseTexture) {
+                candidates.add(texture);
+            }
+        }
+        Collections.sort(candidates, leastRecentlyBound);
+
+        for (int i = 0; i < candidates.size() && getResidentBytes() > budget; i++) {
+            evict(candidates.get(i));
+        }
+        candidates.clear();
+    }
+
+    private void evict(BaseTexture texture) {
+
+        evictedBytes += texture.byteCount;
+        evictions++;
+
+        TextureHelper.deleteTexture(texture.glid);
+        texture.glid = 0;
+        textureDeleted(texture);
+        texture.evicted = true;
+    }
+
+    /**
+     * forgets all counts, GL context is gone
+     */
+    void clear() {
+
+        for (BaseTexture texture : textures) {
+            texture.byteCount = 0;
+        }
+        textures.clear();
+        textureBytes = 0;
+        bufferBytes = 0;
+        renderTargetBytes = 0;
+    }
+
+    /**
+     * @return bytes of textures, render targets and VBOs in GL
+     */
+    public long getResidentBytes() {
+
+        return textureBytes + bufferBytes + renderTargetBytes;
+    }
+
+    public long getTextureBytes() {
+
+        return textureBytes;
+    }
+
+    public long getBufferBytes() {
+
+        return bufferBytes;
+    }
+
+    public long getRenderTargetBytes() {
+
+        return renderTargetBytes;
+    }
+
+    /**
+     * @return bytes of textures deleted over budget since start or {@link #resetStats()}
+     */
+    public long getEvictedBytes() {
+
+        return evictedBytes;
+    }
+
+    /**
+     * @return bytes of deleted textures loaded again by bind since start or {@link #resetStats()}
+     */
+    public long getReloadedBytes() {
+
+        return reloadedBytes;
+    }
+
+    public int getEvictionCount() {
+
+        return evictions;
+    }
+
+    public int getReloadCount() {
+
+        return reloads;
+    }
+
+    public int getTextureCount() {
+
+        return textures.size();
+    }
+
+    public void resetStats() {
+
+        evictedBytes = 0;
+        reloadedBytes = 0;
+        evictions = 0;
+        reloads = 0;
+    }
+
+    @Override
+    public String toString() {
+
+        return String.format("GLMemory resident %d kB (textures %d kB, buffers %d kB, targets %d kB), budget %d kB, evicted %d kB (%d), reloaded %d kB (%d)",
+                getResidentBytes() / 1024, textureBytes / 1024, bufferBytes / 1024, renderTargetBytes / 1024, budget / 1024,
+                evictedBytes / 1024, evictions, reloadedBytes / 1024, reloads);
+    }
+}
@@ -77,6 +77,7 @@ public class ParticleSystem {
 
         sActions = new InnerActions[count];
         float[] matrix = new float[16];
+        float[] vert = new float[3];
 
         for (int i = 0; i<count; i++){
             InnerAction[] actions = new InnerAction[sAction.actions.length];
@@ -108,7 +109,8 @@ public class ParticleSystem {
                         BaseMatrix.translate(matrix, trans.x, trans.y, trans.z);
                         BaseMatrix.rotate(matrix, 0, 0, angle);
 
-                        actions[k].setfPos(BaseMatrix.multiplyMV(matrix, fPos.x-sPos.x, fPos.y-sPos.y, fPos.z-sPos.z));
+                        BaseMatrix.multiplyMV(vert, matrix, fPos.x-sPos.x, fPos.y-sPos.y, fPos.z-sPos.z);
+                        actions[k].setfPos(vert);
                     }
                 }
 
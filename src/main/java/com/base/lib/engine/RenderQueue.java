@@ -0,0 +1,356 @@
+package com.base.lib.engine;
+
+import android.opengl.GLES20;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * collects renderables for one frame, sorts them by 64-bit key and draws them with minimum of GL state changes
+ * <p>
+ * key layout (from most significant bit):
+ * <br>opaque: [shader 8b][00][texture 16b][buffer 16b][depth 22b] - front to back
+ * <br>other: [shader 8b][01][0 54b] - adding order
+ * <br>translucent: [shader 8b][10][depth 22b][texture 16b][buffer 16b] - back to front
+ * </p>
+ * shader order is taken from BaseGL shader list, so shaders are drawn in same order as before.
+ * Keys are radix sorted (stable), renderables with equal keys are drawn in adding order,
+ * so only renderables marked as opaque or translucent are reordered within shader.
+ * <p>
+ * queue is filled by update thread and drawn by GL thread (see FrameQueue),
+ * MVP matrices of DrawableModels are copied when added, so update of next frame can't change drawn frame.
+ * Frame with renderable which isn't frame safe ({@link BaseRenderable#isFrameSafe()}) must be drawn before next update starts.
+ * </p>
+ */
+public class RenderQueue {
+
+    private static final int DEPTH_BITS = 22;
+    private static final int DEPTH_MASK = (1 << DEPTH_BITS) - 1;
+    private static final long ORDERED = 1L << 54;
+    private static final long TRANSLUCENT = 2L << 54;
+
+    private BaseRenderable[] renderables;
+    private long[] keys;
+    private long[] swapKeys;
+    private int[] order;
+    private int[] swapOrder;
+    private int[] buffers;
+    private float[] matrices;
+    private boolean[] hasMatrix;
+    private final int[] counts = new int[256];
+
+    private static int drawSlot;
+    private static DrawableModel drawModel;
+    private static float[] drawMatrices;
+    private static int drawMatrixOffset;
+
+    private int[] sortedOrder;
+
+    private final int slot;
+    private int size;
+    private boolean stateSorting = true;
+    private boolean sync;
+
+    /** sequence number given by FrameQueue when frame is published */
+    long frameId;
+
+    public RenderQueue(int capacity) {
+        this(capacity, 0);
+    }
+
+    /**
+     * @param slot index of frame in FrameQueue, passed to renderables when they are queued
+     */
+    public RenderQueue(int capacity, int slot) {
+
+        this.slot = slot;
+        allocate(capacity);
+    }
+
+    /**
+     * assigns draw order to shaders and reserves space for their renderables
+     */
+    void init(List<BaseShader> shaders) {
+
+        if (shaders != null) {
+            int capacity = 0;
+            int count = shaders.size();
+            for (int i = 0; i < count; i++) {
+                BaseShader shader = shaders.get(i);
+                shader.order = i;
+                capacity += shader.getCollectionSize();
+            }
+
+            if (capacity > renderables.length) {
+                allocate(capacity);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+
+        BaseRenderable[] oldRenderables = renderables;
+        long[] oldKeys = keys;
+        int[] oldBuffers = buffers;
+        float[] oldMatrices = matrices;
+        boolean[] oldHasMatrix = hasMatrix;
+
+        renderables = new BaseRenderable[capacity];
+        keys = new long[capacity];
+        swapKeys = new long[capacity];
+        order = new int[capacity];
+        swapOrder = new int[capacity];
+        buffers = new int[capacity];
+        matrices = new float[capacity * 16];
+        hasMatrix = new boolean[capacity];
+
+        if (oldRenderables != null && size > 0) {
+            System.arraycopy(oldRenderables, 0, renderables, 0, size);
+            System.arraycopy(oldKeys, 0, keys, 0, size);
+            System.arraycopy(oldBuffers, 0, buffers, 0, size);
+            System.arraycopy(oldMatrices, 0, matrices, 0, size * 16);
+            System.arraycopy(oldHasMatrix, 0, hasMatrix, 0, size);
+        }
+    }
+
+    /**
+     * sets if renderables are ordered by texture, buffer and depth,
+     * otherwise they are ordered only by shader as they was added
+     */
+    public void setStateSorting(boolean sort) {
+
+        stateSorting = sort;
+    }
+
+    public boolean isStateSorting() {
+
+        return stateSorting;
+    }
+
+    /**
+     * push renderable for next draw cycle
+     */
+    public void add(BaseRenderable renderable) {
+
+        if (size == renderables.length) {
+            allocate(size * 2);
+        }
+
+        if (stateSorting) {
+            keys[size] = renderable.getSortKey();
+            buffers[size] = renderable.getSortBuffer();
+        } else {
+            keys[size] = key(renderable.shader);
+            buffers[size] = 0;
+        }
+
+        if (renderable instanceof DrawableModel) {
+            System.arraycopy(((DrawableModel) renderable).MVPMatrix, 0, matrices, size * 16, 16);
+            hasMatrix[size] = true;
+        } else {
+            hasMatrix[size] = false;
+        }
+
+        if (!renderable.isFrameSafe()) {
+            sync = true;
+        }
+        renderable.onFrameQueued(slot);
+
+        renderables[size++] = renderable;
+    }
+
+    /**
+     * @return true if queue holds renderable which draws state shared with update thread
+     */
+    public boolean needsSync() {
+
+        return sync;
+    }
+
+    /**
+     * @return number of renderables in queue
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * LSD radix sort over key bytes, passes with same byte for all keys are skipped
+     */
+    void sort() {
+
+        long[] src = keys;
+        long[] dst = swapKeys;
+        int[] srcOrder = order;
+        int[] dstOrder = swapOrder;
+
+        for (int i = 0; i < size; i++) {
+            srcOrder[i] = i;
+        }
+
+        for (int shift = 0; shift < 64 && size > 1; shift += 8) {
+
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[(int) (src[i] >>> shift) & 0xFF]++;
+            }
+
+            if (counts[(int) (src[0] >>> shift) & 0xFF] == size) {
+                continue;
+            }
+
+            int sum = 0;
+            for (int i = 0; i < 256; i++) {
+                int count = counts[i];
+                counts[i] = sum;
+                sum += count;
+            }
+
+            for (int i = 0; i < size; i++) {
+                int pos = counts[(int) (src[i] >>> shift) & 0xFF]++;
+                dst[pos] = src[i];
+                dstOrder[pos] = srcOrder[i];
+            }
+
+            long[] tk = src;
+            src = dst;
+            dst = tk;
+            int[] to = srcOrder;
+            srcOrder = dstOrder;
+            dstOrder = to;
+        }
+
+        sortedOrder = srcOrder;
+    }
+
+    /**
+     * sorts and draws all renderables, program and vertex attributes are changed only when needed
+     */
+    void draw() {
+
+        if (size == 0) {
+            return;
+        }
+
+        sort();
+
+        int program = -1;
+        int buffer = 0;
+        drawSlot = slot;
+
+        BaseGL.beginBufferBinding();
+        for (int i = 0; i < size; i++) {
+            int index = sortedOrder[i];
+            BaseRenderable renderable = renderables[index];
+            if (!renderable.inUse) {
+                continue;
+            }
+
+            int glid = renderable.shader.glid;
+            if (glid != program) {
+                BaseGL.releaseDrawBuffer();
+                BaseGL.useProgram(glid);
+                program = glid;
+            } else if (buffers[index] == 0 || buffers[index] != buffer) {
+                BaseGL.releaseDrawBuffer();
+            }
+            buffer = buffers[index];
+
+            if (hasMatrix[index]) {
+                drawModel = (DrawableModel) renderable;
+                drawMatrices = matrices;
+                drawMatrixOffset = index * 16;
+            }
+
+            renderable.draw();
+            drawModel = null;
+        }
+        drawMatrices = null;
+        BaseGL.endBufferBinding();
+
+        BaseGL.glError("RenderQueue");
+    }
+
+    void clear() {
+
+        for (int i = 0; i < size; i++) {
+            renderables[i] = null;
+        }
+        size = 0;
+        sync = false;
+    }
+
+    void destroy() {
+
+        clear();
+    }
+
+    /**
+     * puts MVP matrix of model into shader uniform, if model is currently drawn by queue, matrix copy of its frame is used
+     * note: must be performed in correct GL thread
+     */
+    public static void glPutMVPMatrix(int handle, DrawableModel model) {
+
+        if (model == drawModel) {
+            GLES20.glUniformMatrix4fv(handle, 1, false, drawMatrices, drawMatrixOffset);
+        } else {
+            GLES20.glUniformMatrix4fv(handle, 1, false, model.MVPMatrix, 0);
+        }
+    }
+
+    /**
+     * @return slot of frame which is currently drawn, see {@link BaseRenderable#onFrameQueued(int)}
+     * note: valid only in GL thread during draw
+     */
+    public static int getDrawSlot() {
+
+        return drawSlot;
+    }
+
+    /**
+     * @return key which orders renderable only by shader
+     */
+    public static long key(BaseShader shader) {
+
+        return ((long) (shader.order & 0xFF)) << 56;
+    }
+
+    /**
+     * @param shader      program of renderable
+     * @param texture     gl texture id
+     * @param buffer      buffer id (DrawableBuffer sort id or gl buffer id)
+     * @param depth       normalized depth 0.0 - 1.0 (near - far)
+     * @param opaque      opaque objects are drawn first and are sorted by texture, buffer and front to back
+     * @param translucent translucent objects are drawn last and are sorted back to front,
+     *                    objects neither opaque nor translucent are drawn between them in adding order
+     * @return sort key
+     */
+    public static long key(BaseShader shader, int texture, int buffer, float depth, boolean opaque, boolean translucent) {
+
+        long key = key(shader);
+        if (!opaque && !translucent) {
+            return key | ORDERED;
+        }
+
+        if (depth < 0.0f) {
+            depth = 0.0f;
+        } else if (depth > 1.0f) {
+            depth = 1.0f;
+        }
+
+        long d = (long) (depth * DEPTH_MASK);
+
+        if (translucent) {
+            return key | TRANSLUCENT
+                    | ((DEPTH_MASK - d) << 32)
+                    | ((long) (texture & 0xFFFF) << 16)
+                    | (buffer & 0xFFFF);
+        }
+
+        return key
+                | ((long) (texture & 0xFFFF) << 38)
+                | ((long) (buffer & 0xFFFF) << 22)
+                | d;
+    }
+}
@@ -0,0 +1,317 @@
+package com.base.lib.engine;
+
+import android.graphics.Bitmap;
+
+import com.base.lib.engine.common.gl.TextureImage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams textures into GL, images are decoded by background threads and uploaded by GL thread on a budget per frame.
+ * Texture without glid is drawn with base texture meanwhile, see {@link BaseGL#bindTexture(BaseTexture)}.
+ * Textures requested by draw calls go first, then by {@link BaseTexture#setPriority(int)}, then by order of request.
+ */
+public class TextureStreamer extends BaseObject {
+
+    private final List<BaseTexture> pending;
+    private final List<BaseTexture> decoding;
+    private final List<BaseTexture> cancelled;
+    private final List<Decoded> decoded;
+    private final List<Decoded> free;
+    private final Decoder[] decoders;
+
+    private long uploadBytes;
+    private long uploadTime;
+    private int lastUploads;
+    private long lastUploadedBytes;
+
+    private volatile boolean running;
+
+    public TextureStreamer(Base base) {
+        super(base);
+
+        pending = new ArrayList<>(64);
+        decoding = new ArrayList<>(4);
+        cancelled = new ArrayList<>(4);
+        decoded = new ArrayList<>(16);
+        free = new ArrayList<>(16);
+        decoders = new Decoder[Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1))];
+
+        uploadBytes = 4 * 1024 * 1024;
+        uploadTime = 4000000L;
+    }
+
+    /**
+     * GL thread spends on uploads per frame at most given bytes and time, at least one texture is uploaded per frame
+     *
+     * @param bytes  bytes of decoded images, 0 means no limit
+     * @param millis upload time, 0 means no limit
+     */
+    public void setUploadBudget(long bytes, float millis) {
+
+        uploadBytes = bytes;
+        uploadTime = (long) (millis * 1000000.0f);
+    }
+
+    /**
+     * queues texture to decode, can be called from any thread
+     */
+    public void request(BaseTexture texture) {
+
+        synchronized (pending) {
+            if (!pending.contains(texture)) {
+                pending.add(texture);
+            }
+            if (!running) {
+                start();
+            }
+            pending.notify();
+        }
+    }
+
+    /**
+     * removes texture from queue, decoded bitmap is recycled, image currently decoded is dropped when done
+     */
+    public void cancel(BaseTexture texture) {
+
+        synchronized (pending) {
+            pending.remove(texture);
+            if (decoding.contains(texture) && !cancelled.contains(texture)) {
+                cancelled.add(texture);
+            }
+
+            synchronized (decoded) {
+                for (int i = decoded.size() - 1; i >= 0; i--) {
+                    Decoded item = decoded.get(i);
+                    if (item.texture == texture) {
+                        decoded.remove(i);
+                        recycle(item);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * loads texture in GL thread without waiting in queue and upload budget
+     */
+    public void finish(final BaseTexture texture) {
+
+        cancel(texture);
+        base.gl.glRun(new Runnable() {
+            @Override
+            public void run() {
+                texture.glRun(texture.run());
+            }
+        });
+    }
+
+    /**
+     * uploads decoded textures into GL within budget, called by renderer every frame
+     */
+    void upload() {
+
+        lastUploads = 0;
+        lastUploadedBytes = 0;
+        if (decoded.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        while (true) {
+            Decoded item;
+            synchronized (decoded) {
+                int index = best(decoded);
+                if (index < 0) {
+                    return;
+                }
+                item = decoded.get(index);
+                long bytes = item.image instanceof Bitmap ? ((Bitmap) item.image).getByteCount() : ((TextureImage) item.image).getByteCount();
+                if (lastUploads > 0 && uploadBytes > 0 && lastUploadedBytes + bytes > uploadBytes) {
+                    return;
+                }
+                decoded.remove(index);
+                lastUploadedBytes += bytes;
+            }
+
+            item.texture.glRun(item.image);
+            lastUploads++;
+            recycle(item);
+
+            if (uploadTime > 0 && System.nanoTime() - start > uploadTime) {
+                return;
+            }
+        }
+    }
+
+    private void recycle(Decoded item) {
+
+        if (item.image instanceof Bitmap && !((Bitmap) item.image).isRecycled()) {
+            ((Bitmap) item.image).recycle();
+        }
+        item.texture = null;
+        item.image = null;
+        synchronized (free) {
+            free.add(item);
+        }
+    }
+
+    private Decoded obtain(BaseTexture texture, Object image) {
+
+        Decoded item = null;
+        synchronized (free) {
+            if (!free.isEmpty()) {
+                item = free.remove(free.size() - 1);
+            }
+        }
+        if (item == null) {
+            item = new Decoded();
+        }
+        item.texture = texture;
+        item.image = image;
+        return item;
+    }
+
+    // requested by draw first, then higher priority, then older
+    private static int best(List<?> list) {
+
+        int best = -1;
+        BaseTexture bestTexture = null;
+        for (int i = 0; i < list.size(); i++) {
+            Object item = list.get(i);
+            BaseTexture texture = item instanceof Decoded ? ((Decoded) item).texture : (BaseTexture) item;
+            if (bestTexture == null
+                    || (texture.demanded && !bestTexture.demanded)
+                    || (texture.demanded == bestTexture.demanded && texture.priority > bestTexture.priority)) {
+                best = i;
+                bestTexture = texture;
+            }
+        }
+        return best;
+    }
+
+    private void start() {
+
+        running = true;
+        for (int i = 0; i < decoders.length; i++) {
+            decoders[i] = new Decoder(i);
+            decoders[i].start();
+        }
+    }
+
+    /**
+     * stops decoders and drops queued textures
+     */
+    public void kill() {
+
+        synchronized (pending) {
+            running = false;
+            pending.clear();
+            cancelled.addAll(decoding);
+            pending.notifyAll();
+        }
+
+        synchronized (decoded) {
+            for (Decoded item : decoded) {
+                recycle(item);
+            }
+            decoded.clear();
+        }
+    }
+
+    /**
+     * @return count of textures waiting for decode
+     */
+    public int getPendingCount() {
+
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * @return count of textures waiting for upload
+     */
+    public int getDecodedCount() {
+
+        synchronized (decoded) {
+            return decoded.size();
+        }
+    }
+
+    /**
+     * @return count of textures uploaded by last frame
+     */
+    public int getLastUploads() {
+
+        return lastUploads;
+    }
+
+    /**
+     * @return bytes of images uploaded by last frame
+     */
+    public long getLastUploadedBytes() {
+
+        return lastUploadedBytes;
+    }
+
+    private static class Decoded {
+
+        private BaseTexture texture;
+        private Object image; // Bitmap or TextureImage
+    }
+
+    private class Decoder extends Thread {
+
+        private Decoder(int index) {
+            super("TextureDecoder" + index);
+            setPriority(Thread.MIN_PRIORITY);
+        }
+
+        @Override
+        public void run() {
+
+            while (running) {
+                BaseTexture texture;
+                synchronized (pending) {
+                    while (running && pending.isEmpty()) {
+                        try {
+                            pending.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (!running) {
+                        return;
+                    }
+                    texture = pending.remove(best(pending));
+                    decoding.add(texture);
+                }
+
+                Object image;
+                try {
+                    image = texture.run();
+                } catch (RuntimeException e) {
+                    Base.logE("TextureStreamer", "Monkeys can't decode texture " + texture.getName() + ": " + e.getMessage());
+                    image = null;
+                }
+
+                // same lock as cancel(), so texture cancelled while decoding never gets into decoded list
+                synchronized (pending) {
+                    decoding.remove(texture);
+                    boolean dropped = cancelled.remove(texture);
+                    if (image != null) {
+                        synchronized (decoded) {
+                            if (running && !dropped) {
+                                decoded.add(obtain(texture, image));
+                            } else if (image instanceof Bitmap) {
+                                ((Bitmap) image).recycle();
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
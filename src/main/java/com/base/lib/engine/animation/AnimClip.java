@@ -0,0 +1,34 @@
+package com.base.lib.engine.animation;
+
+import com.base.lib.engine.common.other.Quat;
+
+/**
+ * time based animation of skelet bones, sampled by SkeletAnimator
+ */
+public interface AnimClip {
+
+    /**
+     * @return name of clip
+     */
+    String getName();
+
+    /**
+     * @return length of clip in seconds
+     */
+    float getDuration();
+
+    /**
+     * @return number of animated bones, must match bones of skelet
+     */
+    int getBoneCount();
+
+    /**
+     * samples interpolated pose of bone
+     *
+     * @param bone        index of bone
+     * @param time        time in seconds, clamped to clip duration
+     * @param rotation    out local rotation
+     * @param translation out translation offset [x, y, z]
+     */
+    void sample(int bone, float time, Quat rotation, float[] translation);
+}
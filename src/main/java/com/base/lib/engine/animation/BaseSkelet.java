@@ -3,7 +3,6 @@ package com.base.lib.engine.animation;
 import com.base.lib.engine.BaseRenderer;
 import com.base.lib.engine.BaseTexture;
 import com.base.lib.engine.common.BaseDrawableData;
-import com.base.lib.engine.common.BaseMatrix;
 import com.base.lib.engine.common.other.Point3;
 import com.base.lib.engine.other.dev.DrawSkeletStruckture;
 
@@ -15,6 +14,7 @@ public class BaseSkelet {
     private Bone[] bones;
     private VertGroup[] groups;
     private float[] modifiedVerts;
+    private SkinMesh skin;
     private int framesCount;
 
     private int currentFrame;
@@ -55,6 +55,7 @@ public class BaseSkelet {
                 count += g.verts.length;
             }
             modifiedVerts = new float[count];
+            skin = null;
         }
     }
 
@@ -69,6 +70,7 @@ public class BaseSkelet {
                     group.verts[i++] -= bone.head.z;
                 }
             }
+            skin = null;
         }
     }
 
@@ -108,25 +110,48 @@ public class BaseSkelet {
      * */
     public float[] getVerts(){
 
-        for (Bone bone : bones) {
-            VertGroup group = VertGroup.getGroup(bone.name, groups);
-            if (group != null) {
-                Point3 h = bone.head;
-                float[] m = bone.transformMatrix;
-                float[] v = group.verts;
-                int index = group.startIndex;
-                for (int j = 0; j < v.length; ) {
-                    float[] p = BaseMatrix.multiplyMV(m, v[j++], v[j++], v[j++]);
-                    modifiedVerts[index++] = p[0];
-                    modifiedVerts[index++] = p[1];
-                    modifiedVerts[index++] = p[2];
-                }
-            }
+        if (groups != null) {
+            SkinMesh skin = getSkin();
+            skin.updatePalette(bones);
+            skin.skin(modifiedVerts);
         }
 
         return modifiedVerts;
     }
 
+    /**
+     * @return skin used by getVerts, single influence skin is created from vert groups when needed
+     * */
+    public SkinMesh getSkin(){
+
+        if (skin == null && groups != null) {
+            skin = SkinMesh.create(bones, groups);
+        }
+
+        return skin;
+    }
+
+    /**
+     * sets skin with blended weights, bone indices of skin are indices into bone array
+     * */
+    public void setSkin(SkinMesh skin){
+
+        this.skin = skin;
+        if (skin != null && (modifiedVerts == null || modifiedVerts.length != skin.getVertexCount() * 3)) {
+            modifiedVerts = new float[skin.getVertexCount() * 3];
+        }
+    }
+
+    /**
+     * creates time based clip from frame actions of bones, see SkeletAnimator
+     * @param fps frames per second of frame actions
+     * @param tolerance maximum rotation error in degrees of dropped keys
+     * */
+    public KeyframeClip createClip(String name, float fps, float tolerance){
+
+        return KeyframeClip.fromBones(name, bones, fps, tolerance);
+    }
+
     /** reverse rotation direction of all bones */
     public void reverseBonesRotation(){
 
@@ -150,6 +175,7 @@ public class BaseSkelet {
                     groups[i].verts[j++] *= z;
                 }
             }
+            skin = null;
         }
     }
 
@@ -2,6 +2,7 @@ package com.base.lib.engine.animation;
 
 import com.base.lib.engine.common.BaseMatrix;
 import com.base.lib.engine.common.other.Point3;
+import com.base.lib.engine.common.other.Quat;
 
 /**
  * Holds information about single bone and joints,
@@ -21,12 +22,15 @@ public class Bone {
     protected float[] transformMatrix;
 
     private Point3 trans;
+    private float[] rotMatrix;
 
     public Bone(){
 
         trans = new Point3();
         transformMatrix = new float[16];
+        rotMatrix = new float[16];
         BaseMatrix.setIdentity(transformMatrix);
+        BaseMatrix.setIdentity(rotMatrix);
     }
 
     /**
@@ -49,6 +53,26 @@ public class Bone {
         BaseMatrix.rotate(transformMatrix, rot.x, rot.y, rot.z);
     }
 
+    /**
+     * update bone and calculate transformation matrix based on parent matrix and sampled pose
+     * @param rotation local rotation of bone
+     * @param tx translation offset of bone head
+     * */
+    public void update(Quat rotation, float tx, float ty, float tz){
+
+        Point3.copy(head, trans);
+        if(parent != null){
+            BaseMatrix.copy(parent.transformMatrix, transformMatrix);
+            Point3.sub(trans, parent.head);
+        } else {
+            BaseMatrix.setIdentity(transformMatrix);
+        }
+
+        BaseMatrix.translate(transformMatrix, trans.x + tx, trans.y + ty, trans.z + tz);
+        rotation.genRotationMatrix(rotMatrix);
+        BaseMatrix.multiplyMM(transformMatrix, transformMatrix, rotMatrix);
+    }
+
     /** reverse direction of rotations */
     public void reverseRotation(){
 
@@ -125,6 +149,11 @@ public class Bone {
         this.parent = parent;
     }
 
+    public Bone getParent() {
+
+        return parent;
+    }
+
     public float[] getTransformMatrix() {
         return transformMatrix;
     }
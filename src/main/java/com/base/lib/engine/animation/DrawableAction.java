@@ -41,7 +41,7 @@ public class DrawableAction {
         for(int i = 0; i<length; i++){
             skelet.update(i);
             vertices[i] = new float[count];
-            vertices[i] = skelet.getVerts();
+            System.arraycopy(skelet.getVerts(), 0, vertices[i], 0, count);
         }
     }
 
@@ -1,5 +1,6 @@
 package com.base.lib.engine.animation;
 
+import com.base.lib.engine.Base;
 import com.base.lib.engine.DrawableBuffer;
 import com.base.lib.engine.DrawableModel;
 
@@ -21,6 +22,17 @@ public abstract class DrawableAnim extends DrawableModel {
     public DrawableAnim(DrawableBuffer drawableBuffer, DrawableAction[] drawableActions){
         super();
 
+        initAnim(drawableBuffer, drawableActions);
+    }
+
+    public DrawableAnim(Base base, DrawableBuffer drawableBuffer, DrawableAction[] drawableActions){
+        super(base);
+
+        initAnim(drawableBuffer, drawableActions);
+    }
+
+    private void initAnim(DrawableBuffer drawableBuffer, DrawableAction[] drawableActions){
+
         actions = drawableActions;
         if(actions != null) {
             currentAction = actions[0];
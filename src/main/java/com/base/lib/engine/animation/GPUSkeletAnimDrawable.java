@@ -0,0 +1,104 @@
+package com.base.lib.engine.animation;
+
+import android.opengl.GLES20;
+
+import com.base.lib.engine.Base;
+import com.base.lib.engine.BaseGL;
+import com.base.lib.engine.BaseShader;
+import com.base.lib.engine.BaseTexture;
+import com.base.lib.engine.DrawableBuffer;
+import com.base.lib.engine.FrameQueue;
+import com.base.lib.engine.RenderQueue;
+
+/**
+ * skeletal animation skinned in vertex shader
+ * <p>
+ * alternative to SkeletAnimDrawable, vertices with bone indices and weights are uploaded once into SkinBuffer,
+ * every frame only bone palette (mat4 per bone) is computed and sent as uniform array.
+ * Palette and texture are copied into slot of frame when queued, so update of next frame doesn't change drawn ones.
+ * Uses built-in {@link BaseShader#SKINNING} shader, skelet can have up to {@link SkinBuffer#MAX_BONES} bones.
+ * </p>
+ */
+public class GPUSkeletAnimDrawable extends DrawableAnim {
+
+    private final SkinBuffer skinBuffer;
+    private final float[] palette;
+    private final float[][] frames;
+    private final BaseTexture[] textures;
+    private final int boneCount;
+
+    /**
+     * @param drawableBuffer buffer with texture coords and faces, vertices are in same order as skelet verts
+     */
+    public GPUSkeletAnimDrawable(Base base, DrawableBuffer drawableBuffer, DrawableAction[] drawableActions) {
+        super(base, drawableBuffer, drawableActions);
+
+        BaseSkelet skelet = drawableActions[0].getSkelet();
+        boneCount = skelet.getBones().length;
+        if (boneCount > SkinBuffer.MAX_BONES) {
+            throw new IllegalArgumentException("Monkeys can skin only " + SkinBuffer.MAX_BONES + " bones on GPU, skelet has " + boneCount);
+        }
+
+        shader = base.factory.getShader(BaseShader.SKINNING);
+        skinBuffer = new SkinBuffer(skelet.getSkin(), drawableBuffer);
+        base.gl.addGLEndListener(skinBuffer);
+
+        palette = new float[boneCount * 16];
+        frames = new float[FrameQueue.SLOTS][boneCount * 16];
+        textures = new BaseTexture[FrameQueue.SLOTS];
+        SkinMesh.palette(skelet.getBones(), palette);
+    }
+
+    @Override
+    protected void action(DrawableAction action, int currentFrame) {
+
+        Bone[] bones = action.skelet.getBones();
+        action.skelet.update(currentFrame);
+        SkinMesh.palette(bones, palette);
+    }
+
+    @Override
+    public boolean isFrameSafe() {
+
+        return true;
+    }
+
+    @Override
+    public void onFrameQueued(int slot) {
+
+        System.arraycopy(palette, 0, frames[slot], 0, palette.length);
+        textures[slot] = texture;
+    }
+
+    @Override
+    public void draw() {
+
+        int slot = RenderQueue.getDrawSlot();
+        skinBuffer.glBind(shader);
+        BaseGL.bindTexture(textures[slot]);
+        RenderQueue.glPutMVPMatrix(shader.handle[0], this);
+        GLES20.glUniformMatrix4fv(shader.handle[3], boneCount, false, frames[slot], 0);
+        skinBuffer.glDraw();
+        skinBuffer.glUnbind(shader);
+    }
+
+    /**
+     * @return GL buffers of skin
+     */
+    public SkinBuffer getSkinBuffer() {
+
+        return skinBuffer;
+    }
+
+    @Override
+    public void destroy() {
+
+        base.gl.removeGLEndListener(skinBuffer);
+        base.gl.glRun(new Runnable() {
+            @Override
+            public void run() {
+                skinBuffer.glDelete();
+            }
+        });
+    }
+}
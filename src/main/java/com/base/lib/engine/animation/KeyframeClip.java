@@ -0,0 +1,228 @@
+package com.base.lib.engine.animation;
+
+import com.base.lib.engine.common.other.Point3;
+import com.base.lib.engine.common.other.Quat;
+
+/**
+ * sparse keyframes per bone, rotation is interpolated by slerp, translation by lerp
+ * <p>
+ * keys of all bones are stored in flat arrays, bone b owns keys [keyStart[b], keyStart[b] + keyCount[b]).
+ * Can be created from dense per-frame bone actions, keys which can be interpolated from neighbours are dropped.
+ * </p>
+ */
+public class KeyframeClip implements AnimClip {
+
+    protected final String name;
+    protected final float duration;
+    protected final int[] keyStart;
+    protected final int[] keyCount;
+    protected final float[] times;
+    protected final float[] rotations;
+    protected final float[] translations;
+
+    private final Quat qa = new Quat();
+    private final Quat qb = new Quat();
+
+    /**
+     * @param keyStart     first key of bone
+     * @param keyCount     number of keys of bone, at least one
+     * @param times        key times in seconds, ascending per bone
+     * @param rotations    key rotations [w, x, y, z, ...]
+     * @param translations key translations [x, y, z, ...]
+     */
+    public KeyframeClip(String name, float duration, int[] keyStart, int[] keyCount, float[] times, float[] rotations, float[] translations) {
+
+        this.name = name;
+        this.duration = duration;
+        this.keyStart = keyStart;
+        this.keyCount = keyCount;
+        this.times = times;
+        this.rotations = rotations;
+        this.translations = translations;
+    }
+
+    /**
+     * creates clip from frame actions of bones (euler rotations in degrees per frame)
+     *
+     * @param fps       frames per second of actions
+     * @param tolerance maximum angle error in degrees of dropped keys, 0 keeps all keys
+     */
+    public static KeyframeClip fromBones(String name, Bone[] bones, float fps, float tolerance) {
+
+        int frames = bones[0].getFramesCount();
+        float minDot = (float) Math.cos(Math.toRadians(tolerance) * 0.5);
+
+        float[][] dense = new float[bones.length][];
+        boolean[][] keep = new boolean[bones.length][];
+        int total = 0;
+
+        Quat q = new Quat();
+        Quat a = new Quat();
+        Quat b = new Quat();
+        Quat s = new Quat();
+
+        for (int i = 0; i < bones.length; i++) {
+            float[] rot = new float[frames * 4];
+            for (int f = 0; f < frames; f++) {
+                Point3 action = bones[i].getFrameAction(f);
+                Quat.fromEuler(q, action.x, action.y, action.z);
+                if (f > 0 && rot[(f - 1) * 4] * q.w + rot[(f - 1) * 4 + 1] * q.x + rot[(f - 1) * 4 + 2] * q.y + rot[(f - 1) * 4 + 3] * q.z < 0.0f) {
+                    q.set(-q.w, -q.x, -q.y, -q.z);
+                }
+                rot[f * 4] = q.w;
+                rot[f * 4 + 1] = q.x;
+                rot[f * 4 + 2] = q.y;
+                rot[f * 4 + 3] = q.z;
+            }
+            dense[i] = rot;
+
+            boolean[] k = new boolean[frames];
+            k[0] = true;
+            k[frames - 1] = true;
+            int last = 0;
+            while (last < frames - 1) {
+                int next = last + 1;
+                while (next + 1 < frames && tolerance > 0.0f) {
+                    int candidate = next + 1;
+                    set(a, rot, last);
+                    set(b, rot, candidate);
+                    boolean fits = true;
+                    for (int f = last + 1; f < candidate; f++) {
+                        Quat.slerp(a, b, (float) (f - last) / (candidate - last), s);
+                        set(q, rot, f);
+                        if (Math.abs(Quat.dotProduct(s, q)) < minDot) {
+                            fits = false;
+                            break;
+                        }
+                    }
+                    if (!fits) {
+                        break;
+                    }
+                    next = candidate;
+                }
+                k[next] = true;
+                last = next;
+            }
+            keep[i] = k;
+
+            for (boolean kept : k) {
+                if (kept) {
+                    total++;
+                }
+            }
+        }
+
+        int[] keyStart = new int[bones.length];
+        int[] keyCount = new int[bones.length];
+        float[] times = new float[total];
+        float[] rotations = new float[total * 4];
+        float[] translations = new float[total * 3];
+
+        int index = 0;
+        for (int i = 0; i < bones.length; i++) {
+            keyStart[i] = index;
+            for (int f = 0; f < frames; f++) {
+                if (keep[i][f]) {
+                    times[index] = f / fps;
+                    System.arraycopy(dense[i], f * 4, rotations, index * 4, 4);
+                    index++;
+                }
+            }
+            keyCount[i] = index - keyStart[i];
+        }
+
+        return new KeyframeClip(name, (frames - 1) / fps, keyStart, keyCount, times, rotations, translations);
+    }
+
+    private static void set(Quat q, float[] rot, int index) {
+
+        q.set(rot[index * 4], rot[index * 4 + 1], rot[index * 4 + 2], rot[index * 4 + 3]);
+    }
+
+    /**
+     * @return index of last key of bone with time lower or equal to time
+     */
+    protected int findKey(int bone, float time) {
+
+        int lo = keyStart[bone];
+        int hi = lo + keyCount[bone] - 1;
+
+        if (time <= times[lo]) {
+            return lo;
+        }
+        if (time >= times[hi]) {
+            return hi;
+        }
+
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] <= time) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+    @Override
+    public void sample(int bone, float time, Quat rotation, float[] translation) {
+
+        int k = findKey(bone, time);
+        int last = keyStart[bone] + keyCount[bone] - 1;
+
+        if (k == last || time <= times[k]) {
+            set(rotation, rotations, k);
+            translation[0] = translations[k * 3];
+            translation[1] = translations[k * 3 + 1];
+            translation[2] = translations[k * 3 + 2];
+            return;
+        }
+
+        float t = (time - times[k]) / (times[k + 1] - times[k]);
+        set(qa, rotations, k);
+        set(qb, rotations, k + 1);
+        Quat.slerp(qa, qb, t, rotation);
+
+        int a = k * 3;
+        int b = a + 3;
+        translation[0] = translations[a] + (translations[b] - translations[a]) * t;
+        translation[1] = translations[a + 1] + (translations[b + 1] - translations[a + 1]) * t;
+        translation[2] = translations[a + 2] + (translations[b + 2] - translations[a + 2]) * t;
+    }
+
+    /**
+     * @return clip with keys quantized to 16 bits
+     */
+    public QuantizedClip quantize() {
+
+        return new QuantizedClip(this);
+    }
+
+    @Override
+    public String getName() {
+
+        return name;
+    }
+
+    @Override
+    public float getDuration() {
+
+        return duration;
+    }
+
+    @Override
+    public int getBoneCount() {
+
+        return keyStart.length;
+    }
+
+    /**
+     * @return number of keys of all bones
+     */
+    public int getKeyCount() {
+
+        return times.length;
+    }
+}
@@ -0,0 +1,250 @@
+package com.base.lib.engine.animation;
+
+import com.base.lib.engine.common.other.Quat;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * compact keyframe clip, every key takes 16 bytes
+ * <p>
+ * time is stored as 16 bit fraction of duration, rotation components as 16 bit signed values (renormalized after
+ * interpolation) and translation as 16 bit fraction of clip translation range per axis.
+ * Clip can be written into and read from stream.
+ * </p>
+ */
+public class QuantizedClip implements AnimClip {
+
+    private static final float ROT_SCALE = 32767.0f;
+    private static final float TIME_SCALE = 65535.0f;
+
+    private final String name;
+    private final float duration;
+    private final int[] keyStart;
+    private final int[] keyCount;
+    private final char[] times;
+    private final short[] rotations;
+    private final char[] translations;
+    private final float[] transMin;
+    private final float[] transRange;
+
+    private final Quat qa = new Quat();
+    private final Quat qb = new Quat();
+
+    public QuantizedClip(KeyframeClip clip) {
+
+        name = clip.name;
+        duration = clip.duration;
+        keyStart = clip.keyStart.clone();
+        keyCount = clip.keyCount.clone();
+
+        int count = clip.times.length;
+        times = new char[count];
+        rotations = new short[count * 4];
+        translations = new char[count * 3];
+        transMin = new float[3];
+        transRange = new float[3];
+
+        for (int axis = 0; axis < 3; axis++) {
+            float min = Float.MAX_VALUE;
+            float max = -Float.MAX_VALUE;
+            for (int k = 0; k < count; k++) {
+                float v = clip.translations[k * 3 + axis];
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            transMin[axis] = count > 0 ? min : 0.0f;
+            transRange[axis] = count > 0 ? max - min : 0.0f;
+        }
+
+        for (int k = 0; k < count; k++) {
+            times[k] = (char) Math.round(duration > 0.0f ? clip.times[k] / duration * TIME_SCALE : 0.0f);
+            for (int i = 0; i < 4; i++) {
+                rotations[k * 4 + i] = (short) Math.round(clip.rotations[k * 4 + i] * ROT_SCALE);
+            }
+            for (int axis = 0; axis < 3; axis++) {
+                float range = transRange[axis];
+                float v = range > 0.0f ? (clip.translations[k * 3 + axis] - transMin[axis]) / range : 0.0f;
+                translations[k * 3 + axis] = (char) Math.round(v * TIME_SCALE);
+            }
+        }
+    }
+
+    private QuantizedClip(String name, float duration, int[] keyStart, int[] keyCount, char[] times, short[] rotations,
+                          char[] translations, float[] transMin, float[] transRange) {
+
+        this.name = name;
+        this.duration = duration;
+        this.keyStart = keyStart;
+        this.keyCount = keyCount;
+        this.times = times;
+        this.rotations = rotations;
+        this.translations = translations;
+        this.transMin = transMin;
+        this.transRange = transRange;
+    }
+
+    private int findKey(int bone, char tick) {
+
+        int lo = keyStart[bone];
+        int hi = lo + keyCount[bone] - 1;
+
+        if (tick <= times[lo]) {
+            return lo;
+        }
+        if (tick >= times[hi]) {
+            return hi;
+        }
+
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] <= tick) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+    private void rotation(Quat q, int key) {
+
+        int i = key * 4;
+        q.set(rotations[i] / ROT_SCALE, rotations[i + 1] / ROT_SCALE, rotations[i + 2] / ROT_SCALE, rotations[i + 3] / ROT_SCALE);
+    }
+
+    private float translation(int key, int axis) {
+
+        return transMin[axis] + translations[key * 3 + axis] / TIME_SCALE * transRange[axis];
+    }
+
+    @Override
+    public void sample(int bone, float time, Quat rotation, float[] translation) {
+
+        float f = duration > 0.0f ? Math.max(0.0f, Math.min(1.0f, time / duration)) : 0.0f;
+        float tick = f * TIME_SCALE;
+        int k = findKey(bone, (char) tick);
+        int last = keyStart[bone] + keyCount[bone] - 1;
+
+        if (k == last || tick <= times[k]) {
+            rotation(rotation, k);
+            rotation.normalize();
+            for (int axis = 0; axis < 3; axis++) {
+                translation[axis] = translation(k, axis);
+            }
+            return;
+        }
+
+        float t = (tick - times[k]) / (times[k + 1] - times[k]);
+        rotation(qa, k);
+        rotation(qb, k + 1);
+        Quat.slerp(qa, qb, t, rotation);
+        rotation.normalize();
+
+        for (int axis = 0; axis < 3; axis++) {
+            float a = translation(k, axis);
+            translation[axis] = a + (translation(k + 1, axis) - a) * t;
+        }
+    }
+
+    /**
+     * writes clip into stream
+     */
+    public void write(DataOutputStream out) throws IOException {
+
+        out.writeUTF(name != null ? name : "");
+        out.writeFloat(duration);
+        out.writeInt(keyStart.length);
+        for (int i = 0; i < keyStart.length; i++) {
+            out.writeInt(keyStart[i]);
+            out.writeInt(keyCount[i]);
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            out.writeFloat(transMin[axis]);
+            out.writeFloat(transRange[axis]);
+        }
+        out.writeInt(times.length);
+        for (int k = 0; k < times.length; k++) {
+            out.writeChar(times[k]);
+            for (int i = 0; i < 4; i++) {
+                out.writeShort(rotations[k * 4 + i]);
+            }
+            for (int axis = 0; axis < 3; axis++) {
+                out.writeChar(translations[k * 3 + axis]);
+            }
+        }
+    }
+
+    /**
+     * reads clip written by {@link #write(DataOutputStream)}
+     */
+    public static QuantizedClip read(DataInputStream in) throws IOException {
+
+        String name = in.readUTF();
+        float duration = in.readFloat();
+        int bones = in.readInt();
+        int[] keyStart = new int[bones];
+        int[] keyCount = new int[bones];
+        for (int i = 0; i < bones; i++) {
+            keyStart[i] = in.readInt();
+            keyCount[i] = in.readInt();
+        }
+        float[] transMin = new float[3];
+        float[] transRange = new float[3];
+        for (int axis = 0; axis < 3; axis++) {
+            transMin[axis] = in.readFloat();
+            transRange[axis] = in.readFloat();
+        }
+        int count = in.readInt();
+        char[] times = new char[count];
+        short[] rotations = new short[count * 4];
+        char[] translations = new char[count * 3];
+        for (int k = 0; k < count; k++) {
+            times[k] = in.readChar();
+            for (int i = 0; i < 4; i++) {
+                rotations[k * 4 + i] = in.readShort();
+            }
+            for (int axis = 0; axis < 3; axis++) {
+                translations[k * 3 + axis] = in.readChar();
+            }
+        }
+
+        return new QuantizedClip(name, duration, keyStart, keyCount, times, rotations, translations, transMin, transRange);
+    }
+
+    @Override
+    public String getName() {
+
+        return name;
+    }
+
+    @Override
+    public float getDuration() {
+
+        return duration;
+    }
+
+    @Override
+    public int getBoneCount() {
+
+        return keyStart.length;
+    }
+
+    /**
+     * @return number of keys of all bones
+     */
+    public int getKeyCount() {
+
+        return times.length;
+    }
+
+    /**
+     * @return approximate size of key data in bytes
+     */
+    public int getSizeInBytes() {
+
+        return times.length * 16 + keyStart.length * 8;
+    }
+}
@@ -0,0 +1,188 @@
+package com.base.lib.engine.animation;
+
+import com.base.lib.engine.common.other.Quat;
+
+/**
+ * time based playback of AnimClips on skelet with crossfade between clips
+ * <p>
+ * call {@link #update(float)} with delta time every update, bones are posed by interpolated keys,
+ * so animation is smooth at any update rate. Then skin vertices (BaseSkelet.getVerts) or upload bone palette.
+ * </p>
+ */
+public class SkeletAnimator {
+
+    private final BaseSkelet skelet;
+    private final Bone[] bones;
+
+    private AnimClip clip;
+    private float time;
+    private boolean loop;
+
+    private AnimClip fadeClip;
+    private float fadeClipTime;
+    private boolean fadeLoop;
+    private float fadeTime;
+    private float fadeDuration;
+
+    private float speed = 1.0f;
+
+    private final Quat rotation = new Quat();
+    private final Quat fadeRotation = new Quat();
+    private final float[] translation = new float[3];
+    private final float[] fadeTranslation = new float[3];
+
+    public SkeletAnimator(BaseSkelet skelet) {
+
+        this.skelet = skelet;
+        this.bones = skelet.getBones();
+    }
+
+    /**
+     * starts clip immediately
+     */
+    public void play(AnimClip clip, boolean loop) {
+
+        checkClip(clip);
+        this.clip = clip;
+        this.loop = loop;
+        time = 0.0f;
+        fadeClip = null;
+    }
+
+    /**
+     * starts clip and blends it with current one during duration
+     *
+     * @param duration crossfade length in seconds
+     */
+    public void crossfade(AnimClip clip, float duration, boolean loop) {
+
+        if (this.clip == null || duration <= 0.0f) {
+            play(clip, loop);
+            return;
+        }
+
+        checkClip(clip);
+        fadeClip = this.clip;
+        fadeClipTime = time;
+        fadeLoop = this.loop;
+        fadeTime = 0.0f;
+        fadeDuration = duration;
+
+        this.clip = clip;
+        this.loop = loop;
+        time = 0.0f;
+    }
+
+    private void checkClip(AnimClip clip) {
+
+        if (clip.getBoneCount() != bones.length) {
+            throw new IllegalArgumentException("Monkeys can't play clip " + clip.getName() + " with " + clip.getBoneCount() + " bones on skelet with " + bones.length + " bones");
+        }
+    }
+
+    private static float advance(float time, float delta, float duration, boolean loop) {
+
+        time += delta;
+        if (time > duration) {
+            if (loop && duration > 0.0f) {
+                time %= duration;
+            } else {
+                time = duration;
+            }
+        }
+
+        return time;
+    }
+
+    /**
+     * advances time and poses bones
+     *
+     * @param delta time step in seconds
+     */
+    public void update(float delta) {
+
+        if (clip == null) {
+            return;
+        }
+
+        delta *= speed;
+        time = advance(time, delta, clip.getDuration(), loop);
+
+        float weight = 1.0f;
+        if (fadeClip != null) {
+            fadeTime += delta;
+            if (fadeTime >= fadeDuration) {
+                fadeClip = null;
+            } else {
+                fadeClipTime = advance(fadeClipTime, delta, fadeClip.getDuration(), fadeLoop);
+                weight = fadeTime / fadeDuration;
+            }
+        }
+
+        for (int i = 0; i < bones.length; i++) {
+            clip.sample(i, time, rotation, translation);
+
+            if (fadeClip != null) {
+                fadeClip.sample(i, fadeClipTime, fadeRotation, fadeTranslation);
+                Quat.slerp(fadeRotation, rotation, weight, rotation);
+                for (int j = 0; j < 3; j++) {
+                    translation[j] = fadeTranslation[j] + (translation[j] - fadeTranslation[j]) * weight;
+                }
+            }
+
+            bones[i].update(rotation, translation[0], translation[1], translation[2]);
+        }
+    }
+
+    /**
+     * sets playback speed, 1.0 is normal speed
+     */
+    public void setSpeed(float speed) {
+
+        this.speed = speed;
+    }
+
+    public float getSpeed() {
+
+        return speed;
+    }
+
+    /**
+     * @return time of current clip in seconds
+     */
+    public float getTime() {
+
+        return time;
+    }
+
+    public void setTime(float time) {
+
+        this.time = time;
+    }
+
+    public AnimClip getClip() {
+
+        return clip;
+    }
+
+    /**
+     * @return true if crossfade is in progress
+     */
+    public boolean isFading() {
+
+        return fadeClip != null;
+    }
+
+    /**
+     * @return true if non looped clip reached its end
+     */
+    public boolean isFinished() {
+
+        return clip != null && !loop && time >= clip.getDuration();
+    }
+
+    public BaseSkelet getSkelet() {
+
+        return skelet;
+    }
+}
@@ -0,0 +1,164 @@
+package com.base.lib.engine.animation;
+
+import android.opengl.GLES20;
+
+import com.base.lib.engine.BaseGL;
+import com.base.lib.engine.BaseShader;
+import com.base.lib.engine.DrawableBuffer;
+import com.base.lib.engine.common.Buffers;
+import com.base.lib.interfaces.GLStateListener;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * static GL buffers for GPU skinning
+ * <p>
+ * one interleaved VBO [x, y, z, u, v, bone0..3, weight0..3] with bind pose positions and influences from SkinMesh,
+ * texture coords and faces are taken from DrawableBuffer. Buffer is uploaded once on first draw,
+ * then only bone palette changes per frame. Client data are kept, so buffers can be recreated after GL context loss.
+ * </p>
+ * shader attributes: handle[1] a_Position, handle[2] a_TexCoordinate, handle[4] a_BoneIndex, handle[5] a_BoneWeight
+ */
+public class SkinBuffer implements GLStateListener {
+
+    /**
+     * size of bone palette in built-in skinning shader
+     */
+    public static final int MAX_BONES = 24;
+
+    private static final int STRIDE = 3 + 2 + 4 + 4;
+
+    private final FloatBuffer vertices;
+    private final ShortBuffer faces;
+    private final int faceCount;
+    private final int glDrawMode;
+
+    private int glVerticeBufferID;
+    private int glFaceBufferID;
+
+    /**
+     * @param skin   skin with vertices in same order as buffer vertices
+     * @param buffer buffer with client side texture and face buffers
+     */
+    public SkinBuffer(SkinMesh skin, DrawableBuffer buffer) {
+
+        int count = skin.getVertexCount();
+        int influences = skin.getInfluences();
+        int cpt = buffer.getCpt();
+
+        FloatBuffer tBuffer = buffer.getTextureBuffer();
+        float[] textures = new float[tBuffer.capacity()];
+        tBuffer.position(0);
+        tBuffer.get(textures).position(0);
+
+        float[] data = new float[count * STRIDE];
+        float[] pos = new float[3];
+        int index = 0;
+        for (int v = 0; v < count; v++) {
+            skin.getPosition(v, pos);
+            data[index++] = pos[0];
+            data[index++] = pos[1];
+            data[index++] = pos[2];
+            data[index++] = textures[v * cpt];
+            data[index++] = textures[v * cpt + 1];
+            for (int i = 0; i < 4; i++) {
+                data[index++] = i < influences ? skin.getBone(v, i) : 0.0f;
+            }
+            for (int i = 0; i < 4; i++) {
+                data[index++] = i < influences ? skin.getWeight(v, i) : 0.0f;
+            }
+        }
+
+        ShortBuffer fBuffer = buffer.getFaceBuffer();
+        short[] faceData = new short[buffer.getFaceCount()];
+        fBuffer.position(0);
+        fBuffer.get(faceData).position(0);
+
+        vertices = Buffers.floatBuffer(data);
+        faces = Buffers.shortBuffer(faceData);
+        faceCount = faceData.length;
+        glDrawMode = buffer.getGlDrawMode();
+    }
+
+    private void glGenBuffers() {
+
+        glVerticeBufferID = BaseGL.genArrayFloatBuffer(vertices);
+        glFaceBufferID = BaseGL.genElementShortBuffer(faces);
+    }
+
+    /**
+     * binds buffers and attributes of shader, buffers are generated if needed, note: must be performed in correct GL thread
+     */
+    public void glBind(BaseShader shader) {
+
+        if (glVerticeBufferID == 0) {
+            glGenBuffers();
+        }
+
+        final int stride = STRIDE * Buffers.BYTESPERFLOAT;
+
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, glVerticeBufferID);
+        GLES20.glVertexAttribPointer(shader.handle[1], 3, GLES20.GL_FLOAT, false, stride, 0);
+        GLES20.glEnableVertexAttribArray(shader.handle[1]);
+        GLES20.glVertexAttribPointer(shader.handle[2], 2, GLES20.GL_FLOAT, false, stride, 3 * Buffers.BYTESPERFLOAT);
+        GLES20.glEnableVertexAttribArray(shader.handle[2]);
+        GLES20.glVertexAttribPointer(shader.handle[4], 4, GLES20.GL_FLOAT, false, stride, 5 * Buffers.BYTESPERFLOAT);
+        GLES20.glEnableVertexAttribArray(shader.handle[4]);
+        GLES20.glVertexAttribPointer(shader.handle[5], 4, GLES20.GL_FLOAT, false, stride, 9 * Buffers.BYTESPERFLOAT);
+        GLES20.glEnableVertexAttribArray(shader.handle[5]);
+
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, glFaceBufferID);
+    }
+
+    /**
+     * draws bound buffers, note: must be performed in correct GL thread
+     */
+    public void glDraw() {
+
+        GLES20.glDrawElements(glDrawMode, faceCount, GLES20.GL_UNSIGNED_SHORT, 0);
+    }
+
+    /**
+     * unbinds buffers and disables attributes of shader, note: must be performed in correct GL thread
+     */
+    public void glUnbind(BaseShader shader) {
+
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        GLES20.glDisableVertexAttribArray(shader.handle[1]);
+        GLES20.glDisableVertexAttribArray(shader.handle[2]);
+        GLES20.glDisableVertexAttribArray(shader.handle[4]);
+        GLES20.glDisableVertexAttribArray(shader.handle[5]);
+    }
+
+    @Override
+    public void onGLCreate() {
+
+        glVerticeBufferID = 0;
+        glFaceBufferID = 0;
+    }
+
+    @Override
+    public void onGLEnd() {
+
+        glDelete();
+    }
+
+    /**
+     * deletes GL buffers, note: must be performed in correct GL thread
+     */
+    public void glDelete() {
+
+        if (glVerticeBufferID != 0) {
+            BaseGL.destroyBuffers(glVerticeBufferID, glFaceBufferID);
+            glVerticeBufferID = 0;
+            glFaceBufferID = 0;
+        }
+    }
+
+    public int getFaceCount() {
+
+        return faceCount;
+    }
+}
@@ -0,0 +1,261 @@
+package com.base.lib.engine.animation;
+
+import com.base.lib.engine.common.WorkerPool;
+import com.base.lib.engine.common.other.Point3;
+
+import java.nio.FloatBuffer;
+
+/**
+ * skinned vertex data prepared for fast CPU skinning
+ * <p>
+ * bind pose positions are stored in SoA layout (x[], y[], z[]), every vertex has up to 4 bone influences
+ * stored per influence slot (bones[slot * vertexCount + vertex]). Bone matrices are premultiplied by inverse bind
+ * translation into palette, so vertex is skinned as sum of weight * palette[bone] * position.
+ * Large meshes are split across {@link WorkerPool}.
+ * </p>
+ */
+public class SkinMesh implements WorkerPool.Task {
+
+    /**
+     * maximum number of bones affecting one vertex
+     */
+    public static final int MAX_INFLUENCES = 4;
+
+    /**
+     * meshes with less vertices are skinned only on calling thread
+     */
+    public static final int PARALLEL_THRESHOLD = 2048;
+
+    private final int vertexCount;
+    private final int influences;
+    private final float[] x;
+    private final float[] y;
+    private final float[] z;
+    private final short[] bones;
+    private final float[] weights;
+
+    private float[] palette;
+    private float[] target;
+    private WorkerPool pool;
+
+    /**
+     * @param positions  bind pose positions [x, y, z, ...]
+     * @param influences number of influences per vertex (1 - 4)
+     * @param boneIdx    bone indices, influences per vertex
+     * @param boneWeight bone weights, influences per vertex, weights are normalized to sum 1
+     */
+    public SkinMesh(float[] positions, int influences, short[] boneIdx, float[] boneWeight) {
+
+        if (influences < 1 || influences > MAX_INFLUENCES) {
+            throw new IllegalArgumentException("Monkeys can handle only 1 - " + MAX_INFLUENCES + " influences per vertex, not " + influences);
+        }
+
+        this.vertexCount = positions.length / 3;
+        this.influences = influences;
+
+        x = new float[vertexCount];
+        y = new float[vertexCount];
+        z = new float[vertexCount];
+        bones = new short[vertexCount * influences];
+        weights = new float[vertexCount * influences];
+
+        for (int v = 0; v < vertexCount; v++) {
+            x[v] = positions[v * 3];
+            y[v] = positions[v * 3 + 1];
+            z[v] = positions[v * 3 + 2];
+
+            float sum = 0.0f;
+            for (int i = 0; i < influences; i++) {
+                sum += boneWeight[v * influences + i];
+            }
+            float norm = sum > 0.0f ? 1.0f / sum : 0.0f;
+
+            for (int i = 0; i < influences; i++) {
+                bones[i * vertexCount + v] = boneIdx[v * influences + i];
+                weights[i * vertexCount + v] = boneWeight[v * influences + i] * norm;
+            }
+        }
+
+        pool = WorkerPool.get();
+    }
+
+    /**
+     * creates single influence skin from vertex groups, bone and group are paired by name once here.
+     * Group vertices are expected relative to bone head (see {@link BaseSkelet#modifyVertices()}),
+     * vertices keep order of groups. Vertices of groups without bone stays at zero.
+     */
+    public static SkinMesh create(Bone[] skeletBones, VertGroup[] groups) {
+
+        int count = VertGroup.getVertsCount(groups);
+        float[] positions = new float[count];
+        short[] idx = new short[count / 3];
+        float[] wgh = new float[count / 3];
+
+        for (int b = 0; b < skeletBones.length; b++) {
+            Bone bone = skeletBones[b];
+            VertGroup group = VertGroup.getGroup(bone.name, groups);
+            if (group == null) {
+                continue;
+            }
+
+            Point3 h = bone.head;
+            float[] verts = group.verts;
+            int start = VertGroup.startIndex(group, groups);
+            for (int j = 0; j < verts.length; j += 3) {
+                int index = start + j;
+                positions[index] = verts[j] + h.x;
+                positions[index + 1] = verts[j + 1] + h.y;
+                positions[index + 2] = verts[j + 2] + h.z;
+                idx[index / 3] = (short) b;
+                wgh[index / 3] = 1.0f;
+            }
+        }
+
+        return new SkinMesh(positions, 1, idx, wgh);
+    }
+
+    /**
+     * computes skinning palette from current bone matrices, palette[i] = bone[i].transform * translate(-bone[i].head)
+     */
+    public void updatePalette(Bone[] skeletBones) {
+
+        if (palette == null || palette.length != skeletBones.length * 16) {
+            palette = new float[skeletBones.length * 16];
+        }
+
+        palette(skeletBones, palette);
+    }
+
+    /**
+     * computes skinning palette of bones into palette array, 16 floats per bone
+     */
+    public static void palette(Bone[] skeletBones, float[] palette) {
+
+        for (int b = 0; b < skeletBones.length; b++) {
+            Bone bone = skeletBones[b];
+            int o = b * 16;
+            System.arraycopy(bone.transformMatrix, 0, palette, o, 16);
+
+            float hx = -bone.head.x;
+            float hy = -bone.head.y;
+            float hz = -bone.head.z;
+            for (int i = 0; i < 3; i++) {
+                palette[o + 12 + i] += palette[o + i] * hx + palette[o + 4 + i] * hy + palette[o + 8 + i] * hz;
+            }
+        }
+    }
+
+    /**
+     * skins all vertices into out [x, y, z, ...], large meshes are skinned in parallel
+     * note: one mesh can't be skinned by more threads at same time
+     */
+    public void skin(float[] out) {
+
+        target = out;
+        if (pool != null && vertexCount >= PARALLEL_THRESHOLD) {
+            pool.run(this, vertexCount, PARALLEL_THRESHOLD / 4);
+        } else {
+            run(0, vertexCount);
+        }
+        target = null;
+    }
+
+    /**
+     * skins all vertices into out array and copies them into buffer
+     */
+    public void skin(float[] out, FloatBuffer buffer) {
+
+        skin(out);
+        buffer.position(0);
+        buffer.put(out, 0, vertexCount * 3).position(0);
+    }
+
+    /**
+     * skins vertices in range [start, end) into current target
+     */
+    @Override
+    public void run(int start, int end) {
+
+        final float[] out = target;
+        final float[] p = palette;
+        final int n = vertexCount;
+
+        for (int v = start; v < end; v++) {
+            final float vx = x[v];
+            final float vy = y[v];
+            final float vz = z[v];
+
+            float rx = 0.0f;
+            float ry = 0.0f;
+            float rz = 0.0f;
+
+            for (int i = 0; i < influences; i++) {
+                final float w = weights[i * n + v];
+                if (w == 0.0f) {
+                    continue;
+                }
+                final int m = bones[i * n + v] * 16;
+                rx += w * (p[m] * vx + p[m + 4] * vy + p[m + 8] * vz + p[m + 12]);
+                ry += w * (p[m + 1] * vx + p[m + 5] * vy + p[m + 9] * vz + p[m + 13]);
+                rz += w * (p[m + 2] * vx + p[m + 6] * vy + p[m + 10] * vz + p[m + 14]);
+            }
+
+            final int o = v * 3;
+            out[o] = rx;
+            out[o + 1] = ry;
+            out[o + 2] = rz;
+        }
+    }
+
+    /**
+     * sets pool for parallel skinning, null means skinning only on calling thread
+     */
+    public void setWorkerPool(WorkerPool pool) {
+
+        this.pool = pool;
+    }
+
+    public int getVertexCount() {
+
+        return vertexCount;
+    }
+
+    public int getInfluences() {
+
+        return influences;
+    }
+
+    /**
+     * @return bone index of vertex influence
+     */
+    public int getBone(int vertex, int influence) {
+
+        return bones[influence * vertexCount + vertex];
+    }
+
+    /**
+     * @return normalized weight of vertex influence
+     */
+    public float getWeight(int vertex, int influence) {
+
+        return weights[influence * vertexCount + vertex];
+    }
+
+    /**
+     * copies bind pose position of vertex into dst
+     */
+    public void getPosition(int vertex, float[] dst) {
+
+        dst[0] = x[vertex];
+        dst[1] = y[vertex];
+        dst[2] = z[vertex];
+    }
+
+    /**
+     * @return last computed palette, 16 floats per bone
+     */
+    public float[] getPalette() {
+
+        return palette;
+    }
+}
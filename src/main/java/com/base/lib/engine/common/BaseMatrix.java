@@ -7,14 +7,43 @@ import com.base.lib.engine.BaseCamera;
 
 /**
  * 13 Created by doctor on 13.10.13.
+ * <p>
+ * all methods are reentrant, results are written into caller supplied arrays.
+ * Methods which needs scratch space uses per-thread arrays (see {@link #threadMatrix()}),
+ * so matrix math can run on update, GL and worker threads at same time.
+ * </p>
  */
 public class BaseMatrix {
 
+    /**
+     * @deprecated shared by all threads, use {@link #threadMatrix()} or own array instead
+     */
+    @Deprecated
     public static final float[] _matrix = new float[16];
 
     private static final float RAD = (float) (Math.PI / 180.0f);
-    private static final float[] temp = new float[16];
-    private static final float[] vert = new float[4];
+
+    private static final ThreadLocal<float[]> threadMatrix = new ThreadLocal<float[]>() {
+        @Override
+        protected float[] initialValue() {
+            return new float[16];
+        }
+    };
+
+    private static final ThreadLocal<float[]> threadVert = new ThreadLocal<float[]>() {
+        @Override
+        protected float[] initialValue() {
+            return new float[4];
+        }
+    };
+
+    /**
+     * @return scratch matrix owned by current thread, content is valid until next call of method which uses it on same thread
+     */
+    public static float[] threadMatrix() {
+
+        return threadMatrix.get();
+    }
 
     public static void setIdentity(float[] matrix) {
 
@@ -50,10 +79,15 @@ public class BaseMatrix {
         return out;
     }
 
+    /**
+     * @return identity scratch matrix of current thread
+     */
     public static float[] setSMIdentity() {
 
-        setIdentity(_matrix);
-        return _matrix;
+        float[] matrix = threadMatrix.get();
+        setIdentity(matrix);
+
+        return matrix;
     }
 
     public static void translate(float[] matrix, float x, float y, float z) {
@@ -225,59 +259,98 @@ public class BaseMatrix {
         matrix[15] = 1;
     }
 
+    /**
+     * resultM = leftM * rightM, result can be same array as one of inputs
+     */
     public static void multiplyMM(float[] resultM, float[] leftM, float[] rightM) {
 
-        Matrix.multiplyMM(resultM, 0, leftM, 0, rightM, 0);
+        final float l0 = leftM[0], l1 = leftM[1], l2 = leftM[2], l3 = leftM[3];
+        final float l4 = leftM[4], l5 = leftM[5], l6 = leftM[6], l7 = leftM[7];
+        final float l8 = leftM[8], l9 = leftM[9], l10 = leftM[10], l11 = leftM[11];
+        final float l12 = leftM[12], l13 = leftM[13], l14 = leftM[14], l15 = leftM[15];
+
+        for (int i = 0; i < 16; i += 4) {
+            final float r0 = rightM[i];
+            final float r1 = rightM[i + 1];
+            final float r2 = rightM[i + 2];
+            final float r3 = rightM[i + 3];
+
+            resultM[i] = l0 * r0 + l4 * r1 + l8 * r2 + l12 * r3;
+            resultM[i + 1] = l1 * r0 + l5 * r1 + l9 * r2 + l13 * r3;
+            resultM[i + 2] = l2 * r0 + l6 * r1 + l10 * r2 + l14 * r3;
+            resultM[i + 3] = l3 * r0 + l7 * r1 + l11 * r2 + l15 * r3;
+        }
     }
 
-    public static float[] multiplyMV(float[] matrix, float x, float y, float z) {
+    /**
+     * transforms point (x, y, z, 1) by matrix and stores x, y, z into dst at offset
+     */
+    public static void multiplyMV(float[] dst, int offset, float[] matrix, float x, float y, float z) {
+
+        dst[offset] = matrix[0] * x + matrix[4] * y + matrix[8] * z + matrix[12];
+        dst[offset + 1] = matrix[1] * x + matrix[5] * y + matrix[9] * z + matrix[13];
+        dst[offset + 2] = matrix[2] * x + matrix[6] * y + matrix[10] * z + matrix[14];
+    }
+
+    /**
+     * transforms point (x, y, z, 1) by matrix and stores x, y, z (and w if dst has 4 or more elements) into dst
+     */
+    public static void multiplyMV(float[] dst, float[] matrix, float x, float y, float z) {
+
+        multiplyMV(dst, 0, matrix, x, y, z);
+        if (dst.length > 3) {
+            dst[3] = matrix[3] * x + matrix[7] * y + matrix[11] * z + matrix[15];
+        }
+    }
 
-        vert[0] = x;
-        vert[1] = y;
-        vert[2] = z;
-        vert[3] = 1.0f;
+    /**
+     * @return transformed point in scratch array of current thread, copy values before next call
+     * @deprecated use {@link #multiplyMV(float[], float[], float, float, float)} with own destination array
+     */
+    @Deprecated
+    public static float[] multiplyMV(float[] matrix, float x, float y, float z) {
 
-        Matrix.multiplyMV(vert, 0, matrix, 0, vert, 0);
+        float[] vert = threadVert.get();
+        multiplyMV(vert, matrix, x, y, z);
 
         return vert;
     }
 
     public static void multiplyMA(float[] matrix, float[] array) {
 
-        for (int i = 0; i < array.length; i += 3) {
-            multiplyMV(matrix, array[i], array[i + 1], array[i + 2]);
-            array[i] = vert[0];
-            array[i + 1] = vert[1];
-            array[i + 2] = vert[2];
-        }
+        multiplyMA(matrix, array, array);
     }
 
+    /**
+     * transforms xyz points of src into dst, dst can be same array as src
+     */
     public static void multiplyMA(float[] matrix, float[] src, float[] dst) {
 
         for (int i = 0; i < src.length; i += 3) {
-            multiplyMV(matrix, src[i], src[i + 1], src[i + 2]);
-            dst[i] = vert[0];
-            dst[i + 1] = vert[1];
-            dst[i + 2] = vert[2];
+            multiplyMV(dst, i, matrix, src[i], src[i + 1], src[i + 2]);
         }
     }
 
     public static void multiplyMC(float[] matrix, BaseCamera camera) {
 
-        Matrix.multiplyMM(matrix, 0, camera.mVPMatrix, 0, matrix, 0);
+        multiplyMM(matrix, camera.mVPMatrix, matrix);
     }
 
     public static void multiplyMCV(float[] matrix, BaseCamera camera) {
 
-        Matrix.multiplyMM(matrix, 0, camera.VPMatrix[0], 0, matrix, 0);
+        multiplyMM(matrix, camera.VPMatrix[0], matrix);
     }
 
+    /**
+     * transforms xy points of src into dst, dst can be same array as src
+     */
     public static void multiplyMA2(float[] matrix, float[] src, float[] dst) {
 
         for (int i = 0; i < src.length; i += 2) {
-            multiplyMV(matrix, src[i], src[i + 1], 0.0f);
-            dst[i] = vert[0];
-            dst[i + 1] = vert[1];
+            final float x = src[i];
+            final float y = src[i + 1];
+            dst[i] = matrix[0] * x + matrix[4] * y + matrix[12];
+            dst[i + 1] = matrix[1] * x + matrix[5] * y + matrix[13];
         }
     }
 
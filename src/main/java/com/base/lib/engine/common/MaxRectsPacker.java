@@ -0,0 +1,155 @@
+package com.base.lib.engine.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MaxRects bin packing of one atlas page, best short side fit.
+ * Keeps list of maximal free rectangles, every placed rectangle splits free ones it overlaps.
+ */
+class MaxRectsPacker {
+
+    private final int width;
+    private final int height;
+    private final List<Node> free;
+    private final List<Node> split;
+
+    private int usedWidth;
+    private int usedHeight;
+
+    MaxRectsPacker(int width, int height) {
+
+        this.width = width;
+        this.height = height;
+        free = new ArrayList<Node>();
+        split = new ArrayList<Node>();
+        free.add(new Node(0, 0, width, height));
+    }
+
+    /**
+     * @param out x, y of placed rectangle
+     * @return false if rectangle doesn't fit into page
+     */
+    boolean insert(int w, int h, int[] out) {
+
+        Node best = null;
+        int bestShort = Integer.MAX_VALUE;
+        int bestLong = Integer.MAX_VALUE;
+        for (int i = 0; i < free.size(); i++) {
+            Node node = free.get(i);
+            if (node.w >= w && node.h >= h) {
+                int leftW = node.w - w;
+                int leftH = node.h - h;
+                int shortSide = Math.min(leftW, leftH);
+                int longSide = Math.max(leftW, leftH);
+                if (shortSide < bestShort || (shortSide == bestShort && longSide < bestLong)) {
+                    best = node;
+                    bestShort = shortSide;
+                    bestLong = longSide;
+                }
+            }
+        }
+
+        if (best == null) {
+            return false;
+        }
+
+        int x = best.x;
+        int y = best.y;
+        place(x, y, w, h);
+        out[0] = x;
+        out[1] = y;
+        usedWidth = Math.max(usedWidth, x + w);
+        usedHeight = Math.max(usedHeight, y + h);
+        return true;
+    }
+
+    private void place(int x, int y, int w, int h) {
+
+        for (int i = free.size() - 1; i >= 0; i--) {
+            Node node = free.get(i);
+            if (x >= node.x + node.w || x + w <= node.x || y >= node.y + node.h || y + h <= node.y) {
+                continue;
+            }
+
+            free.remove(i);
+            if (x > node.x) {
+                split.add(new Node(node.x, node.y, x - node.x, node.h));
+            }
+            if (x + w < node.x + node.w) {
+                split.add(new Node(x + w, node.y, node.x + node.w - x - w, node.h));
+            }
+            if (y > node.y) {
+                split.add(new Node(node.x, node.y, node.w, y - node.y));
+            }
+            if (y + h < node.y + node.h) {
+                split.add(new Node(node.x, y + h, node.w, node.y + node.h - y - h));
+            }
+        }
+
+        free.addAll(split);
+        split.clear();
+        prune();
+    }
+
+    // removes free rectangles contained in other ones
+    private void prune() {
+
+        for (int i = 0; i < free.size(); i++) {
+            Node a = free.get(i);
+            for (int j = i + 1; j < free.size(); j++) {
+                Node b = free.get(j);
+                if (b.contains(a)) {
+                    free.remove(i--);
+                    break;
+                }
+                if (a.contains(b)) {
+                    free.remove(j--);
+                }
+            }
+        }
+    }
+
+    int getWidth() {
+
+        return width;
+    }
+
+    int getHeight() {
+
+        return height;
+    }
+
+    /**
+     * @return right edge of placed rectangles
+     */
+    int getUsedWidth() {
+
+        return usedWidth;
+    }
+
+    /**
+     * @return bottom edge of placed rectangles
+     */
+    int getUsedHeight() {
+
+        return usedHeight;
+    }
+
+    private static class Node {
+
+        final int x, y, w, h;
+
+        Node(int x, int y, int w, int h) {
+            this.x = x;
+            this.y = y;
+            this.w = w;
+            this.h = h;
+        }
+
+        boolean contains(Node o) {
+
+            return o.x >= x && o.y >= y && o.x + o.w <= x + w && o.y + o.h <= y + h;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.base.lib.engine.common;
+
+import com.base.lib.engine.Base;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * bounded lock-free multi-producer / single-consumer queue of tasks
+ * <p>
+ * any thread can add task without allocation, only one thread (consumer) can run them.
+ * Queue is ring of sequenced slots, producers claims slot by CAS on tail.
+ * If ring is full, task is stored in synchronized overflow list (allocates), so no task is ever lost.
+ * Until overflow is drained, following tasks goes into overflow too, so tasks keeps FIFO order.
+ * </p>
+ * Every drain stores depth and duration, so stalls caused by flooding threads can be observed.
+ */
+public class TaskQueue {
+
+    private final String name;
+    private final Runnable[] tasks;
+    private final AtomicLongArray sequence;
+    private final AtomicLong tail;
+    private final int mask;
+    private final int capacity;
+
+    private long head;
+
+    private final List<Runnable> overflow;
+    private volatile boolean overflowed;
+
+    private volatile int lastDepth;
+    private volatile long lastDrainTime;
+    private volatile int maxDepth;
+    private volatile long maxDrainTime;
+    private volatile int overflowCount;
+
+    /**
+     * @param name     name of queue for logs
+     * @param capacity ring size, rounded up to power of two
+     */
+    public TaskQueue(String name, int capacity) {
+
+        int size = 2;
+        while (size < capacity) {
+            size <<= 1;
+        }
+
+        this.name = name;
+        this.capacity = size;
+        this.mask = size - 1;
+
+        tasks = new Runnable[size];
+        sequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequence.set(i, i);
+        }
+        tail = new AtomicLong();
+        overflow = new ArrayList<Runnable>();
+    }
+
+    /**
+     * adds task into ring
+     *
+     * @return false if ring is full
+     */
+    public boolean offer(Runnable task) {
+
+        long pos = tail.get();
+        int index;
+
+        while (true) {
+            index = (int) pos & mask;
+            long dif = sequence.get(index) - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = tail.get();
+            } else if (dif < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+
+        tasks[index] = task;
+        sequence.set(index, pos + 1);
+
+        return true;
+    }
+
+    /**
+     * adds task into ring or into overflow list if ring is full, can be called from any thread
+     */
+    public void add(Runnable task) {
+
+        if (task == null) {
+            return;
+        }
+
+        if (!overflowed && offer(task)) {
+            return;
+        }
+
+        boolean first;
+        synchronized (overflow) {
+            first = !overflowed;
+            overflow.add(task);
+            overflowed = true;
+            overflowCount++;
+        }
+        if (first) {
+            Base.logE(name, "Monkeys are flooding the queue, ring capacity " + capacity + " exceeded");
+        }
+    }
+
+    /**
+     * @return next task or null, note: must be called only by consumer thread
+     */
+    public Runnable poll() {
+
+        int index = (int) head & mask;
+        if (sequence.get(index) - (head + 1) < 0) {
+            return null;
+        }
+
+        Runnable task = tasks[index];
+        tasks[index] = null;
+        sequence.set(index, head + capacity);
+        head++;
+
+        return task;
+    }
+
+    /**
+     * runs tasks which were in queue at time of call (tasks added while draining runs next time)
+     * note: must be called only by consumer thread
+     *
+     * @return number of executed tasks
+     */
+    public int runAll() {
+
+        long start = System.nanoTime();
+        int count = (int) (tail.get() - head);
+        int done = 0;
+
+        for (int i = 0; i < count; i++) {
+            Runnable task = poll();
+            if (task == null) {
+                break;
+            }
+            task.run();
+            done++;
+        }
+
+        if (overflowed) {
+            // ring tasks are older than overflow ones, producers don't add into ring until overflow is drained
+            Runnable task = poll();
+            while (task != null) {
+                task.run();
+                done++;
+                task = poll();
+            }
+
+            Runnable[] pending;
+            synchronized (overflow) {
+                pending = overflow.toArray(new Runnable[overflow.size()]);
+                overflow.clear();
+                overflowed = false;
+            }
+            for (Runnable task : pending) {
+                task.run();
+                done++;
+            }
+        }
+
+        long time = System.nanoTime() - start;
+        lastDepth = done;
+        lastDrainTime = time;
+        if (done > maxDepth) {
+            maxDepth = done;
+        }
+        if (time > maxDrainTime) {
+            maxDrainTime = time;
+        }
+
+        return done;
+    }
+
+    /**
+     * @return approximate number of waiting tasks
+     */
+    public int size() {
+
+        int size = (int) (tail.get() - head);
+
+        return overflowed ? size + overflow.size() : size;
+    }
+
+    public boolean isEmpty() {
+
+        return size() == 0;
+    }
+
+    /**
+     * removes all waiting tasks, note: must be called only by consumer thread or when producers are stopped
+     */
+    public void clear() {
+
+        Runnable task = poll();
+        while (task != null) {
+            task = poll();
+        }
+
+        synchronized (overflow) {
+            overflow.clear();
+            overflowed = false;
+        }
+    }
+
+    /**
+     * @return ring capacity
+     */
+    public int getCapacity() {
+
+        return capacity;
+    }
+
+    /**
+     * @return number of tasks executed in last drain
+     */
+    public int getLastDepth() {
+
+        return lastDepth;
+    }
+
+    /**
+     * @return duration of last drain in nanoseconds
+     */
+    public long getLastDrainTime() {
+
+        return lastDrainTime;
+    }
+
+    /**
+     * @return maximum number of tasks executed in one drain
+     */
+    public int getMaxDepth() {
+
+        return maxDepth;
+    }
+
+    /**
+     * @return maximum duration of one drain in nanoseconds
+     */
+    public long getMaxDrainTime() {
+
+        return maxDrainTime;
+    }
+
+    /**
+     * @return number of tasks which didn't fit into ring
+     */
+    public int getOverflowCount() {
+
+        return overflowCount;
+    }
+
+    /**
+     * resets max values
+     */
+    public void resetStats() {
+
+        maxDepth = 0;
+        maxDrainTime = 0;
+        overflowCount = 0;
+    }
+
+    @Override
+    public String toString() {
+
+        return name + " depth: " + lastDepth + " (max " + maxDepth + ") drain: "
+                + (lastDrainTime / 1000) + "us (max " + (maxDrainTime / 1000) + "us) overflow: " + overflowCount;
+    }
+}
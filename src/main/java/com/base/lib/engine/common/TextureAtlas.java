@@ -15,21 +15,29 @@ import java.util.Comparator;
 import java.util.List;
 
 /**
+ * Packs bitmaps into atlas pages by MaxRects, page is at most {@link BaseGL#getTextureMaxSize()} big,
+ * bitmaps which doesn't fit into page spill onto next one.
+ * Bitmaps are padded and their edge pixels extruded, so filtering doesn't bleed neighbours in.
+ * Packed pages and layout can be saved to internal storage and loaded by later launches without packing,
+ * see {@link #save(int)} and {@link #load(String, int)}.
+ * <p>
  * 10 Created by doctor on 16.8.13.
  */
 public class TextureAtlas {
 
+    private static final int DEFAULT_PAGE_SIZE = 2048;
+
     private List<TextureInfo> textureList;
     private List<BitmapInfo> bitmapList;
+    private List<Bitmap> pages;
+    private int[] pageSizes; // width, height of every page
 
     private String atlasName;
     private boolean prescale;
 
-    private enum PlaceTo{ LEFT, DOWN }
-    private static final float maxDim = 2048*2048;
-    private float dim;
-    private float currWidth = 0;
-    private float currHeight = 0;
+    private int maxSize;
+    private int padding = 2;
+    private int extrude = 1;
 
     public TextureAtlas(String atlasName){
 
@@ -42,6 +50,30 @@ public class TextureAtlas {
         this.prescale = prescale;
     }
 
+    /**
+     * @param size max width and height of page, 0 asks GL (on GL thread) or uses 2048
+     */
+    public void setMaxPageSize(int size){
+
+        maxSize = size;
+    }
+
+    /**
+     * @param padding empty pixels between bitmaps
+     */
+    public void setPadding(int padding){
+
+        this.padding = padding;
+    }
+
+    /**
+     * @param extrude pixels of bitmap edge repeated around bitmap
+     */
+    public void setExtrude(int extrude){
+
+        this.extrude = extrude;
+    }
+
     public void add(String file, Type type){
 
         String name = file.substring(file.lastIndexOf('/')+1, file.lastIndexOf('.'));
@@ -65,193 +97,239 @@ public class TextureAtlas {
 
     public void add(Bitmap bitmap, String name){
 
-        float w = bitmap.getWidth();
-        float h = bitmap.getHeight();
+        bitmapList.add(new BitmapInfo(bitmap, bitmapList.size(), name, bitmap.getWidth(), bitmap.getHeight()));
+    }
 
-        /*if(prescale){ //todo
+    /**
+     * packs added bitmaps, recycles them
+     *
+     * @return first page, see {@link #getPages()} for the others
+     */
+    public Bitmap buildAtlas(){
 
-            if(w > Base.screenWidth) w = Base.screenWidth;
+        List<Bitmap> pages = build();
+        if(pages.size() > 1){
+            Base.logV("TextureAtlas", atlasName + " spilled onto " + pages.size() + " pages, see getPages()");
+        }
+
+        return pages.isEmpty() ? null : pages.get(0);
+    }
 
-            if(h > Base.screenHeight) h = Base.screenHeight;
+    /**
+     * packs added bitmaps into pages, recycles them
+     */
+    public List<Bitmap> build(){
 
-            if(w != bitmap.getWidth() || h != bitmap.getHeight()){
-                bitmap = Bitmap.createScaledBitmap(bitmap, (int)w, (int)h, true);  //scale down
+        int size = maxSize;
+        if(size <= 0){
+            size = BaseGL.GLCreated ? BaseGL.getTextureMaxSize() : 0;
+            if(size <= 0){
+                size = DEFAULT_PAGE_SIZE;
             }
-        }*/
-
-        dim += w*h;
-        if(dim > maxDim){
-            Base.logV("Monkey's can't add next image to current atlas. \n " +
-                      "Maximum bitmap size: "+ BaseGL.getTextureMaxSize() +" x "+ BaseGL.getTextureMaxSize());
-        } else {
-            bitmapList.add(new BitmapInfo(bitmap, bitmapList.size(), name, bitmap.getWidth(), bitmap.getHeight()));
         }
-    }
 
-    private void calcSizes(){
-        currWidth = 0;
-        currHeight = 0;
+        // longer side first suits MaxRects best
+        Collections.sort(bitmapList, new Comparator<BitmapInfo>() {
+            @Override
+            public int compare(BitmapInfo a, BitmapInfo b) {
+                int sideA = Math.max(a.width, a.height);
+                int sideB = Math.max(b.width, b.height);
+                return sideA == sideB ? b.width * b.height - a.width * a.height : sideB - sideA;
+            }
+        });
+
+        final int border = extrude * 2 + padding;
+        List<MaxRectsPacker> packers = new ArrayList<MaxRectsPacker>();
+        List<BitmapInfo> placed = new ArrayList<BitmapInfo>(bitmapList.size());
+        int[] position = new int[2];
         for(BitmapInfo bi : bitmapList){
-            float right = bi.centerX+bi.hWidth;
-            float bottom = bi.centerY+bi.hHeight;
-            if(right > currWidth){
-                currWidth = right;
+            int w = bi.width + border;
+            int h = bi.height + border;
+            if(w > size + padding || h > size + padding){
+                Base.logE("TextureAtlas", "Monkeys can't fit " + bi.name + " (" + bi.width + " x " + bi.height + ") into atlas page " + size + " x " + size);
+                bi.bitmap.recycle();
+                continue;
             }
-            if(bottom > currHeight){
-                currHeight = bottom;
+
+            int page = 0;
+            for(; page < packers.size(); page++){
+                if(packers.get(page).insert(w, h, position)){
+                    break;
+                }
             }
+            if(page == packers.size()){
+                // padding is not needed behind last column and row
+                MaxRectsPacker packer = new MaxRectsPacker(size + padding, size + padding);
+                packers.add(packer);
+                packer.insert(w, h, position);
+            }
+
+            bi.page = page;
+            bi.x = position[0] + extrude;
+            bi.y = position[1] + extrude;
+            placed.add(bi);
+        }
+
+        pageSizes = new int[packers.size() * 2];
+        pages = new ArrayList<Bitmap>(packers.size());
+        for(int i = 0; i < packers.size(); i++){
+            MaxRectsPacker packer = packers.get(i);
+            pageSizes[i * 2] = Math.max(1, Math.min(size, packer.getUsedWidth() - padding));
+            pageSizes[i * 2 + 1] = Math.max(1, Math.min(size, packer.getUsedHeight() - padding));
+            pages.add(Bitmap.createBitmap(pageSizes[i * 2], pageSizes[i * 2 + 1], Bitmap.Config.ARGB_8888));
+        }
+
+        for(BitmapInfo bi : placed){
+            draw(new Canvas(pages.get(bi.page)), bi);
         }
-    }
 
-    private boolean toLeft(BitmapInfo toPlace, BitmapInfo placed){
+        textureList = createTextureInfo(placed, pageSizes);
+        bitmapList.clear();
 
-       return tryToPlace(toPlace, placed, placed.centerX + placed.hWidth + toPlace.hWidth, placed.centerY - placed.hHeight + toPlace.hHeight);
+        return pages;
     }
 
-    private boolean toDown(BitmapInfo toPlace, BitmapInfo placed){
+    // draws bitmap and repeats its edges around by extrude
+    private void draw(Canvas canvas, BitmapInfo bi){
+
+        final Bitmap bitmap = bi.bitmap;
+        final int x = bi.x;
+        final int y = bi.y;
+        final int w = bi.width;
+        final int h = bi.height;
+        final int e = extrude;
+
+        canvas.drawBitmap(bitmap, null, new Rect(x, y, x + w, y + h), null);
+        if(e > 0){
+            canvas.drawBitmap(bitmap, new Rect(0, 0, w, 1), new Rect(x, y - e, x + w, y), null);
+            canvas.drawBitmap(bitmap, new Rect(0, h - 1, w, h), new Rect(x, y + h, x + w, y + h + e), null);
+            canvas.drawBitmap(bitmap, new Rect(0, 0, 1, h), new Rect(x - e, y, x, y + h), null);
+            canvas.drawBitmap(bitmap, new Rect(w - 1, 0, w, h), new Rect(x + w, y, x + w + e, y + h), null);
+
+            canvas.drawBitmap(bitmap, new Rect(0, 0, 1, 1), new Rect(x - e, y - e, x, y), null);
+            canvas.drawBitmap(bitmap, new Rect(w - 1, 0, w, 1), new Rect(x + w, y - e, x + w + e, y), null);
+            canvas.drawBitmap(bitmap, new Rect(0, h - 1, 1, h), new Rect(x - e, y + h, x, y + h + e), null);
+            canvas.drawBitmap(bitmap, new Rect(w - 1, h - 1, w, h), new Rect(x + w, y + h, x + w + e, y + h + e), null);
+        }
 
-        return tryToPlace(toPlace, placed, placed.centerX - placed.hWidth + toPlace.hWidth, placed.centerY + placed.hHeight + toPlace.hHeight);
+        bitmap.recycle();
+        bi.bitmap = null;
     }
 
-    private boolean tryToPlace(BitmapInfo toPlace, BitmapInfo placed, float centerX, float centerY){
+    /**
+     * writes pages as png and layout to internal storage, pages must not be recycled yet
+     *
+     * @param version of added bitmaps, {@link #load(String, int)} ignores saved atlas of other version
+     */
+    public void save(int version){
 
-        if (!Collision2.rectsHit(placed.centerX, placed.centerY, placed.hWidth, placed.hHeight, centerX, centerY, toPlace.hWidth, toPlace.hHeight)) {
-            toPlace.centerX = centerX;
-            toPlace.centerY = centerY;
-            calcSizes();
-            tryToPlaceAnother(toPlace, currWidth, currHeight, PlaceTo.LEFT);
-            return true;
-        } else {
-            return false;
+        if(pages == null){
+            Base.logE("TextureAtlas", "Monkeys can't save " + atlasName + ", atlas isn't built");
+            return;
+        }
+
+        StringBuilder layout = new StringBuilder();
+        layout.append(version).append('\n');
+        layout.append(pages.size()).append('\n');
+        for(int i = 0; i < pages.size(); i++){
+            FileHelper.saveInternal(getPageFile(i), BitmapHelper.getBitmapBytes(pages.get(i), Bitmap.CompressFormat.PNG, 100));
+            layout.append(pageSizes[i * 2]).append('\t').append(pageSizes[i * 2 + 1]).append('\n');
+        }
+        for(TextureInfo info : textureList){
+            int width = pageSizes[info.page * 2];
+            int height = pageSizes[info.page * 2 + 1];
+            layout.append(info.name).append('\t')
+                  .append(info.id).append('\t')
+                  .append(info.page).append('\t')
+                  .append(Math.round((info.centerX - info.hWidth) * width)).append('\t')
+                  .append(Math.round((info.centerY - info.hHeight) * height)).append('\t')
+                  .append(Math.round(info.hWidth * 2.0f * width)).append('\t')
+                  .append(Math.round(info.hHeight * 2.0f * height)).append('\n');
         }
+        FileHelper.saveInternal(getLayoutFile(atlasName), layout.toString());
     }
 
-    private void tryToPlaceAnother(BitmapInfo placed, float maxWidth, float maxHeight, PlaceTo placeTo){
-
-        final float rightB = placed.centerX + placed.hWidth;
-        final float bottomB = placed.centerY + placed.hHeight;
-
-        final float leftB = placed.centerX - placed.hWidth;
-        final float topB = placed.centerY - placed.hHeight;
-
-        for(BitmapInfo toPlace : bitmapList){
-
-            if (toPlace.centerX == 0) {
-                boolean newPlaced = false;
-                switch (placeTo) {
-                    case LEFT:
-                        if (tryToPlaceOnLeft(toPlace, leftB, rightB, topB, maxWidth, maxHeight)) {
-                            newPlaced = true;
-                        } else if (tryToPlaceDown(toPlace, leftB, topB, bottomB, maxWidth, maxHeight)) {
-                            newPlaced = true;
-                        }
-                        break;
-                    case DOWN:
-                        if (tryToPlaceDown(toPlace, leftB, topB, bottomB, maxWidth, maxHeight)) {
-                            newPlaced = true;
-                        } else if (tryToPlaceOnLeft(toPlace, leftB, rightB, topB, maxWidth, maxHeight)) {
-                            newPlaced = true;
-                        }
-                        break;
-                }
-                if(newPlaced){
-                    break;
+    /**
+     * loads layout saved by {@link #save(int)}, page images stay on internal storage, see {@link #getPageFile(int)}
+     *
+     * @return null if atlas of given version isn't saved
+     */
+    public static TextureAtlas load(String atlasName, int version){
+
+        if(!FileHelper.existInternal(getLayoutFile(atlasName), false)){
+            return null;
+        }
+
+        String[] lines = FileHelper.loadInternalText(getLayoutFile(atlasName)).split("\n");
+        try {
+            if(Integer.parseInt(lines[0].trim()) != version){
+                return null;
+            }
+
+            TextureAtlas atlas = new TextureAtlas(atlasName);
+            int pageCount = Integer.parseInt(lines[1].trim());
+            atlas.pageSizes = new int[pageCount * 2];
+            for(int i = 0; i < pageCount; i++){
+                String[] size = lines[2 + i].split("\t");
+                atlas.pageSizes[i * 2] = Integer.parseInt(size[0]);
+                atlas.pageSizes[i * 2 + 1] = Integer.parseInt(size[1]);
+            }
+
+            List<BitmapInfo> rects = new ArrayList<BitmapInfo>();
+            for(int i = 2 + pageCount; i < lines.length; i++){
+                String[] item = lines[i].split("\t");
+                if(item.length < 7){
+                    continue;
                 }
+                BitmapInfo bi = new BitmapInfo(null, Integer.parseInt(item[1]), item[0], Integer.parseInt(item[5]), Integer.parseInt(item[6]));
+                bi.page = Integer.parseInt(item[2]);
+                bi.x = Integer.parseInt(item[3]);
+                bi.y = Integer.parseInt(item[4]);
+                rects.add(bi);
             }
+            atlas.textureList = createTextureInfo(rects, atlas.pageSizes);
+
+            return atlas;
+        } catch (RuntimeException e) {
+            Base.logE("TextureAtlas", "Monkeys can't read layout of " + atlasName + ": " + e.getMessage());
+            return null;
         }
     }
 
-    private boolean tryToPlaceOnLeft(BitmapInfo toPlace, float leftB, float rightB, float topB, float maxWidth, float maxHeight){
-
-        if (rightB + toPlace.hWidth * 2 <= maxWidth && topB + toPlace.hHeight * 2 <= maxHeight && notCollide(toPlace, rightB+toPlace.hWidth, topB+toPlace.hHeight)) {
-            toPlace.centerX = rightB + toPlace.hWidth;
-            toPlace.centerY = topB + toPlace.hHeight;
-            tryToPlaceAnother(toPlace, maxWidth, maxHeight, PlaceTo.DOWN);
-            return true;
-        } else if(notCollide(toPlace, leftB-toPlace.hWidth, topB+toPlace.hHeight) && leftB-toPlace.hWidth*2 >= 0){
-            toPlace.centerX = leftB - toPlace.hWidth;
-            toPlace.centerY = topB + toPlace.hHeight;
-            tryToPlaceAnother(toPlace, maxWidth, maxHeight, PlaceTo.DOWN);
-            return true;
-        } else {
-            return false;
-        }
+    private static String getLayoutFile(String atlasName){
+
+        return atlasName + "_atlas.txt";
     }
 
-    private boolean tryToPlaceDown(BitmapInfo toPlace, float leftB, float topB, float bottomB, float maxWidth, float maxHeight){
-
-        if (bottomB + toPlace.hHeight * 2 <= maxHeight && leftB + toPlace.hWidth * 2 <= maxWidth && notCollide(toPlace, leftB+toPlace.hWidth, bottomB+toPlace.hHeight)) {
-            toPlace.centerX = leftB + toPlace.hWidth;
-            toPlace.centerY = bottomB + toPlace.hHeight;
-            tryToPlaceAnother(toPlace, maxWidth, maxHeight, PlaceTo.LEFT);
-            return true;
-        } else if(notCollide(toPlace, leftB+toPlace.hWidth, topB-toPlace.hHeight) && topB-toPlace.hHeight*2 >= 0){
-            toPlace.centerX = leftB + toPlace.hWidth;
-            toPlace.centerY = topB - toPlace.hHeight;
-            tryToPlaceAnother(toPlace, maxWidth,maxHeight, PlaceTo.LEFT);
-            return true;
-        } else {
-            return false;
-        }
+    /**
+     * @return name of page image on internal storage, see {@link #save(int)}
+     */
+    public String getPageFile(int page){
+
+        return atlasName + "_" + page + ".png";
     }
 
-    private boolean notCollide(BitmapInfo toPlace, float centerX, float centerY){
+    /**
+     * @return built pages, null if atlas was loaded
+     */
+    public List<Bitmap> getPages(){
 
-        for(BitmapInfo placed : bitmapList){
-            if(placed.centerX != 0){
-                if(Collision2.rectsHit(placed.centerX, placed.centerY, placed.hWidth, placed.hHeight,
-                    centerX, centerY, toPlace.hWidth, toPlace.hHeight)){
-                    return false;
-                }
-            }
-        }
-        return true;
+        return pages;
     }
 
-    public Bitmap buildAtlas(){
+    public int getPageCount(){
 
-        bitmapList = sort(bitmapList);
-
-        BitmapInfo placed = bitmapList.get(0);
-        placed.centerX = placed.hWidth;
-        placed.centerY = placed.hHeight;
-        currWidth = placed.hWidth*2;
-        currHeight = placed.hHeight*2;
-
-        final int count = bitmapList.size();
-        for (int i = 1; i < count; i++) {
-            BitmapInfo toPlace = bitmapList.get(i);
-            if (toPlace.centerX == 0) {
-                for (int j = 0; j < i; j++) {
-                    placed = bitmapList.get(j);
-
-                    if (Collision2.rectsHit(placed.centerX, placed.centerY, placed.hWidth, placed.hHeight, toPlace.centerX, toPlace.centerY, toPlace.hWidth, toPlace.hHeight)) {
-                        if (currWidth <= currHeight) {
-                            if (!toLeft(toPlace, placed)) {
-                                toDown(toPlace, placed);
-                            }
-                        } else {
-                            if (!toDown(toPlace, placed)) {
-                                toLeft(toPlace, placed);
-                            }
-                        }
-                    }
-                }
-            }
-        }
+        return pageSizes != null ? pageSizes.length / 2 : 0;
+    }
 
-        Bitmap bitmap = Bitmap.createBitmap((int)(currWidth), (int)(currHeight), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bitmap);
+    public int getPageWidth(int page){
 
-        for(BitmapInfo bi : bitmapList){
-            int left = (int)(bi.centerX-bi.hWidth);
-            int top = (int)(bi.centerY-bi.hHeight);
-            canvas.drawBitmap(bi.bitmap, null, new Rect(left, top, left + (int)bi.hWidth*2, top + (int)bi.hHeight*2), null);
-        }
+        return pageSizes[page * 2];
+    }
 
-        textureList = createTextureInfo(bitmapList, currWidth, currHeight);
+    public int getPageHeight(int page){
 
-        return bitmap;
+        return pageSizes[page * 2 + 1];
     }
 
     public List<TextureInfo> getTextureInfoList(){
@@ -279,57 +357,44 @@ public class TextureAtlas {
         return null;
     }
 
+    // texture coords of pixel rects, ordered by id
+    static List<TextureInfo> createTextureInfo(List<BitmapInfo> bitmapList, int[] pageSizes){
 
-    static List<TextureInfo> createTextureInfo(List<BitmapInfo> bitmapList, float width, float height){
-
-        List<TextureInfo> out = new ArrayList<TextureInfo>();
-
-        for(BitmapInfo bitmap : bitmapList){
+        List<TextureInfo> out = new ArrayList<TextureInfo>(bitmapList.size());
 
-            out.add(new TextureInfo(bitmap.id, bitmap.name, bitmap.centerX/width, 1.0f - bitmap.centerY/height, bitmap.hWidth/width, 1.0f/bitmap.hHeight/height));
-            bitmap.bitmap.recycle();
-            bitmap = null;
+        for(BitmapInfo bi : bitmapList){
+            float width = pageSizes[bi.page * 2];
+            float height = pageSizes[bi.page * 2 + 1];
+            TextureInfo info = new TextureInfo(bi.id, bi.name, (bi.x + bi.width * 0.5f) / width, (bi.y + bi.height * 0.5f) / height,
+                    bi.width * 0.5f / width, bi.height * 0.5f / height);
+            info.page = bi.page;
+            out.add(info);
         }
 
-        bitmapList.clear();
-        bitmapList = null;
-
-        return out;
-    }
-
-
-    static List<BitmapInfo> sort(List<BitmapInfo> textureList){
-
-        Collections.sort(textureList, new Comparator<BitmapInfo>() {
+        Collections.sort(out, new Comparator<TextureInfo>() {
             @Override
-            public int compare(BitmapInfo texture, BitmapInfo texture2) {
-
-                if(texture.hWidth*texture.hHeight > texture2.hWidth*texture2.hHeight){
-                    return -1;
-                } else {
-                    return 1;
-                }
+            public int compare(TextureInfo a, TextureInfo b) {
+                return a.id - b.id;
             }
         });
 
-        return textureList;
+        return out;
     }
 
-    class BitmapInfo extends TextureInfo{
+    static class BitmapInfo extends TextureInfo{
 
         protected Bitmap bitmap;
+        protected int x;
+        protected int y;
+        protected int width;
+        protected int height;
 
-        protected BitmapInfo(Bitmap bitmap, int id, String name, float width, float height){
+        protected BitmapInfo(Bitmap bitmap, int id, String name, int width, int height){
             this.bitmap = bitmap;
             this.id = id;
             this.name = name;
-            this.hWidth = width/2.0f;
-            this.hHeight = height/2.0f;
+            this.width = width;
+            this.height = height;
         }
-
     }
-
-
 }
-
-
@@ -11,6 +11,7 @@ public class TextureInfo {
     protected float centerY;
     protected float hWidth;
     protected float hHeight;
+    protected int page;
 
     public TextureInfo(){
 
@@ -69,6 +70,24 @@ public class TextureInfo {
         return name;
     }
 
+    public int getId() {
+
+        return id;
+    }
+
+    /**
+     * @return index of atlas page the texture is on
+     */
+    public int getPage() {
+
+        return page;
+    }
+
+    public void setPage(int page) {
+
+        this.page = page;
+    }
+
     public float getCenterX() {
 
         return centerX;
@@ -0,0 +1,220 @@
+package com.base.lib.engine.common;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * fixed pool of worker threads for data parallel work (skinning, particles, ...)
+ * <p>
+ * range [0, count) is split into chunks, workers and calling thread takes chunks until all are done,
+ * {@link #run(Task, int, int)} returns after last chunk is finished. Running of task doesn't allocate.
+ * Only one task runs at time, calls from more threads are serialized.
+ * </p>
+ */
+public class WorkerPool {
+
+    /**
+     * part of work, called with sub range of task
+     */
+    public interface Task {
+
+        /**
+         * @param start first index (inclusive)
+         * @param end   last index (exclusive)
+         */
+        void run(int start, int end);
+    }
+
+    private static WorkerPool instance;
+
+    private final Worker[] workers;
+    private final Object lock = new Object();
+    private final Object runLock = new Object();
+
+    private final AtomicLong ticket = new AtomicLong();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private Task task;
+    private int count;
+    private int chunkSize;
+    private long firstTicket;
+    private long lastTicket;
+    private int generation;
+    private volatile boolean running;
+    private volatile RuntimeException error;
+
+    /**
+     * @param threads number of worker threads, calling thread works too, so 0 means all work is done by caller
+     */
+    public WorkerPool(int threads) {
+
+        running = true;
+        workers = new Worker[Math.max(0, threads)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker("WorkerPool-" + i);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * @return shared pool with one worker less than available processors
+     */
+    public static synchronized WorkerPool get() {
+
+        if (instance == null) {
+            instance = new WorkerPool(Runtime.getRuntime().availableProcessors() - 1);
+        }
+
+        return instance;
+    }
+
+    /**
+     * @return number of threads working on task including calling thread
+     */
+    public int getParallelism() {
+
+        return workers.length + 1;
+    }
+
+    /**
+     * runs task over range [0, count) and waits until is done
+     *
+     * @param minChunk minimal number of elements in one chunk, small ranges runs directly on calling thread
+     */
+    public void run(Task task, int count, int minChunk) {
+
+        if (count <= 0) {
+            return;
+        }
+
+        int chunks = Math.min(getParallelism() * 4, count / Math.max(1, minChunk));
+        if (chunks < 2 || workers.length == 0 || !running) {
+            task.run(0, count);
+            return;
+        }
+
+        synchronized (runLock) {
+            synchronized (lock) {
+                this.task = task;
+                this.count = count;
+                this.chunkSize = (count + chunks - 1) / chunks;
+                chunks = (count + chunkSize - 1) / chunkSize;
+                firstTicket = ticket.get();
+                lastTicket = firstTicket + chunks;
+                pending.set(chunks);
+                error = null;
+                generation++;
+                lock.notifyAll();
+            }
+
+            work(task, count, chunkSize, firstTicket, lastTicket);
+
+            synchronized (lock) {
+                while (pending.get() > 0) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                this.task = null;
+            }
+
+            if (error != null) {
+                RuntimeException e = error;
+                error = null;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * takes chunks of current task until there is none, ticket is taken by CAS,
+     * so thread which still works with previous task can't steal chunk of next one
+     */
+    private void work(Task task, int count, int chunkSize, long first, long last) {
+
+        while (true) {
+            long t = ticket.get();
+            if (t >= last) {
+                return;
+            }
+            if (!ticket.compareAndSet(t, t + 1)) {
+                continue;
+            }
+
+            int start = (int) (t - first) * chunkSize;
+            int end = Math.min(count, start + chunkSize);
+            try {
+                task.run(start, end);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+
+            if (pending.decrementAndGet() == 0) {
+                synchronized (lock) {
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * stops worker threads, next tasks runs only on calling thread
+     */
+    public void shutdown() {
+
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+
+        synchronized (WorkerPool.class) {
+            if (instance == this) {
+                instance = null;
+            }
+        }
+    }
+
+    private class Worker extends Thread {
+
+        private int seen;
+
+        private Worker(String name) {
+            setName(name);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+
+            while (true) {
+                Task task;
+                int count, chunkSize;
+                long first, last;
+
+                synchronized (lock) {
+                    while (running && (seen == generation || WorkerPool.this.task == null)) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (!running) {
+                        return;
+                    }
+                    seen = generation;
+                    task = WorkerPool.this.task;
+                    count = WorkerPool.this.count;
+                    chunkSize = WorkerPool.this.chunkSize;
+                    first = firstTicket;
+                    last = lastTicket;
+                }
+
+                work(task, count, chunkSize, first, last);
+            }
+        }
+    }
+}
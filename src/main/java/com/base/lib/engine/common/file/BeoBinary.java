@@ -0,0 +1,661 @@
+package com.base.lib.engine.common.file;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import com.base.lib.engine.Base;
+import com.base.lib.engine.DrawableBuffer;
+import com.base.lib.engine.animation.BaseSkelet;
+import com.base.lib.engine.animation.Bone;
+import com.base.lib.engine.animation.VertGroup;
+import com.base.lib.engine.common.BaseDrawableData;
+import com.base.lib.engine.common.other.Point3;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * binary "beo-bin" mesh format, loaded straight into direct buffers ready for GL
+ * <p>
+ * layout (little-endian, every block aligned to 4 bytes):
+ * <br>header: "BEOB" | int version | int chunk count
+ * <br>chunk: int tag | int byte length | payload
+ * <br>OBJ : string name | int cpv | float sizeX, sizeY, sizeZ | floats vertices | floats normals | floats textures | shorts faces
+ * <br>GRPS: int mode (1 skelet, 2 frame animation) | int count | (string name | floats verts) * count
+ * <br>SKEL: int count | (string name | int parent | float head xyz | float tail xyz) * count
+ * <br>FRMS: int frames | int bones | float rotations [frame][bone][xyz]
+ * <br>string: int byte length | utf-8 bytes | padding, floats/shorts: int count | values | padding
+ * </p>
+ * Unknown chunks are skipped, so newer files stay readable. Uncompressed assets and files are memory mapped,
+ * vertex, texture, normal and face buffers are then views into mapped file without copying.
+ */
+public class BeoBinary {
+
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = tag("BEOB");
+    private static final int OBJECT = tag("OBJ ");
+    private static final int GROUPS = tag("GRPS");
+    private static final int SKELET = tag("SKEL");
+    private static final int FRAMES = tag("FRMS");
+
+    private static final int GROUPS_SKELET = 1;
+    private static final int GROUPS_FRAMES = 2;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final List<String> names = new ArrayList<>();
+    private final List<int[]> info = new ArrayList<>();
+    private final List<float[]> sizes = new ArrayList<>();
+    private final List<FloatBuffer> vertices = new ArrayList<>();
+    private final List<FloatBuffer> normals = new ArrayList<>();
+    private final List<FloatBuffer> textures = new ArrayList<>();
+    private final List<ShortBuffer> faces = new ArrayList<>();
+
+    private BaseDrawableData[] data;
+    private VertGroup[] groups;
+    private Bone[] bones;
+    private boolean skeletAnim;
+    private boolean frameAnim;
+
+    /**
+     * parses beo-bin data, buffer must stay unchanged while returned buffers are used
+     */
+    public BeoBinary(ByteBuffer buffer) {
+
+        read(buffer.order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    private static int tag(String tag) {
+
+        return (tag.charAt(0)) | (tag.charAt(1) << 8) | (tag.charAt(2) << 16) | (tag.charAt(3) << 24);
+    }
+
+    private static int pad(int bytes) {
+
+        return (bytes + 3) & ~3;
+    }
+
+    private void read(ByteBuffer buffer) {
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Monkeys can't read beo-bin, wrong file header");
+        }
+
+        int version = buffer.getInt();
+        if (version > VERSION) {
+            Base.logE("BeoBinary", "File version " + version + " is newer than loader version " + VERSION + ", unknown chunks are skipped");
+        }
+
+        int chunks = buffer.getInt();
+        for (int c = 0; c < chunks; c++) {
+            int tag = buffer.getInt();
+            int length = buffer.getInt();
+            int end = buffer.position() + length;
+
+            if (tag == OBJECT) {
+                readObject(buffer);
+            } else if (tag == GROUPS) {
+                readGroups(buffer);
+            } else if (tag == SKELET) {
+                readSkelet(buffer);
+            } else if (tag == FRAMES) {
+                readFrames(buffer);
+            }
+
+            buffer.position(end);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+
+        int length = buffer.getInt();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        buffer.position(buffer.position() + pad(length) - length);
+
+        return new String(bytes, UTF8);
+    }
+
+    private static FloatBuffer readFloats(ByteBuffer buffer) {
+
+        int count = buffer.getInt();
+        if (count == 0) {
+            return null;
+        }
+
+        int bytes = count * 4;
+        ByteBuffer slice = slice(buffer, bytes);
+        buffer.position(buffer.position() + bytes);
+
+        return slice.asFloatBuffer();
+    }
+
+    private static ShortBuffer readShorts(ByteBuffer buffer) {
+
+        int count = buffer.getInt();
+        if (count == 0) {
+            return null;
+        }
+
+        int bytes = count * 2;
+        ByteBuffer slice = slice(buffer, bytes);
+        buffer.position(buffer.position() + pad(bytes));
+
+        return slice.asShortBuffer();
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int bytes) {
+
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(buffer.position() + bytes);
+        slice = slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+        if (!slice.isDirect() || ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) {
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+            if (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN) {
+                direct.put(slice);
+            } else {
+                while (slice.hasRemaining()) {
+                    direct.put(slice.get());
+                }
+            }
+            direct.position(0);
+            return direct;
+        }
+
+        return slice;
+    }
+
+    private static float[] toArray(FloatBuffer buffer) {
+
+        if (buffer == null) {
+            return null;
+        }
+
+        float[] array = new float[buffer.capacity()];
+        buffer.position(0);
+        buffer.get(array).position(0);
+
+        return array;
+    }
+
+    private static short[] toArray(ShortBuffer buffer) {
+
+        if (buffer == null) {
+            return null;
+        }
+
+        short[] array = new short[buffer.capacity()];
+        buffer.position(0);
+        buffer.get(array).position(0);
+
+        return array;
+    }
+
+    private void readObject(ByteBuffer buffer) {
+
+        names.add(readString(buffer));
+        info.add(new int[]{buffer.getInt()});
+        sizes.add(new float[]{buffer.getFloat(), buffer.getFloat(), buffer.getFloat()});
+        vertices.add(readFloats(buffer));
+        normals.add(readFloats(buffer));
+        textures.add(readFloats(buffer));
+        faces.add(readShorts(buffer));
+    }
+
+    private void readGroups(ByteBuffer buffer) {
+
+        int mode = buffer.getInt();
+        skeletAnim = mode == GROUPS_SKELET;
+        frameAnim = mode == GROUPS_FRAMES;
+
+        groups = new VertGroup[buffer.getInt()];
+        for (int i = 0; i < groups.length; i++) {
+            String name = readString(buffer);
+            int count = buffer.getInt();
+            float[] verts = new float[count];
+            for (int j = 0; j < count; j++) {
+                verts[j] = buffer.getFloat();
+            }
+            groups[i] = new VertGroup(name, verts);
+        }
+    }
+
+    private void readSkelet(ByteBuffer buffer) {
+
+        bones = new Bone[buffer.getInt()];
+        for (int i = 0; i < bones.length; i++) {
+            Bone bone = new Bone();
+            bone.setName(readString(buffer));
+            int parent = buffer.getInt();
+            if (parent != -1) {
+                bone.setParent(bones[parent]);
+            }
+            bone.setHead(new Point3(buffer.getFloat(), buffer.getFloat(), buffer.getFloat()));
+            bone.setTail(new Point3(buffer.getFloat(), buffer.getFloat(), buffer.getFloat()));
+            bones[i] = bone;
+        }
+    }
+
+    private void readFrames(ByteBuffer buffer) {
+
+        int frames = buffer.getInt();
+        int count = buffer.getInt();
+
+        Point3[][] actions = new Point3[count][frames];
+        for (int f = 0; f < frames; f++) {
+            for (int b = 0; b < count; b++) {
+                actions[b][f] = new Point3(buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+            }
+        }
+
+        for (int b = 0; b < count && bones != null && b < bones.length; b++) {
+            bones[b].setFramesAction(actions[b]);
+        }
+    }
+
+    /**
+     * @return number of objects
+     */
+    public int getObjectsCount() {
+
+        return names.size();
+    }
+
+    public String getName(int index) {
+
+        return names.get(index);
+    }
+
+    /**
+     * @return direct vertex buffer of object (view into file if mapped)
+     */
+    public FloatBuffer getVerticeBuffer(int index) {
+
+        return vertices.get(index);
+    }
+
+    public FloatBuffer getNormalBuffer(int index) {
+
+        return normals.get(index);
+    }
+
+    public FloatBuffer getTextureBuffer(int index) {
+
+        return textures.get(index);
+    }
+
+    public ShortBuffer getFaceBuffer(int index) {
+
+        return faces.get(index);
+    }
+
+    /**
+     * sets buffers of object into DrawableBuffer without copying
+     */
+    public DrawableBuffer applyTo(int index, DrawableBuffer buffer) {
+
+        ShortBuffer face = faces.get(index);
+
+        buffer.setCoordsPerVertice(info.get(index)[0]);
+        buffer.setVerticeBuffer(vertices.get(index));
+        buffer.setTextureBuffer(textures.get(index));
+        buffer.setFaceBuffer(face);
+        buffer.setFaceCount(face != null ? face.capacity() : 0);
+
+        return buffer;
+    }
+
+    /**
+     * @return objects as BaseDrawableData, arrays are copied from buffers at first call
+     */
+    public BaseDrawableData[] getData() {
+
+        if (data == null) {
+            data = new BaseDrawableData[names.size()];
+            for (int i = 0; i < data.length; i++) {
+                BaseDrawableData d = new BaseDrawableData();
+                d.name = names.get(i);
+                d.cpv = info.get(i)[0];
+                d.sizeX = sizes.get(i)[0];
+                d.sizeY = sizes.get(i)[1];
+                d.sizeZ = sizes.get(i)[2];
+                d.vertices = toArray(vertices.get(i));
+                d.normals = toArray(normals.get(i));
+                d.textures = toArray(textures.get(i));
+                d.faceOrder = toArray(faces.get(i));
+                data[i] = d;
+            }
+        }
+
+        return data;
+    }
+
+    public BaseDrawableData getBaseDrawableData() {
+
+        return getData()[0];
+    }
+
+    public BaseDrawableData getBaseDrawableData(int index) {
+
+        return getData()[index];
+    }
+
+    public BaseDrawableData getObject(String name) {
+
+        int index = names.indexOf(name);
+
+        return index != -1 ? getData()[index] : null;
+    }
+
+    public BaseSkelet getSkelet() {
+
+        return new BaseSkelet(bones, groups);
+    }
+
+    public Bone[] getBones() {
+
+        return bones;
+    }
+
+    public VertGroup[] getVertGroups() {
+
+        return groups;
+    }
+
+    /**
+     * loads beo-bin from assets, uncompressed assets are memory mapped
+     */
+    public static BeoBinary assets(String path) {
+
+        AssetManager assets = Base.appContext.getAssets();
+        try {
+            AssetFileDescriptor fd = assets.openFd(path);
+            FileInputStream stream = fd.createInputStream();
+            ByteBuffer buffer = stream.getChannel().map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength());
+            stream.close();
+            return new BeoBinary(buffer);
+        } catch (IOException e) {
+            // compressed asset can't be mapped
+        }
+
+        try {
+            InputStream is = assets.open(path, AssetManager.ACCESS_STREAMING);
+            BeoBinary binary = new BeoBinary(slurp(is));
+            is.close();
+            return binary;
+        } catch (IOException e) {
+            Base.logE("BeoBinary", e.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * loads beo-bin from raw resource, resource is memory mapped if possible
+     */
+    public static BeoBinary resource(int resourceId) {
+
+        try {
+            AssetFileDescriptor fd = Base.appContext.getResources().openRawResourceFd(resourceId);
+            if (fd != null) {
+                FileInputStream stream = fd.createInputStream();
+                ByteBuffer buffer = stream.getChannel().map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength());
+                stream.close();
+                return new BeoBinary(buffer);
+            }
+        } catch (IOException e) {
+            // compressed resource can't be mapped
+        }
+
+        try {
+            InputStream is = Base.appContext.getResources().openRawResource(resourceId);
+            BeoBinary binary = new BeoBinary(slurp(is));
+            is.close();
+            return binary;
+        } catch (IOException e) {
+            Base.logE("BeoBinary", e.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * maps beo-bin file
+     */
+    public static BeoBinary file(File file) {
+
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            raf.close();
+            return new BeoBinary(buffer);
+        } catch (IOException e) {
+            Base.logE("BeoBinary", "File: " + file + " cannot be read: " + e.getMessage());
+        }
+
+        return null;
+    }
+
+    public static BeoBinary bytes(byte[] bytes) {
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).position(0);
+
+        return new BeoBinary(buffer);
+    }
+
+    private static ByteBuffer slurp(InputStream is) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(is.available(), 4096));
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = is.read(chunk)) != -1) {
+            if (buffer.remaining() < read) {
+                ByteBuffer bigger = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + read));
+                buffer.flip();
+                bigger.put(buffer);
+                buffer = bigger;
+            }
+            buffer.put(chunk, 0, read);
+        }
+        buffer.flip();
+
+        return buffer;
+    }
+
+    /*--------- CONVERTER ------------*/
+
+    /**
+     * converts text .beo file into beo-bin file
+     */
+    public static void convert(File beo, File bin) throws IOException {
+
+        BeoParser parser = new BeoParser(FileHelper.readFile(beo));
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(bin));
+        try {
+            write(parser, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * writes content of parsed text .beo into stream as beo-bin,
+     * call before BeoParser.getSkelet() which moves vert groups into bone space
+     */
+    public static void write(BeoParser parser, OutputStream out) throws IOException {
+
+        BaseDrawableData[] objects = parser.getData();
+        VertGroup[] groups = parser.getVertGroups();
+        Bone[] bones = parser.getBones();
+
+        List<ByteBuffer> chunks = new ArrayList<>();
+
+        for (BaseDrawableData d : objects) {
+            Writer w = new Writer(OBJECT);
+            w.string(d.name);
+            w.putInt(d.cpv);
+            w.putFloat(d.sizeX);
+            w.putFloat(d.sizeY);
+            w.putFloat(d.sizeZ);
+            w.floats(d.vertices);
+            w.floats(d.normals);
+            w.floats(d.textures);
+            w.shorts(d.faceOrder);
+            chunks.add(w.finish());
+        }
+
+        if (groups != null) {
+            Writer w = new Writer(GROUPS);
+            w.putInt(parser.isFrameAnim() ? GROUPS_FRAMES : GROUPS_SKELET);
+            w.putInt(groups.length);
+            for (VertGroup group : groups) {
+                w.string(group.name);
+                w.floats(group.verts);
+            }
+            chunks.add(w.finish());
+        }
+
+        if (bones != null) {
+            Writer w = new Writer(SKELET);
+            w.putInt(bones.length);
+            for (Bone bone : bones) {
+                int parent = -1;
+                for (int i = 0; i < bones.length; i++) {
+                    if (bones[i] == bone.getParent()) {
+                        parent = i;
+                        break;
+                    }
+                }
+                w.string(bone.getName());
+                w.putInt(parent);
+                w.putFloat(bone.getHead().x);
+                w.putFloat(bone.getHead().y);
+                w.putFloat(bone.getHead().z);
+                w.putFloat(bone.getTail().x);
+                w.putFloat(bone.getTail().y);
+                w.putFloat(bone.getTail().z);
+            }
+            chunks.add(w.finish());
+
+            if (bones.length > 0 && bones[0].getFrameAction() != null) {
+                int frames = bones[0].getFramesCount();
+                w = new Writer(FRAMES);
+                w.putInt(frames);
+                w.putInt(bones.length);
+                for (int f = 0; f < frames; f++) {
+                    for (Bone bone : bones) {
+                        Point3 p = bone.getFrameAction(f);
+                        w.putFloat(p.x);
+                        w.putFloat(p.y);
+                        w.putFloat(p.z);
+                    }
+                }
+                chunks.add(w.finish());
+            }
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(chunks.size());
+        out.write(header.array());
+        for (ByteBuffer chunk : chunks) {
+            out.write(chunk.array(), 0, chunk.limit());
+        }
+        out.flush();
+    }
+
+    private static class Writer {
+
+        private ByteBuffer buffer;
+
+        private Writer(int tag) {
+
+            buffer = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(tag);
+            buffer.putInt(0);
+        }
+
+        private void ensure(int bytes) {
+
+            if (buffer.remaining() < bytes) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes)).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.flip();
+                bigger.put(buffer);
+                buffer = bigger;
+            }
+        }
+
+        private void putInt(int value) {
+
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        private void putFloat(float value) {
+
+            ensure(4);
+            buffer.putFloat(value);
+        }
+
+        private void padding() {
+
+            while ((buffer.position() & 3) != 0) {
+                buffer.put((byte) 0);
+            }
+        }
+
+        private void string(String value) {
+
+            byte[] bytes = (value != null ? value : "").getBytes(UTF8);
+            ensure(8 + bytes.length);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+            padding();
+        }
+
+        private void floats(float[] values) {
+
+            int count = values != null ? values.length : 0;
+            ensure(4 + count * 4);
+            buffer.putInt(count);
+            for (int i = 0; i < count; i++) {
+                buffer.putFloat(values[i]);
+            }
+        }
+
+        private void shorts(short[] values) {
+
+            int count = values != null ? values.length : 0;
+            ensure(8 + count * 2);
+            buffer.putInt(count);
+            for (int i = 0; i < count; i++) {
+                buffer.putShort(values[i]);
+            }
+            padding();
+        }
+
+        private ByteBuffer finish() {
+
+            buffer.putInt(4, buffer.position() - 8);
+            buffer.flip();
+
+            return buffer;
+        }
+    }
+}
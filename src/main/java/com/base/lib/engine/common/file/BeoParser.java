@@ -12,46 +12,19 @@ import com.base.lib.engine.common.other.TrainedMonkey;
 import com.base.lib.engine.animation.VertGroup;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedReader;
-import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.StringReader;
 
 
 public class BeoParser {
 
     private static final double PARSERVERSION = 0.256;
 
-    private static final String OBJECTINFO = "ob ";
-    private static final String FILEVERSION = "version ";
-    private static final String COORDSPERVERTICE = "cpv ";
-    private static final String BOUNCINGBOX = "bbox ";
-
-    private static final String FRAME = "#f";
-    private static final String VERTICES = "v ";
-    private static final String NORMALS = "n ";
-    private static final String TEXTURES = "t ";
-    private static final String FACES = "f ";
-    private static final String TEXTUREFILE = "texture ";
-
-    private static final String FRAMETION = "af ";
-    private static final String ANIMATION = "a ";
-    private static final String WEIGHT = "w ";
-    private static final String SKELET = "skelet ";
-    private static final String FRAMESCOUNT = "frames ";
-
-    private static final String BLOCKENDS = "}";
-
     private BaseDrawableData data[];
     private Bone[] bones;
-    private short[][] faceOrder;
     private VertGroup[] groups;
-    private int objectsCount;
-    private int cFaceIndex;
     private int cFrameIndex;
     private boolean skeletAnim = false;
     private boolean frameAnim = false;
@@ -83,233 +56,168 @@ public class BeoParser {
 
     public BeoParser(byte[] bytes) {
 
-        try {
-            parser256(new BufferedReader(new StringReader(new String(bytes))));
-        } catch (IOException e) {
-            Base.logE("BeoParser", e.getMessage());
-        }
+        parse(new TextScanner(bytes));
     }
 
     private void readFileFromIS(BufferedInputStream is) throws IOException {
 
-        BufferedReader br = new BufferedReader(new InputStreamReader(new DataInputStream(is)));
-        parser256(br);
-        br.close();
+        parse(TextScanner.from(is));
         is.close();
     }
 
-    private void parser256(BufferedReader br) throws IOException {
+    private void parse(TextScanner sc) {
 
         data = new BaseDrawableData[0];
         int currentIndex = -1;
-        String line;
 
-        while ((line = br.readLine()) != null) {
+        while (sc.hasNext()) {
 
             /** v */
-            if (line.startsWith(VERTICES)) {
+            if (sc.match("v")) {
 
-                String[] token = line.split(" ");
-                int count = Integer.parseInt(token[1]);
+                int count = sc.nextInt();
+                sc.skipToken(); // {
                 data[currentIndex].vertices = new float[count];
 
                 if (skeletAnim) {
                     int index = 0;
                     int groupIndex = 0;
-                    while (!BLOCKENDS.equals(line = br.readLine())) {
-
-                        String[] vtoken = line.split(" ");
-                        int vcount = Integer.parseInt(vtoken[1]);
-                        groups[groupIndex] = new VertGroup();
-                        groups[groupIndex].name = vtoken[0];
-                        groups[groupIndex].verts = new float[vcount];
-                        for (int i = 0; i < vcount; i++) {
-                            float vert = Float.parseFloat(vtoken[i + 2]);
-                            data[currentIndex].vertices[index++] = vert;
-                            groups[groupIndex].verts[i] = vert;
-                        }
-                        groupIndex++;
+                    while (!sc.peek('}')) {
+
+                        VertGroup group = new VertGroup();
+                        group.name = sc.nextString();
+                        group.verts = new float[sc.nextInt()];
+                        sc.nextFloats(group.verts, 0, group.verts.length);
+                        System.arraycopy(group.verts, 0, data[currentIndex].vertices, index, group.verts.length);
+                        index += group.verts.length;
+                        groups[groupIndex++] = group;
                     }
                 } else if (frameAnim) {
-                    int index = 0;
                     int groupIndex = 0;
-                    while (!BLOCKENDS.equals(line = br.readLine())) {
-
-                        String[] vtoken = line.split(" ");
-                        groups[groupIndex] = new VertGroup();
-                        groups[groupIndex].name = vtoken[0];
-                        groups[groupIndex].verts = new float[count];
-                        for (int i = 0; i < count; i++) {
-                            float vert = Float.parseFloat(vtoken[i + 1]);
-                            groups[groupIndex].verts[i] = vert;
-                        }
-                        groupIndex++;
+                    while (!sc.peek('}')) {
+
+                        VertGroup group = new VertGroup();
+                        group.name = sc.nextString();
+                        group.verts = sc.nextFloats(new float[count], 0, count);
+                        groups[groupIndex++] = group;
                     }
                 } else {
-                    for (int i = 0; i < count; i++) {
-                        data[currentIndex].vertices[i] = Float.parseFloat(token[i + 3]);
-                    }
+                    sc.nextFloats(data[currentIndex].vertices, 0, count);
                 }
 
+                sc.skipLine();
                 continue;
             }
 
             /** n */
-            if(line.startsWith(NORMALS)){
-                String[] token = line.split(" ");
-
-                int count = Integer.parseInt(token[1]);
-                data[currentIndex].normals = new float[count];
-
-                for (int i = 0; i < count; i++) {
-                    data[currentIndex].normals[i] = Float.parseFloat(token[i + 3]);
-                }
+            if (sc.match("n")) {
 
+                int count = sc.nextInt();
+                sc.skipToken();
+                data[currentIndex].normals = sc.nextFloats(new float[count], 0, count);
+                sc.skipLine();
                 continue;
             }
 
             /** t */
-            if (line.startsWith(TEXTURES)) {
-
-                String[] token = line.split(" ");
-
-                int count = Integer.parseInt(token[1]);
-                data[currentIndex].textures = new float[count];
-
-                for (int i = 0; i < count; i++) {
-                    data[currentIndex].textures[i] = Float.parseFloat(token[i + 3]);
-                }
+            if (sc.match("t")) {
 
+                int count = sc.nextInt();
+                sc.skipToken();
+                data[currentIndex].textures = sc.nextFloats(new float[count], 0, count);
+                sc.skipLine();
                 continue;
             }
 
             /** f */
-            if (line.startsWith(FACES)) {
-
-                String[] token = line.split(" ");
-
-                int count = Integer.parseInt(token[1]);
-                if (objectsCount == 0) {
-                    data[currentIndex].faceOrder = new short[count];
-
-                    for (int i = 0; i < count; i++) {
-                        data[currentIndex].faceOrder[i] = Short.parseShort(token[i + 3]);
-                    }
-                } else {
-                    faceOrder[cFaceIndex] = new short[count];
-                    for (int i = 0; i < count; i++) {
-                        faceOrder[cFaceIndex][i] = Short.parseShort(token[i + 3]);
-                    }
-                    cFaceIndex++;
-                }
+            if (sc.match("f")) {
 
+                int count = sc.nextInt();
+                sc.skipToken();
+                data[currentIndex].faceOrder = sc.nextShorts(new short[count], 0, count);
+                sc.skipLine();
                 continue;
             }
 
             /** #f */ //static animation
-            if (line.startsWith(FRAME)) {
-
-                String[] token = line.split(" ");
-
-                int count = Integer.parseInt(token[1]);
-                float[] frame = new float[count];
-
-                for (int i = 0; i < count; i++) {
-                    frame[i] = Float.parseFloat(token[i + 1]);
-                }
-
-                groups[++cFrameIndex].verts = frame;
-            }
-
-            /** w */
-            if (line.startsWith(WEIGHT)){
+            if (sc.match("#f")) {
 
+                int count = sc.nextInt();
+                groups[++cFrameIndex].verts = sc.nextFloats(new float[count], 0, count);
+                sc.skipLine();
                 continue;
             }
 
             /** skelet */
-            if (line.startsWith(SKELET)){
-
-                String[] skeletInfo = line.split(" ");
+            if (sc.match("skelet")) {
 
-                int count = Integer.parseInt(skeletInfo[1]);
-                bones = new Bone[count];
+                bones = new Bone[sc.nextInt()];
+                sc.skipLine();
 
                 int i = 0;
-                while (!BLOCKENDS.equals(line = br.readLine())){
+                while (!sc.peek('}')) {
 
-                    String[] token = line.split(" ");
                     Bone bone = new Bone();
+                    bone.setName(sc.nextString());
 
-                    int parentIndex = Integer.parseInt(token[1]);
-                    if(parentIndex != -1){
+                    int parentIndex = sc.nextInt();
+                    if (parentIndex != -1) {
                         bone.setParent(bones[parentIndex]);
                     }
 
-                    //bone.weight = Float.parseFloat(token[2]);
-
-                    bone.setHead(new Point3(
-                            Float.parseFloat(token[4]),
-                            Float.parseFloat(token[5]),
-                            Float.parseFloat(token[6]))
-                    );
+                    sc.skipToken(); // weight
+                    sc.skipToken(); // {
+                    bone.setHead(new Point3(sc.nextFloat(), sc.nextFloat(), sc.nextFloat()));
+                    bone.setTail(new Point3(sc.nextFloat(), sc.nextFloat(), sc.nextFloat()));
+                    sc.skipLine();
 
-                    bone.setTail(new Point3(
-                            Float.parseFloat(token[7]),
-                            Float.parseFloat(token[8]),
-                            Float.parseFloat(token[9]))
-                    );
-
-                    bone.setName(token[0]);
                     bones[i++] = bone;
                 }
 
+                sc.skipLine();
                 continue;
             }
 
             /** frameAction */
-            if (line.startsWith(FRAMESCOUNT)) {
+            if (sc.match("frames")) {
 
-                String[] actionInfo = line.split(" ");
-                int count = Integer.parseInt(actionInfo[1]);
+                int count = sc.nextInt();
+                sc.skipLine();
 
-                for (Bone bone : bones){
+                for (Bone bone : bones) {
                     Point3[] points = new Point3[count];
-                    for(int i = 0; i<points.length; i++){
+                    for (int i = 0; i < points.length; i++) {
                         points[i] = new Point3();
                     }
                     bone.setFramesAction(points);
                 }
 
                 int f = 0;
-                while (!BLOCKENDS.equals(line = br.readLine())){
-
-                    String[] token = line.split(" ");
-                    int i = 0;
+                while (!sc.peek('}') && sc.hasNext()) {
                     for (Bone bone : bones) {
-                        bone.setFrameAction(f,
-                                Float.parseFloat(token[i++]),
-                                Float.parseFloat(token[i++]),
-                                Float.parseFloat(token[i++])
-                        );
+                        bone.setFrameAction(f, sc.nextFloat(), sc.nextFloat(), sc.nextFloat());
                     }
                     f++;
                 }
+
+                sc.skipLine();
+                continue;
             }
 
             /**--------- HEADER ------------*/
             /** ob */
-            if (line.startsWith(OBJECTINFO)) {
+            if (sc.match("ob")) {
 
                 data = TrainedMonkey.arrayUp(data, new BaseDrawableData());
-                data[++currentIndex].name = line.split(" ")[1];
+                data[++currentIndex].name = sc.nextString();
+                sc.skipLine();
                 continue;
             }
 
             /** cpv */
-            if (line.startsWith(COORDSPERVERTICE)) {
+            if (sc.match("cpv")) {
 
-                int cpv = Integer.parseInt(line.substring(line.indexOf(" ") + 1));
+                int cpv = sc.nextInt();
                 if (cpv == 2) {
                     data[currentIndex].use2Dvertices();
                 } else if (cpv == 3) {
@@ -317,47 +225,41 @@ public class BeoParser {
                 } else {
                     throw new RuntimeException("Error parsing .beo file. \n" + "Monkeys can't resolve 'cpv' attribute in .beo file (cpv must be 2 or 3)");
                 }
+                sc.skipLine();
                 continue;
             }
 
             /** bbox */
-            if (line.startsWith(BOUNCINGBOX)) {
-
-                String[] token = line.split(" ");
-
-                data[currentIndex].sizeX = Float.parseFloat(token[1]);
-                data[currentIndex].sizeY = Float.parseFloat(token[2]);
-                data[currentIndex].sizeZ = Float.parseFloat(token[3]);
+            if (sc.match("bbox")) {
 
+                data[currentIndex].sizeX = sc.nextFloat();
+                data[currentIndex].sizeY = sc.nextFloat();
+                data[currentIndex].sizeZ = sc.nextFloat();
+                sc.skipLine();
                 continue;
             }
 
             /** a */
-            if (line.startsWith(ANIMATION)) {
+            if (sc.match("a")) {
 
                 skeletAnim = true;
-                String[] token = line.split(" ");
-                groups = new VertGroup[Integer.parseInt(token[1])];
+                groups = new VertGroup[sc.nextInt()];
+                sc.skipLine();
+                continue;
             }
 
             /** af */
-            if (line.startsWith(FRAMETION)){
+            if (sc.match("af")) {
 
                 frameAnim = true;
-                String[] token = line.split(" ");
-                groups = new VertGroup[Integer.parseInt(token[1])];
-            }
-
-            /** texture */ //unused
-            if (line.startsWith(TEXTUREFILE)) {
-
-                //data.textureFile.add(line.substring(line.indexOf(" ")+1));
+                groups = new VertGroup[sc.nextInt()];
+                sc.skipLine();
                 continue;
             }
 
             /** version */
-            if (line.startsWith(FILEVERSION)) {
-                final double version = Double.parseDouble(line.substring(line.indexOf(" ") + 1));
+            if (sc.match("version")) {
+                final double version = sc.nextDouble();
                 if (version != PARSERVERSION) {
                     Base.logE("BeoParser", "!"
                             + "\nParser version: " + PARSERVERSION
@@ -366,6 +268,8 @@ public class BeoParser {
                 }
             }
 
+            /** w, texture and other lines are not used */
+            sc.skipLine();
         }
     }
 
@@ -394,6 +298,23 @@ public class BeoParser {
         return groups;
     }
 
+    public Bone[] getBones(){
+
+        return bones;
+    }
+
+    /** @return true if vert groups are bound to skelet bones */
+    public boolean isSkeletAnim(){
+
+        return skeletAnim;
+    }
+
+    /** @return true if vert groups are animation frames */
+    public boolean isFrameAnim(){
+
+        return frameAnim;
+    }
+
     public BaseDrawableData getObject(String name){
 
         for(BaseDrawableData bdd : data){
@@ -0,0 +1,174 @@
+package com.base.lib.engine.common.file;
+
+import org.jbox2d.profile.BasicPerformanceTest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+/**
+ * Benchmark - parsing of large generated .beo file by old line splitting path and by TextScanner
+ * ({@link BeoParser}). First iterations are run as warm up and are not measured.
+ */
+public class BeoParserBenchmark extends BasicPerformanceTest {
+
+    public static int iters = 20;
+    public static int warmup = 5;
+    public static int vertices = 100000;
+
+    private final byte[] file;
+    private int checksum;
+
+    public BeoParserBenchmark() {
+        super(2, iters);
+        file = generate(vertices);
+    }
+
+    public static void main(String[] args) {
+
+        BeoParserBenchmark benchmark = new BeoParserBenchmark();
+        for (int i = 0; i < warmup; i++) {
+            benchmark.runTest(0);
+            benchmark.runTest(1);
+        }
+        benchmark.println("file size: " + benchmark.file.length / 1024 + " kB");
+        benchmark.go();
+    }
+
+    /**
+     * Generates mesh with positions, normals, texture coordinates and faces in blender exporter
+     * format.
+     */
+    public static byte[] generate(int vertices) {
+
+        Random random = new Random(256);
+        StringBuilder sb = new StringBuilder(vertices * 96);
+
+        sb.append("\nBlender export\n");
+        sb.append("version 0.256\n");
+        sb.append("\nob Benchmark\n");
+        sb.append("cpv 3\n");
+        sb.append("bbox 2.0 2.0 2.0\n");
+
+        sb.append("v ").append(vertices * 3).append(" { ");
+        for (int i = 0; i < vertices * 3; i++) {
+            sb.append(random.nextFloat() * 2.0f - 1.0f).append(' ');
+        }
+        sb.append("}\n");
+
+        sb.append("n ").append(vertices * 3).append(" { ");
+        for (int i = 0; i < vertices * 3; i++) {
+            sb.append(random.nextFloat()).append(' ');
+        }
+        sb.append("}\n");
+
+        sb.append("t ").append(vertices * 2).append(" { ");
+        for (int i = 0; i < vertices * 2; i++) {
+            sb.append(random.nextFloat()).append(' ');
+        }
+        sb.append("}\n");
+
+        int faces = (vertices - 2) * 3;
+        sb.append("f ").append(faces).append(" { ");
+        for (int i = 0; i < faces; i++) {
+            sb.append((i / 3 + i % 3) % Short.MAX_VALUE).append(' ');
+        }
+        sb.append("}\n");
+
+        return sb.toString().getBytes();
+    }
+
+    @Override
+    public void runTest(int testNum) {
+
+        if (testNum == 0) {
+            checksum += LegacyParser.parse(file).vertices.length;
+        } else {
+            checksum += new BeoParser(file).getBaseDrawableData().vertices.length;
+        }
+    }
+
+    @Override
+    public String getTestName(int testNum) {
+
+        switch (testNum) {
+            case 0:
+                return "Line split (old)";
+            case 1:
+                return "TextScanner";
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * The old BeoParser path for static meshes: every line is split into a String[] and every token
+     * is parsed by Float/Short.parseX.
+     */
+    static class LegacyParser {
+
+        float[] vertices;
+        float[] normals;
+        float[] textures;
+        short[] faces;
+        String name;
+        int cpv;
+        float sizeX, sizeY, sizeZ;
+        double version;
+
+        static LegacyParser parse(byte[] bytes) {
+
+            LegacyParser parser = new LegacyParser();
+            try {
+                parser.parse(new BufferedReader(new StringReader(new String(bytes))));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return parser;
+        }
+
+        private void parse(BufferedReader br) throws IOException {
+
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.startsWith("v ")) {
+                    vertices = floats(line.split(" "));
+                } else if (line.startsWith("n ")) {
+                    normals = floats(line.split(" "));
+                } else if (line.startsWith("t ")) {
+                    textures = floats(line.split(" "));
+                } else if (line.startsWith("f ")) {
+                    String[] token = line.split(" ");
+                    int count = Integer.parseInt(token[1]);
+                    faces = new short[count];
+                    for (int i = 0; i < count; i++) {
+                        faces[i] = Short.parseShort(token[i + 3]);
+                    }
+                } else if (line.startsWith("ob ")) {
+                    name = line.split(" ")[1];
+                } else if (line.startsWith("cpv ")) {
+                    cpv = Integer.parseInt(line.substring(line.indexOf(" ") + 1));
+                } else if (line.startsWith("bbox ")) {
+                    String[] token = line.split(" ");
+                    sizeX = Float.parseFloat(token[1]);
+                    sizeY = Float.parseFloat(token[2]);
+                    sizeZ = Float.parseFloat(token[3]);
+                } else if (line.startsWith("version ")) {
+                    version = Double.parseDouble(line.substring(line.indexOf(" ") + 1));
+                }
+            }
+        }
+
+        // "x count { values }"
+        private static float[] floats(String[] token) {
+
+            int count = Integer.parseInt(token[1]);
+            float[] out = new float[count];
+            for (int i = 0; i < count; i++) {
+                out[i] = Float.parseFloat(token[i + 3]);
+            }
+            return out;
+        }
+    }
+}
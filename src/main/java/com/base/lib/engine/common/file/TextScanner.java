@@ -0,0 +1,327 @@
+package com.base.lib.engine.common.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * allocation free tokenizer of text model files (.beo, .bel)
+ * <p>
+ * reads tokens separated by whitespace directly from byte array, numbers are parsed in place
+ * without splitting lines or creating String per token. Only {@link #nextString()} allocates.
+ * </p>
+ */
+public class TextScanner {
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final int MAX_DIGITS = 18;
+
+    private final byte[] bytes;
+    private final int limit;
+    private int position;
+
+    public TextScanner(byte[] bytes) {
+
+        this(bytes, 0, bytes.length);
+    }
+
+    public TextScanner(byte[] bytes, int offset, int length) {
+
+        this.bytes = bytes;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * reads whole stream into memory, stream is not closed
+     */
+    public static TextScanner from(InputStream is) throws IOException {
+
+        byte[] buffer = new byte[Math.max(is.available(), 8192)];
+        int length = 0;
+        int read;
+        while ((read = is.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            if (length == buffer.length) {
+                byte[] bigger = new byte[buffer.length * 2];
+                System.arraycopy(buffer, 0, bigger, 0, length);
+                buffer = bigger;
+            }
+        }
+
+        return new TextScanner(buffer, 0, length);
+    }
+
+    private static boolean isSpace(byte b) {
+
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static boolean isLineSpace(byte b) {
+
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /**
+     * skips whitespace including line ends
+     *
+     * @return false if end of data is reached
+     */
+    public boolean hasNext() {
+
+        while (position < limit && isSpace(bytes[position])) {
+            position++;
+        }
+
+        return position < limit;
+    }
+
+    /**
+     * skips whitespace of current line
+     *
+     * @return true if another token is on current line
+     */
+    public boolean hasNextOnLine() {
+
+        while (position < limit && isLineSpace(bytes[position])) {
+            position++;
+        }
+
+        return position < limit && bytes[position] != '\n';
+    }
+
+    /**
+     * moves to start of next line
+     */
+    public void skipLine() {
+
+        while (position < limit && bytes[position++] != '\n') {
+            // skip
+        }
+    }
+
+    public void skipToken() {
+
+        hasNext();
+        while (position < limit && !isSpace(bytes[position])) {
+            position++;
+        }
+    }
+
+    /**
+     * @return true if next token starts with character, token is not consumed
+     */
+    public boolean peek(char c) {
+
+        return hasNext() && bytes[position] == c;
+    }
+
+    /**
+     * consumes next token if it equals word
+     */
+    public boolean match(String word) {
+
+        if (!hasNext()) {
+            return false;
+        }
+
+        int length = word.length();
+        int end = position + length;
+        if (end > limit || (end < limit && !isSpace(bytes[end]))) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[position + i] != word.charAt(i)) {
+                return false;
+            }
+        }
+        position = end;
+
+        return true;
+    }
+
+    /**
+     * @return next token as String (UTF-8)
+     */
+    public String nextString() {
+
+        hasNext();
+        int start = position;
+        while (position < limit && !isSpace(bytes[position])) {
+            position++;
+        }
+
+        try {
+            return new String(bytes, start, position - start, "UTF-8");
+        } catch (java.io.UnsupportedEncodingException e) {
+            return new String(bytes, start, position - start);
+        }
+    }
+
+    public int nextInt() {
+
+        hasNext();
+        boolean negative = false;
+        if (position < limit && (bytes[position] == '-' || bytes[position] == '+')) {
+            negative = bytes[position++] == '-';
+        }
+
+        int start = position;
+        int value = 0;
+        while (position < limit) {
+            int d = bytes[position] - '0';
+            if (d < 0 || d > 9) {
+                break;
+            }
+            value = value * 10 + d;
+            position++;
+        }
+
+        if (start == position) {
+            throw new NumberFormatException("Monkeys can't read number at " + start);
+        }
+
+        return negative ? -value : value;
+    }
+
+    public short nextShort() {
+
+        return (short) nextInt();
+    }
+
+    public float nextFloat() {
+
+        return (float) nextDouble();
+    }
+
+    /**
+     * parses decimal number with optional fraction and exponent,
+     * nan/inf are accepted in any case (as written by python), other forms fall back to Double.parseDouble
+     */
+    public double nextDouble() {
+
+        hasNext();
+        int start = position;
+
+        boolean negative = false;
+        if (position < limit && (bytes[position] == '-' || bytes[position] == '+')) {
+            negative = bytes[position++] == '-';
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean any = false;
+
+        while (position < limit) {
+            int d = bytes[position] - '0';
+            if (d < 0 || d > 9) {
+                break;
+            }
+            any = true;
+            if (digits < MAX_DIGITS) {
+                mantissa = mantissa * 10 + d;
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                exponent++;
+            }
+            position++;
+        }
+
+        if (position < limit && bytes[position] == '.') {
+            position++;
+            while (position < limit) {
+                int d = bytes[position] - '0';
+                if (d < 0 || d > 9) {
+                    break;
+                }
+                any = true;
+                if (digits < MAX_DIGITS) {
+                    mantissa = mantissa * 10 + d;
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    exponent--;
+                }
+                position++;
+            }
+        }
+
+        if (any && position < limit && (bytes[position] == 'e' || bytes[position] == 'E')) {
+            position++;
+            boolean negativeExp = false;
+            if (position < limit && (bytes[position] == '-' || bytes[position] == '+')) {
+                negativeExp = bytes[position++] == '-';
+            }
+            int exp = 0;
+            while (position < limit) {
+                int d = bytes[position] - '0';
+                if (d < 0 || d > 9) {
+                    break;
+                }
+                exp = Math.min(exp * 10 + d, 10000);
+                position++;
+            }
+            exponent += negativeExp ? -exp : exp;
+        }
+
+        if (!any || (position < limit && !isSpace(bytes[position]))) {
+            int first = negative || bytes[start] == '+' ? start + 1 : start;
+            while (position < limit && !isSpace(bytes[position])) {
+                position++;
+            }
+            if (first < position && (bytes[first] | 0x20) == 'n') {
+                return Double.NaN;
+            }
+            if (first < position && (bytes[first] | 0x20) == 'i') {
+                return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            }
+            return Double.parseDouble(new String(bytes, start, position - start));
+        }
+
+        double value = mantissa;
+        if (exponent != 0) {
+            if (exponent > 0) {
+                value = exponent < POW10.length ? value * POW10[exponent] : value * Math.pow(10, exponent);
+            } else {
+                value = -exponent < POW10.length ? value / POW10[-exponent] : value / Math.pow(10, -exponent);
+            }
+        }
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * reads count floats into array
+     */
+    public float[] nextFloats(float[] dst, int offset, int count) {
+
+        for (int i = 0; i < count; i++) {
+            dst[offset + i] = nextFloat();
+        }
+
+        return dst;
+    }
+
+    public short[] nextShorts(short[] dst, int offset, int count) {
+
+        for (int i = 0; i < count; i++) {
+            dst[offset + i] = nextShort();
+        }
+
+        return dst;
+    }
+
+    /**
+     * @return current position in data
+     */
+    public int getPosition() {
+
+        return position;
+    }
+}
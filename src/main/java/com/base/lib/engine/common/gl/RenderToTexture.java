@@ -92,8 +92,12 @@ public class RenderToTexture extends BaseDrawable { //todo split
             Base.logI("RTT", "Framebuffer ok");
         }
 
+        // color texture and 16-bit depth
+        base.gl.getMemory().renderTargetAllocated(texW * texH * (4 + 2));
+
         // unbind
         GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+        BaseGL.invalidateStates();
         GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, 0);
         GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
         BaseGL.glError("RTT");
@@ -141,6 +145,7 @@ public class RenderToTexture extends BaseDrawable { //todo split
         if (frameBuffer > 0) {
             GLES20.glDeleteFramebuffers(1, new int[]{frameBuffer}, 0);
             frameBuffer = 0;
+            base.gl.getMemory().renderTargetReleased(texW * texH * (4 + 2));
         }
     }
 }
@@ -0,0 +1,186 @@
+package com.base.lib.engine.common.gl;
+
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.opengl.ETC1;
+import android.opengl.ETC1Util;
+import android.opengl.GLES20;
+
+import com.base.lib.engine.Base;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Keeps decoded png assets on internal storage as KTX, so next start loads them without BitmapFactory.
+ * Opaque bitmaps are stored ETC1 compressed with mip levels (6x smaller in GL than ARGB_8888),
+ * bitmaps with alpha are stored as raw RGBA pixels.
+ * Cache is dropped when application is updated.
+ */
+public class TextureCache {
+
+    private static final String DIR = "texture_cache";
+
+    private static boolean enabled;
+    private static String stamp;
+
+    public static void setEnabled(boolean enabled) {
+
+        TextureCache.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * @return cached image of asset, null if not cached yet
+     */
+    public static TextureImage load(String asset, boolean mipmap) {
+
+        File file = file(asset, mipmap);
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            return TextureImage.read(new FileInputStream(file));
+        } catch (IOException e) {
+            Base.logE("TextureCache", "Monkeys can't read cached texture " + asset + ": " + e.getMessage());
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * encodes bitmap, writes it into cache and recycles bitmap
+     *
+     * @return encoded image to load into gl instead of bitmap
+     */
+    public static TextureImage store(String asset, Bitmap bitmap, boolean mipmap) {
+
+        TextureImage image = bitmap.hasAlpha() ? raw(bitmap) : etc1(bitmap, mipmap);
+        bitmap.recycle();
+
+        File file = file(asset, mipmap);
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            image.write(new FileOutputStream(temp));
+            if (!temp.renameTo(file)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            Base.logE("TextureCache", "Monkeys can't cache texture " + asset + ": " + e.getMessage());
+            temp.delete();
+        }
+
+        return image;
+    }
+
+    /**
+     * deletes all cached textures
+     */
+    public static void clear() {
+
+        File[] files = dir().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private static TextureImage etc1(Bitmap bitmap, boolean mipmap) {
+
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int levelCount = 1;
+        if (mipmap) {
+            while ((width >> levelCount) > 0 || (height >> levelCount) > 0) {
+                levelCount++;
+            }
+        }
+
+        ByteBuffer[] levels = new ByteBuffer[levelCount];
+        for (int i = 0; i < levelCount; i++) {
+            int w = Math.max(1, width >> i);
+            int h = Math.max(1, height >> i);
+            Bitmap level = i == 0 ? bitmap : Bitmap.createScaledBitmap(bitmap, w, h, true);
+            Bitmap rgb = level.copy(Bitmap.Config.RGB_565, false);
+            if (level != bitmap) {
+                level.recycle();
+            }
+
+            ByteBuffer pixels = ByteBuffer.allocateDirect(w * h * 2).order(ByteOrder.nativeOrder());
+            rgb.copyPixelsToBuffer(pixels);
+            rgb.recycle();
+            pixels.position(0);
+
+            levels[i] = ETC1Util.compressTexture(pixels, w, h, 2, w * 2).getData();
+        }
+
+        return new TextureImage(width, height, ETC1.ETC1_RGB8_OES, 0, 0, levels);
+    }
+
+    private static TextureImage raw(Bitmap bitmap) {
+
+        Bitmap rgba = bitmap.getConfig() == Bitmap.Config.ARGB_8888 ? bitmap : bitmap.copy(Bitmap.Config.ARGB_8888, false);
+        ByteBuffer pixels = ByteBuffer.allocateDirect(rgba.getWidth() * rgba.getHeight() * 4).order(ByteOrder.nativeOrder());
+        rgba.copyPixelsToBuffer(pixels);
+        pixels.position(0);
+        if (rgba != bitmap) {
+            rgba.recycle();
+        }
+
+        return new TextureImage(bitmap.getWidth(), bitmap.getHeight(), GLES20.GL_RGBA, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, new ByteBuffer[]{pixels});
+    }
+
+    private static File file(String asset, boolean mipmap) {
+
+        return new File(dir(), asset.replace('/', '_') + (mipmap ? "_m" : "") + ".ktx");
+    }
+
+    // directory per installed version of application, older ones are deleted
+    private static synchronized File dir() {
+
+        if (stamp == null) {
+            try {
+                stamp = Long.toString(Base.appContext.getPackageManager().getPackageInfo(Base.appContext.getPackageName(), 0).lastUpdateTime);
+            } catch (PackageManager.NameNotFoundException e) {
+                stamp = "0";
+            }
+
+            File root = Base.appContext.getDir(DIR, 0);
+            File[] old = root.listFiles();
+            if (old != null) {
+                for (File version : old) {
+                    if (!version.getName().equals(stamp)) {
+                        deleteAll(version);
+                    }
+                }
+            }
+        }
+
+        File dir = new File(Base.appContext.getDir(DIR, 0), stamp);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        return dir;
+    }
+
+    private static void deleteAll(File file) {
+
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -5,11 +5,15 @@ import android.opengl.GLES20;
 import android.opengl.GLUtils;
 
 import com.base.lib.engine.Base;
+import com.base.lib.engine.BaseGL;
 import com.base.lib.engine.BaseTexture;
 
+import java.nio.ByteBuffer;
+
 public class TextureHelper {
 
     private static final int[] textureHandle = new int[1];
+    private static int[] compressedFormats;
 
     /**
      * loads bitmap texture into gl
@@ -34,6 +38,7 @@ public class TextureHelper {
     public static void changeTexture(int textureID, Bitmap bitmap, BaseTexture.Options options) {
 
         // Bind texture into gl
+        BaseGL.invalidateStates();
         GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureID);
 
         // Set filtering when texture application is smaller(MIN_FILTER) or larger(MAG_FILTER)
@@ -56,11 +61,96 @@ public class TextureHelper {
         bitmap.recycle();
     }
 
+    /**
+     * loads compressed or raw texture image into gl
+     */
+    public static int loadTexture(TextureImage image, BaseTexture.Options options) {
+
+        GLES20.glGenTextures(1, textureHandle, 0);
+
+        if (textureHandle[0] != 0) {
+            changeTexture(textureHandle[0], image, options);
+        } else {
+            Base.logE(String.format("Monkeys can generate textures only from GLThread ! [CurrentThread: %s]", Thread.currentThread().getName()));
+            throw new RuntimeException("Error creating texture.");
+        }
+
+        return textureHandle[0];
+    }
+
+    /**
+     * change texture by given ID to compressed or raw texture image, levels of image are uploaded as they are
+     * note: compressed image without mip levels is filtered linear, gl can't generate mipmap for it
+     */
+    public static void changeTexture(int textureID, TextureImage image, BaseTexture.Options options) {
+
+        if (image.isCompressed() && !isCompressedFormatSupported(image.internalFormat)) {
+            Base.logE(String.format("Monkeys can't load compressed texture, format 0x%X not supported by device", image.internalFormat));
+            return;
+        }
+
+        int minFilter = options.min_filter;
+        boolean generateMipmap = options.mipmap && image.getLevelCount() == 1;
+        if (generateMipmap && image.isCompressed()) {
+            generateMipmap = false;
+            if (minFilter != GLES20.GL_NEAREST) {
+                minFilter = GLES20.GL_LINEAR;
+            }
+        }
+
+        BaseGL.invalidateStates();
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureID);
+
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, minFilter);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, options.mag_filter);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, options.wrap_s);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, options.wrap_t);
+
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 1);
+        for (int i = 0; i < image.getLevelCount(); i++) {
+            ByteBuffer level = image.getLevel(i);
+            if (image.isCompressed()) {
+                GLES20.glCompressedTexImage2D(GLES20.GL_TEXTURE_2D, i, image.internalFormat, image.getLevelWidth(i), image.getLevelHeight(i), 0, level.capacity(), level);
+            } else {
+                GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, i, image.internalFormat, image.getLevelWidth(i), image.getLevelHeight(i), 0, image.format, image.type, level);
+            }
+        }
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 4);
+
+        if (generateMipmap) {
+            GLES20.glGenerateMipmap(GLES20.GL_TEXTURE_2D);
+        }
+    }
+
+    /**
+     * asks gl for compressed formats once, note: must be performed in correct GL thread
+     */
+    public static boolean isCompressedFormatSupported(int format) {
+
+        if (compressedFormats == null) {
+            int[] count = new int[1];
+            GLES20.glGetIntegerv(GLES20.GL_NUM_COMPRESSED_TEXTURE_FORMATS, count, 0);
+            compressedFormats = new int[count[0]];
+            if (count[0] > 0) {
+                GLES20.glGetIntegerv(GLES20.GL_COMPRESSED_TEXTURE_FORMATS, compressedFormats, 0);
+            }
+        }
+
+        for (int supported : compressedFormats) {
+            if (supported == format) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     public static int[] generateTextureUnit(BaseTexture.Options options) {
 
         GLES20.glGenTextures(1, textureHandle, 0);
 
         // Bind texture into gl
+        BaseGL.invalidateStates();
         GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
 
         // Set filtering when texture application is smaller(MIN_FILTER) or larger(MAG_FILTER)
@@ -81,6 +171,7 @@ public class TextureHelper {
 
         textureHandle[0] = textureID;
         GLES20.glDeleteTextures(1, textureHandle, 0);
+        BaseGL.invalidateStates();
     }
 
     /**
@@ -90,6 +181,7 @@ public class TextureHelper {
 
         if (textureIDs != null) {
             GLES20.glDeleteTextures(textureIDs.length, textureIDs, 0);
+            BaseGL.invalidateStates();
         }
     }
 
@@ -104,6 +196,7 @@ public class TextureHelper {
                 ids[i] = textures[i].glid;
             }
             GLES20.glDeleteTextures(textures.length, ids, 0);
+            BaseGL.invalidateStates();
         }
     }
 }
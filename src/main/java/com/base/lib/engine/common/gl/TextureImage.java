@@ -0,0 +1,291 @@
+package com.base.lib.engine.common.gl;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * texture image ready for GL without decoding, compressed (ETC1, ETC2) or raw pixels with its mip levels
+ * reads PKM and KTX containers straight into direct buffers, writes KTX, see {@link TextureHelper#loadTexture(TextureImage, com.base.lib.engine.BaseTexture.Options)}
+ */
+public class TextureImage {
+
+    public static final int ETC1_RGB8 = 0x8D64; // ETC1.ETC1_RGB8_OES
+    public static final int ETC2_RGB8 = 0x9274;
+    public static final int ETC2_RGB8_A1 = 0x9276;
+    public static final int ETC2_RGBA8 = 0x9278;
+
+    private static final byte[] KTX_IDENTIFIER = {(byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'};
+    private static final int KTX_ENDIANNESS = 0x04030201;
+    private static final int KTX_HEADER = 64;
+    private static final int PKM_HEADER = 16;
+
+    public final int width;
+    public final int height;
+    /**
+     * compressed format, or format of raw pixels
+     */
+    public final int internalFormat;
+    /**
+     * format and type of raw pixels, 0 if compressed
+     */
+    public final int format;
+    public final int type;
+
+    private final ByteBuffer[] levels;
+
+    public TextureImage(int width, int height, int internalFormat, int format, int type, ByteBuffer[] levels) {
+
+        this.width = width;
+        this.height = height;
+        this.internalFormat = internalFormat;
+        this.format = format;
+        this.type = type;
+        this.levels = levels;
+    }
+
+    public boolean isCompressed() {
+
+        return type == 0;
+    }
+
+    public int getLevelCount() {
+
+        return levels.length;
+    }
+
+    public ByteBuffer getLevel(int level) {
+
+        return levels[level];
+    }
+
+    public int getLevelWidth(int level) {
+
+        return Math.max(1, width >> level);
+    }
+
+    public int getLevelHeight(int level) {
+
+        return Math.max(1, height >> level);
+    }
+
+    /**
+     * @return bytes of all levels
+     */
+    public int getByteCount() {
+
+        int count = 0;
+        for (ByteBuffer level : levels) {
+            count += level.capacity();
+        }
+        return count;
+    }
+
+    /**
+     * @return true if file name ends by container extension (.pkm, .ktx)
+     */
+    public static boolean isContainer(String file) {
+
+        String name = file.toLowerCase();
+        return name.endsWith(".pkm") || name.endsWith(".ktx");
+    }
+
+    /**
+     * reads PKM (ETC1 'PKM 10', ETC2 'PKM 20') or KTX container, stream is closed
+     */
+    public static TextureImage read(InputStream in) throws IOException {
+
+        ReadableByteChannel channel = in instanceof FileInputStream ? ((FileInputStream) in).getChannel() : Channels.newChannel(in);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(KTX_HEADER).order(ByteOrder.BIG_ENDIAN);
+            header.limit(PKM_HEADER);
+            readFully(channel, header);
+
+            if (header.get(0) == 'P' && header.get(1) == 'K' && header.get(2) == 'M' && header.get(3) == ' ') {
+                return readPkm(channel, header);
+            }
+
+            for (int i = 0; i < KTX_IDENTIFIER.length; i++) {
+                if (header.get(i) != KTX_IDENTIFIER[i]) {
+                    throw new IOException("not a PKM or KTX container");
+                }
+            }
+            header.limit(KTX_HEADER);
+            readFully(channel, header);
+            return readKtx(channel, header);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static TextureImage readPkm(ReadableByteChannel channel, ByteBuffer header) throws IOException {
+
+        int format = header.getShort(6) & 0xFFFF;
+        int paddedWidth = header.getShort(8) & 0xFFFF;
+        int paddedHeight = header.getShort(10) & 0xFFFF;
+        int width = header.getShort(12) & 0xFFFF;
+        int height = header.getShort(14) & 0xFFFF;
+
+        int internalFormat;
+        int blockSize = 8;
+        switch (format) {
+            case 0:
+                internalFormat = ETC1_RGB8;
+                break;
+            case 1:
+                internalFormat = ETC2_RGB8;
+                break;
+            case 3:
+                internalFormat = ETC2_RGBA8;
+                blockSize = 16;
+                break;
+            case 4:
+                internalFormat = ETC2_RGB8_A1;
+                break;
+            default:
+                throw new IOException("unsupported PKM format " + format);
+        }
+
+        ByteBuffer data = ByteBuffer.allocateDirect((paddedWidth / 4) * (paddedHeight / 4) * blockSize).order(ByteOrder.nativeOrder());
+        readFully(channel, data);
+        data.position(0);
+
+        return new TextureImage(width, height, internalFormat, 0, 0, new ByteBuffer[]{data});
+    }
+
+    private static TextureImage readKtx(ReadableByteChannel channel, ByteBuffer header) throws IOException {
+
+        if (header.getInt(12) != KTX_ENDIANNESS) {
+            header.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        int type = header.getInt(16);
+        int format = header.getInt(24);
+        int internalFormat = header.getInt(28);
+        int width = header.getInt(36);
+        int height = header.getInt(40);
+        int faces = header.getInt(52);
+        int levelCount = Math.max(1, header.getInt(56));
+        int keyValueBytes = header.getInt(60);
+
+        if (faces != 1 || header.getInt(44) > 1 || header.getInt(48) > 0) {
+            throw new IOException("only 2D KTX textures are supported");
+        }
+
+        skip(channel, keyValueBytes);
+
+        ByteBuffer size = ByteBuffer.allocate(4).order(header.order());
+        ByteBuffer[] levels = new ByteBuffer[levelCount];
+        for (int i = 0; i < levelCount; i++) {
+            size.clear();
+            readFully(channel, size);
+            int imageSize = size.getInt(0);
+
+            ByteBuffer level = ByteBuffer.allocateDirect(imageSize).order(ByteOrder.nativeOrder());
+            readFully(channel, level);
+            level.position(0);
+            levels[i] = level;
+
+            skip(channel, 3 - (imageSize + 3) % 4);
+        }
+
+        return new TextureImage(width, height, internalFormat, format, type, levels);
+    }
+
+    /**
+     * writes image as little endian KTX container, stream is closed
+     */
+    public void write(OutputStream out) throws IOException {
+
+        WritableByteChannel channel = out instanceof FileOutputStream ? ((FileOutputStream) out).getChannel() : Channels.newChannel(out);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(KTX_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(KTX_IDENTIFIER);
+            header.putInt(KTX_ENDIANNESS);
+            header.putInt(type);
+            header.putInt(type == 0 ? 1 : typeSize(type));
+            header.putInt(format);
+            header.putInt(internalFormat);
+            header.putInt(isCompressed() ? baseFormat(internalFormat) : format);
+            header.putInt(width);
+            header.putInt(height);
+            header.putInt(0); // depth
+            header.putInt(0); // array elements
+            header.putInt(1); // faces
+            header.putInt(levels.length);
+            header.putInt(0); // key value bytes
+            header.flip();
+            writeFully(channel, header);
+
+            ByteBuffer size = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer padding = ByteBuffer.allocate(3);
+            for (ByteBuffer level : levels) {
+                int imageSize = level.capacity();
+                size.clear();
+                size.putInt(imageSize).flip();
+                writeFully(channel, size);
+
+                ByteBuffer data = level.duplicate();
+                data.clear();
+                writeFully(channel, data);
+
+                padding.clear();
+                padding.limit(3 - (imageSize + 3) % 4);
+                writeFully(channel, padding);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static int typeSize(int type) {
+
+        switch (type) {
+            case 0x1401: // GL_UNSIGNED_BYTE
+                return 1;
+            default: // packed 565, 4444, 5551
+                return 2;
+        }
+    }
+
+    private static int baseFormat(int internalFormat) {
+
+        switch (internalFormat) {
+            case ETC2_RGBA8:
+            case ETC2_RGB8_A1:
+                return 0x1908; // GL_RGBA
+            default:
+                return 0x1907; // GL_RGB
+        }
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("unexpected end of texture container");
+            }
+        }
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void skip(ReadableByteChannel channel, int bytes) throws IOException {
+
+        if (bytes > 0) {
+            readFully(channel, ByteBuffer.allocate(bytes));
+        }
+    }
+}
@@ -64,6 +64,14 @@ public class Quat { //todo native multiplication
         this.w = w;
     }
 
+    public void set(float w, float x, float y, float z){
+
+        this.w = w;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
     public static float dotProduct (Quat qa, Quat qb){
 		
     	return qa.x * qb.x + qa.y * qb.y + qa.z * qb.z + qa.w * qb.w;
@@ -90,6 +98,46 @@ public class Quat { //todo native multiplication
     	return out;
     }
     
+    /** is NOT commutative! out can be same instance as qa or qb */
+    public static void mul(Quat qa, Quat qb, Quat out){
+
+        float w = qa.w*qb.w - qa.x*qb.x - qa.y*qb.y - qa.z*qb.z;
+        float x = qa.w*qb.x + qa.x*qb.w + qa.y*qb.z - qa.z*qb.y;
+        float y = qa.w*qb.y - qa.x*qb.z + qa.y*qb.w + qa.z*qb.x;
+        float z = qa.w*qb.z + qa.x*qb.y - qa.y*qb.x + qa.z*qb.w;
+
+        out.w = w;
+        out.x = x;
+        out.y = y;
+        out.z = z;
+    }
+
+    /**
+     * rotation in DEGREES around x, then y, then z local axis, same as BaseMatrix.rotate(matrix, x, y, z)
+     */
+    public static void fromEuler(Quat out, float x, float y, float z){
+
+        float hx = x * RAD * 0.5f;
+        float hy = y * RAD * 0.5f;
+        float hz = z * RAD * 0.5f;
+
+        float sx = (float) Math.sin(hx), cx = (float) Math.cos(hx);
+        float sy = (float) Math.sin(hy), cy = (float) Math.cos(hy);
+        float sz = (float) Math.sin(hz), cz = (float) Math.cos(hz);
+
+        // qx * qy
+        float w = cx * cy;
+        float qx = sx * cy;
+        float qy = cx * sy;
+        float qz = sx * sy;
+
+        // (qx * qy) * qz
+        out.w = w * cz - qz * sz;
+        out.x = qx * cz + qy * sz;
+        out.y = qy * cz - qx * sz;
+        out.z = w * sz + qz * cz;
+    }
+
     public static Quat mul(Quat q, float x, float y, float z){
     	
     	Quat out = new Quat();
@@ -150,14 +198,12 @@ public class Quat { //todo native multiplication
     	m[5] = 1.0f - xx - zz;
     	m[9] = yz - wx;
     	
-    	m[2] = xz + wy;
+    	m[2] = xz - wy;
     	m[6] = yz + wx;
     	m[10] = 1.0f - xx - yy;
     }
     
     public static Quat slerp (Quat qa, Quat qb, float t) {
-		
-		Quat out = new Quat();
 
 		/* Check for out-of range parameter and return edge points if so */
 		if (t <= 0.0) {
@@ -168,6 +214,25 @@ public class Quat { //todo native multiplication
 			return qb;
 		}
 
+		Quat out = new Quat();
+		slerp(qa, qb, t, out);
+
+		return out;
+	}
+
+	/** spherical interpolation without allocation, out can be same instance as qa or qb */
+	public static void slerp (Quat qa, Quat qb, float t, Quat out) {
+
+		if (t <= 0.0f) {
+			copy(qa, out);
+			return;
+		}
+
+		if (t >= 1.0f) {
+			copy(qb, out);
+			return;
+		}
+
 		/* Compute "cosine of angle between quaternions" using dot product */
 		float cosOmega = dotProduct(qa, qb);
 
@@ -226,13 +291,11 @@ public class Quat { //todo native multiplication
 			k1 = (float) (Math.sin(t * omega) * oneOverSinOmega);
 		}
 
-		/* Interpolate and return new quaternion */
+		/* Interpolate into out quaternion */
 		out.w = (k0 * qa.w) + (k1 * q1w);
 		out.x = (k0 * qa.x) + (k1 * q1x);
 		out.y = (k0 * qa.y) + (k1 * q1y);
 		out.z = (k0 * qa.z) + (k1 * q1z);
-		
-		return out;
 	}
     
     @Override
@@ -5,6 +5,8 @@ import android.opengl.GLES20;
 import com.base.lib.engine.BaseGL;
 import com.base.lib.engine.BaseRenderable;
 import com.base.lib.engine.DrawableBuffer;
+import com.base.lib.engine.FrameQueue;
+import com.base.lib.engine.RenderQueue;
 import com.base.lib.engine.common.BaseDrawableData;
 import com.base.lib.engine.common.BaseMatrix;
 import com.base.lib.engine.common.Colorf;
@@ -15,11 +17,18 @@ import com.base.lib.engine.common.DrawableData;
  */
 public class BitmapFontRenderable extends BaseRenderable { //todo new shader a(x y, w h, sc tc sw sh) u(r g b a)
 
+    private static final int STATE = 7; // x, y, z, r, g, b, a
+
     private DrawableBuffer buffer;
+    private final TextMesh[] meshes; // laid text of each frame slot
+    private final BitmapFont[] fonts;
+    private final float[] states;
+    private int queuedSlot;
     private StringBuilder text;
     private BitmapFont font;
     private Colorf color;
     private float x, y, z, scale;
+    private final float[] matrix = new float[16];
 
     public BitmapFontRenderable() {
 
@@ -31,6 +40,12 @@ public class BitmapFontRenderable extends BaseRenderable { //todo new shader a(x
         data.setOrigin(-0.5f, 0.5f);
         buffer = new DrawableBuffer(data);
         buffer.setShader(shader);
+        meshes = new TextMesh[FrameQueue.SLOTS];
+        for (int i = 0; i < meshes.length; i++) {
+            meshes[i] = new TextMesh();
+        }
+        fonts = new BitmapFont[FrameQueue.SLOTS];
+        states = new float[FrameQueue.SLOTS * STATE];
     }
 
     public BitmapFontRenderable(BitmapFont font) {
@@ -50,16 +65,59 @@ public class BitmapFontRenderable extends BaseRenderable { //todo new shader a(x
         this.y = y;
     }
 
+    @Override
+    public boolean isFrameSafe() {
+
+        return true;
+    }
+
+    /**
+     * lays text out into mesh of given slot, so draw() never reads text which update thread may change meanwhile
+     */
+    @Override
+    public void onFrameQueued(int slot) {
+
+        meshes[slot].layout(text, font, scale);
+        fonts[slot] = font;
+
+        float[] s = states;
+        int o = slot * STATE;
+        s[o] = x;
+        s[o + 1] = y;
+        s[o + 2] = z;
+        s[o + 3] = color.r;
+        s[o + 4] = color.g;
+        s[o + 5] = color.b;
+        s[o + 6] = color.a;
+        queuedSlot = slot;
+    }
+
     @Override
     public void draw() {
 
-        drawHorizontale(text.toString());
+        int slot = RenderQueue.getDrawSlot();
+        float[] s = states;
+        int o = slot * STATE;
+
+        float[] m = matrix;
+        BaseMatrix.setIdentity(m);
+        m[12] = s[o];
+        m[13] = s[o + 1];
+        m[14] = s[o + 2];
+        BaseMatrix.multiplyMC(m, base.camera);
+
+        BaseGL.bindTexture(fonts[slot].texture);
+        GLES20.glUniform4f(shader.handle[3], s[o + 3], s[o + 4], s[o + 5], s[o + 6]);
+        meshes[slot].draw(shader, m);
     }
 
+    /**
+     * draws text glyph by glyph, for text which is not held by this renderable, see {@link #draw()}
+     */
     public void drawHorizontale(String text) {
 
         int count = text.length();
-        float[] m = BaseMatrix._matrix;
+        float[] m = matrix;
 
         BaseGL.bindTexture(font.texture);
 
@@ -81,7 +139,7 @@ public class BitmapFontRenderable extends BaseRenderable { //todo new shader a(x
             buffer.putTextureCoords(l.textureCoords);
             buffer.glPutTextureBuffer();
 
-            BaseMatrix.setSMIdentity();
+            BaseMatrix.setIdentity(m);
             m[12] = px + l.offsetX * scale;
             m[13] = py - l.offsetY * scale;
             m[14] = z;
@@ -98,7 +156,7 @@ public class BitmapFontRenderable extends BaseRenderable { //todo new shader a(x
     public void drawVerticale(String text) {
 
         int count = text.length();
-        float[] m = BaseMatrix._matrix;
+        float[] m = matrix;
 
         BaseGL.bindTexture(font.texture);
 
@@ -120,7 +178,7 @@ public class BitmapFontRenderable extends BaseRenderable { //todo new shader a(x
             buffer.putTextureCoords(l.textureCoords);
             buffer.glPutTextureBuffer();
 
-            BaseMatrix.setSMIdentity();
+            BaseMatrix.setIdentity(m);
             m[12] = py - l.offsetY * scale;
             m[13] = px - l.offsetX * scale;
             m[14] = z;
@@ -138,7 +196,7 @@ public class BitmapFontRenderable extends BaseRenderable { //todo new shader a(x
     public void drawVerticaleUp(String text) {
 
         int count = text.length();
-        float[] m = BaseMatrix._matrix;
+        float[] m = matrix;
 
         BaseGL.bindTexture(font.texture);
 
@@ -160,7 +218,7 @@ public class BitmapFontRenderable extends BaseRenderable { //todo new shader a(x
             buffer.putTextureCoords(l.textureCoords);
             buffer.glPutTextureBuffer();
 
-            BaseMatrix.setSMIdentity();
+            BaseMatrix.setIdentity(m);
             m[12] = py + l.offsetY * scale;
             m[13] = px + l.offsetX * scale;
             m[14] = z;
@@ -183,6 +241,55 @@ public class BitmapFontRenderable extends BaseRenderable { //todo new shader a(x
     @Override
     public void destroy() {
 
+        if (isStatic() && base != null) {
+            for (TextMesh mesh : meshes) {
+                base.gl.removeGLEndListener(mesh);
+            }
+            base.gl.glRun(new Runnable() {
+                @Override
+                public void run() {
+                    for (TextMesh mesh : meshes) {
+                        mesh.destroy();
+                    }
+                }
+            });
+        } else {
+            for (TextMesh mesh : meshes) {
+                mesh.destroy();
+            }
+        }
+    }
+
+    /**
+     * static text keeps its laid glyphs in VBO, which is uploaded again only when text, font or scale changes
+     * note: must be performed in correct GL thread
+     */
+    public void setStatic(boolean isStatic) {
+
+        if (isStatic == isStatic()) {
+            return;
+        }
+        for (TextMesh mesh : meshes) {
+            if (base != null) {
+                if (isStatic) {
+                    base.gl.addGLEndListener(mesh);
+                } else {
+                    base.gl.removeGLEndListener(mesh);
+                }
+            }
+            mesh.setStatic(isStatic, base != null ? base.gl.getMemory() : null);
+        }
+    }
+
+    public boolean isStatic() {
+        return meshes[0].isStatic();
+    }
+
+    /**
+     * @return mesh of text laid for the last queued frame, its size is known after renderable is first queued
+     */
+    public TextMesh getMesh() {
+        return meshes[queuedSlot];
     }
 
     public void setPosition(float x, float y, float z) {
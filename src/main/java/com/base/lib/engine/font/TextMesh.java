@@ -0,0 +1,327 @@
+package com.base.lib.engine.font;
+
+import android.opengl.GLES20;
+
+import com.base.lib.engine.BaseGL;
+import com.base.lib.engine.BaseShader;
+import com.base.lib.engine.GLMemory;
+import com.base.lib.engine.common.Buffers;
+import com.base.lib.engine.common.gl.BaseGLBuffer;
+import com.base.lib.interfaces.GLStateListener;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Lays out whole string into one interleaved vertex/uv array (x, y, u, v per vertex) and draws it by single draw call.
+ * Layout is built again only when text content, font or scale changes, position goes into MVP matrix.
+ * Static mesh keeps its arrays in VBOs, which are uploaded again only after layout changes.
+ * Layout may be built in update thread as long as the mesh isn't drawn meanwhile (ie. one mesh per frame slot).
+ * note: draw and destroy must be performed in correct GL thread
+ */
+public class TextMesh implements GLStateListener {
+
+    private static final int FLOATS_PER_GLYPH = 16;
+    private static final int STRIDE = 4 * Buffers.BYTESPERFLOAT;
+    private static final int MAX_GLYPHS = 16384; // 4 vertices per glyph addressed by short
+
+    private float[] vertices;
+    private FloatBuffer vertexBuffer;
+    private ShortBuffer faceBuffer;
+    private int capacity;
+    private int glyphCount;
+
+    private char[] laidText;
+    private int laidLength;
+    private BitmapFont laidFont;
+    private float laidScale;
+    private boolean dirty;
+
+    private float width;
+    private float height;
+
+    private boolean isStatic;
+    private GLMemory memory;
+    private int glVertexBufferID;
+    private int glFaceBufferID;
+    private int glCapacity;
+    private boolean uploaded;
+
+    public TextMesh() {
+
+        laidText = new char[16];
+        dirty = true;
+    }
+
+    /**
+     * builds layout of text if text, font or scale differs from the last one
+     *
+     * @return true if layout was built again
+     */
+    public boolean layout(CharSequence text, BitmapFont font, float scale) {
+
+        if (!dirty && font == laidFont && scale == laidScale && sameText(text)) {
+            return false;
+        }
+
+        copyText(text);
+        laidFont = font;
+        laidScale = scale;
+        dirty = false;
+        uploaded = false;
+
+        build(text, font, scale);
+        return true;
+    }
+
+    /**
+     * forces new layout by next {@link #layout(CharSequence, BitmapFont, float)}, ie. after font glyphs changed
+     */
+    public void invalidate() {
+
+        dirty = true;
+    }
+
+    private boolean sameText(CharSequence text) {
+
+        int length = text.length();
+        if (length != laidLength) {
+            return false;
+        }
+        char[] laid = laidText;
+        for (int i = 0; i < length; i++) {
+            if (laid[i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void copyText(CharSequence text) {
+
+        int length = text.length();
+        if (laidText.length < length) {
+            laidText = new char[Math.max(length, laidText.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            laidText[i] = text.charAt(i);
+        }
+        laidLength = length;
+    }
+
+    private void build(CharSequence text, BitmapFont font, float scale) {
+
+        int count = Math.min(text.length(), MAX_GLYPHS);
+        ensureCapacity(count);
+
+        float[] v = vertices;
+        float px = 0.0f;
+        float py = font.base * scale;
+        float lineHeight = font.lineHeight * scale;
+        int glyphs = 0;
+        int lines = 1;
+        width = 0.0f;
+
+        for (int i = 0; i < count; i++) {
+            char c = text.charAt(i);
+            BitmapLetter l = c < font.chars.length ? font.chars[c] : null;
+            if (l == null) {
+                if (c == '\n') {
+                    py -= lineHeight;
+                    px = 0.0f;
+                    lines++;
+                    continue;
+                }
+                l = font.chars[(char) 32];
+            }
+
+            if (l.xsize > 0.0f && l.ysize > 0.0f) {
+                float x0 = px + l.offsetX * scale;
+                float x1 = x0 + l.xsize * scale;
+                float y1 = py - l.offsetY * scale;
+                float y0 = y1 - l.ysize * scale;
+                float[] t = l.textureCoords;
+
+                int o = glyphs * FLOATS_PER_GLYPH;
+                v[o] = x0;      v[o + 1] = y0;  v[o + 2] = t[0];  v[o + 3] = t[1];
+                v[o + 4] = x1;  v[o + 5] = y0;  v[o + 6] = t[2];  v[o + 7] = t[3];
+                v[o + 8] = x0;  v[o + 9] = y1;  v[o + 10] = t[4]; v[o + 11] = t[5];
+                v[o + 12] = x1; v[o + 13] = y1; v[o + 14] = t[6]; v[o + 15] = t[7];
+                glyphs++;
+            }
+
+            px += l.advance * scale;
+            if (px > width) {
+                width = px;
+            }
+        }
+
+        glyphCount = glyphs;
+        height = lines * lineHeight;
+
+        vertexBuffer.clear();
+        vertexBuffer.put(v, 0, glyphs * FLOATS_PER_GLYPH);
+        vertexBuffer.position(0);
+    }
+
+    private void ensureCapacity(int glyphs) {
+
+        if (glyphs <= capacity && vertexBuffer != null) {
+            return;
+        }
+
+        capacity = Math.min(MAX_GLYPHS, Math.max(glyphs, Math.max(16, capacity * 2)));
+        vertices = new float[capacity * FLOATS_PER_GLYPH];
+        vertexBuffer = ByteBuffer.allocateDirect(vertices.length * Buffers.BYTESPERFLOAT).order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+        short[] faces = new short[capacity * 6];
+        for (int i = 0; i < capacity; i++) {
+            int f = i * 6;
+            short q = (short) (i * 4);
+            faces[f] = q;
+            faces[f + 1] = (short) (q + 1);
+            faces[f + 2] = (short) (q + 2);
+            faces[f + 3] = (short) (q + 1);
+            faces[f + 4] = (short) (q + 3);
+            faces[f + 5] = (short) (q + 2);
+        }
+        faceBuffer = Buffers.shortBuffer(faces);
+    }
+
+    /**
+     * draws laid text by one draw call, font texture and color uniform must be already bound
+     *
+     * @param shader    shader with MVP matrix, position and texture coords handles
+     * @param mvpMatrix matrix to put into shader
+     */
+    public void draw(BaseShader shader, float[] mvpMatrix) {
+
+        if (glyphCount == 0) {
+            return;
+        }
+
+        GLES20.glUniformMatrix4fv(shader.handle[0], 1, false, mvpMatrix, 0);
+        if (isStatic) {
+            upload();
+            BaseGLBuffer.glBindArray(glVertexBufferID, shader.handle[1], 2, STRIDE, 0);
+            BaseGLBuffer.glBindArray(glVertexBufferID, shader.handle[2], 2, STRIDE, 2 * Buffers.BYTESPERFLOAT);
+            BaseGLBuffer.glBindElements(glFaceBufferID);
+            BaseGLBuffer.glDrawElements(glyphCount * 6);
+            BaseGLBuffer.glUnbind();
+        } else {
+            BaseGLBuffer.glPutArray(vertexBuffer, shader.handle[1], 2, 0, STRIDE);
+            BaseGLBuffer.glPutArray(vertexBuffer, shader.handle[2], 2, 2, STRIDE);
+            BaseGLBuffer.glDrawElements(faceBuffer, glyphCount * 6, GLES20.GL_TRIANGLES);
+        }
+        BaseGLBuffer.glDisableAttribArray(shader.handle[1], shader.handle[2]);
+    }
+
+    // sends layout into VBOs, buffers are created again only when capacity grows
+    private void upload() {
+
+        if (uploaded) {
+            return;
+        }
+
+        if (glCapacity != capacity) {
+            release();
+            glVertexBufferID = BaseGL.genArrayFloatBuffer(vertexBuffer, GLES20.GL_STATIC_DRAW);
+            glFaceBufferID = BaseGL.genElementShortBuffer(faceBuffer);
+            glCapacity = capacity;
+            if (memory != null) {
+                memory.bufferAllocated(getGLBytes());
+            }
+        } else {
+            vertexBuffer.position(0);
+            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, glVertexBufferID);
+            GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, glyphCount * FLOATS_PER_GLYPH * Buffers.BYTESPERFLOAT, vertexBuffer);
+            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        }
+        uploaded = true;
+    }
+
+    private long getGLBytes() {
+
+        return (long) glCapacity * (FLOATS_PER_GLYPH * Buffers.BYTESPERFLOAT + 6 * Buffers.BYTESPERSHORT);
+    }
+
+    private void release() {
+
+        if (glCapacity > 0) {
+            BaseGL.destroyBuffers(glVertexBufferID, glFaceBufferID);
+            if (memory != null) {
+                memory.bufferReleased(getGLBytes());
+            }
+            glVertexBufferID = 0;
+            glFaceBufferID = 0;
+            glCapacity = 0;
+        }
+        uploaded = false;
+    }
+
+    /**
+     * static mesh keeps layout in VBOs, suitable for text which doesn't change every frame
+     *
+     * @param memory counts bytes of VBOs, can be null
+     */
+    public void setStatic(boolean isStatic, GLMemory memory) {
+
+        if (!isStatic && this.isStatic) {
+            release();
+        }
+        this.isStatic = isStatic;
+        this.memory = memory;
+        uploaded = false;
+    }
+
+    public boolean isStatic() {
+
+        return isStatic;
+    }
+
+    @Override
+    public void onGLCreate() {
+
+        glVertexBufferID = 0;
+        glFaceBufferID = 0;
+        glCapacity = 0;
+        uploaded = false;
+    }
+
+    @Override
+    public void onGLEnd() {
+
+        release();
+    }
+
+    /**
+     * deletes VBOs, note: must be performed in correct GL thread
+     */
+    public void destroy() {
+
+        release();
+    }
+
+    public int getGlyphCount() {
+
+        return glyphCount;
+    }
+
+    /**
+     * @return width of the longest line of laid text
+     */
+    public float getWidth() {
+
+        return width;
+    }
+
+    /**
+     * @return height of all lines of laid text
+     */
+    public float getHeight() {
+
+        return height;
+    }
+}
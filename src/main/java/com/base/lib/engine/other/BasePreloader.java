@@ -88,7 +88,7 @@ public class BasePreloader extends BaseRenderable {
     @Override
     public void draw() {
 
-        BaseGL.bindTexture(background.glid);
+        BaseGL.bindTexture(background);
         GLES20.glUniform4f(shader.handle[3], color.r, color.g, color.b, t);
         //BaseDraw.rect(shader, 0.0f, 0.0f, z, w, h); //TODO
 
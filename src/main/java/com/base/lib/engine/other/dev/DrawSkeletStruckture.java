@@ -135,14 +135,8 @@ public class DrawSkeletStruckture extends BaseRenderable implements BaseTouchLis
             float[] matrix = bone.getTransformMatrix();
             Point3 h = bone.getHead();
             Point3 t = bone.getTail();
-            float[] head = BaseMatrix.multiplyMV(matrix, 0, 0, 0);
-            temp[0] = head[0];
-            temp[1] = head[1];
-            temp[2] = head[2];
-            float[] tail = BaseMatrix.multiplyMV(matrix, t.x-h.x, t.y-h.y, t.z-h.z);
-            temp[3] = tail[0];
-            temp[4] = tail[1];
-            temp[5] = tail[2];
+            BaseMatrix.multiplyMV(temp, 0, matrix, 0, 0, 0);
+            BaseMatrix.multiplyMV(temp, 3, matrix, t.x-h.x, t.y-h.y, t.z-h.z);
 
             buffer.putVertices(temp);
 
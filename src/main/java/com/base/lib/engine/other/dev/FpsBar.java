@@ -119,7 +119,7 @@ public class FpsBar extends BaseRenderable {
     @Override
     public void draw() {
 
-        BaseGL.bindTexture(texture.glid);
+        BaseGL.bindTexture(texture);
         BaseGLBuffer.glPutArray(verts, shader.handle[1], 2);
         GLES20.glUniform4f(shader.handle[3], color.r, color.g, color.b, color.a);
         for (Num num : nums) {
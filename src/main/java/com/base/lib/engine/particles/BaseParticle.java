@@ -60,16 +60,13 @@ public class BaseParticle {
         action.actionLifeTime = action.actionRemainingTime = (long) (ps.minLifeTime + ps.lifetimeOffset * random.nextFloat());
 
         float speedModifier = ps.minSpeed + ps.speedOffset * random.nextFloat();
-        float[] vec = ParticleEmiter.vecs;
+        float[] vec = ps.vec;
 
-        ps.emiter.getPos(emiterOffset);
-        data[0] = vec[0];
-        data[1] = vec[1];
-        data[2] = vec[2];
+        ps.emiter.getPos(emiterOffset, data);
         if (ps.directionRandomness > 0) {
-            ps.emiter.getDir(emiterOffset, ps.directionRandomness);
+            ps.emiter.getDir(emiterOffset, ps.directionRandomness, vec);
         } else {
-            ps.emiter.getDir(emiterOffset);
+            ps.emiter.getDir(emiterOffset, vec);
         }
         action.x = vec[0] * speedModifier;
         action.y = vec[1] * speedModifier;
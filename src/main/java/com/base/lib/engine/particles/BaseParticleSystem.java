@@ -34,6 +34,7 @@ public class BaseParticleSystem extends BaseRenderable { //todo variables per se
     private BaseTexture texture;
     private ParticleBuffer buffer;
     private final BaseParticle[] particles;
+    final float[] vec = new float[3];
     private final int capacity;
 
     /**
@@ -181,7 +182,7 @@ public class BaseParticleSystem extends BaseRenderable { //todo variables per se
             count = emiter.emitCount;
         }
 
-        float[] segment = ParticleEmiter.vecs;
+        float[] segment = vec;
         for (int i = 0; i < count; i++) {
             BaseParticle particle = particles[currentIndex++];
             if (particle.inUse) {
@@ -189,7 +190,7 @@ public class BaseParticleSystem extends BaseRenderable { //todo variables per se
             }
             emiter.nextFaceIndex();
             particle.init(this, emiter.currentFaceIndex);
-            emiter.getSegmentSize(emiter.currentFaceIndex);
+            emiter.getSegmentSize(emiter.currentFaceIndex, segment);
             particle.modifyPos(segment[0] * modifier, segment[1] * modifier, segment[2] * modifier);
         }
     }
@@ -228,7 +229,7 @@ public class BaseParticleSystem extends BaseRenderable { //todo variables per se
         }
 
         if (!buffer.isEmpty()) {
-            BaseGL.bindTexture(texture.glid);
+            BaseGL.bindTexture(texture);
             buffer.draw(shader, camera, spriteSize);
         } else {
             unUse();
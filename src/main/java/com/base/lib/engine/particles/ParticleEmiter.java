@@ -10,7 +10,9 @@ import java.util.Random;
  */
 public class ParticleEmiter {
 
-    protected static final float[] vecs = new float[3];
+    private final float[] vecs = new float[3];
+    private final float[] matrix = new float[16];
+    private final float[] vert = new float[3];
 
     private float[] vertices;
     private float[] normals;
@@ -135,44 +137,88 @@ public class ParticleEmiter {
         }
     }
 
+    /**
+     * @return emit position in buffer of this emiter, valid until next call
+     */
     public float[] getPos(int index) {
 
-        vecs[0] = verticesOut[index];
-        vecs[1] = verticesOut[index + 1];
-        vecs[2] = verticesOut[index + 2];
+        return getPos(index, vecs);
+    }
+
+    /**
+     * writes emit position into first three values of out
+     */
+    public float[] getPos(int index, float[] out) {
+
+        out[0] = verticesOut[index];
+        out[1] = verticesOut[index + 1];
+        out[2] = verticesOut[index + 2];
 
-        return vecs;
+        return out;
     }
 
+    /**
+     * @return emit direction in buffer of this emiter, valid until next call
+     */
     public float[] getDir(int index) {
 
-        vecs[0] = normalsOut[index];
-        vecs[1] = normalsOut[index + 1];
-        vecs[2] = normalsOut[index + 2];
+        return getDir(index, vecs);
+    }
+
+    /**
+     * writes emit direction into first three values of out
+     */
+    public float[] getDir(int index, float[] out) {
+
+        out[0] = normalsOut[index];
+        out[1] = normalsOut[index + 1];
+        out[2] = normalsOut[index + 2];
 
-        return vecs;
+        return out;
     }
 
+    /**
+     * @return randomly rotated emit direction in buffer of this emiter, valid until next call
+     */
     public float[] getDir(int index, float randomness) {
 
-        BaseMatrix.setSMIdentity();
-        BaseMatrix.rotateZ(BaseMatrix._matrix, -180.0f * randomness + 360.0f * randomness * random.nextFloat());
-        float[] v = BaseMatrix.multiplyMV(BaseMatrix._matrix, normalsOut[index], normalsOut[index + 1], normalsOut[index + 2]);
+        return getDir(index, randomness, vecs);
+    }
+
+    /**
+     * writes randomly rotated emit direction into first three values of out
+     */
+    public float[] getDir(int index, float randomness, float[] out) {
+
+        BaseMatrix.setIdentity(matrix);
+        BaseMatrix.rotateZ(matrix, -180.0f * randomness + 360.0f * randomness * random.nextFloat());
+        BaseMatrix.multiplyMV(vert, matrix, normalsOut[index], normalsOut[index + 1], normalsOut[index + 2]);
 
-        vecs[0] = v[0];
-        vecs[1] = v[1];
-        vecs[2] = v[2];
+        out[0] = vert[0];
+        out[1] = vert[1];
+        out[2] = vert[2];
 
-        return vecs;
+        return out;
     }
 
+    /**
+     * @return segment size in buffer of this emiter, valid until next call
+     */
     public float[] getSegmentSize(int index) {
 
-        vecs[0] = segmentsOut[index];
-        vecs[1] = segmentsOut[index + 1];
-        vecs[2] = segmentsOut[index + 2];
+        return getSegmentSize(index, vecs);
+    }
+
+    /**
+     * writes segment size into first three values of out
+     */
+    public float[] getSegmentSize(int index, float[] out) {
+
+        out[0] = segmentsOut[index];
+        out[1] = segmentsOut[index + 1];
+        out[2] = segmentsOut[index + 2];
 
-        return vecs;
+        return out;
     }
 
     public float getSegmentWeight(int index) {
@@ -182,38 +228,38 @@ public class ParticleEmiter {
 
     public void transformVertices(float posX, float posY, float posZ, float scaleX, float scaleY, float scaleZ) {
 
-        BaseMatrix.setSMIdentity();
-        BaseMatrix.scale(BaseMatrix._matrix, scaleX, scaleY, scaleZ);
-        BaseMatrix.translateS(BaseMatrix._matrix, posX, posY, posZ);
-        BaseMatrix.multiplyMA(BaseMatrix._matrix, vertices, verticesOut);
+        BaseMatrix.setIdentity(matrix);
+        BaseMatrix.scale(matrix, scaleX, scaleY, scaleZ);
+        BaseMatrix.translateS(matrix, posX, posY, posZ);
+        BaseMatrix.multiplyMA(matrix, vertices, verticesOut);
     }
 
     public void transformSegments(float scaleX, float scaleY, float scaleZ) {
 
-        BaseMatrix.setSMIdentity();
-        BaseMatrix.scale(BaseMatrix._matrix, scaleX, scaleY, scaleZ);
-        BaseMatrix.multiplyMA(BaseMatrix._matrix, segments, segmentsOut);
+        BaseMatrix.setIdentity(matrix);
+        BaseMatrix.scale(matrix, scaleX, scaleY, scaleZ);
+        BaseMatrix.multiplyMA(matrix, segments, segmentsOut);
     }
 
     public void rotateVerticesZ(float rotZ) {
 
-        BaseMatrix.setSMIdentity();
-        BaseMatrix.rotateZ(BaseMatrix._matrix, rotZ);
-        BaseMatrix.multiplyMA(BaseMatrix._matrix, vertices, verticesOut);
+        BaseMatrix.setIdentity(matrix);
+        BaseMatrix.rotateZ(matrix, rotZ);
+        BaseMatrix.multiplyMA(matrix, vertices, verticesOut);
     }
 
     public void rotateDirections(float rotx, float roty, float rotz) {
 
-        BaseMatrix.setSMIdentity();
-        BaseMatrix.rotate(BaseMatrix._matrix, rotx, roty, rotz);
-        BaseMatrix.multiplyMA(BaseMatrix._matrix, normals, normalsOut);
+        BaseMatrix.setIdentity(matrix);
+        BaseMatrix.rotate(matrix, rotx, roty, rotz);
+        BaseMatrix.multiplyMA(matrix, normals, normalsOut);
     }
 
     public void reverseDirection() {
 
-        BaseMatrix.setSMIdentity();
-        BaseMatrix.rotateZ(BaseMatrix._matrix, 180.0f);
-        BaseMatrix.multiplyMA(BaseMatrix._matrix, normals, normalsOut);
+        BaseMatrix.setIdentity(matrix);
+        BaseMatrix.rotateZ(matrix, 180.0f);
+        BaseMatrix.multiplyMA(matrix, normals, normalsOut);
     }
 
     public void translatePoint(float x, float y, float z) {
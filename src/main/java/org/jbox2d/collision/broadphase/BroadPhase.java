@@ -37,6 +37,26 @@ public interface BroadPhase {
 
   void touchProxy(int proxyId);
 
+  /**
+   * Set the fat AABB of a proxy to a saved one, used to restore a world snapshot. Unlike moveProxy
+   * this does not buffer the proxy, no pairs are reported for it.
+   * 
+   * @param proxyId
+   * @param fatAABB
+   */
+  void setFatAABB(int proxyId, AABB fatAABB);
+
+  /**
+   * Proxies created until {@link #endBatch()} are inserted together instead of one by one, use
+   * it when many bodies are created at once. They must not be queried, moved or destroyed before.
+   */
+  void beginBatch();
+
+  /**
+   * Inserts the proxies created since {@link #beginBatch()}.
+   */
+  void endBatch();
+
   Object getUserData(int proxyId);
 
   AABB getFatAABB(int proxyId);
@@ -79,6 +99,18 @@ public interface BroadPhase {
    */
   void raycast(TreeRayCastCallback callback, RayCastInput input);
 
+  /**
+   * Same as {@link #query(TreeCallback, AABB)}, but with the traversal state of the caller, so it
+   * can run on more threads at once.
+   */
+  void query(TreeCallback callback, AABB aabb, QueryStack stack);
+
+  /**
+   * Same as {@link #raycast(TreeRayCastCallback, RayCastInput)}, but with the traversal state of
+   * the caller, so it can run on more threads at once.
+   */
+  void raycast(TreeRayCastCallback callback, RayCastInput input, QueryStack stack);
+
   /**
    * Get the height of the embedded tree.
    * 
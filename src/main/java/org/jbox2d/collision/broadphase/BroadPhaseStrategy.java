@@ -32,11 +32,40 @@ public interface BroadPhaseStrategy {
    * @return true if the proxy was re-inserted.
    */
   boolean moveProxy(int proxyId, AABB aabb, Vec2 displacement);
+
+  /**
+   * Set the fat AABB of a proxy to a saved one. The proxy is re-inserted if the AABB changed.
+   * 
+   * @param proxyId
+   * @param fatAABB
+   */
+  void setFatAABB(int proxyId, AABB fatAABB);
+
+  /**
+   * Proxies created until {@link #endBatch()} are not inserted one by one. They are built into a
+   * balanced subtree, which is inserted at once. They must not be queried, moved or destroyed
+   * before.
+   */
+  void beginBatch();
+
+  /**
+   * Builds the proxies created since {@link #beginBatch()} into a subtree and inserts it.
+   */
+  void endBatch();
   
   Object getUserData(int proxyId);
 
   AABB getFatAABB(int proxyId);
 
+  /**
+   * Test overlap of fat AABBs.
+   * 
+   * @param proxyIdA
+   * @param proxyIdB
+   * @return
+   */
+  boolean overlap(int proxyIdA, int proxyIdB);
+
   /**
    * Query an AABB for overlapping proxies. The callback class is called for each proxy that
    * overlaps the supplied AABB.
@@ -57,6 +86,18 @@ public interface BroadPhaseStrategy {
    */
   void raycast(TreeRayCastCallback callback, RayCastInput input);
 
+  /**
+   * Same as {@link #query(TreeCallback, AABB)}, but with the traversal state of the caller, so it
+   * can run on more threads at once.
+   */
+  void query(TreeCallback callback, AABB aabb, QueryStack stack);
+
+  /**
+   * Same as {@link #raycast(TreeRayCastCallback, RayCastInput)}, but with the traversal state of
+   * the caller, so it can run on more threads at once.
+   */
+  void raycast(TreeRayCastCallback callback, RayCastInput input, QueryStack stack);
+
   /**
    * Compute the height of the tree.
    */
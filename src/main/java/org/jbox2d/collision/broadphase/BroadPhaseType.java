@@ -0,0 +1,30 @@
+package org.jbox2d.collision.broadphase;
+
+/**
+ * Broad-phase implementations a {@link org.jbox2d.dynamics.World} can be created with.
+ */
+public enum BroadPhaseType {
+  /**
+   * {@link DynamicTree}, tree of node objects.
+   */
+  DYNAMIC_TREE,
+  /**
+   * {@link FlatDynamicTree}, the same tree stored in primitive arrays.
+   */
+  FLAT_DYNAMIC_TREE,
+  /**
+   * {@link SweepAndPruneBroadPhase}, for worlds with many static proxies.
+   */
+  SWEEP_AND_PRUNE;
+
+  public BroadPhase create() {
+    switch (this) {
+      case FLAT_DYNAMIC_TREE:
+        return new DefaultBroadPhaseBuffer(new FlatDynamicTree());
+      case SWEEP_AND_PRUNE:
+        return new SweepAndPruneBroadPhase();
+      default:
+        return new DefaultBroadPhaseBuffer(new DynamicTree());
+    }
+  }
+}
@@ -106,6 +106,21 @@ public class DefaultBroadPhaseBuffer implements TreeCallback, BroadPhase {
     }
   }
 
+  @Override
+  public final void setFatAABB(int proxyId, AABB fatAABB) {
+    m_tree.setFatAABB(proxyId, fatAABB);
+  }
+
+  @Override
+  public void beginBatch() {
+    m_tree.beginBatch();
+  }
+
+  @Override
+  public void endBatch() {
+    m_tree.endBatch();
+  }
+
   /* (non-Javadoc)
    * @see org.jbox2d.collision.broadphase.BroadPhase#touchProxy(int)
    */
@@ -135,19 +150,7 @@ public class DefaultBroadPhaseBuffer implements TreeCallback, BroadPhase {
    */
   @Override
   public boolean testOverlap(int proxyIdA, int proxyIdB) {
-    // return AABB.testOverlap(proxyA.aabb, proxyB.aabb);
-    //return m_tree.overlap(proxyIdA, proxyIdB);
-    final AABB a = m_tree.getFatAABB(proxyIdA);
-    final AABB b = m_tree.getFatAABB(proxyIdB);
-    if (b.lowerBound.x - a.upperBound.x > 0.0f || b.lowerBound.y - a.upperBound.y > 0.0f) {
-      return false;
-    }
-
-    if (a.lowerBound.x - b.upperBound.x > 0.0f || a.lowerBound.y - b.upperBound.y > 0.0f) {
-      return false;
-    }
-
-    return true;
+    return m_tree.overlap(proxyIdA, proxyIdB);
   }
 
   /* (non-Javadoc)
@@ -240,6 +243,17 @@ public class DefaultBroadPhaseBuffer implements TreeCallback, BroadPhase {
     m_tree.raycast(callback, input);
   }
 
+  @Override
+  public final void query(final TreeCallback callback, final AABB aabb, final QueryStack stack) {
+    m_tree.query(callback, aabb, stack);
+  }
+
+  @Override
+  public final void raycast(final TreeRayCastCallback callback, final RayCastInput input,
+      final QueryStack stack) {
+    m_tree.raycast(callback, input, stack);
+  }
+
   /* (non-Javadoc)
    * @see org.jbox2d.collision.broadphase.BroadPhase#getTreeHeight()
    */
@@ -23,6 +23,8 @@
  ******************************************************************************/
 package org.jbox2d.collision.broadphase;
 
+import java.util.Arrays;
+
 import org.jbox2d.callbacks.DebugDraw;
 import org.jbox2d.callbacks.TreeCallback;
 import org.jbox2d.callbacks.TreeRayCastCallback;
@@ -54,8 +56,14 @@ public class DynamicTree implements BroadPhaseStrategy {
 
   private int m_insertionCount;
 
+  // leaves created since beginBatch, not inserted yet
+  private boolean m_batching;
+  private int[] m_batch = new int[16];
+  private int m_batchCount;
+  private long[] m_batchKeys = new long[16];
+
   private final Vec2[] drawVecs = new Vec2[4];
-  private final TreeNodeStack nodeStack = new TreeNodeStack(10);
+  private final QueryStack m_queryStack = new QueryStack();
 
   public DynamicTree() {
     m_root = null;
@@ -90,7 +98,17 @@ public class DynamicTree implements BroadPhaseStrategy {
     nodeAABB.upperBound.y = aabb.upperBound.y + Settings.aabbExtension;
     node.userData = userData;
 
-    insertLeaf(proxyId);
+    if (m_batching) {
+      if (m_batchCount == m_batch.length) {
+        int[] old = m_batch;
+        m_batch = new int[m_batchCount * 2];
+        System.arraycopy(old, 0, m_batch, 0, m_batchCount);
+        m_batchKeys = new long[m_batchCount * 2];
+      }
+      m_batch[m_batchCount++] = proxyId;
+    } else {
+      insertLeaf(proxyId);
+    }
 
     return proxyId;
   }
@@ -113,8 +131,8 @@ public class DynamicTree implements BroadPhaseStrategy {
 
     final AABB nodeAABB = node.aabb;
     // if (nodeAABB.contains(aabb)) {
-    if (nodeAABB.lowerBound.x > aabb.lowerBound.x && nodeAABB.lowerBound.y > aabb.lowerBound.y
-        && aabb.upperBound.x > nodeAABB.upperBound.x && aabb.upperBound.y > nodeAABB.upperBound.y) {
+    if (nodeAABB.lowerBound.x <= aabb.lowerBound.x && nodeAABB.lowerBound.y <= aabb.lowerBound.y
+        && aabb.upperBound.x <= nodeAABB.upperBound.x && aabb.upperBound.y <= nodeAABB.upperBound.y) {
       return false;
     }
 
@@ -147,6 +165,40 @@ public class DynamicTree implements BroadPhaseStrategy {
     return true;
   }
 
+  @Override
+  public final void setFatAABB(int proxyId, AABB fatAABB) {
+    assert (0 <= proxyId && proxyId < m_nodeCapacity);
+    final DynamicTreeNode node = m_nodes[proxyId];
+    assert (node.isLeaf());
+
+    final AABB nodeAABB = node.aabb;
+    if (nodeAABB.lowerBound.x == fatAABB.lowerBound.x
+        && nodeAABB.lowerBound.y == fatAABB.lowerBound.y
+        && nodeAABB.upperBound.x == fatAABB.upperBound.x
+        && nodeAABB.upperBound.y == fatAABB.upperBound.y) {
+      return;
+    }
+
+    removeLeaf(node);
+    nodeAABB.set(fatAABB);
+    insertLeaf(proxyId);
+  }
+
+  @Override
+  public void beginBatch() {
+    m_batching = true;
+  }
+
+  @Override
+  public void endBatch() {
+    m_batching = false;
+    if (m_batchCount > 0) {
+      int subtree = buildBatch(0, m_batchCount);
+      m_batchCount = 0;
+      insertLeaf(subtree);
+    }
+  }
+
   @Override
   public final Object getUserData(int proxyId) {
     assert (0 <= proxyId && proxyId < m_nodeCapacity);
@@ -159,17 +211,30 @@ public class DynamicTree implements BroadPhaseStrategy {
     return m_nodes[proxyId].aabb;
   }
 
+  @Override
+  public final boolean overlap(int proxyIdA, int proxyIdB) {
+    return AABB.testOverlap(m_nodes[proxyIdA].aabb, m_nodes[proxyIdB].aabb);
+  }
+
   @Override
   public final void query(TreeCallback callback, AABB aabb) {
-    nodeStack.reset();
-    nodeStack.push(m_root);
+    query(callback, aabb, m_queryStack);
+  }
 
-    while (nodeStack.getCount() > 0) {
-      DynamicTreeNode node = nodeStack.pop();
-      if (node == null) {
+  @Override
+  public final void query(TreeCallback callback, AABB aabb, QueryStack stack) {
+    final DynamicTreeNode[] nodes = m_nodes;
+    int[] nodeStack = stack.nodes;
+    int count = 0;
+    nodeStack[count++] = m_root == null ? NULL_NODE : m_root.id;
+
+    while (count > 0) {
+      int nodeId = nodeStack[--count];
+      if (nodeId == NULL_NODE) {
         continue;
       }
 
+      final DynamicTreeNode node = nodes[nodeId];
       if (AABB.testOverlap(node.aabb, aabb)) {
         if (node.child1 == null) {
           boolean proceed = callback.treeCallback(node.id);
@@ -177,19 +242,25 @@ public class DynamicTree implements BroadPhaseStrategy {
             return;
           }
         } else {
-          nodeStack.push(node.child1);
-          nodeStack.push(node.child2);
+          if (count + 2 > nodeStack.length) {
+            nodeStack = stack.grow();
+          }
+          nodeStack[count++] = node.child1.id;
+          nodeStack[count++] = node.child2.id;
         }
       }
     }
   }
 
-  private final Vec2 r = new Vec2();
-  private final AABB aabb = new AABB();
-  private final RayCastInput subInput = new RayCastInput();
-
   @Override
   public void raycast(TreeRayCastCallback callback, RayCastInput input) {
+    raycast(callback, input, m_queryStack);
+  }
+
+  @Override
+  public void raycast(TreeRayCastCallback callback, RayCastInput input, QueryStack stack) {
+    final Vec2 r = stack.r;
+    final RayCastInput subInput = stack.subInput;
     final Vec2 p1 = input.p1;
     final Vec2 p2 = input.p2;
     float p1x = p1.x, p2x = p2.x, p1y = p1.y, p2y = p2.y;
@@ -218,7 +289,7 @@ public class DynamicTree implements BroadPhaseStrategy {
     float maxFraction = input.maxFraction;
 
     // Build a bounding box for the segment.
-    final AABB segAABB = aabb;
+    float segLowerX, segLowerY, segUpperX, segUpperY;
     // Vec2 t = p1 + maxFraction * (p2 - p1);
     // before inline
     // temp.set(p2).subLocal(p1).mulLocal(maxFraction).addLocal(p1);
@@ -226,22 +297,26 @@ public class DynamicTree implements BroadPhaseStrategy {
     // Vec2.maxToOut(p1, temp, segAABB.upperBound);
     tempx = (p2x - p1x) * maxFraction + p1x;
     tempy = (p2y - p1y) * maxFraction + p1y;
-    segAABB.lowerBound.x = p1x < tempx ? p1x : tempx;
-    segAABB.lowerBound.y = p1y < tempy ? p1y : tempy;
-    segAABB.upperBound.x = p1x > tempx ? p1x : tempx;
-    segAABB.upperBound.y = p1y > tempy ? p1y : tempy;
+    segLowerX = p1x < tempx ? p1x : tempx;
+    segLowerY = p1y < tempy ? p1y : tempy;
+    segUpperX = p1x > tempx ? p1x : tempx;
+    segUpperY = p1y > tempy ? p1y : tempy;
     // end inline
 
-    nodeStack.reset();
-    nodeStack.push(m_root);
-    while (nodeStack.getCount() > 0) {
-      final DynamicTreeNode node = nodeStack.pop();
-      if (node == null) {
+    final DynamicTreeNode[] nodes = m_nodes;
+    int[] nodeStack = stack.nodes;
+    int count = 0;
+    nodeStack[count++] = m_root == null ? NULL_NODE : m_root.id;
+    while (count > 0) {
+      final int nodeId = nodeStack[--count];
+      if (nodeId == NULL_NODE) {
         continue;
       }
 
+      final DynamicTreeNode node = nodes[nodeId];
       final AABB nodeAABB = node.aabb;
-      if (!AABB.testOverlap(nodeAABB, segAABB)) {
+      if (segLowerX - nodeAABB.upperBound.x > 0.0f || segLowerY - nodeAABB.upperBound.y > 0.0f
+          || nodeAABB.lowerBound.x - segUpperX > 0.0f || nodeAABB.lowerBound.y - segUpperY > 0.0f) {
         continue;
       }
 
@@ -282,14 +357,17 @@ public class DynamicTree implements BroadPhaseStrategy {
           // Vec2.maxToOut(p1, temp, segAABB.upperBound);
           tempx = (p2x - p1x) * maxFraction + p1x;
           tempy = (p2y - p1y) * maxFraction + p1y;
-          segAABB.lowerBound.x = p1x < tempx ? p1x : tempx;
-          segAABB.lowerBound.y = p1y < tempy ? p1y : tempy;
-          segAABB.upperBound.x = p1x > tempx ? p1x : tempx;
-          segAABB.upperBound.y = p1y > tempy ? p1y : tempy;
+          segLowerX = p1x < tempx ? p1x : tempx;
+          segLowerY = p1y < tempy ? p1y : tempy;
+          segUpperX = p1x > tempx ? p1x : tempx;
+          segUpperY = p1y > tempy ? p1y : tempy;
         }
       } else {
-        nodeStack.push(node.child1);
-        nodeStack.push(node.child2);
+        if (count + 2 > nodeStack.length) {
+          nodeStack = stack.grow();
+        }
+        nodeStack[count++] = node.child1.id;
+        nodeStack[count++] = node.child2.id;
       }
     }
   }
@@ -450,6 +528,63 @@ public class DynamicTree implements BroadPhaseStrategy {
     validate();
   }
 
+  /**
+   * Builds the batch leaves from start to end into a subtree, top down by splitting them in the
+   * middle of the longer axis of their centers.
+   * 
+   * @return root node of the subtree
+   */
+  private int buildBatch(int start, int end) {
+    if (end - start == 1) {
+      return m_batch[start];
+    }
+
+    float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+    float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+    for (int i = start; i < end; i++) {
+      AABB aabb = m_nodes[m_batch[i]].aabb;
+      float x = aabb.lowerBound.x + aabb.upperBound.x;
+      float y = aabb.lowerBound.y + aabb.upperBound.y;
+      minX = MathUtils.min(minX, x);
+      maxX = MathUtils.max(maxX, x);
+      minY = MathUtils.min(minY, y);
+      maxY = MathUtils.max(maxY, y);
+    }
+    boolean alongX = maxX - minX >= maxY - minY;
+
+    // sort by the center, the key orders like the float
+    final long[] keys = m_batchKeys;
+    for (int i = start; i < end; i++) {
+      AABB aabb = m_nodes[m_batch[i]].aabb;
+      float center = alongX ? aabb.lowerBound.x + aabb.upperBound.x
+          : aabb.lowerBound.y + aabb.upperBound.y;
+      int bits = Float.floatToIntBits(center + 0.0f);
+      bits ^= (bits >> 31) & 0x7fffffff;
+      keys[i] = (long) bits << 32 | m_batch[i];
+    }
+    Arrays.sort(keys, start, end);
+    for (int i = start; i < end; i++) {
+      m_batch[i] = (int) keys[i];
+    }
+
+    int middle = (start + end) >>> 1;
+    // the recursion can grow m_nodes, so index it only after both subtrees are built
+    int id1 = buildBatch(start, middle);
+    int id2 = buildBatch(middle, end);
+    DynamicTreeNode child1 = m_nodes[id1];
+    DynamicTreeNode child2 = m_nodes[id2];
+
+    DynamicTreeNode parent = allocateNode();
+    parent.child1 = child1;
+    parent.child2 = child2;
+    parent.height = 1 + MathUtils.max(child1.height, child2.height);
+    parent.aabb.combine(child1.aabb, child2.aabb);
+    parent.userData = null;
+    child1.parent = parent;
+    child2.parent = parent;
+    return parent.id;
+  }
+
   private final DynamicTreeNode allocateNode() {
     if (m_freeList == NULL_NODE) {
       assert (m_nodeCount == m_nodeCapacity);
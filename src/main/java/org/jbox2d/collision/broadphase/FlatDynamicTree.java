@@ -0,0 +1,1043 @@
+package org.jbox2d.collision.broadphase;
+
+import java.util.Arrays;
+
+import org.jbox2d.callbacks.DebugDraw;
+import org.jbox2d.callbacks.TreeCallback;
+import org.jbox2d.callbacks.TreeRayCastCallback;
+import org.jbox2d.collision.AABB;
+import org.jbox2d.collision.RayCastInput;
+import org.jbox2d.common.Color3f;
+import org.jbox2d.common.MathUtils;
+import org.jbox2d.common.Settings;
+import org.jbox2d.common.Vec2;
+
+/**
+ * Same tree as {@link DynamicTree}, but the nodes are kept in parallel primitive arrays instead of
+ * node objects: the bounds of node i are m_bounds[4 * i ... 4 * i + 3] (lower x, lower y, upper x,
+ * upper y), links are node indices. Traversal reads contiguous memory instead of chasing node, AABB
+ * and Vec2 references.
+ *
+ * {@link #getFatAABB(int)} returns a shared copy of the bounds, which is overwritten by the next
+ * call. Use {@link #overlap(int, int)} to compare two proxies.
+ */
+public class FlatDynamicTree implements BroadPhaseStrategy {
+  public static final int NULL_NODE = -1;
+
+  private static final int LOWER_X = 0;
+  private static final int LOWER_Y = 1;
+  private static final int UPPER_X = 2;
+  private static final int UPPER_Y = 3;
+
+  private int m_root;
+  private float[] m_bounds;
+  private int[] m_parent;
+  private int[] m_child1;
+  private int[] m_child2;
+  private int[] m_height;
+  private Object[] m_userData;
+  private int m_nodeCount;
+  private int m_nodeCapacity;
+
+  private int m_freeList;
+
+  private int m_insertionCount;
+
+  // leaves created since beginBatch, not inserted yet
+  private boolean m_batching;
+  private int[] m_batch = new int[16];
+  private int m_batchCount;
+  private long[] m_batchKeys = new long[16];
+
+  private final QueryStack m_queryStack = new QueryStack();
+
+  private final AABB m_fatAABB = new AABB();
+  private final Vec2[] drawVecs = new Vec2[4];
+
+  public FlatDynamicTree() {
+    m_root = NULL_NODE;
+    m_nodeCount = 0;
+    m_nodeCapacity = 0;
+    expandBuffers(16);
+
+    m_insertionCount = 0;
+
+    for (int i = 0; i < drawVecs.length; i++) {
+      drawVecs[i] = new Vec2();
+    }
+  }
+
+  private void expandBuffers(int capacity) {
+    int old = m_nodeCapacity;
+    m_bounds = copy(m_bounds, capacity * 4);
+    m_parent = copy(m_parent, capacity);
+    m_child1 = copy(m_child1, capacity);
+    m_child2 = copy(m_child2, capacity);
+    m_height = copy(m_height, capacity);
+    Object[] userData = new Object[capacity];
+    if (m_userData != null) {
+      System.arraycopy(m_userData, 0, userData, 0, old);
+    }
+    m_userData = userData;
+    m_nodeCapacity = capacity;
+
+    // Build a linked list for the free list.
+    for (int i = capacity - 1; i >= old; i--) {
+      m_parent[i] = (i == capacity - 1) ? NULL_NODE : i + 1;
+      m_height[i] = -1;
+    }
+    m_freeList = old;
+  }
+
+  private static int[] copy(int[] array, int length) {
+    int[] out = new int[length];
+    if (array != null) {
+      System.arraycopy(array, 0, out, 0, array.length);
+    }
+    return out;
+  }
+
+  private static float[] copy(float[] array, int length) {
+    float[] out = new float[length];
+    if (array != null) {
+      System.arraycopy(array, 0, out, 0, array.length);
+    }
+    return out;
+  }
+
+  @Override
+  public final int createProxy(final AABB aabb, Object userData) {
+    final int proxyId = allocateNode();
+    // Fatten the aabb
+    final int b = proxyId * 4;
+    m_bounds[b + LOWER_X] = aabb.lowerBound.x - Settings.aabbExtension;
+    m_bounds[b + LOWER_Y] = aabb.lowerBound.y - Settings.aabbExtension;
+    m_bounds[b + UPPER_X] = aabb.upperBound.x + Settings.aabbExtension;
+    m_bounds[b + UPPER_Y] = aabb.upperBound.y + Settings.aabbExtension;
+    m_userData[proxyId] = userData;
+
+    if (m_batching) {
+      if (m_batchCount == m_batch.length) {
+        m_batch = copy(m_batch, m_batchCount * 2);
+        m_batchKeys = new long[m_batchCount * 2];
+      }
+      m_batch[m_batchCount++] = proxyId;
+    } else {
+      insertLeaf(proxyId);
+    }
+
+    return proxyId;
+  }
+
+  @Override
+  public final void destroyProxy(int proxyId) {
+    assert (0 <= proxyId && proxyId < m_nodeCapacity);
+    assert (m_child1[proxyId] == NULL_NODE);
+
+    removeLeaf(proxyId);
+    freeNode(proxyId);
+  }
+
+  @Override
+  public final boolean moveProxy(int proxyId, final AABB aabb, Vec2 displacement) {
+    assert (0 <= proxyId && proxyId < m_nodeCapacity);
+    assert (m_child1[proxyId] == NULL_NODE);
+
+    final float[] bounds = m_bounds;
+    final int b = proxyId * 4;
+    if (bounds[b + LOWER_X] <= aabb.lowerBound.x && bounds[b + LOWER_Y] <= aabb.lowerBound.y
+        && aabb.upperBound.x <= bounds[b + UPPER_X] && aabb.upperBound.y <= bounds[b + UPPER_Y]) {
+      return false;
+    }
+
+    removeLeaf(proxyId);
+
+    // Extend AABB
+    float lowerX = aabb.lowerBound.x - Settings.aabbExtension;
+    float lowerY = aabb.lowerBound.y - Settings.aabbExtension;
+    float upperX = aabb.upperBound.x + Settings.aabbExtension;
+    float upperY = aabb.upperBound.y + Settings.aabbExtension;
+
+    // Predict AABB displacement.
+    final float dx = displacement.x * Settings.aabbMultiplier;
+    final float dy = displacement.y * Settings.aabbMultiplier;
+    if (dx < 0.0f) {
+      lowerX += dx;
+    } else {
+      upperX += dx;
+    }
+
+    if (dy < 0.0f) {
+      lowerY += dy;
+    } else {
+      upperY += dy;
+    }
+
+    bounds[b + LOWER_X] = lowerX;
+    bounds[b + LOWER_Y] = lowerY;
+    bounds[b + UPPER_X] = upperX;
+    bounds[b + UPPER_Y] = upperY;
+
+    insertLeaf(proxyId);
+    return true;
+  }
+
+  @Override
+  public final void setFatAABB(int proxyId, AABB fatAABB) {
+    assert (0 <= proxyId && proxyId < m_nodeCapacity);
+    assert (m_child1[proxyId] == NULL_NODE);
+
+    final float[] bounds = m_bounds;
+    final int b = proxyId * 4;
+    if (bounds[b + LOWER_X] == fatAABB.lowerBound.x && bounds[b + LOWER_Y] == fatAABB.lowerBound.y
+        && bounds[b + UPPER_X] == fatAABB.upperBound.x
+        && bounds[b + UPPER_Y] == fatAABB.upperBound.y) {
+      return;
+    }
+
+    removeLeaf(proxyId);
+    bounds[b + LOWER_X] = fatAABB.lowerBound.x;
+    bounds[b + LOWER_Y] = fatAABB.lowerBound.y;
+    bounds[b + UPPER_X] = fatAABB.upperBound.x;
+    bounds[b + UPPER_Y] = fatAABB.upperBound.y;
+    insertLeaf(proxyId);
+  }
+
+  @Override
+  public void beginBatch() {
+    m_batching = true;
+  }
+
+  @Override
+  public void endBatch() {
+    m_batching = false;
+    if (m_batchCount > 0) {
+      int subtree = buildBatch(0, m_batchCount);
+      m_batchCount = 0;
+      insertLeaf(subtree);
+    }
+  }
+
+  @Override
+  public final Object getUserData(int proxyId) {
+    assert (0 <= proxyId && proxyId < m_nodeCapacity);
+    return m_userData[proxyId];
+  }
+
+  /**
+   * @return shared copy of the fat bounds, valid until the next call
+   */
+  @Override
+  public final AABB getFatAABB(int proxyId) {
+    assert (0 <= proxyId && proxyId < m_nodeCapacity);
+    final int b = proxyId * 4;
+    m_fatAABB.lowerBound.x = m_bounds[b + LOWER_X];
+    m_fatAABB.lowerBound.y = m_bounds[b + LOWER_Y];
+    m_fatAABB.upperBound.x = m_bounds[b + UPPER_X];
+    m_fatAABB.upperBound.y = m_bounds[b + UPPER_Y];
+    return m_fatAABB;
+  }
+
+  @Override
+  public final boolean overlap(int proxyIdA, int proxyIdB) {
+    final float[] bounds = m_bounds;
+    final int a = proxyIdA * 4;
+    final int b = proxyIdB * 4;
+    if (bounds[b + LOWER_X] - bounds[a + UPPER_X] > 0.0f
+        || bounds[b + LOWER_Y] - bounds[a + UPPER_Y] > 0.0f) {
+      return false;
+    }
+
+    if (bounds[a + LOWER_X] - bounds[b + UPPER_X] > 0.0f
+        || bounds[a + LOWER_Y] - bounds[b + UPPER_Y] > 0.0f) {
+      return false;
+    }
+
+    return true;
+  }
+
+  @Override
+  public final void query(TreeCallback callback, AABB aabb) {
+    query(callback, aabb, m_queryStack);
+  }
+
+  @Override
+  public final void query(TreeCallback callback, AABB aabb, QueryStack queryStack) {
+    final float lowerX = aabb.lowerBound.x;
+    final float lowerY = aabb.lowerBound.y;
+    final float upperX = aabb.upperBound.x;
+    final float upperY = aabb.upperBound.y;
+    final float[] bounds = m_bounds;
+    final int[] child1 = m_child1;
+    final int[] child2 = m_child2;
+
+    int[] stack = queryStack.nodes;
+    int count = 0;
+    stack[count++] = m_root;
+
+    while (count > 0) {
+      int node = stack[--count];
+      if (node == NULL_NODE) {
+        continue;
+      }
+
+      final int b = node * 4;
+      if (lowerX - bounds[b + UPPER_X] > 0.0f || lowerY - bounds[b + UPPER_Y] > 0.0f
+          || bounds[b + LOWER_X] - upperX > 0.0f || bounds[b + LOWER_Y] - upperY > 0.0f) {
+        continue;
+      }
+
+      if (child1[node] == NULL_NODE) {
+        boolean proceed = callback.treeCallback(node);
+        if (!proceed) {
+          return;
+        }
+      } else {
+        if (count + 2 > stack.length) {
+          stack = queryStack.grow();
+        }
+        stack[count++] = child1[node];
+        stack[count++] = child2[node];
+      }
+    }
+  }
+
+  @Override
+  public void raycast(TreeRayCastCallback callback, RayCastInput input) {
+    raycast(callback, input, m_queryStack);
+  }
+
+  @Override
+  public void raycast(TreeRayCastCallback callback, RayCastInput input, QueryStack queryStack) {
+    final Vec2 r = queryStack.r;
+    final RayCastInput subInput = queryStack.subInput;
+    final Vec2 p1 = input.p1;
+    final Vec2 p2 = input.p2;
+    float p1x = p1.x, p2x = p2.x, p1y = p1.y, p2y = p2.y;
+    float vx, vy;
+    float rx, ry;
+    float absVx, absVy;
+    float cx, cy;
+    float hx, hy;
+    float tempx, tempy;
+    r.x = p2x - p1x;
+    r.y = p2y - p1y;
+    assert ((r.x * r.x + r.y * r.y) > 0f);
+    r.normalize();
+    rx = r.x;
+    ry = r.y;
+
+    // v is perpendicular to the segment.
+    vx = -1f * ry;
+    vy = 1f * rx;
+    absVx = MathUtils.abs(vx);
+    absVy = MathUtils.abs(vy);
+
+    // Separating axis for segment (Gino, p80).
+    // |dot(v, p1 - c)| > dot(|v|, h)
+
+    float maxFraction = input.maxFraction;
+
+    // Build a bounding box for the segment.
+    tempx = (p2x - p1x) * maxFraction + p1x;
+    tempy = (p2y - p1y) * maxFraction + p1y;
+    float segLowerX = p1x < tempx ? p1x : tempx;
+    float segLowerY = p1y < tempy ? p1y : tempy;
+    float segUpperX = p1x > tempx ? p1x : tempx;
+    float segUpperY = p1y > tempy ? p1y : tempy;
+
+    final float[] bounds = m_bounds;
+    final int[] child1 = m_child1;
+    final int[] child2 = m_child2;
+
+    int[] stack = queryStack.nodes;
+    int count = 0;
+    stack[count++] = m_root;
+
+    while (count > 0) {
+      final int node = stack[--count];
+      if (node == NULL_NODE) {
+        continue;
+      }
+
+      final int b = node * 4;
+      final float lowerX = bounds[b + LOWER_X];
+      final float lowerY = bounds[b + LOWER_Y];
+      final float upperX = bounds[b + UPPER_X];
+      final float upperY = bounds[b + UPPER_Y];
+      if (segLowerX - upperX > 0.0f || segLowerY - upperY > 0.0f || lowerX - segUpperX > 0.0f
+          || lowerY - segUpperY > 0.0f) {
+        continue;
+      }
+
+      // Separating axis for segment (Gino, p80).
+      // |dot(v, p1 - c)| > dot(|v|, h)
+      cx = (lowerX + upperX) * .5f;
+      cy = (lowerY + upperY) * .5f;
+      hx = (upperX - lowerX) * .5f;
+      hy = (upperY - lowerY) * .5f;
+      tempx = p1x - cx;
+      tempy = p1y - cy;
+      float separation = MathUtils.abs(vx * tempx + vy * tempy) - (absVx * hx + absVy * hy);
+      if (separation > 0.0f) {
+        continue;
+      }
+
+      if (child1[node] == NULL_NODE) {
+        subInput.p1.x = p1x;
+        subInput.p1.y = p1y;
+        subInput.p2.x = p2x;
+        subInput.p2.y = p2y;
+        subInput.maxFraction = maxFraction;
+
+        float value = callback.raycastCallback(subInput, node);
+
+        if (value == 0.0f) {
+          // The client has terminated the ray cast.
+          return;
+        }
+
+        if (value > 0.0f) {
+          // Update segment bounding box.
+          maxFraction = value;
+          tempx = (p2x - p1x) * maxFraction + p1x;
+          tempy = (p2y - p1y) * maxFraction + p1y;
+          segLowerX = p1x < tempx ? p1x : tempx;
+          segLowerY = p1y < tempy ? p1y : tempy;
+          segUpperX = p1x > tempx ? p1x : tempx;
+          segUpperY = p1y > tempy ? p1y : tempy;
+        }
+      } else {
+        if (count + 2 > stack.length) {
+          stack = queryStack.grow();
+        }
+        stack[count++] = child1[node];
+        stack[count++] = child2[node];
+      }
+    }
+  }
+
+  @Override
+  public final int computeHeight() {
+    return computeHeight(m_root);
+  }
+
+  private final int computeHeight(int node) {
+    assert (0 <= node && node < m_nodeCapacity);
+
+    if (m_child1[node] == NULL_NODE) {
+      return 0;
+    }
+    int height1 = computeHeight(m_child1[node]);
+    int height2 = computeHeight(m_child2[node]);
+    return 1 + MathUtils.max(height1, height2);
+  }
+
+  /**
+   * Validate this tree. For testing.
+   */
+  public void validate() {
+    validateStructure(m_root);
+    validateMetrics(m_root);
+
+    int freeCount = 0;
+    int freeNode = m_freeList;
+    while (freeNode != NULL_NODE) {
+      assert (0 <= freeNode && freeNode < m_nodeCapacity);
+      freeNode = m_parent[freeNode];
+      ++freeCount;
+    }
+
+    assert (getHeight() == computeHeight());
+
+    assert (m_nodeCount + freeCount == m_nodeCapacity);
+  }
+
+  @Override
+  public int getHeight() {
+    if (m_root == NULL_NODE) {
+      return 0;
+    }
+    return m_height[m_root];
+  }
+
+  @Override
+  public int getMaxBalance() {
+    int maxBalance = 0;
+    for (int i = 0; i < m_nodeCapacity; ++i) {
+      if (m_height[i] <= 1) {
+        continue;
+      }
+
+      assert (m_child1[i] != NULL_NODE);
+
+      int balance = MathUtils.abs(m_height[m_child2[i]] - m_height[m_child1[i]]);
+      maxBalance = MathUtils.max(maxBalance, balance);
+    }
+
+    return maxBalance;
+  }
+
+  private float perimeter(int node) {
+    final int b = node * 4;
+    return 2.0f * (m_bounds[b + UPPER_X] - m_bounds[b + LOWER_X] + m_bounds[b + UPPER_Y]
+        - m_bounds[b + LOWER_Y]);
+  }
+
+  @Override
+  public float getAreaRatio() {
+    if (m_root == NULL_NODE) {
+      return 0.0f;
+    }
+
+    float rootArea = perimeter(m_root);
+
+    float totalArea = 0.0f;
+    for (int i = 0; i < m_nodeCapacity; ++i) {
+      if (m_height[i] < 0) {
+        // Free node in pool
+        continue;
+      }
+
+      totalArea += perimeter(i);
+    }
+
+    return totalArea / rootArea;
+  }
+
+  /**
+   * Build an optimal tree. Very expensive. For testing.
+   */
+  public void rebuildBottomUp() {
+    int[] nodes = new int[m_nodeCount];
+    int count = 0;
+
+    // Build array of leaves. Free the rest.
+    for (int i = 0; i < m_nodeCapacity; ++i) {
+      if (m_height[i] < 0) {
+        // free node in pool
+        continue;
+      }
+
+      if (m_child1[i] == NULL_NODE) {
+        m_parent[i] = NULL_NODE;
+        nodes[count] = i;
+        ++count;
+      } else {
+        freeNode(i);
+      }
+    }
+
+    final float[] bounds = m_bounds;
+    while (count > 1) {
+      float minCost = Float.MAX_VALUE;
+      int iMin = -1, jMin = -1;
+      for (int i = 0; i < count; ++i) {
+        int bi = nodes[i] * 4;
+
+        for (int j = i + 1; j < count; ++j) {
+          int bj = nodes[j] * 4;
+          float cost = 2.0f * (MathUtils.max(bounds[bi + UPPER_X], bounds[bj + UPPER_X])
+              - MathUtils.min(bounds[bi + LOWER_X], bounds[bj + LOWER_X])
+              + MathUtils.max(bounds[bi + UPPER_Y], bounds[bj + UPPER_Y])
+              - MathUtils.min(bounds[bi + LOWER_Y], bounds[bj + LOWER_Y]));
+          if (cost < minCost) {
+            iMin = i;
+            jMin = j;
+            minCost = cost;
+          }
+        }
+      }
+
+      int index1 = nodes[iMin];
+      int index2 = nodes[jMin];
+
+      int parent = allocateNode();
+      m_child1[parent] = index1;
+      m_child2[parent] = index2;
+      m_height[parent] = 1 + MathUtils.max(m_height[index1], m_height[index2]);
+      combine(parent, index1, index2);
+      m_parent[parent] = NULL_NODE;
+
+      m_parent[index1] = parent;
+      m_parent[index2] = parent;
+
+      nodes[jMin] = nodes[count - 1];
+      nodes[iMin] = parent;
+      --count;
+    }
+
+    m_root = count > 0 ? nodes[0] : NULL_NODE;
+
+    validate();
+  }
+
+  /**
+   * Builds the batch leaves from start to end into a subtree, top down by splitting them in the
+   * middle of the longer axis of their centers.
+   * 
+   * @return root node of the subtree
+   */
+  private int buildBatch(int start, int end) {
+    if (end - start == 1) {
+      return m_batch[start];
+    }
+
+    float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+    float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+    for (int i = start; i < end; i++) {
+      int b = m_batch[i] * 4;
+      float x = m_bounds[b + LOWER_X] + m_bounds[b + UPPER_X];
+      float y = m_bounds[b + LOWER_Y] + m_bounds[b + UPPER_Y];
+      minX = MathUtils.min(minX, x);
+      maxX = MathUtils.max(maxX, x);
+      minY = MathUtils.min(minY, y);
+      maxY = MathUtils.max(maxY, y);
+    }
+    final int axis = maxX - minX >= maxY - minY ? LOWER_X : LOWER_Y;
+
+    // sort by the center, the key orders like the float
+    final long[] keys = m_batchKeys;
+    for (int i = start; i < end; i++) {
+      int b = m_batch[i] * 4;
+      float center = m_bounds[b + axis] + m_bounds[b + axis + 2];
+      int bits = Float.floatToIntBits(center + 0.0f);
+      bits ^= (bits >> 31) & 0x7fffffff;
+      keys[i] = (long) bits << 32 | m_batch[i];
+    }
+    Arrays.sort(keys, start, end);
+    for (int i = start; i < end; i++) {
+      m_batch[i] = (int) keys[i];
+    }
+
+    int middle = (start + end) >>> 1;
+    int child1 = buildBatch(start, middle);
+    int child2 = buildBatch(middle, end);
+
+    // may expand the buffers
+    int parent = allocateNode();
+    m_child1[parent] = child1;
+    m_child2[parent] = child2;
+    m_height[parent] = 1 + MathUtils.max(m_height[child1], m_height[child2]);
+    combine(parent, child1, child2);
+    m_parent[child1] = parent;
+    m_parent[child2] = parent;
+    return parent;
+  }
+
+  private final int allocateNode() {
+    if (m_freeList == NULL_NODE) {
+      assert (m_nodeCount == m_nodeCapacity);
+      expandBuffers(m_nodeCapacity * 2);
+    }
+    int node = m_freeList;
+    m_freeList = m_parent[node];
+
+    m_parent[node] = NULL_NODE;
+    m_child1[node] = NULL_NODE;
+    m_child2[node] = NULL_NODE;
+    m_height[node] = 0;
+    m_userData[node] = null;
+    ++m_nodeCount;
+    return node;
+  }
+
+  /**
+   * returns a node to the pool
+   */
+  private final void freeNode(int node) {
+    assert (node != NULL_NODE);
+    assert (0 < m_nodeCount);
+    m_parent[node] = m_freeList;
+    m_height[node] = -1;
+    m_userData[node] = null;
+    m_freeList = node;
+    m_nodeCount--;
+  }
+
+  /**
+   * bounds of node = union of bounds of a and b
+   */
+  private void combine(int node, int a, int b) {
+    final float[] bounds = m_bounds;
+    final int n = node * 4;
+    final int ba = a * 4;
+    final int bb = b * 4;
+    bounds[n + LOWER_X] = MathUtils.min(bounds[ba + LOWER_X], bounds[bb + LOWER_X]);
+    bounds[n + LOWER_Y] = MathUtils.min(bounds[ba + LOWER_Y], bounds[bb + LOWER_Y]);
+    bounds[n + UPPER_X] = MathUtils.max(bounds[ba + UPPER_X], bounds[bb + UPPER_X]);
+    bounds[n + UPPER_Y] = MathUtils.max(bounds[ba + UPPER_Y], bounds[bb + UPPER_Y]);
+  }
+
+  /**
+   * perimeter of union of bounds of a and b
+   */
+  private float combinedPerimeter(int a, int b) {
+    final float[] bounds = m_bounds;
+    final int ba = a * 4;
+    final int bb = b * 4;
+    return 2.0f * (MathUtils.max(bounds[ba + UPPER_X], bounds[bb + UPPER_X])
+        - MathUtils.min(bounds[ba + LOWER_X], bounds[bb + LOWER_X])
+        + MathUtils.max(bounds[ba + UPPER_Y], bounds[bb + UPPER_Y])
+        - MathUtils.min(bounds[ba + LOWER_Y], bounds[bb + LOWER_Y]));
+  }
+
+  private final void insertLeaf(int leaf) {
+    m_insertionCount++;
+
+    if (m_root == NULL_NODE) {
+      m_root = leaf;
+      m_parent[m_root] = NULL_NODE;
+      return;
+    }
+
+    // find the best sibling
+    int index = m_root;
+    while (m_child1[index] != NULL_NODE) {
+      final int node = index;
+      int child1 = m_child1[node];
+      int child2 = m_child2[node];
+
+      float area = perimeter(node);
+
+      float combinedArea = combinedPerimeter(node, leaf);
+
+      // Cost of creating a new parent for this node and the new leaf
+      float cost = 2.0f * combinedArea;
+
+      // Minimum cost of pushing the leaf further down the tree
+      float inheritanceCost = 2.0f * (combinedArea - area);
+
+      // Cost of descending into child1
+      float cost1;
+      if (m_child1[child1] == NULL_NODE) {
+        cost1 = combinedPerimeter(leaf, child1) + inheritanceCost;
+      } else {
+        float oldArea = perimeter(child1);
+        float newArea = combinedPerimeter(leaf, child1);
+        cost1 = (newArea - oldArea) + inheritanceCost;
+      }
+
+      // Cost of descending into child2
+      float cost2;
+      if (m_child1[child2] == NULL_NODE) {
+        cost2 = combinedPerimeter(leaf, child2) + inheritanceCost;
+      } else {
+        float oldArea = perimeter(child2);
+        float newArea = combinedPerimeter(leaf, child2);
+        cost2 = newArea - oldArea + inheritanceCost;
+      }
+
+      // Descend according to the minimum cost.
+      if (cost < cost1 && cost < cost2) {
+        break;
+      }
+
+      // Descend
+      if (cost1 < cost2) {
+        index = child1;
+      } else {
+        index = child2;
+      }
+    }
+
+    int sibling = index;
+    int oldParent = m_parent[sibling];
+    final int newParent = allocateNode();
+    m_parent[newParent] = oldParent;
+    m_userData[newParent] = null;
+    combine(newParent, leaf, sibling);
+    m_height[newParent] = m_height[sibling] + 1;
+
+    if (oldParent != NULL_NODE) {
+      // The sibling was not the root.
+      if (m_child1[oldParent] == sibling) {
+        m_child1[oldParent] = newParent;
+      } else {
+        m_child2[oldParent] = newParent;
+      }
+
+      m_child1[newParent] = sibling;
+      m_child2[newParent] = leaf;
+      m_parent[sibling] = newParent;
+      m_parent[leaf] = newParent;
+    } else {
+      // The sibling was the root.
+      m_child1[newParent] = sibling;
+      m_child2[newParent] = leaf;
+      m_parent[sibling] = newParent;
+      m_parent[leaf] = newParent;
+      m_root = newParent;
+    }
+
+    // Walk back up the tree fixing heights and AABBs
+    index = m_parent[leaf];
+    while (index != NULL_NODE) {
+      index = balance(index);
+
+      int child1 = m_child1[index];
+      int child2 = m_child2[index];
+
+      assert (child1 != NULL_NODE);
+      assert (child2 != NULL_NODE);
+
+      m_height[index] = 1 + MathUtils.max(m_height[child1], m_height[child2]);
+      combine(index, child1, child2);
+
+      index = m_parent[index];
+    }
+
+    // validate();
+  }
+
+  private final void removeLeaf(int leaf) {
+    if (leaf == m_root) {
+      m_root = NULL_NODE;
+      return;
+    }
+
+    int parent = m_parent[leaf];
+    int grandParent = m_parent[parent];
+    int sibling;
+    if (m_child1[parent] == leaf) {
+      sibling = m_child2[parent];
+    } else {
+      sibling = m_child1[parent];
+    }
+
+    if (grandParent != NULL_NODE) {
+      // Destroy parent and connect sibling to grandParent.
+      if (m_child1[grandParent] == parent) {
+        m_child1[grandParent] = sibling;
+      } else {
+        m_child2[grandParent] = sibling;
+      }
+      m_parent[sibling] = grandParent;
+      freeNode(parent);
+
+      // Adjust ancestor bounds.
+      int index = grandParent;
+      while (index != NULL_NODE) {
+        index = balance(index);
+
+        int child1 = m_child1[index];
+        int child2 = m_child2[index];
+
+        combine(index, child1, child2);
+        m_height[index] = 1 + MathUtils.max(m_height[child1], m_height[child2]);
+
+        index = m_parent[index];
+      }
+    } else {
+      m_root = sibling;
+      m_parent[sibling] = NULL_NODE;
+      freeNode(parent);
+    }
+
+    // validate();
+  }
+
+  // Perform a left or right rotation if node A is imbalanced.
+  // Returns the new root index.
+  private int balance(int iA) {
+    assert (iA != NULL_NODE);
+
+    if (m_child1[iA] == NULL_NODE || m_height[iA] < 2) {
+      return iA;
+    }
+
+    int iB = m_child1[iA];
+    int iC = m_child2[iA];
+    assert (0 <= iB && iB < m_nodeCapacity);
+    assert (0 <= iC && iC < m_nodeCapacity);
+
+    int balance = m_height[iC] - m_height[iB];
+
+    // Rotate C up
+    if (balance > 1) {
+      int iF = m_child1[iC];
+      int iG = m_child2[iC];
+      assert (0 <= iF && iF < m_nodeCapacity);
+      assert (0 <= iG && iG < m_nodeCapacity);
+
+      // Swap A and C
+      m_child1[iC] = iA;
+      int cParent = m_parent[iC] = m_parent[iA];
+      m_parent[iA] = iC;
+
+      // A's old parent should point to C
+      if (cParent != NULL_NODE) {
+        if (m_child1[cParent] == iA) {
+          m_child1[cParent] = iC;
+        } else {
+          assert (m_child2[cParent] == iA);
+          m_child2[cParent] = iC;
+        }
+      } else {
+        m_root = iC;
+      }
+
+      // Rotate
+      if (m_height[iF] > m_height[iG]) {
+        m_child2[iC] = iF;
+        m_child2[iA] = iG;
+        m_parent[iG] = iA;
+        combine(iA, iB, iG);
+        combine(iC, iA, iF);
+
+        m_height[iA] = 1 + MathUtils.max(m_height[iB], m_height[iG]);
+        m_height[iC] = 1 + MathUtils.max(m_height[iA], m_height[iF]);
+      } else {
+        m_child2[iC] = iG;
+        m_child2[iA] = iF;
+        m_parent[iF] = iA;
+        combine(iA, iB, iF);
+        combine(iC, iA, iG);
+
+        m_height[iA] = 1 + MathUtils.max(m_height[iB], m_height[iF]);
+        m_height[iC] = 1 + MathUtils.max(m_height[iA], m_height[iG]);
+      }
+
+      return iC;
+    }
+
+    // Rotate B up
+    if (balance < -1) {
+      int iD = m_child1[iB];
+      int iE = m_child2[iB];
+      assert (0 <= iD && iD < m_nodeCapacity);
+      assert (0 <= iE && iE < m_nodeCapacity);
+
+      // Swap A and B
+      m_child1[iB] = iA;
+      int bParent = m_parent[iB] = m_parent[iA];
+      m_parent[iA] = iB;
+
+      // A's old parent should point to B
+      if (bParent != NULL_NODE) {
+        if (m_child1[bParent] == iA) {
+          m_child1[bParent] = iB;
+        } else {
+          assert (m_child2[bParent] == iA);
+          m_child2[bParent] = iB;
+        }
+      } else {
+        m_root = iB;
+      }
+
+      // Rotate
+      if (m_height[iD] > m_height[iE]) {
+        m_child2[iB] = iD;
+        m_child1[iA] = iE;
+        m_parent[iE] = iA;
+        combine(iA, iC, iE);
+        combine(iB, iA, iD);
+
+        m_height[iA] = 1 + MathUtils.max(m_height[iC], m_height[iE]);
+        m_height[iB] = 1 + MathUtils.max(m_height[iA], m_height[iD]);
+      } else {
+        m_child2[iB] = iE;
+        m_child1[iA] = iD;
+        m_parent[iD] = iA;
+        combine(iA, iC, iD);
+        combine(iB, iA, iE);
+
+        m_height[iA] = 1 + MathUtils.max(m_height[iC], m_height[iD]);
+        m_height[iB] = 1 + MathUtils.max(m_height[iA], m_height[iE]);
+      }
+
+      return iB;
+    }
+
+    return iA;
+  }
+
+  private void validateStructure(int node) {
+    if (node == NULL_NODE) {
+      return;
+    }
+
+    if (node == m_root) {
+      assert (m_parent[node] == NULL_NODE);
+    }
+
+    int child1 = m_child1[node];
+    int child2 = m_child2[node];
+
+    if (child1 == NULL_NODE) {
+      assert (child2 == NULL_NODE);
+      assert (m_height[node] == 0);
+      return;
+    }
+
+    assert (0 <= child1 && child1 < m_nodeCapacity);
+    assert (0 <= child2 && child2 < m_nodeCapacity);
+
+    assert (m_parent[child1] == node);
+    assert (m_parent[child2] == node);
+
+    validateStructure(child1);
+    validateStructure(child2);
+  }
+
+  private void validateMetrics(int node) {
+    if (node == NULL_NODE) {
+      return;
+    }
+
+    int child1 = m_child1[node];
+    int child2 = m_child2[node];
+
+    if (child1 == NULL_NODE) {
+      assert (child2 == NULL_NODE);
+      assert (m_height[node] == 0);
+      return;
+    }
+
+    assert (0 <= child1 && child1 < m_nodeCapacity);
+    assert (0 <= child2 && child2 < m_nodeCapacity);
+
+    int height = 1 + MathUtils.max(m_height[child1], m_height[child2]);
+    assert (m_height[node] == height);
+
+    final int n = node * 4;
+    final int b1 = child1 * 4;
+    final int b2 = child2 * 4;
+    assert (m_bounds[n + LOWER_X] == MathUtils.min(m_bounds[b1 + LOWER_X], m_bounds[b2 + LOWER_X]));
+    assert (m_bounds[n + LOWER_Y] == MathUtils.min(m_bounds[b1 + LOWER_Y], m_bounds[b2 + LOWER_Y]));
+    assert (m_bounds[n + UPPER_X] == MathUtils.max(m_bounds[b1 + UPPER_X], m_bounds[b2 + UPPER_X]));
+    assert (m_bounds[n + UPPER_Y] == MathUtils.max(m_bounds[b1 + UPPER_Y], m_bounds[b2 + UPPER_Y]));
+
+    validateMetrics(child1);
+    validateMetrics(child2);
+  }
+
+  @Override
+  public void drawTree(DebugDraw argDraw) {
+    if (m_root == NULL_NODE) {
+      return;
+    }
+    int height = computeHeight();
+    drawTree(argDraw, m_root, 0, height);
+  }
+
+  private final Color3f color = new Color3f();
+  private final Vec2 textVec = new Vec2();
+
+  public void drawTree(DebugDraw argDraw, int node, int spot, int height) {
+    getFatAABB(node).getVertices(drawVecs);
+
+    color.set(1, (height - spot) * 1f / height, (height - spot) * 1f / height);
+    argDraw.drawPolygon(drawVecs, 4, color);
+
+    argDraw.getViewportTranform().getWorldToScreen(m_fatAABB.upperBound, textVec);
+    argDraw.drawString(textVec.x, textVec.y, node + "-" + (spot + 1) + "/" + height, color);
+
+    if (m_child1[node] != NULL_NODE) {
+      drawTree(argDraw, m_child1[node], spot + 1, height);
+    }
+    if (m_child2[node] != NULL_NODE) {
+      drawTree(argDraw, m_child2[node], spot + 1, height);
+    }
+  }
+}
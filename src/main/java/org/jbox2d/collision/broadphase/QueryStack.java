@@ -0,0 +1,30 @@
+package org.jbox2d.collision.broadphase;
+
+import org.jbox2d.collision.RayCastInput;
+import org.jbox2d.common.Vec2;
+
+/**
+ * Traversal state of a broad-phase query or ray cast. Queries that pass their own stack may run on
+ * more threads at once, as long as the broad-phase is not modified meanwhile.
+ */
+public class QueryStack {
+  public int[] nodes;
+  public final RayCastInput subInput = new RayCastInput();
+  public final Vec2 r = new Vec2();
+
+  public QueryStack() {
+    nodes = new int[64];
+  }
+
+  /**
+   * Doubles the node stack.
+   * 
+   * @return the new stack, the old one is copied into it
+   */
+  public int[] grow() {
+    int[] bigger = new int[nodes.length * 2];
+    System.arraycopy(nodes, 0, bigger, 0, nodes.length);
+    nodes = bigger;
+    return bigger;
+  }
+}
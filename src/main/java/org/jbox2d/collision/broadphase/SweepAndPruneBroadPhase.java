@@ -0,0 +1,769 @@
+package org.jbox2d.collision.broadphase;
+
+import java.util.Arrays;
+
+import org.jbox2d.callbacks.DebugDraw;
+import org.jbox2d.callbacks.PairCallback;
+import org.jbox2d.callbacks.TreeCallback;
+import org.jbox2d.callbacks.TreeRayCastCallback;
+import org.jbox2d.collision.AABB;
+import org.jbox2d.collision.RayCastInput;
+import org.jbox2d.common.Color3f;
+import org.jbox2d.common.MathUtils;
+import org.jbox2d.common.Settings;
+import org.jbox2d.common.Vec2;
+
+/**
+ * Incremental sweep and prune broad-phase. The fat AABB endpoints of all proxies are kept sorted
+ * on both axes. When a proxy leaves its fat AABB its endpoints are moved by insertion sort, and
+ * every swap where a lower bound passes an upper bound of another proxy is an overlap that may have
+ * started. Those pairs are buffered and reported by {@link #updatePairs(PairCallback)}, so the cost
+ * of a step depends on how far the proxies moved, not on how many proxies there are. Only created
+ * and touched proxies are queried against all others.
+ *
+ * This suits worlds with many static proxies and few moving ones. Queries and ray casts scan the x
+ * axis, widened by the largest proxy width, so very wide proxies make them slower.
+ *
+ * Like {@link DefaultBroadPhaseBuffer}, the pairs are not persisted, it is up to the client to
+ * track subsequent overlap.
+ */
+public class SweepAndPruneBroadPhase implements BroadPhase, TreeCallback {
+
+  private static final int LOWER_X = 0;
+  private static final int LOWER_Y = 1;
+  private static final int UPPER_X = 2;
+  private static final int UPPER_Y = 3;
+
+  private static final int AXIS_X = 0;
+  private static final int AXIS_Y = 1;
+
+  // proxies, indexed by proxy id
+  private float[] m_bounds;
+  private int[] m_endpointIndex;
+  private Object[] m_userData;
+  private int m_proxyCapacity;
+  private int m_proxyIdCount;
+  private int m_proxyCount;
+
+  private int[] m_freeIds;
+  private int m_freeCount;
+
+  // sorted endpoints of both axes, endpoint is proxy id << 1 | 1 for upper bound
+  private final float[][] m_values = new float[2][];
+  private final int[][] m_endpoints = new int[2][];
+  private int m_endpointCount;
+  // endpoints of created proxies are appended after the sorted ones and merged in later
+  private volatile int m_sortedCount;
+  private long[] m_mergeKeys = new long[32];
+
+  private float m_maxExtent;
+  private boolean m_maxExtentDirty;
+  // set while restoring fat AABBs, the moved endpoints report no pairs
+  private boolean m_restoring;
+
+  private int[] m_touchBuffer;
+  private int m_touchCount;
+
+  private Pair[] m_pairBuffer;
+  private int m_pairCapacity;
+  private int m_pairCount;
+
+  private int m_queryProxyId;
+
+  private final AABB m_fatAABB = new AABB();
+
+  public SweepAndPruneBroadPhase() {
+    m_proxyCount = 0;
+    m_proxyIdCount = 0;
+    m_proxyCapacity = 0;
+    m_endpointCount = 0;
+    m_sortedCount = 0;
+    expandProxies(16);
+
+    m_freeIds = new int[16];
+    m_freeCount = 0;
+
+    m_touchBuffer = new int[16];
+    m_touchCount = 0;
+
+    m_pairCapacity = 16;
+    m_pairCount = 0;
+    m_pairBuffer = new Pair[m_pairCapacity];
+    for (int i = 0; i < m_pairCapacity; i++) {
+      m_pairBuffer[i] = new Pair();
+    }
+
+    m_maxExtent = 0;
+    m_maxExtentDirty = false;
+    m_queryProxyId = NULL_PROXY;
+  }
+
+  private void expandProxies(int capacity) {
+    float[] bounds = new float[capacity * 4];
+    int[] endpointIndex = new int[capacity * 4];
+    Object[] userData = new Object[capacity];
+    if (m_bounds != null) {
+      System.arraycopy(m_bounds, 0, bounds, 0, m_bounds.length);
+      System.arraycopy(m_endpointIndex, 0, endpointIndex, 0, m_endpointIndex.length);
+      System.arraycopy(m_userData, 0, userData, 0, m_userData.length);
+    }
+    m_bounds = bounds;
+    m_endpointIndex = endpointIndex;
+    m_userData = userData;
+
+    for (int axis = 0; axis < 2; axis++) {
+      float[] values = new float[capacity * 2];
+      int[] endpoints = new int[capacity * 2];
+      if (m_values[axis] != null) {
+        System.arraycopy(m_values[axis], 0, values, 0, m_endpointCount);
+        System.arraycopy(m_endpoints[axis], 0, endpoints, 0, m_endpointCount);
+      }
+      m_values[axis] = values;
+      m_endpoints[axis] = endpoints;
+    }
+    m_proxyCapacity = capacity;
+  }
+
+  @Override
+  public final int createProxy(final AABB aabb, Object userData) {
+    int proxyId;
+    if (m_freeCount > 0) {
+      proxyId = m_freeIds[--m_freeCount];
+    } else {
+      if (m_proxyIdCount == m_proxyCapacity) {
+        expandProxies(m_proxyCapacity * 2);
+      }
+      proxyId = m_proxyIdCount++;
+    }
+
+    final int b = proxyId * 4;
+    m_bounds[b + LOWER_X] = aabb.lowerBound.x - Settings.aabbExtension;
+    m_bounds[b + LOWER_Y] = aabb.lowerBound.y - Settings.aabbExtension;
+    m_bounds[b + UPPER_X] = aabb.upperBound.x + Settings.aabbExtension;
+    m_bounds[b + UPPER_Y] = aabb.upperBound.y + Settings.aabbExtension;
+    m_userData[proxyId] = userData;
+
+    // append the endpoints, they are merged in by the next operation that needs them sorted
+    for (int axis = 0; axis < 2; axis++) {
+      int lower = m_endpointCount;
+      int upper = m_endpointCount + 1;
+      m_values[axis][lower] = m_bounds[b + LOWER_X + axis];
+      m_endpoints[axis][lower] = proxyId << 1;
+      m_endpointIndex[b + LOWER_X + axis] = lower;
+      m_values[axis][upper] = m_bounds[b + UPPER_X + axis];
+      m_endpoints[axis][upper] = proxyId << 1 | 1;
+      m_endpointIndex[b + UPPER_X + axis] = upper;
+    }
+    m_endpointCount += 2;
+
+    updateMaxExtent(proxyId);
+    ++m_proxyCount;
+    touchProxy(proxyId);
+    return proxyId;
+  }
+
+  /**
+   * Merges the endpoints of created proxies into the sorted ones. New proxies are queried by
+   * updatePairs, so nothing is reported. Loading a level is a single sort and merge this way.
+   */
+  private void mergeCreated() {
+    final int sorted = m_sortedCount;
+    final int count = m_endpointCount;
+    if (sorted == count) {
+      return;
+    }
+
+    final int created = count - sorted;
+    if (m_mergeKeys.length < created) {
+      m_mergeKeys = new long[created * 2];
+    }
+    final long[] keys = m_mergeKeys;
+    for (int axis = 0; axis < 2; axis++) {
+      final float[] values = m_values[axis];
+      final int[] endpoints = m_endpoints[axis];
+      final int offset = LOWER_X + axis;
+
+      // key sorts by value and then lower bounds first, like sort()
+      for (int i = 0; i < created; i++) {
+        int bits = Float.floatToIntBits(values[sorted + i] + 0.0f);
+        bits ^= (bits >> 31) & 0x7fffffff;
+        int endpoint = endpoints[sorted + i];
+        keys[i] = (long) bits << 32 | (long) (endpoint & 1) << 31 | (endpoint >> 1);
+      }
+      Arrays.sort(keys, 0, created);
+
+      // merge from the back
+      int i = sorted - 1;
+      int j = created - 1;
+      int write = count - 1;
+      while (j >= 0) {
+        int bits = (int) (keys[j] >> 32);
+        float value = Float.intBitsToFloat(bits ^ ((bits >> 31) & 0x7fffffff));
+        int upper = (int) (keys[j] >>> 31) & 1;
+        int endpoint;
+        if (i >= 0 && (values[i] > value || (values[i] == value && (endpoints[i] & 1) > upper))) {
+          endpoint = endpoints[i];
+          values[write] = values[i];
+          i--;
+        } else {
+          endpoint = (int) (keys[j] & 0x7fffffff) << 1 | upper;
+          values[write] = value;
+          j--;
+        }
+        endpoints[write] = endpoint;
+        m_endpointIndex[(endpoint >> 1) * 4 + ((endpoint & 1) << 1) + offset] = write;
+        write--;
+      }
+    }
+    m_sortedCount = count;
+  }
+
+  /**
+   * Merges created proxies before a query, queries with own stacks may run concurrently.
+   */
+  private void ensureSorted() {
+    if (m_sortedCount != m_endpointCount) {
+      synchronized (this) {
+        mergeCreated();
+      }
+    }
+  }
+
+  @Override
+  public final void destroyProxy(int proxyId) {
+    mergeCreated();
+    for (int i = 0; i < m_touchCount; i++) {
+      if (m_touchBuffer[i] == proxyId) {
+        m_touchBuffer[i] = NULL_PROXY;
+      }
+    }
+
+    final int b = proxyId * 4;
+    for (int axis = 0; axis < 2; axis++) {
+      // upper endpoint is always after the lower one, remove it first
+      removeEndpoint(axis, m_endpointIndex[b + UPPER_X + axis], m_endpointCount);
+      removeEndpoint(axis, m_endpointIndex[b + LOWER_X + axis], m_endpointCount - 1);
+    }
+    m_endpointCount -= 2;
+    m_sortedCount = m_endpointCount;
+
+    if (m_bounds[b + UPPER_X] - m_bounds[b + LOWER_X] >= m_maxExtent) {
+      m_maxExtentDirty = true;
+    }
+
+    m_userData[proxyId] = null;
+    if (m_freeCount == m_freeIds.length) {
+      m_freeIds = Arrays.copyOf(m_freeIds, m_freeCount * 2);
+    }
+    m_freeIds[m_freeCount++] = proxyId;
+    --m_proxyCount;
+  }
+
+  private void removeEndpoint(int axis, int index, int count) {
+    final float[] values = m_values[axis];
+    final int[] endpoints = m_endpoints[axis];
+    final int offset = LOWER_X + axis;
+    for (int i = index + 1; i < count; i++) {
+      int endpoint = endpoints[i];
+      values[i - 1] = values[i];
+      endpoints[i - 1] = endpoint;
+      m_endpointIndex[(endpoint >> 1) * 4 + ((endpoint & 1) << 1) + offset] = i - 1;
+    }
+  }
+
+  @Override
+  public final void moveProxy(int proxyId, final AABB aabb, final Vec2 displacement) {
+    mergeCreated();
+    final float[] bounds = m_bounds;
+    final int b = proxyId * 4;
+    if (bounds[b + LOWER_X] <= aabb.lowerBound.x && bounds[b + LOWER_Y] <= aabb.lowerBound.y
+        && aabb.upperBound.x <= bounds[b + UPPER_X] && aabb.upperBound.y <= bounds[b + UPPER_Y]) {
+      return;
+    }
+
+    // Extend AABB
+    float lowerX = aabb.lowerBound.x - Settings.aabbExtension;
+    float lowerY = aabb.lowerBound.y - Settings.aabbExtension;
+    float upperX = aabb.upperBound.x + Settings.aabbExtension;
+    float upperY = aabb.upperBound.y + Settings.aabbExtension;
+
+    // Predict AABB displacement.
+    final float dx = displacement.x * Settings.aabbMultiplier;
+    final float dy = displacement.y * Settings.aabbMultiplier;
+    if (dx < 0.0f) {
+      lowerX += dx;
+    } else {
+      upperX += dx;
+    }
+
+    if (dy < 0.0f) {
+      lowerY += dy;
+    } else {
+      upperY += dy;
+    }
+
+    moveAxis(proxyId, AXIS_X, lowerX, upperX);
+    moveAxis(proxyId, AXIS_Y, lowerY, upperY);
+    updateMaxExtent(proxyId);
+  }
+
+  @Override
+  public final void setFatAABB(int proxyId, AABB fatAABB) {
+    mergeCreated();
+    final float[] bounds = m_bounds;
+    final int b = proxyId * 4;
+    if (bounds[b + LOWER_X] == fatAABB.lowerBound.x && bounds[b + LOWER_Y] == fatAABB.lowerBound.y
+        && bounds[b + UPPER_X] == fatAABB.upperBound.x
+        && bounds[b + UPPER_Y] == fatAABB.upperBound.y) {
+      return;
+    }
+
+    if (bounds[b + UPPER_X] - bounds[b + LOWER_X] >= m_maxExtent) {
+      m_maxExtentDirty = true;
+    }
+    m_restoring = true;
+    moveAxis(proxyId, AXIS_X, fatAABB.lowerBound.x, fatAABB.upperBound.x);
+    moveAxis(proxyId, AXIS_Y, fatAABB.lowerBound.y, fatAABB.upperBound.y);
+    m_restoring = false;
+    updateMaxExtent(proxyId);
+  }
+
+  /**
+   * Nothing to do, created proxies are appended and merged into the sorted endpoints at once
+   * anyway.
+   */
+  @Override
+  public void beginBatch() {
+  }
+
+  @Override
+  public void endBatch() {
+  }
+
+  /**
+   * Moves the endpoints of one axis. The endpoint in the direction of the move goes first, so the
+   * lower bound never passes the upper bound of the same proxy.
+   */
+  private void moveAxis(int proxyId, int axis, float lower, float upper) {
+    final int lowerBound = proxyId * 4 + LOWER_X + axis;
+    final int upperBound = proxyId * 4 + UPPER_X + axis;
+    if (lower >= m_bounds[lowerBound]) {
+      m_bounds[upperBound] = upper;
+      m_values[axis][m_endpointIndex[upperBound]] = upper;
+      sort(axis, m_endpointIndex[upperBound]);
+      m_bounds[lowerBound] = lower;
+      m_values[axis][m_endpointIndex[lowerBound]] = lower;
+      sort(axis, m_endpointIndex[lowerBound]);
+    } else {
+      m_bounds[lowerBound] = lower;
+      m_values[axis][m_endpointIndex[lowerBound]] = lower;
+      sort(axis, m_endpointIndex[lowerBound]);
+      m_bounds[upperBound] = upper;
+      m_values[axis][m_endpointIndex[upperBound]] = upper;
+      sort(axis, m_endpointIndex[upperBound]);
+    }
+  }
+
+  /**
+   * Insertion sort of one endpoint, the rest of the axis is sorted. At equal values lower bounds
+   * go first, so touching bounds are sorted as overlapping, the same as {@link #testOverlap}.
+   */
+  private void sort(int axis, int index) {
+    final float[] values = m_values[axis];
+    final int[] endpoints = m_endpoints[axis];
+    final int[] endpointIndex = m_endpointIndex;
+    final int offset = LOWER_X + axis;
+    final float value = values[index];
+    final int endpoint = endpoints[index];
+    final int upper = endpoint & 1;
+    final int proxyId = endpoint >> 1;
+    final int count = m_endpointCount;
+
+    // move down
+    int i = index;
+    while (i > 0) {
+      final float other = values[i - 1];
+      final int otherEndpoint = endpoints[i - 1];
+      if (other < value || (other == value && (otherEndpoint & 1) <= upper)) {
+        break;
+      }
+      // lower bound passed an upper bound, the overlap on this axis starts
+      if (upper == 0 && (otherEndpoint & 1) == 1) {
+        bufferPair(proxyId, otherEndpoint >> 1);
+      }
+      values[i] = other;
+      endpoints[i] = otherEndpoint;
+      endpointIndex[(otherEndpoint >> 1) * 4 + ((otherEndpoint & 1) << 1) + offset] = i;
+      i--;
+    }
+
+    // move up
+    if (i == index) {
+      while (i < count - 1) {
+        final float other = values[i + 1];
+        final int otherEndpoint = endpoints[i + 1];
+        if (other > value || (other == value && (otherEndpoint & 1) >= upper)) {
+          break;
+        }
+        // upper bound passed a lower bound, the overlap on this axis starts
+        if (upper == 1 && (otherEndpoint & 1) == 0) {
+          bufferPair(proxyId, otherEndpoint >> 1);
+        }
+        values[i] = other;
+        endpoints[i] = otherEndpoint;
+        endpointIndex[(otherEndpoint >> 1) * 4 + ((otherEndpoint & 1) << 1) + offset] = i;
+        i++;
+      }
+    }
+
+    values[i] = value;
+    endpoints[i] = endpoint;
+    endpointIndex[proxyId * 4 + (upper << 1) + offset] = i;
+  }
+
+  private void updateMaxExtent(int proxyId) {
+    final int b = proxyId * 4;
+    float extent = m_bounds[b + UPPER_X] - m_bounds[b + LOWER_X];
+    if (extent > m_maxExtent) {
+      m_maxExtent = extent;
+    }
+  }
+
+  private float getMaxExtent() {
+    if (m_maxExtentDirty) {
+      m_maxExtentDirty = false;
+      m_maxExtent = 0;
+      final int[] endpoints = m_endpoints[AXIS_X];
+      for (int i = 0; i < m_endpointCount; i++) {
+        if ((endpoints[i] & 1) == 0) {
+          updateMaxExtent(endpoints[i] >> 1);
+        }
+      }
+    }
+    return m_maxExtent;
+  }
+
+  @Override
+  public void touchProxy(int proxyId) {
+    if (m_touchCount == m_touchBuffer.length) {
+      m_touchBuffer = Arrays.copyOf(m_touchBuffer, m_touchCount * 2);
+    }
+    m_touchBuffer[m_touchCount++] = proxyId;
+  }
+
+  @Override
+  public Object getUserData(int proxyId) {
+    return m_userData[proxyId];
+  }
+
+  /**
+   * @return shared copy of the fat bounds, valid until the next call
+   */
+  @Override
+  public AABB getFatAABB(int proxyId) {
+    final int b = proxyId * 4;
+    m_fatAABB.lowerBound.x = m_bounds[b + LOWER_X];
+    m_fatAABB.lowerBound.y = m_bounds[b + LOWER_Y];
+    m_fatAABB.upperBound.x = m_bounds[b + UPPER_X];
+    m_fatAABB.upperBound.y = m_bounds[b + UPPER_Y];
+    return m_fatAABB;
+  }
+
+  @Override
+  public boolean testOverlap(int proxyIdA, int proxyIdB) {
+    final float[] bounds = m_bounds;
+    final int a = proxyIdA * 4;
+    final int b = proxyIdB * 4;
+    if (bounds[b + LOWER_X] - bounds[a + UPPER_X] > 0.0f
+        || bounds[b + LOWER_Y] - bounds[a + UPPER_Y] > 0.0f) {
+      return false;
+    }
+
+    if (bounds[a + LOWER_X] - bounds[b + UPPER_X] > 0.0f
+        || bounds[a + LOWER_Y] - bounds[b + UPPER_Y] > 0.0f) {
+      return false;
+    }
+
+    return true;
+  }
+
+  @Override
+  public final int getProxyCount() {
+    return m_proxyCount;
+  }
+
+  private final Vec2[] drawVecs = {new Vec2(), new Vec2(), new Vec2(), new Vec2()};
+  private final Color3f color = new Color3f(1, 1, 1);
+
+  /**
+   * Draws the fat AABBs, there is no tree.
+   */
+  @Override
+  public void drawTree(DebugDraw argDraw) {
+    mergeCreated();
+    final int[] endpoints = m_endpoints[AXIS_X];
+    for (int i = 0; i < m_endpointCount; i++) {
+      if ((endpoints[i] & 1) == 0) {
+        getFatAABB(endpoints[i] >> 1).getVertices(drawVecs);
+        argDraw.drawPolygon(drawVecs, 4, color);
+      }
+    }
+  }
+
+  @Override
+  public final void updatePairs(PairCallback callback) {
+    mergeCreated();
+    // Query all created and touched proxies.
+    for (int i = 0; i < m_touchCount; ++i) {
+      m_queryProxyId = m_touchBuffer[i];
+      if (m_queryProxyId == NULL_PROXY) {
+        continue;
+      }
+
+      query(this, getFatAABB(m_queryProxyId));
+    }
+    m_touchCount = 0;
+    m_queryProxyId = NULL_PROXY;
+
+    // Sort the pair buffer to expose duplicates.
+    Arrays.sort(m_pairBuffer, 0, m_pairCount);
+
+    // Send the pairs that still overlap back to the client.
+    int i = 0;
+    while (i < m_pairCount) {
+      Pair primaryPair = m_pairBuffer[i];
+      Object userDataA = m_userData[primaryPair.proxyIdA];
+      Object userDataB = m_userData[primaryPair.proxyIdB];
+      if (userDataA != null && userDataB != null
+          && testOverlap(primaryPair.proxyIdA, primaryPair.proxyIdB)) {
+        callback.addPair(userDataA, userDataB);
+      }
+      ++i;
+
+      // Skip any duplicate pairs.
+      while (i < m_pairCount) {
+        Pair pair = m_pairBuffer[i];
+        if (pair.proxyIdA != primaryPair.proxyIdA || pair.proxyIdB != primaryPair.proxyIdB) {
+          break;
+        }
+        ++i;
+      }
+    }
+    m_pairCount = 0;
+  }
+
+  /**
+   * Buffers pair whose overlap started on one axis, if it overlaps on the other axis too.
+   */
+  private void bufferPair(int proxyIdA, int proxyIdB) {
+    if (m_restoring || proxyIdA == proxyIdB || !testOverlap(proxyIdA, proxyIdB)) {
+      return;
+    }
+
+    // Grow the pair buffer as needed.
+    if (m_pairCount == m_pairCapacity) {
+      Pair[] oldBuffer = m_pairBuffer;
+      m_pairCapacity *= 2;
+      m_pairBuffer = new Pair[m_pairCapacity];
+      System.arraycopy(oldBuffer, 0, m_pairBuffer, 0, oldBuffer.length);
+      for (int i = oldBuffer.length; i < m_pairCapacity; i++) {
+        m_pairBuffer[i] = new Pair();
+      }
+    }
+
+    if (proxyIdA < proxyIdB) {
+      m_pairBuffer[m_pairCount].proxyIdA = proxyIdA;
+      m_pairBuffer[m_pairCount].proxyIdB = proxyIdB;
+    } else {
+      m_pairBuffer[m_pairCount].proxyIdA = proxyIdB;
+      m_pairBuffer[m_pairCount].proxyIdB = proxyIdA;
+    }
+    ++m_pairCount;
+  }
+
+  /**
+   * This is called from query when we are gathering pairs of touched proxies.
+   */
+  public final boolean treeCallback(int proxyId) {
+    bufferPair(m_queryProxyId, proxyId);
+    return true;
+  }
+
+  /**
+   * @return index of the first x endpoint not less than value
+   */
+  private int lowerIndex(float value) {
+    final float[] values = m_values[AXIS_X];
+    int low = 0;
+    int high = m_endpointCount;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (values[mid] < value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private final QueryStack m_queryStack = new QueryStack();
+
+  @Override
+  public final void query(final TreeCallback callback, final AABB aabb) {
+    query(callback, aabb, m_queryStack);
+  }
+
+  @Override
+  public final void query(final TreeCallback callback, final AABB aabb, final QueryStack stack) {
+    final float lowerX = aabb.lowerBound.x;
+    final float lowerY = aabb.lowerBound.y;
+    final float upperX = aabb.upperBound.x;
+    final float upperY = aabb.upperBound.y;
+    ensureSorted();
+    final float[] bounds = m_bounds;
+    final float[] values = m_values[AXIS_X];
+    final int[] endpoints = m_endpoints[AXIS_X];
+
+    // every proxy reaching the query starts at most max extent before it
+    for (int i = lowerIndex(lowerX - getMaxExtent()); i < m_endpointCount; i++) {
+      if (values[i] > upperX) {
+        break;
+      }
+      final int endpoint = endpoints[i];
+      if ((endpoint & 1) == 1) {
+        continue;
+      }
+
+      final int proxyId = endpoint >> 1;
+      final int b = proxyId * 4;
+      if (lowerX - bounds[b + UPPER_X] > 0.0f || lowerY - bounds[b + UPPER_Y] > 0.0f
+          || bounds[b + LOWER_Y] - upperY > 0.0f) {
+        continue;
+      }
+
+      if (!callback.treeCallback(proxyId)) {
+        return;
+      }
+    }
+  }
+
+  @Override
+  public final void raycast(final TreeRayCastCallback callback, final RayCastInput input) {
+    raycast(callback, input, m_queryStack);
+  }
+
+  @Override
+  public final void raycast(final TreeRayCastCallback callback, final RayCastInput input,
+      final QueryStack stack) {
+    final Vec2 r = stack.r;
+    final RayCastInput subInput = stack.subInput;
+    final Vec2 p1 = input.p1;
+    final Vec2 p2 = input.p2;
+    float p1x = p1.x, p2x = p2.x, p1y = p1.y, p2y = p2.y;
+    r.x = p2x - p1x;
+    r.y = p2y - p1y;
+    assert ((r.x * r.x + r.y * r.y) > 0f);
+    r.normalize();
+
+    // v is perpendicular to the segment.
+    final float vx = -r.y;
+    final float vy = r.x;
+    final float absVx = MathUtils.abs(vx);
+    final float absVy = MathUtils.abs(vy);
+
+    float maxFraction = input.maxFraction;
+    ensureSorted();
+
+    // Build a bounding box for the segment.
+    float tempx = (p2x - p1x) * maxFraction + p1x;
+    float tempy = (p2y - p1y) * maxFraction + p1y;
+    float segLowerX = p1x < tempx ? p1x : tempx;
+    float segLowerY = p1y < tempy ? p1y : tempy;
+    float segUpperX = p1x > tempx ? p1x : tempx;
+    float segUpperY = p1y > tempy ? p1y : tempy;
+
+    final float[] bounds = m_bounds;
+    final float[] values = m_values[AXIS_X];
+    final int[] endpoints = m_endpoints[AXIS_X];
+
+    for (int i = lowerIndex(segLowerX - getMaxExtent()); i < m_endpointCount; i++) {
+      if (values[i] > segUpperX) {
+        break;
+      }
+      final int endpoint = endpoints[i];
+      if ((endpoint & 1) == 1) {
+        continue;
+      }
+
+      final int proxyId = endpoint >> 1;
+      final int b = proxyId * 4;
+      final float lowerX = bounds[b + LOWER_X];
+      final float lowerY = bounds[b + LOWER_Y];
+      final float upperX = bounds[b + UPPER_X];
+      final float upperY = bounds[b + UPPER_Y];
+      if (segLowerX - upperX > 0.0f || segLowerY - upperY > 0.0f || lowerY - segUpperY > 0.0f) {
+        continue;
+      }
+
+      // Separating axis for segment (Gino, p80).
+      // |dot(v, p1 - c)| > dot(|v|, h)
+      float cx = (lowerX + upperX) * .5f;
+      float cy = (lowerY + upperY) * .5f;
+      float hx = (upperX - lowerX) * .5f;
+      float hy = (upperY - lowerY) * .5f;
+      float separation = MathUtils.abs(vx * (p1x - cx) + vy * (p1y - cy)) - (absVx * hx + absVy * hy);
+      if (separation > 0.0f) {
+        continue;
+      }
+
+      subInput.p1.x = p1x;
+      subInput.p1.y = p1y;
+      subInput.p2.x = p2x;
+      subInput.p2.y = p2y;
+      subInput.maxFraction = maxFraction;
+
+      float value = callback.raycastCallback(subInput, proxyId);
+
+      if (value == 0.0f) {
+        // The client has terminated the ray cast.
+        return;
+      }
+
+      if (value > 0.0f) {
+        // Update segment bounding box.
+        maxFraction = value;
+        tempx = (p2x - p1x) * maxFraction + p1x;
+        tempy = (p2y - p1y) * maxFraction + p1y;
+        segLowerX = p1x < tempx ? p1x : tempx;
+        segLowerY = p1y < tempy ? p1y : tempy;
+        segUpperX = p1x > tempx ? p1x : tempx;
+        segUpperY = p1y > tempy ? p1y : tempy;
+      }
+    }
+  }
+
+  /**
+   * There is no tree, always 0.
+   */
+  @Override
+  public final int getTreeHeight() {
+    return 0;
+  }
+
+  /**
+   * There is no tree, always 0.
+   */
+  @Override
+  public int getTreeBalance() {
+    return 0;
+  }
+
+  /**
+   * There is no tree, always 0.
+   */
+  @Override
+  public float getTreeQuality() {
+    return 0;
+  }
+}
@@ -48,8 +48,6 @@ public class ChainShape extends Shape {
   public final Vec2 m_prevVertex = new Vec2(), m_nextVertex = new Vec2();
   public boolean m_hasPrevVertex = false, m_hasNextVertex = false;
 
-  private final EdgeShape pool0 = new EdgeShape();
-
   public ChainShape() {
     super(ShapeType.CHAIN);
     m_vertices = null;
@@ -108,23 +106,16 @@ public class ChainShape extends Shape {
   public boolean raycast(RayCastOutput output, RayCastInput input, Transform xf, int childIndex) {
     assert (childIndex < m_count);
 
-    final EdgeShape edgeShape = pool0;
-
     int i1 = childIndex;
     int i2 = childIndex + 1;
     if (i2 == m_count) {
       i2 = 0;
     }
-    Vec2 v = m_vertices[i1];
-    edgeShape.m_vertex1.x = v.x;
-    edgeShape.m_vertex1.y = v.y;
-    Vec2 v1 = m_vertices[i2];
-    edgeShape.m_vertex2.x = v1.x;
-    edgeShape.m_vertex2.y = v1.y;
-
-    return edgeShape.raycast(output, input, xf, 0);
+
+    return EdgeShape.raycast(output, input, xf, m_vertices[i1], m_vertices[i2]);
   }
 
+
   @Override
   public void computeAABB(AABB aabb, Transform xf, int childIndex) {
     assert (childIndex < m_count);
@@ -26,6 +26,7 @@ package org.jbox2d.collision.shapes;
 import org.jbox2d.collision.AABB;
 import org.jbox2d.collision.RayCastInput;
 import org.jbox2d.collision.RayCastOutput;
+import org.jbox2d.common.MathUtils;
 import org.jbox2d.common.Rot;
 import org.jbox2d.common.Settings;
 import org.jbox2d.common.Transform;
@@ -80,15 +81,18 @@ public class EdgeShape extends Shape {
     return false;
   }
 
-  // for pooling
-  private final Vec2 normal = new Vec2();
-  
   @Override
   public boolean raycast(RayCastOutput output, RayCastInput input, Transform xf, int childIndex) {
+    return raycast(output, input, xf, m_vertex1, m_vertex2);
+  }
+
+  /**
+   * Ray-cast against the edge from v1 to v2, uses no shared state so it can be called from more
+   * threads at once.
+   */
+  static boolean raycast(RayCastOutput output, RayCastInput input, Transform xf, Vec2 v1, Vec2 v2) {
 
     float tempx, tempy;
-    final Vec2 v1 = m_vertex1;
-    final Vec2 v2 = m_vertex2;
     final Rot xfq = xf.q;
     final Vec2 xfp = xf.p;
 
@@ -110,11 +114,14 @@ public class EdgeShape extends Shape {
 
     // final Vec2 normal = pool2.set(v2).subLocal(v1);
     // normal.set(normal.y, -normal.x);
-    normal.x = v2.y - v1.y;
-    normal.y = v1.x - v2.x;
-    normal.normalize();
-    final float normalx = normal.x;
-    final float normaly = normal.y;
+    float normalx = v2.y - v1.y;
+    float normaly = v1.x - v2.x;
+    final float length = MathUtils.sqrt(normalx * normalx + normaly * normaly);
+    if (length >= Settings.EPSILON) {
+      final float invLength = 1.0f / length;
+      normalx *= invLength;
+      normaly *= invLength;
+    }
 
     // q = p1 + t * d
     // dot(normal, q - v1) = 0
@@ -0,0 +1,94 @@
+package org.jbox2d.dynamics;
+
+/**
+ * Boxes queried by {@link World#queryAABB(AABBQueryBatch)} at once. Unlike the single query, the
+ * fixtures are tested against the box with their own AABB, not the fattened one of the
+ * broad-phase. Results of all boxes are written into shared output arrays, box i has
+ * {@link #resultCounts}[i] results from {@link #resultOffsets}[i].
+ */
+public class AABBQueryBatch {
+
+  /**
+   * Query boxes, lower x, lower y, upper x, upper y per box.
+   */
+  public float[] boxes;
+  public int count;
+
+  /**
+   * Only fixtures with category bits matching these bits are reported.
+   */
+  public int maskBits = 0xFFFF;
+  public boolean ignoreSensors = false;
+  /**
+   * Query the boxes on the world solver threads, see {@link World#setSolverThreads(int)}.
+   */
+  public boolean parallel = false;
+
+  public int[] resultOffsets;
+  public int[] resultCounts;
+  public Fixture[] results;
+  public int[] resultChildIndices;
+  /**
+   * Number of results of all boxes.
+   */
+  public int resultCount;
+
+  public AABBQueryBatch(int capacity) {
+    boxes = new float[capacity * 4];
+    resultOffsets = new int[capacity];
+    resultCounts = new int[capacity];
+    results = new Fixture[capacity * 4];
+    resultChildIndices = new int[capacity * 4];
+  }
+
+  /**
+   * Adds a box, the batch grows as needed.
+   * 
+   * @return index of the box
+   */
+  public int add(float lowerX, float lowerY, float upperX, float upperY) {
+    if (count * 4 == boxes.length) {
+      float[] bigger = new float[boxes.length * 2 + 4];
+      System.arraycopy(boxes, 0, bigger, 0, boxes.length);
+      boxes = bigger;
+    }
+    int i = count * 4;
+    boxes[i] = lowerX;
+    boxes[i + 1] = lowerY;
+    boxes[i + 2] = upperX;
+    boxes[i + 3] = upperY;
+    return count++;
+  }
+
+  public void clear() {
+    count = 0;
+    resultCount = 0;
+  }
+
+  /**
+   * Makes the per box output arrays as long as the boxes.
+   */
+  void prepareOutput() {
+    int capacity = boxes.length / 4;
+    if (resultOffsets.length < capacity) {
+      resultOffsets = new int[capacity];
+      resultCounts = new int[capacity];
+    }
+    resultCount = 0;
+  }
+
+  /**
+   * Makes room for the given number of results, keeping the current ones.
+   */
+  void ensureResults(int size) {
+    if (results.length < size) {
+      int capacity = Math.max(size, results.length * 2);
+      Fixture[] fixtures = new Fixture[capacity];
+      int[] childIndices = new int[capacity];
+      System.arraycopy(results, 0, fixtures, 0, resultCount);
+      System.arraycopy(resultChildIndices, 0, childIndices, 0, resultCount);
+      results = fixtures;
+      resultChildIndices = childIndices;
+    }
+  }
+}
@@ -0,0 +1,249 @@
+package org.jbox2d.dynamics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jbox2d.callbacks.TreeCallback;
+import org.jbox2d.callbacks.TreeRayCastCallback;
+import org.jbox2d.collision.AABB;
+import org.jbox2d.collision.RayCastInput;
+import org.jbox2d.collision.RayCastOutput;
+import org.jbox2d.collision.broadphase.BroadPhase;
+import org.jbox2d.collision.broadphase.QueryStack;
+
+/**
+ * Runs {@link RayCastBatch} and {@link AABBQueryBatch} against the broad-phase. Every thread has
+ * its own worker with its own traversal stack, the batch is split into chunks the threads take in
+ * turn. Results of box queries are collected per worker and copied into the batch in box order, so
+ * they do not depend on the number of threads.
+ *
+ * This is an internal class.
+ */
+public class BatchQuery implements SolverThreads.Task {
+
+  private static final int CHUNK = 32;
+
+  private final AtomicInteger m_next = new AtomicInteger();
+  private Worker[] m_workers = new Worker[0];
+  private int m_count;
+
+  private BroadPhase m_broadPhase;
+  private RayCastBatch m_rays;
+  private AABBQueryBatch m_boxes;
+
+  // worker and its result offset of every box
+  private int[] m_boxWorker = new int[16];
+  private int[] m_boxOffset = new int[16];
+
+  public void raycast(BroadPhase broadPhase, RayCastBatch batch, SolverThreads threads) {
+    batch.prepareOutput();
+    m_rays = batch;
+    run(broadPhase, batch.count, threads);
+    m_rays = null;
+
+    for (int i = 0; i < m_workers.length; i++) {
+      batch.hitCount += m_workers[i].m_hitCount;
+    }
+  }
+
+  public void query(BroadPhase broadPhase, AABBQueryBatch batch, SolverThreads threads) {
+    batch.prepareOutput();
+    if (m_boxWorker.length < batch.count) {
+      m_boxWorker = new int[batch.count];
+      m_boxOffset = new int[batch.count];
+    }
+    m_boxes = batch;
+    run(broadPhase, batch.count, threads);
+    m_boxes = null;
+
+    int total = 0;
+    for (int i = 0; i < batch.count; i++) {
+      total += batch.resultCounts[i];
+    }
+    batch.ensureResults(total);
+    for (int i = 0; i < batch.count; i++) {
+      Worker worker = m_workers[m_boxWorker[i]];
+      int count = batch.resultCounts[i];
+      System.arraycopy(worker.m_results, m_boxOffset[i], batch.results, batch.resultCount, count);
+      System.arraycopy(worker.m_resultChildIndices, m_boxOffset[i], batch.resultChildIndices,
+          batch.resultCount, count);
+      batch.resultOffsets[i] = batch.resultCount;
+      batch.resultCount += count;
+    }
+    for (int i = 0; i < m_workers.length; i++) {
+      m_workers[i].clearResults();
+    }
+  }
+
+  private void run(BroadPhase broadPhase, int count, SolverThreads threads) {
+    int threadCount = 1;
+    if (threads != null) {
+      threadCount = Math.min(threads.getThreadCount(), (count + CHUNK - 1) / CHUNK);
+    }
+    if (m_workers.length < threadCount) {
+      Worker[] workers = new Worker[threadCount];
+      System.arraycopy(m_workers, 0, workers, 0, m_workers.length);
+      for (int i = m_workers.length; i < threadCount; i++) {
+        workers[i] = new Worker(i);
+      }
+      m_workers = workers;
+    }
+    for (int i = 0; i < m_workers.length; i++) {
+      m_workers[i].m_hitCount = 0;
+    }
+
+    m_broadPhase = broadPhase;
+    m_count = count;
+    m_next.set(0);
+    if (threadCount > 1) {
+      threads.run(this, threadCount);
+    } else {
+      run(0);
+    }
+    m_broadPhase = null;
+  }
+
+  @Override
+  public void run(int thread) {
+    final Worker worker = m_workers[thread];
+    int start;
+    while ((start = m_next.getAndAdd(CHUNK)) < m_count) {
+      int end = Math.min(start + CHUNK, m_count);
+      for (int i = start; i < end; i++) {
+        if (m_rays != null) {
+          worker.raycast(i);
+        } else {
+          worker.query(i);
+        }
+      }
+    }
+  }
+
+  private final class Worker implements TreeCallback, TreeRayCastCallback {
+    private final int m_index;
+    private final QueryStack m_stack = new QueryStack();
+    private final RayCastInput m_input = new RayCastInput();
+    private final RayCastOutput m_output = new RayCastOutput();
+    private final AABB m_aabb = new AABB();
+
+    private int m_maskBits;
+    private boolean m_ignoreSensors;
+    private boolean m_anyHit;
+
+    private Fixture m_fixture;
+    private int m_childIndex;
+    private float m_fraction;
+    private float m_normalX;
+    private float m_normalY;
+    private int m_hitCount;
+
+    private Fixture[] m_results = new Fixture[64];
+    private int[] m_resultChildIndices = new int[64];
+    private int m_resultCount;
+
+    Worker(int index) {
+      m_index = index;
+    }
+
+    void raycast(int ray) {
+      final RayCastBatch batch = m_rays;
+      final float[] rays = batch.rays;
+      m_maskBits = batch.maskBits;
+      m_ignoreSensors = batch.ignoreSensors;
+      m_anyHit = batch.anyHit;
+      m_fixture = null;
+
+      m_input.p1.x = rays[ray * 4];
+      m_input.p1.y = rays[ray * 4 + 1];
+      m_input.p2.x = rays[ray * 4 + 2];
+      m_input.p2.y = rays[ray * 4 + 3];
+      m_input.maxFraction = 1.0f;
+      if (m_input.p1.x != m_input.p2.x || m_input.p1.y != m_input.p2.y) {
+        m_broadPhase.raycast(this, m_input, m_stack);
+      }
+
+      if (m_fixture != null) {
+        batch.fractions[ray] = m_fraction;
+        batch.normals[ray * 2] = m_normalX;
+        batch.normals[ray * 2 + 1] = m_normalY;
+        batch.childIndices[ray] = m_childIndex;
+        m_hitCount++;
+      } else {
+        batch.fractions[ray] = 1.0f;
+        batch.normals[ray * 2] = 0;
+        batch.normals[ray * 2 + 1] = 0;
+        batch.childIndices[ray] = 0;
+      }
+      batch.fixtures[ray] = m_fixture;
+    }
+
+    public float raycastCallback(RayCastInput input, int proxyId) {
+      FixtureProxy proxy = (FixtureProxy) m_broadPhase.getUserData(proxyId);
+      Fixture fixture = proxy.fixture;
+      if ((fixture.m_filter.categoryBits & m_maskBits) == 0
+          || (m_ignoreSensors && fixture.m_isSensor)) {
+        return input.maxFraction;
+      }
+
+      // edges test against the whole ray, not input.maxFraction, so a farther hit can be reported
+      if (fixture.raycast(m_output, input, proxy.childIndex)
+          && m_output.fraction < input.maxFraction) {
+        m_fixture = fixture;
+        m_childIndex = proxy.childIndex;
+        m_fraction = m_output.fraction;
+        m_normalX = m_output.normal.x;
+        m_normalY = m_output.normal.y;
+        // clip the ray to the hit, so only closer fixtures are hit later
+        return m_anyHit ? 0 : m_output.fraction;
+      }
+
+      return input.maxFraction;
+    }
+
+    void query(int box) {
+      final AABBQueryBatch batch = m_boxes;
+      final float[] boxes = batch.boxes;
+      m_maskBits = batch.maskBits;
+      m_ignoreSensors = batch.ignoreSensors;
+
+      m_aabb.lowerBound.x = boxes[box * 4];
+      m_aabb.lowerBound.y = boxes[box * 4 + 1];
+      m_aabb.upperBound.x = boxes[box * 4 + 2];
+      m_aabb.upperBound.y = boxes[box * 4 + 3];
+
+      int start = m_resultCount;
+      m_broadPhase.query(this, m_aabb, m_stack);
+      m_boxWorker[box] = m_index;
+      m_boxOffset[box] = start;
+      batch.resultCounts[box] = m_resultCount - start;
+    }
+
+    public boolean treeCallback(int proxyId) {
+      FixtureProxy proxy = (FixtureProxy) m_broadPhase.getUserData(proxyId);
+      Fixture fixture = proxy.fixture;
+      if ((fixture.m_filter.categoryBits & m_maskBits) == 0
+          || (m_ignoreSensors && fixture.m_isSensor) || !AABB.testOverlap(proxy.aabb, m_aabb)) {
+        return true;
+      }
+
+      if (m_resultCount == m_results.length) {
+        Fixture[] results = new Fixture[m_resultCount * 2];
+        int[] childIndices = new int[m_resultCount * 2];
+        System.arraycopy(m_results, 0, results, 0, m_resultCount);
+        System.arraycopy(m_resultChildIndices, 0, childIndices, 0, m_resultCount);
+        m_results = results;
+        m_resultChildIndices = childIndices;
+      }
+      m_results[m_resultCount] = fixture;
+      m_resultChildIndices[m_resultCount] = proxy.childIndex;
+      m_resultCount++;
+      return true;
+    }
+
+    void clearResults() {
+      for (int i = 0; i < m_resultCount; i++) {
+        m_results[i] = null;
+      }
+      m_resultCount = 0;
+    }
+  }
+}
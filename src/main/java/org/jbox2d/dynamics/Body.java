@@ -96,6 +96,14 @@ public class Body {
 
 
   public Body(final BodyDef bd, World world) {
+    set(bd, world);
+  }
+
+  /**
+   * Sets the body up from the definition, also when the world reuses a destroyed body. This is an
+   * internal method.
+   */
+  final void set(final BodyDef bd, World world) {
     assert (bd.position.isValid());
     assert (bd.linearVelocity.isValid());
     assert (bd.gravityScale >= 0.0f);
@@ -103,6 +111,7 @@ public class Body {
     assert (bd.linearDamping >= 0.0f);
 
     m_flags = 0;
+    m_islandIndex = 0;
 
     if (bd.bullet) {
       m_flags |= e_bulletFlag;
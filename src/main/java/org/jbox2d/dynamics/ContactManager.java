@@ -23,12 +23,18 @@
  ******************************************************************************/
 package org.jbox2d.dynamics;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.jbox2d.callbacks.ContactFilter;
 import org.jbox2d.callbacks.ContactListener;
 import org.jbox2d.callbacks.PairCallback;
+import org.jbox2d.collision.Collision;
 import org.jbox2d.collision.broadphase.BroadPhase;
+import org.jbox2d.common.MathUtils;
 import org.jbox2d.dynamics.contacts.Contact;
 import org.jbox2d.dynamics.contacts.ContactEdge;
+import org.jbox2d.pooling.IWorldPool;
+import org.jbox2d.pooling.normal.DefaultWorldPool;
 
 /**
  * Delegate of World.
@@ -45,6 +51,20 @@ public class ContactManager implements PairCallback {
 
   private final World pool;
 
+  /**
+   * Number of contacts a thread claims at once in the parallel narrow phase.
+   */
+  public static int PARALLEL_CHUNK = 64;
+
+  /**
+   * Minimum number of awake contacts for the parallel narrow phase.
+   */
+  public static int PARALLEL_THRESHOLD = 256;
+
+  private SolverThreads m_threads;
+  private IWorldPool[] m_threadPools;
+  private final NarrowPhase m_narrowPhase = new NarrowPhase();
+
   public ContactManager(World argPool, BroadPhase broadPhase) {
     m_contactList = null;
     m_contactCount = 0;
@@ -127,6 +147,23 @@ public class ContactManager implements PairCallback {
     bodyA = fixtureA.getBody();
     bodyB = fixtureB.getBody();
 
+    insert(c);
+
+    // wake up the bodies
+    if (!fixtureA.isSensor() && !fixtureB.isSensor()) {
+      bodyA.setAwake(true);
+      bodyB.setAwake(true);
+    }
+  }
+
+  /**
+   * Insert a contact from the world pool into the world contact list and the contact lists of its
+   * bodies, at their heads.
+   */
+  void insert(Contact c) {
+    Body bodyA = c.getFixtureA().getBody();
+    Body bodyB = c.getFixtureB().getBody();
+
     // Insert into the world.
     c.m_prev = null;
     c.m_next = m_contactList;
@@ -159,12 +196,6 @@ public class ContactManager implements PairCallback {
     }
     bodyB.m_contactList = c.m_nodeB;
 
-    // wake up the bodies
-    if (!fixtureA.isSensor() && !fixtureB.isSensor()) {
-      bodyA.setAwake(true);
-      bodyB.setAwake(true);
-    }
-
     ++m_contactCount;
   }
 
@@ -173,15 +204,24 @@ public class ContactManager implements PairCallback {
   }
 
   public void destroy(Contact c) {
-    Fixture fixtureA = c.getFixtureA();
-    Fixture fixtureB = c.getFixtureB();
-    Body bodyA = fixtureA.getBody();
-    Body bodyB = fixtureB.getBody();
-
     if (m_contactListener != null && c.isTouching()) {
       m_contactListener.endContact(c);
     }
 
+    remove(c);
+
+    // Call the factory.
+    pool.pushContact(c);
+  }
+
+  /**
+   * Remove a contact from the world contact list and the contact lists of its bodies, without
+   * notifying the listener or returning it to the pool.
+   */
+  void remove(Contact c) {
+    Body bodyA = c.getFixtureA().getBody();
+    Body bodyB = c.getFixtureB().getBody();
+
     // Remove from the world.
     if (c.m_prev != null) {
       c.m_prev.m_next = c.m_next;
@@ -221,8 +261,6 @@ public class ContactManager implements PairCallback {
       bodyB.m_contactList = c.m_nodeB.next;
     }
 
-    // Call the factory.
-    pool.pushContact(c);
     --m_contactCount;
   }
 
@@ -230,7 +268,29 @@ public class ContactManager implements PairCallback {
    * This is the top level collision call for the time step. Here all the narrow phase collision is
    * processed for the world contact list.
    */
+  /**
+   * Sets the threads of the parallel narrow phase, every thread gets its own pool. Null updates
+   * contacts serially.
+   */
+  public void setSolverThreads(SolverThreads threads) {
+    m_threads = threads;
+    m_threadPools = null;
+    if (threads != null) {
+      m_threadPools = new IWorldPool[threads.getThreadCount()];
+      m_threadPools[0] = pool.getPool();
+      for (int i = 1; i < m_threadPools.length; i++) {
+        m_threadPools[i] =
+            new DefaultWorldPool(World.WORLD_POOL_SIZE, World.WORLD_POOL_CONTAINER_SIZE);
+      }
+    }
+  }
+
   public void collide() {
+    if (m_threads != null) {
+      collideParallel();
+      return;
+    }
+
     // Update awake contacts.
     Contact c = m_contactList;
     while (c != null) {
@@ -289,4 +349,155 @@ public class ContactManager implements PairCallback {
       c = c.getNext();
     }
   }
+
+  /**
+   * Same as the serial collide, but the manifolds of awake contacts are evaluated concurrently.
+   * Filtering and broad-phase overlap are checked first on this thread, then the manifolds are
+   * evaluated, then bodies are woken and the listener is called in contact list order. Contacts of
+   * sleeping bodies are checked again in that order, because a contact before them may have woken
+   * their bodies, and are updated serially if so.
+   */
+  private void collideParallel() {
+    NarrowPhase narrow = m_narrowPhase;
+    narrow.clear(m_contactCount);
+
+    Contact c = m_contactList;
+    while (c != null) {
+      Fixture fixtureA = c.getFixtureA();
+      Fixture fixtureB = c.getFixtureB();
+      Body bodyA = fixtureA.getBody();
+      Body bodyB = fixtureB.getBody();
+
+      // is this contact flagged for filtering?
+      if ((c.m_flags & Contact.FILTER_FLAG) == Contact.FILTER_FLAG) {
+        // Should these bodies collide?
+        if (bodyB.shouldCollide(bodyA) == false) {
+          Contact cNuke = c;
+          c = cNuke.getNext();
+          destroy(cNuke);
+          continue;
+        }
+
+        // Check user filtering.
+        if (m_contactFilter != null && m_contactFilter.shouldCollide(fixtureA, fixtureB) == false) {
+          Contact cNuke = c;
+          c = cNuke.getNext();
+          destroy(cNuke);
+          continue;
+        }
+
+        // Clear the filtering flag.
+        c.m_flags &= ~Contact.FILTER_FLAG;
+      }
+
+      if (isActive(c) == false) {
+        narrow.add(c, false);
+        c = c.getNext();
+        continue;
+      }
+
+      // Here we destroy contacts that cease to overlap in the broad-phase.
+      if (testOverlap(c) == false) {
+        Contact cNuke = c;
+        c = cNuke.getNext();
+        destroy(cNuke);
+        continue;
+      }
+
+      narrow.add(c, true);
+      narrow.m_evaluateCount++;
+      c = c.getNext();
+    }
+
+    if (narrow.m_evaluateCount >= PARALLEL_THRESHOLD) {
+      narrow.m_next.set(0);
+      int chunks = (narrow.m_count + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+      m_threads.run(narrow, chunks);
+    } else {
+      narrow.m_next.set(0);
+      narrow.run(0);
+    }
+
+    for (int i = 0; i < narrow.m_count; i++) {
+      c = narrow.m_contacts[i];
+      if (narrow.m_evaluate[i]) {
+        c.updateListener(m_contactListener);
+        continue;
+      }
+
+      if (isActive(c) == false) {
+        continue;
+      }
+
+      if (testOverlap(c) == false) {
+        destroy(c);
+        continue;
+      }
+
+      c.update(m_contactListener);
+    }
+
+    narrow.clear(0);
+  }
+
+  private boolean isActive(Contact c) {
+    Body bodyA = c.getFixtureA().getBody();
+    Body bodyB = c.getFixtureB().getBody();
+    boolean activeA = bodyA.isAwake() && bodyA.m_type != BodyType.STATIC;
+    boolean activeB = bodyB.isAwake() && bodyB.m_type != BodyType.STATIC;
+
+    // At least one body must be awake and it must be dynamic or kinematic.
+    return activeA || activeB;
+  }
+
+  private boolean testOverlap(Contact c) {
+    int proxyIdA = c.getFixtureA().m_proxies[c.getChildIndexA()].proxyId;
+    int proxyIdB = c.getFixtureB().m_proxies[c.getChildIndexB()].proxyId;
+    return m_broadPhase.testOverlap(proxyIdA, proxyIdB);
+  }
+
+  /**
+   * Snapshot of the contact list for the parallel narrow phase.
+   */
+  private final class NarrowPhase implements SolverThreads.Task {
+    private Contact[] m_contacts = new Contact[64];
+    private boolean[] m_evaluate = new boolean[64];
+    private int m_count;
+    private int m_evaluateCount;
+    private final AtomicInteger m_next = new AtomicInteger();
+
+    void clear(int capacity) {
+      if (m_contacts.length < capacity) {
+        m_contacts = new Contact[MathUtils.max(capacity, m_contacts.length * 2)];
+        m_evaluate = new boolean[m_contacts.length];
+      } else {
+        // don't keep destroyed contacts alive
+        for (int i = 0; i < m_count; i++) {
+          m_contacts[i] = null;
+        }
+      }
+      m_count = 0;
+      m_evaluateCount = 0;
+    }
+
+    void add(Contact c, boolean evaluate) {
+      m_contacts[m_count] = c;
+      m_evaluate[m_count] = evaluate;
+      m_count++;
+    }
+
+    @Override
+    public void run(int thread) {
+      Collision collision = m_threadPools[thread].getCollision();
+      int start;
+      while ((start = m_next.getAndAdd(PARALLEL_CHUNK)) < m_count) {
+        int end = MathUtils.min(start + PARALLEL_CHUNK, m_count);
+        for (int i = start; i < end; i++) {
+          if (m_evaluate[i]) {
+            m_contacts[i].updateManifold(collision);
+          }
+        }
+      }
+    }
+  }
 }
@@ -32,7 +32,7 @@ import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.contacts.Contact;
 import org.jbox2d.dynamics.contacts.ContactSolver;
 import org.jbox2d.dynamics.contacts.ContactSolver.ContactSolverDef;
-import org.jbox2d.dynamics.contacts.ContactVelocityConstraint;
+import org.jbox2d.dynamics.contacts.FlatContactSolver;
 import org.jbox2d.dynamics.contacts.Position;
 import org.jbox2d.dynamics.contacts.Velocity;
 import org.jbox2d.dynamics.joints.Joint;
@@ -232,12 +232,51 @@ public class Island {
     m_jointCount = 0;
   }
 
-  private final ContactSolver contactSolver = new ContactSolver();
+  private ContactSolver contactSolver = new ContactSolver();
   private final Timer timer = new Timer();
   private final SolverData solverData = new SolverData();
   private final ContactSolverDef solverDef = new ContactSolverDef();
 
   public void solve(Profile profile, TimeStep step, Vec2 gravity, boolean allowSleep) {
+    initContacts(step);
+    solveContacts(profile, step, gravity, allowSleep);
+    report(contactSolver);
+  }
+
+  /**
+   * Selects the contact solver of {@link #solve}. The {@link FlatContactSolver} keeps the velocity
+   * constraints in flat arrays, TOI sub-steps always use the object one.
+   */
+  public void setFlatContactSolver(boolean flat) {
+    if (flat != isFlatContactSolver()) {
+      contactSolver = flat ? new FlatContactSolver() : new ContactSolver();
+    }
+  }
+
+  public boolean isFlatContactSolver() {
+    return contactSolver instanceof FlatContactSolver;
+  }
+
+  /**
+   * Initializes the contact constraints. Reads {@link Body#m_islandIndex}, so it has to be called
+   * before another island containing the same static bodies is built.
+   */
+  public void initContacts(TimeStep step) {
+    solverDef.step = step;
+    solverDef.contacts = m_contacts;
+    solverDef.count = m_contactCount;
+    solverDef.positions = m_positions;
+    solverDef.velocities = m_velocities;
+
+    contactSolver.init(solverDef);
+  }
+
+  /**
+   * Solves an island whose contacts were initialized by {@link #initContacts(TimeStep)}. The
+   * contact listener is not called, see {@link #report()}. Islands without joints touch only their
+   * own bodies and contacts, so they can be solved concurrently.
+   */
+  public void solveContacts(Profile profile, TimeStep step, Vec2 gravity, boolean allowSleep) {
 
     // System.out.println("Solving Island");
     float h = step.dt;
@@ -291,14 +330,8 @@ public class Island {
     solverData.velocities = m_velocities;
 
     // Initialize velocity constraints.
-    solverDef.step = step;
-    solverDef.contacts = m_contacts;
-    solverDef.count = m_contactCount;
-    solverDef.positions = m_positions;
-    solverDef.velocities = m_velocities;
-
-    contactSolver.init(solverDef);
     // System.out.println("island glInits vel");
+    contactSolver.setSharedVelocities(m_jointCount > 0);
     contactSolver.initializeVelocityConstraints();
 
     if (step.warmStarting) {
@@ -322,6 +355,7 @@ public class Island {
 
       contactSolver.solveVelocityConstraints();
     }
+    contactSolver.storeVelocities();
 
     // Store impulses for warm starting
     contactSolver.storeImpulses();
@@ -393,8 +427,6 @@ public class Island {
 
     profile.solvePosition = timer.getMilliseconds();
 
-    report(contactSolver.m_velocityConstraints);
-
     if (allowSleep) {
       float minSleepTime = Float.MAX_VALUE;
 
@@ -557,7 +589,7 @@ public class Island {
       body.synchronizeTransform();
     }
 
-    report(toiContactSolver.m_velocityConstraints);
+    report(toiContactSolver);
   }
 
   public void add(Body body) {
@@ -579,7 +611,14 @@ public class Island {
 
   private final ContactImpulse impulse = new ContactImpulse();
 
-  public void report(ContactVelocityConstraint[] constraints) {
+  /**
+   * Reports the impulses of the last {@link #solveContacts} to the contact listener.
+   */
+  public void report() {
+    report(contactSolver);
+  }
+
+  public void report(ContactSolver solver) {
     if (m_listener == null) {
       return;
     }
@@ -587,13 +626,7 @@ public class Island {
     for (int i = 0; i < m_contactCount; ++i) {
       Contact c = m_contacts[i];
 
-      ContactVelocityConstraint vc = constraints[i];
-      impulse.count = vc.pointCount;
-      for (int j = 0; j < vc.pointCount; ++j) {
-        impulse.normalImpulses[j] = vc.points[j].normalImpulse;
-        impulse.tangentImpulses[j] = vc.points[j].tangentImpulse;
-      }
-
+      solver.getImpulses(i, impulse);
       m_listener.postSolve(c, impulse);
     }
   }
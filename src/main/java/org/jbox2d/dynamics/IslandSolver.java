@@ -0,0 +1,101 @@
+package org.jbox2d.dynamics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jbox2d.common.Vec2;
+
+/**
+ * Solves islands without joints concurrently. Islands are collected by {@link World} first, each
+ * one gets its own {@link Island} (with its own contact solver and solver data) and its contacts
+ * are initialized while the body island indices are still valid. Then the islands are solved by
+ * the {@link SolverThreads}, and finally reported to the contact listener in
+ * collection order on the calling thread.
+ *
+ * Islands with joints are solved by the world on the calling thread, because joints use the
+ * shared world pool.
+ *
+ * This is an internal class.
+ */
+public class IslandSolver implements SolverThreads.Task {
+
+  private final SolverThreads m_threads;
+  private final AtomicInteger m_next = new AtomicInteger();
+
+  private Island[] m_islands = new Island[16];
+  private Profile[] m_profiles = new Profile[16];
+  private int m_count;
+
+  private TimeStep m_step;
+  private Vec2 m_gravity;
+  private boolean m_allowSleep;
+
+  public IslandSolver(SolverThreads threads) {
+    m_threads = threads;
+  }
+
+  /**
+   * Starts collecting islands of a step.
+   */
+  public void begin(TimeStep step, Vec2 gravity, boolean allowSleep) {
+    m_step = step;
+    m_gravity = gravity;
+    m_allowSleep = allowSleep;
+    m_count = 0;
+  }
+
+  /**
+   * Copies the island without joints and initializes its contacts.
+   */
+  public void add(Island source) {
+    if (m_count == m_islands.length) {
+      Island[] islands = new Island[m_count * 2];
+      Profile[] profiles = new Profile[m_count * 2];
+      System.arraycopy(m_islands, 0, islands, 0, m_count);
+      System.arraycopy(m_profiles, 0, profiles, 0, m_count);
+      m_islands = islands;
+      m_profiles = profiles;
+    }
+    if (m_islands[m_count] == null) {
+      m_islands[m_count] = new Island();
+      m_profiles[m_count] = new Profile();
+    }
+
+    Island island = m_islands[m_count++];
+    island.setFlatContactSolver(source.isFlatContactSolver());
+    island.init(source.m_bodyCount, source.m_contactCount, 0, source.m_listener);
+    System.arraycopy(source.m_bodies, 0, island.m_bodies, 0, source.m_bodyCount);
+    System.arraycopy(source.m_contacts, 0, island.m_contacts, 0, source.m_contactCount);
+    island.m_bodyCount = source.m_bodyCount;
+    island.m_contactCount = source.m_contactCount;
+    island.initContacts(m_step);
+  }
+
+  /**
+   * Solves the collected islands and reports them to the contact listener.
+   */
+  public void solve(Profile profile) {
+    if (m_count == 0) {
+      return;
+    }
+
+    m_next.set(0);
+    m_threads.run(this, m_count);
+
+    for (int i = 0; i < m_count; i++) {
+      Island island = m_islands[i];
+      Profile islandProfile = m_profiles[i];
+      profile.solveInit += islandProfile.solveInit;
+      profile.solveVelocity += islandProfile.solveVelocity;
+      profile.solvePosition += islandProfile.solvePosition;
+      island.report();
+    }
+  }
+
+  @Override
+  public void run(int thread) {
+    int index;
+    while ((index = m_next.getAndIncrement()) < m_count) {
+      m_islands[index].solveContacts(m_profiles[index], m_step, m_gravity, m_allowSleep);
+    }
+  }
+}
@@ -34,7 +34,11 @@ public class Profile {
   public float solvePosition;
   public float broadphase;
   public float solveTOI;
-  
+  public int bodyCount;
+  public int contactCount;
+  public int islandCount;
+  public int toiCount;
+
   public void toDebugStrings(List<String> strings) {
     strings.add("Profile:");
     strings.add(" step: " + step);
@@ -45,5 +49,9 @@ public class Profile {
     strings.add("   solvePosition: " + solvePosition);
     strings.add("   broadphase: " + broadphase);
     strings.add("  solveTOI: " + solveTOI);
+    strings.add(" bodies: " + bodyCount);
+    strings.add(" contacts: " + contactCount);
+    strings.add(" islands: " + islandCount);
+    strings.add(" toi events: " + toiCount);
   }
 }
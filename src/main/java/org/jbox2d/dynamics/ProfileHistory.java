@@ -0,0 +1,171 @@
+package org.jbox2d.dynamics;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Rolling window of the last step profiles of a world, see {@link World#setProfileHistory}. Gives
+ * percentiles of the phase times and averages of the counters over the window, and writes the
+ * window as csv. Recording and reading may happen on different threads.
+ */
+public class ProfileHistory {
+  public static final int STEP = 0;
+  public static final int COLLIDE = 1;
+  public static final int SOLVE = 2;
+  public static final int SOLVE_INIT = 3;
+  public static final int SOLVE_VELOCITY = 4;
+  public static final int SOLVE_POSITION = 5;
+  public static final int BROADPHASE = 6;
+  public static final int SOLVE_TOI = 7;
+  public static final int PHASE_COUNT = 8;
+
+  public static final int BODIES = 0;
+  public static final int CONTACTS = 1;
+  public static final int ISLANDS = 2;
+  public static final int TOI_EVENTS = 3;
+  public static final int COUNTER_COUNT = 4;
+
+  public static final String[] PHASE_NAMES = {"step", "collide", "solve", "solveInit",
+      "solveVelocity", "solvePosition", "broadphase", "solveTOI"};
+  public static final String[] COUNTER_NAMES = {"bodies", "contacts", "islands", "toiEvents"};
+
+  private final float[] m_times;
+  private final int[] m_counters;
+  private final float[] m_sorted;
+  private final int m_capacity;
+  private int m_next;
+  private int m_size;
+  private long m_stepCount;
+
+  /**
+   * @param capacity number of last steps kept
+   */
+  public ProfileHistory(int capacity) {
+    assert (capacity > 0);
+    m_capacity = capacity;
+    m_times = new float[capacity * PHASE_COUNT];
+    m_counters = new int[capacity * COUNTER_COUNT];
+    m_sorted = new float[capacity];
+  }
+
+  public synchronized void record(Profile profile) {
+    int t = m_next * PHASE_COUNT;
+    m_times[t + STEP] = profile.step;
+    m_times[t + COLLIDE] = profile.collide;
+    m_times[t + SOLVE] = profile.solve;
+    m_times[t + SOLVE_INIT] = profile.solveInit;
+    m_times[t + SOLVE_VELOCITY] = profile.solveVelocity;
+    m_times[t + SOLVE_POSITION] = profile.solvePosition;
+    m_times[t + BROADPHASE] = profile.broadphase;
+    m_times[t + SOLVE_TOI] = profile.solveTOI;
+    int c = m_next * COUNTER_COUNT;
+    m_counters[c + BODIES] = profile.bodyCount;
+    m_counters[c + CONTACTS] = profile.contactCount;
+    m_counters[c + ISLANDS] = profile.islandCount;
+    m_counters[c + TOI_EVENTS] = profile.toiCount;
+
+    m_next = (m_next + 1) % m_capacity;
+    if (m_size < m_capacity) {
+      ++m_size;
+    }
+    ++m_stepCount;
+  }
+
+  public synchronized void clear() {
+    m_next = 0;
+    m_size = 0;
+  }
+
+  public int getCapacity() {
+    return m_capacity;
+  }
+
+  /**
+   * @return number of steps in the window
+   */
+  public synchronized int getSize() {
+    return m_size;
+  }
+
+  /**
+   * @return number of steps recorded since creation
+   */
+  public synchronized long getStepCount() {
+    return m_stepCount;
+  }
+
+  /**
+   * Nearest rank percentile of a phase time over the window.
+   *
+   * @param phase one of the phase constants
+   * @param percentile 0 to 100, 50 is the median
+   * @return milliseconds, 0 if nothing was recorded
+   */
+  public synchronized float getPercentile(int phase, float percentile) {
+    if (m_size == 0) {
+      return 0;
+    }
+    for (int i = 0; i < m_size; ++i) {
+      m_sorted[i] = m_times[i * PHASE_COUNT + phase];
+    }
+    Arrays.sort(m_sorted, 0, m_size);
+    int rank = (int) Math.ceil(percentile / 100 * m_size) - 1;
+    if (rank < 0) {
+      rank = 0;
+    } else if (rank >= m_size) {
+      rank = m_size - 1;
+    }
+    return m_sorted[rank];
+  }
+
+  /**
+   * @param counter one of the counter constants
+   */
+  public synchronized float getAverage(int counter) {
+    if (m_size == 0) {
+      return 0;
+    }
+    long sum = 0;
+    for (int i = 0; i < m_size; ++i) {
+      sum += m_counters[i * COUNTER_COUNT + counter];
+    }
+    return (float) sum / m_size;
+  }
+
+  /**
+   * @param counter one of the counter constants
+   */
+  public synchronized int getMax(int counter) {
+    int max = 0;
+    for (int i = 0; i < m_size; ++i) {
+      max = Math.max(max, m_counters[i * COUNTER_COUNT + counter]);
+    }
+    return max;
+  }
+
+  /**
+   * Writes a header line and one line per step of the window, oldest first. Phase times are in
+   * milliseconds.
+   *
+   * @throws IOException from the appendable
+   */
+  public synchronized void writeCsv(Appendable out) throws IOException {
+    for (int i = 0; i < PHASE_COUNT; ++i) {
+      out.append(PHASE_NAMES[i]).append(',');
+    }
+    for (int i = 0; i < COUNTER_COUNT; ++i) {
+      out.append(COUNTER_NAMES[i]).append(i == COUNTER_COUNT - 1 ? '\n' : ',');
+    }
+    int first = m_size < m_capacity ? 0 : m_next;
+    for (int n = 0; n < m_size; ++n) {
+      int index = (first + n) % m_capacity;
+      for (int i = 0; i < PHASE_COUNT; ++i) {
+        out.append(Float.toString(m_times[index * PHASE_COUNT + i])).append(',');
+      }
+      for (int i = 0; i < COUNTER_COUNT; ++i) {
+        out.append(Integer.toString(m_counters[index * COUNTER_COUNT + i]));
+        out.append(i == COUNTER_COUNT - 1 ? '\n' : ',');
+      }
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package org.jbox2d.dynamics;
+
+/**
+ * Rays cast by {@link World#raycast(RayCastBatch)} at once. Every ray reports the closest fixture
+ * it hits, or with {@link #anyHit} the first one found. Results are written into the output
+ * arrays, nothing is allocated per ray and there is no callback.
+ */
+public class RayCastBatch {
+
+  /**
+   * Ray start and end points, x1, y1, x2, y2 per ray.
+   */
+  public float[] rays;
+  public int count;
+
+  /**
+   * Only fixtures with category bits matching these bits are hit.
+   */
+  public int maskBits = 0xFFFF;
+  public boolean ignoreSensors = false;
+  /**
+   * Stop every ray at the first hit found instead of the closest one, enough for line of sight.
+   */
+  public boolean anyHit = false;
+  /**
+   * Cast the rays on the world solver threads, see {@link World#setSolverThreads(int)}.
+   */
+  public boolean parallel = false;
+
+  /**
+   * Hit fraction along the ray, 1 if nothing was hit.
+   */
+  public float[] fractions;
+  /**
+   * Hit normal, x and y per ray.
+   */
+  public float[] normals;
+  /**
+   * Hit fixture, null if nothing was hit.
+   */
+  public Fixture[] fixtures;
+  /**
+   * Child index of the hit fixture, used by chain shapes.
+   */
+  public int[] childIndices;
+  /**
+   * Number of rays that hit a fixture.
+   */
+  public int hitCount;
+
+  public RayCastBatch(int capacity) {
+    rays = new float[capacity * 4];
+    fractions = new float[capacity];
+    normals = new float[capacity * 2];
+    fixtures = new Fixture[capacity];
+    childIndices = new int[capacity];
+  }
+
+  /**
+   * Adds a ray, the batch grows as needed.
+   * 
+   * @return index of the ray
+   */
+  public int add(float x1, float y1, float x2, float y2) {
+    if (count * 4 == rays.length) {
+      float[] bigger = new float[rays.length * 2 + 4];
+      System.arraycopy(rays, 0, bigger, 0, rays.length);
+      rays = bigger;
+    }
+    int i = count * 4;
+    rays[i] = x1;
+    rays[i + 1] = y1;
+    rays[i + 2] = x2;
+    rays[i + 3] = y2;
+    return count++;
+  }
+
+  public void clear() {
+    count = 0;
+    hitCount = 0;
+  }
+
+  public boolean isHit(int ray) {
+    return fixtures[ray] != null;
+  }
+
+  public float getPointX(int ray) {
+    float x1 = rays[ray * 4];
+    return x1 + (rays[ray * 4 + 2] - x1) * fractions[ray];
+  }
+
+  public float getPointY(int ray) {
+    float y1 = rays[ray * 4 + 1];
+    return y1 + (rays[ray * 4 + 3] - y1) * fractions[ray];
+  }
+
+  /**
+   * Makes the output arrays as long as the rays.
+   */
+  void prepareOutput() {
+    int capacity = rays.length / 4;
+    if (fractions.length < capacity) {
+      fractions = new float[capacity];
+      normals = new float[capacity * 2];
+      fixtures = new Fixture[capacity];
+      childIndices = new int[capacity];
+    }
+    hitCount = 0;
+  }
+}
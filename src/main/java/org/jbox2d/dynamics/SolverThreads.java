@@ -0,0 +1,120 @@
+package org.jbox2d.dynamics;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Fixed set of daemon threads shared by the parallel parts of a world step. The stepping thread
+ * always takes part as thread 0, so a task is run by at most {@link #getThreadCount()} threads.
+ *
+ * This is an internal class.
+ */
+public class SolverThreads {
+
+  /**
+   * Work run by every thread, it pulls its share of the work itself.
+   */
+  public interface Task {
+    /**
+     * @param thread index of the running thread, 0 is the stepping thread
+     */
+    void run(int thread);
+  }
+
+  private final int m_threads;
+  private final ExecutorService m_executor;
+  private final Runnable[] m_runners;
+  private final Future<?>[] m_futures;
+
+  private Task m_task;
+
+  /**
+   * @param threads number of threads including the stepping thread
+   */
+  public SolverThreads(int threads) {
+    m_threads = threads;
+    m_executor = Executors.newFixedThreadPool(threads - 1, new ThreadFactory() {
+      private int count;
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "SolverThread-" + ++count);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    m_futures = new Future<?>[threads];
+    m_runners = new Runnable[threads];
+    for (int i = 1; i < threads; i++) {
+      final int thread = i;
+      m_runners[i] = new Runnable() {
+        @Override
+        public void run() {
+          m_task.run(thread);
+        }
+      };
+    }
+  }
+
+  public int getThreadCount() {
+    return m_threads;
+  }
+
+  /**
+   * Runs the task on the given number of threads and waits for all of them. An exception thrown by
+   * any thread is rethrown after all threads finished.
+   */
+  public void run(Task task, int threads) {
+    threads = Math.min(threads, m_threads);
+    m_task = task;
+    for (int i = 1; i < threads; i++) {
+      m_futures[i] = m_executor.submit(m_runners[i]);
+    }
+
+    RuntimeException error = null;
+    try {
+      task.run(0);
+    } catch (RuntimeException e) {
+      error = e;
+    }
+
+    boolean interrupted = false;
+    for (int i = 1; i < threads; i++) {
+      while (true) {
+        try {
+          m_futures[i].get();
+          break;
+        } catch (InterruptedException e) {
+          // the task still uses shared state, wait for it anyway
+          interrupted = true;
+        } catch (ExecutionException e) {
+          if (error == null) {
+            error = new RuntimeException(e.getCause());
+          }
+          break;
+        }
+      }
+      m_futures[i] = null;
+    }
+    m_task = null;
+
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * Stops the threads.
+   */
+  public void shutdown() {
+    m_executor.shutdown();
+  }
+}
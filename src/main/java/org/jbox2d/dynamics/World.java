@@ -39,6 +39,7 @@ import org.jbox2d.collision.TimeOfImpact.TOIOutput;
 import org.jbox2d.collision.TimeOfImpact.TOIOutputState;
 import org.jbox2d.collision.broadphase.BroadPhase;
 import org.jbox2d.collision.broadphase.BroadPhaseStrategy;
+import org.jbox2d.collision.broadphase.BroadPhaseType;
 import org.jbox2d.collision.broadphase.DefaultBroadPhaseBuffer;
 import org.jbox2d.collision.broadphase.DynamicTree;
 import org.jbox2d.collision.shapes.ChainShape;
@@ -94,6 +95,9 @@ public class World {
   private int m_bodyCount;
   private int m_jointCount;
 
+  private Body[] m_bodyPool = new Body[0];
+  private int m_bodyPoolCount;
+
   private final Vec2 m_gravity = new Vec2();
   private boolean m_allowSleep;
 
@@ -107,7 +111,7 @@ public class World {
   /**
    * This is used to compute the time step ratio to support a variable time step.
    */
-  private float m_inv_dt0;
+  protected float m_inv_dt0;
 
   // these are for debugging the solver
   private boolean m_warmStarting;
@@ -117,6 +121,7 @@ public class World {
   private boolean m_stepComplete;
 
   private Profile m_profile;
+  private ProfileHistory m_profileHistory;
 
 
   private ContactRegister[][] contactStacks =
@@ -139,6 +144,17 @@ public class World {
   public World(Vec2 gravity, IWorldPool pool) {
     this(gravity, pool, new DynamicTree());
   }
+
+  /**
+   * Construct a world object with the given broad-phase.
+   * 
+   * @param gravity the world gravity vector.
+   * @param broadPhase the broad-phase implementation.
+   */
+  public World(Vec2 gravity, BroadPhaseType broadPhase) {
+    this(gravity, new DefaultWorldPool(WORLD_POOL_SIZE, WORLD_POOL_CONTAINER_SIZE), broadPhase
+        .create());
+  }
   
   public World(Vec2 gravity, IWorldPool pool, BroadPhaseStrategy strategy) {
     this(gravity, pool, new DefaultBroadPhaseBuffer(strategy));
@@ -313,8 +329,14 @@ public class World {
     if (isLocked()) {
       return null;
     }
-    // TODO djm pooling
-    Body b = new Body(def, this);
+    Body b;
+    if (m_bodyPoolCount > 0) {
+      b = m_bodyPool[--m_bodyPoolCount];
+      m_bodyPool[m_bodyPoolCount] = null;
+      b.set(def, this);
+    } else {
+      b = new Body(def, this);
+    }
 
     // add to world doubly linked list
     b.m_prev = null;
@@ -399,7 +421,50 @@ public class World {
     }
 
     --m_bodyCount;
-    // TODO djm recycle body
+
+    if (m_bodyPoolCount < m_bodyPool.length) {
+      body.m_prev = null;
+      body.m_next = null;
+      body.m_userData = null;
+      m_bodyPool[m_bodyPoolCount++] = body;
+    }
+  }
+
+  /**
+   * Keep up to capacity destroyed bodies and reuse them in {@link #createBody(BodyDef)}, so
+   * spawning and removing many bodies doesn't make garbage. A reused body is the same object as the
+   * destroyed one, so only use it when nothing keeps destroyed bodies.
+   * 
+   * @param capacity 0 turns the pool off
+   */
+  public void setBodyPoolCapacity(int capacity) {
+    Body[] pool = new Body[capacity];
+    m_bodyPoolCount = MathUtils.min(m_bodyPoolCount, capacity);
+    System.arraycopy(m_bodyPool, 0, pool, 0, m_bodyPoolCount);
+    m_bodyPool = pool;
+  }
+
+  public int getBodyPoolCapacity() {
+    return m_bodyPool.length;
+  }
+
+  /**
+   * Start creating many bodies at once. Proxies of fixtures created until {@link #endBatch()} are
+   * built into one balanced subtree of the broad-phase, which is inserted at once, instead of
+   * inserting and rebalancing every proxy. Don't query the world or destroy the new fixtures in
+   * between. This function is locked during callbacks.
+   */
+  public void beginBatch() {
+    assert (isLocked() == false);
+    m_contactManager.m_broadPhase.beginBatch();
+  }
+
+  /**
+   * Inserts the proxies created since {@link #beginBatch()}, their contacts are found by the next
+   * step.
+   */
+  public void endBatch() {
+    m_contactManager.m_broadPhase.endBatch();
   }
 
   /**
@@ -592,6 +657,9 @@ public class World {
 
     step.warmStarting = m_warmStarting;
 
+    m_profile.islandCount = 0;
+    m_profile.toiCount = 0;
+
     // Update contacts. This is where some contacts are destroyed.
     tempTimer.reset();
     m_contactManager.collide();
@@ -623,6 +691,11 @@ public class World {
     // log.debug("ending step");
 
     m_profile.step = stepTimer.getMilliseconds();
+    m_profile.bodyCount = m_bodyCount;
+    m_profile.contactCount = m_contactManager.m_contactCount;
+    if (m_profileHistory != null) {
+      m_profileHistory.record(m_profile);
+    }
   }
 
   /**
@@ -769,6 +842,63 @@ public class World {
     m_contactManager.m_broadPhase.raycast(wrcwrapper, input);
   }
 
+  private BatchQuery m_batchQuery;
+
+  /**
+   * Ray-cast the world for all rays of the batch at once, every ray reports its closest hit into
+   * the output arrays of the batch. See {@link RayCastBatch}.
+   * 
+   * @param batch the rays and their results.
+   */
+  public void raycast(RayCastBatch batch) {
+    if (m_batchQuery == null) {
+      m_batchQuery = new BatchQuery();
+    }
+    m_batchQuery.raycast(m_contactManager.m_broadPhase, batch, batch.parallel ? m_solverThreads
+        : null);
+  }
+
+  /**
+   * Query the world for all fixtures overlapping the boxes of the batch. See
+   * {@link AABBQueryBatch}.
+   * 
+   * @param batch the boxes and their results.
+   */
+  public void queryAABB(AABBQueryBatch batch) {
+    if (m_batchQuery == null) {
+      m_batchQuery = new BatchQuery();
+    }
+    m_batchQuery.query(m_contactManager.m_broadPhase, batch, batch.parallel ? m_solverThreads
+        : null);
+  }
+
+  /**
+   * Save the state of the bodies, contacts and joints into the snapshot, see {@link WorldSnapshot}.
+   * 
+   * @warning This function is locked during callbacks.
+   * @param snapshot
+   */
+  public void snapshot(WorldSnapshot snapshot) {
+    assert (isLocked() == false);
+    snapshot.save(this);
+  }
+
+  /**
+   * Restore the state saved by {@link #snapshot(WorldSnapshot)}, in place. The world must have the
+   * bodies, fixtures and joints it had when the snapshot was taken. No contact events are reported
+   * for contacts that come and go with the restore.
+   * 
+   * @warning This function is locked during callbacks.
+   * @param snapshot
+   */
+  public void restore(WorldSnapshot snapshot) {
+    assert (isLocked() == false);
+    if (isLocked()) {
+      return;
+    }
+    snapshot.restore(this);
+  }
+
   /**
    * Get the world body list. With the returned body, use Body.getNext to get the next body in the
    * world list. A null body indicates the end of the list.
@@ -962,7 +1092,66 @@ public class World {
     return m_profile;
   }
 
+  /**
+   * Set the history every step records its profile into, null to stop recording.
+   * 
+   * @param history
+   */
+  public void setProfileHistory(ProfileHistory history) {
+    m_profileHistory = history;
+  }
+
+  public ProfileHistory getProfileHistory() {
+    return m_profileHistory;
+  }
+
+  /**
+   * Set the number of threads used by the narrow phase and the island solver. With more than one
+   * thread the manifolds of awake contacts are evaluated concurrently, and the islands without
+   * joints are collected first and solved concurrently. Islands with joints are solved on the
+   * stepping thread. Bodies end up in the same state as with one thread, but the contact listener
+   * gets postSolve calls after all islands are solved.
+   * 
+   * @param threads number of threads including the stepping thread, 1 steps serially
+   */
+  public void setSolverThreads(int threads) {
+    if (threads == getSolverThreads()) {
+      return;
+    }
+    if (m_solverThreads != null) {
+      m_solverThreads.shutdown();
+      m_solverThreads = null;
+      m_islandSolver = null;
+    }
+    if (threads > 1) {
+      m_solverThreads = new SolverThreads(threads);
+      m_islandSolver = new IslandSolver(m_solverThreads);
+    }
+    m_contactManager.setSolverThreads(m_solverThreads);
+  }
+
+  public int getSolverThreads() {
+    return m_solverThreads != null ? m_solverThreads.getThreadCount() : 1;
+  }
+
+  /**
+   * Selects the contact velocity solver. The flat one keeps the velocity constraints and body
+   * velocities in float arrays and iterates them linearly, which is faster with many contacts.
+   * Both give the same results, joints and position constraints are solved the same way.
+   * 
+   * @param flat true for {@link org.jbox2d.dynamics.contacts.FlatContactSolver}
+   */
+  public void setFlatContactSolver(boolean flat) {
+    island.setFlatContactSolver(flat);
+  }
+
+  public boolean isFlatContactSolver() {
+    return island.isFlatContactSolver();
+  }
+
   private final Island island = new Island();
+  private SolverThreads m_solverThreads;
+  private IslandSolver m_islandSolver;
   private Body[] stack = new Body[10]; // TODO djm find a good initial stack number;
   private final Profile islandProfile = new Profile();
   private final Timer broadphaseTimer = new Timer();
@@ -987,6 +1176,10 @@ public class World {
       j.m_islandFlag = false;
     }
 
+    if (m_islandSolver != null) {
+      m_islandSolver.begin(step, m_gravity, m_allowSleep);
+    }
+
     // Build and simulate all awake islands.
     int stackSize = m_bodyCount;
     if (stack.length < stackSize) {
@@ -1089,10 +1282,15 @@ public class World {
           other.m_flags |= Body.e_islandFlag;
         }
       }
-      island.solve(islandProfile, step, m_gravity, m_allowSleep);
-      m_profile.solveInit += islandProfile.solveInit;
-      m_profile.solveVelocity += islandProfile.solveVelocity;
-      m_profile.solvePosition += islandProfile.solvePosition;
+      ++m_profile.islandCount;
+      if (m_islandSolver != null && island.m_jointCount == 0) {
+        m_islandSolver.add(island);
+      } else {
+        island.solve(islandProfile, step, m_gravity, m_allowSleep);
+        m_profile.solveInit += islandProfile.solveInit;
+        m_profile.solveVelocity += islandProfile.solveVelocity;
+        m_profile.solvePosition += islandProfile.solvePosition;
+      }
 
       // Post solve cleanup.
       for (int i = 0; i < island.m_bodyCount; ++i) {
@@ -1104,6 +1302,10 @@ public class World {
       }
     }
 
+    if (m_islandSolver != null) {
+      m_islandSolver.solve(m_profile);
+    }
+
     broadphaseTimer.reset();
     // Synchronize fixtures, check for out of range bodies.
     for (Body b = m_bodyList; b != null; b = b.getNext()) {
@@ -1256,6 +1458,7 @@ public class World {
         m_stepComplete = true;
         break;
       }
+      ++m_profile.toiCount;
 
       // Advance the bodies to the TOI.
       Fixture fA = minContact.getFixtureA();
@@ -0,0 +1,350 @@
+package org.jbox2d.dynamics;
+
+import java.util.Arrays;
+
+import org.jbox2d.collision.AABB;
+import org.jbox2d.collision.ContactID;
+import org.jbox2d.collision.Manifold;
+import org.jbox2d.collision.Manifold.ManifoldType;
+import org.jbox2d.collision.ManifoldPoint;
+import org.jbox2d.collision.broadphase.BroadPhase;
+import org.jbox2d.dynamics.contacts.Contact;
+import org.jbox2d.dynamics.joints.Joint;
+
+/**
+ * Binary state of a world, taken by {@link World#snapshot(WorldSnapshot)} and restored in place by
+ * {@link World#restore(WorldSnapshot)}. It holds the transform, sweep, velocities, forces, sleep
+ * time and flags of every body, the AABBs of every broad-phase proxy, every contact with its
+ * manifold and the impulses the solver warm starts from, and the impulses of every joint. Restoring
+ * it gives the same simulation as the world had from the moment the snapshot was taken, for
+ * rollback or replays.
+ *
+ * A snapshot restores into the world it was taken from, or into one built the same way, with the
+ * same bodies, fixtures and joints created in the same order. Nothing is allocated once the buffer
+ * has grown to the size of the world. Floats are stored as their raw bits, the whole state is the
+ * int array of {@link #getData()}, so it can be copied or sent as it is.
+ *
+ * Take and restore snapshots between steps, not from callbacks.
+ */
+public class WorldSnapshot {
+
+  private static final int HEADER_SIZE = 6;
+  private static final int PROXY_SIZE = 9;
+  private static final int BODY_SIZE = 21;
+  private static final int CONTACT_SIZE = 24;
+
+  private static final ManifoldType[] MANIFOLD_TYPES = ManifoldType.values();
+
+  private int[] m_data;
+  private int m_size;
+  private int m_position;
+
+  private final AABB m_aabb = new AABB();
+
+  public WorldSnapshot() {
+    this(1024);
+  }
+
+  public WorldSnapshot(int capacity) {
+    m_data = new int[capacity];
+  }
+
+  /**
+   * The state, the first {@link #getSize()} ints are used.
+   */
+  public int[] getData() {
+    return m_data;
+  }
+
+  public int getSize() {
+    return m_size;
+  }
+
+  /**
+   * Copy in a state taken from {@link #getData()}, for example of another snapshot.
+   */
+  public void setData(int[] data, int size) {
+    ensureCapacity(size);
+    System.arraycopy(data, 0, m_data, 0, size);
+    m_size = size;
+  }
+
+  public void putInt(int value) {
+    if (m_position == m_data.length) {
+      ensureCapacity(m_position + 1);
+    }
+    m_data[m_position++] = value;
+  }
+
+  public void putFloat(float value) {
+    putInt(Float.floatToRawIntBits(value));
+  }
+
+  public int getInt() {
+    assert (m_position < m_size);
+    return m_data[m_position++];
+  }
+
+  public float getFloat() {
+    return Float.intBitsToFloat(getInt());
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (m_data.length < capacity) {
+      m_data = Arrays.copyOf(m_data, Math.max(capacity, m_data.length * 2));
+    }
+  }
+
+  void save(World world) {
+    final ContactManager contactManager = world.m_contactManager;
+    final BroadPhase broadPhase = contactManager.m_broadPhase;
+    final int bodyCount = world.getBodyCount();
+    final int proxyCount = broadPhase.getProxyCount();
+    final int contactCount = contactManager.m_contactCount;
+    ensureCapacity(HEADER_SIZE + proxyCount * PROXY_SIZE + bodyCount * BODY_SIZE + contactCount
+        * CONTACT_SIZE);
+    final int[] data = m_data;
+
+    int p = 0;
+    data[p++] = bodyCount;
+    data[p++] = proxyCount;
+    data[p++] = world.getJointCount();
+    data[p++] = contactCount;
+    data[p++] = Float.floatToRawIntBits(world.m_inv_dt0);
+    data[p++] = world.m_flags & World.NEW_FIXTURE;
+
+    for (Body b = world.getBodyList(); b != null; b = b.m_next) {
+      for (Fixture f = b.m_fixtureList; f != null; f = f.m_next) {
+        for (int i = 0; i < f.m_proxyCount; i++) {
+          final FixtureProxy proxy = f.m_proxies[i];
+          final AABB fatAABB = broadPhase.getFatAABB(proxy.proxyId);
+          data[p++] = proxy.proxyId;
+          p = putAABB(data, p, proxy.aabb);
+          p = putAABB(data, p, fatAABB);
+        }
+      }
+    }
+
+    for (Body b = world.getBodyList(); b != null; b = b.m_next) {
+      data[p++] = b.m_flags;
+      data[p++] = Float.floatToRawIntBits(b.m_xf.p.x);
+      data[p++] = Float.floatToRawIntBits(b.m_xf.p.y);
+      data[p++] = Float.floatToRawIntBits(b.m_xf.q.s);
+      data[p++] = Float.floatToRawIntBits(b.m_xf.q.c);
+      data[p++] = Float.floatToRawIntBits(b.m_sweep.localCenter.x);
+      data[p++] = Float.floatToRawIntBits(b.m_sweep.localCenter.y);
+      data[p++] = Float.floatToRawIntBits(b.m_sweep.c0.x);
+      data[p++] = Float.floatToRawIntBits(b.m_sweep.c0.y);
+      data[p++] = Float.floatToRawIntBits(b.m_sweep.c.x);
+      data[p++] = Float.floatToRawIntBits(b.m_sweep.c.y);
+      data[p++] = Float.floatToRawIntBits(b.m_sweep.a0);
+      data[p++] = Float.floatToRawIntBits(b.m_sweep.a);
+      data[p++] = Float.floatToRawIntBits(b.m_sweep.alpha0);
+      data[p++] = Float.floatToRawIntBits(b.m_linearVelocity.x);
+      data[p++] = Float.floatToRawIntBits(b.m_linearVelocity.y);
+      data[p++] = Float.floatToRawIntBits(b.m_angularVelocity);
+      data[p++] = Float.floatToRawIntBits(b.m_force.x);
+      data[p++] = Float.floatToRawIntBits(b.m_force.y);
+      data[p++] = Float.floatToRawIntBits(b.m_torque);
+      data[p++] = Float.floatToRawIntBits(b.m_sleepTime);
+    }
+
+    // contacts have a fixed size, restore indexes them backwards
+    for (Contact c = contactManager.m_contactList; c != null; c = c.m_next) {
+      final Manifold manifold = c.m_manifold;
+      data[p++] = c.m_fixtureA.m_proxies[c.m_indexA].proxyId;
+      data[p++] = c.m_fixtureB.m_proxies[c.m_indexB].proxyId;
+      data[p++] = c.m_flags;
+      data[p++] = Float.floatToRawIntBits(c.m_toiCount);
+      data[p++] = Float.floatToRawIntBits(c.m_toi);
+      data[p++] = Float.floatToRawIntBits(c.m_friction);
+      data[p++] = Float.floatToRawIntBits(c.m_restitution);
+      data[p++] = Float.floatToRawIntBits(c.m_tangentSpeed);
+      // no type until the contact first touched
+      data[p++] = manifold.type != null ? manifold.type.ordinal() : -1;
+      data[p++] = manifold.pointCount;
+      data[p++] = Float.floatToRawIntBits(manifold.localNormal.x);
+      data[p++] = Float.floatToRawIntBits(manifold.localNormal.y);
+      data[p++] = Float.floatToRawIntBits(manifold.localPoint.x);
+      data[p++] = Float.floatToRawIntBits(manifold.localPoint.y);
+      for (int i = 0; i < 2; i++) {
+        final ManifoldPoint mp = manifold.points[i];
+        final ContactID id = mp.id;
+        data[p++] = Float.floatToRawIntBits(mp.localPoint.x);
+        data[p++] = Float.floatToRawIntBits(mp.localPoint.y);
+        data[p++] = Float.floatToRawIntBits(mp.normalImpulse);
+        data[p++] = Float.floatToRawIntBits(mp.tangentImpulse);
+        data[p++] =
+            (id.indexA & 0xFF) << 24 | (id.indexB & 0xFF) << 16 | (id.typeA & 0xFF) << 8
+                | (id.typeB & 0xFF);
+      }
+    }
+
+    // joints write as many values as they need
+    m_position = p;
+    for (Joint j = world.getJointList(); j != null; j = j.getNext()) {
+      j.writeState(this);
+    }
+    m_size = m_position;
+  }
+
+  void restore(World world) {
+    final ContactManager contactManager = world.m_contactManager;
+    final BroadPhase broadPhase = contactManager.m_broadPhase;
+    final int[] data = m_data;
+
+    int p = 0;
+    final int bodyCount = data[p++];
+    final int proxyCount = data[p++];
+    final int jointCount = data[p++];
+    final int contactCount = data[p++];
+    if (bodyCount != world.getBodyCount() || proxyCount != broadPhase.getProxyCount()
+        || jointCount != world.getJointCount() || !proxiesMatch(world)) {
+      throw new IllegalArgumentException("The snapshot was taken from a different world");
+    }
+    world.m_inv_dt0 = Float.intBitsToFloat(data[p++]);
+    world.m_flags = (world.m_flags & ~World.NEW_FIXTURE) | data[p++];
+
+    for (Body b = world.getBodyList(); b != null; b = b.m_next) {
+      for (Fixture f = b.m_fixtureList; f != null; f = f.m_next) {
+        for (int i = 0; i < f.m_proxyCount; i++) {
+          final FixtureProxy proxy = f.m_proxies[i];
+          p = getAABB(data, p + 1, proxy.aabb);
+          p = getAABB(data, p, m_aabb);
+          broadPhase.setFatAABB(proxy.proxyId, m_aabb);
+        }
+      }
+    }
+
+    // bodies are restored after the contacts, returning contacts to the pool wakes bodies
+    final int bodyOffset = p;
+    p += bodyCount * BODY_SIZE;
+
+    // Keep the contacts if the world has the same pairs in the same order, which is the common case
+    // when rolling back a few steps. Otherwise return them all to the pool and create the saved
+    // ones, from the last to the first, so the world and body contact lists get the saved order.
+    if (!contactsMatch(contactManager, p, contactCount)) {
+      Contact c = contactManager.m_contactList;
+      while (c != null) {
+        Contact next = c.m_next;
+        contactManager.remove(c);
+        world.pushContact(c);
+        c = next;
+      }
+      for (int i = contactCount - 1; i >= 0; i--) {
+        final int r = p + i * CONTACT_SIZE;
+        final FixtureProxy proxyA = (FixtureProxy) broadPhase.getUserData(data[r]);
+        final FixtureProxy proxyB = (FixtureProxy) broadPhase.getUserData(data[r + 1]);
+        c = world.popContact(proxyA.fixture, proxyA.childIndex, proxyB.fixture, proxyB.childIndex);
+        contactManager.insert(c);
+      }
+    }
+
+    for (Contact c = contactManager.m_contactList; c != null; c = c.m_next) {
+      final Manifold manifold = c.m_manifold;
+      p += 2;
+      c.m_flags = data[p++];
+      c.m_toiCount = Float.intBitsToFloat(data[p++]);
+      c.m_toi = Float.intBitsToFloat(data[p++]);
+      c.m_friction = Float.intBitsToFloat(data[p++]);
+      c.m_restitution = Float.intBitsToFloat(data[p++]);
+      c.m_tangentSpeed = Float.intBitsToFloat(data[p++]);
+      final int type = data[p++];
+      manifold.type = type != -1 ? MANIFOLD_TYPES[type] : null;
+      manifold.pointCount = data[p++];
+      manifold.localNormal.x = Float.intBitsToFloat(data[p++]);
+      manifold.localNormal.y = Float.intBitsToFloat(data[p++]);
+      manifold.localPoint.x = Float.intBitsToFloat(data[p++]);
+      manifold.localPoint.y = Float.intBitsToFloat(data[p++]);
+      for (int i = 0; i < 2; i++) {
+        final ManifoldPoint mp = manifold.points[i];
+        final ContactID id = mp.id;
+        mp.localPoint.x = Float.intBitsToFloat(data[p++]);
+        mp.localPoint.y = Float.intBitsToFloat(data[p++]);
+        mp.normalImpulse = Float.intBitsToFloat(data[p++]);
+        mp.tangentImpulse = Float.intBitsToFloat(data[p++]);
+        final int key = data[p++];
+        id.indexA = (byte) (key >> 24);
+        id.indexB = (byte) (key >> 16);
+        id.typeA = (byte) (key >> 8);
+        id.typeB = (byte) key;
+      }
+    }
+
+    int q = bodyOffset;
+    for (Body b = world.getBodyList(); b != null; b = b.m_next) {
+      b.m_flags = data[q++];
+      b.m_xf.p.x = Float.intBitsToFloat(data[q++]);
+      b.m_xf.p.y = Float.intBitsToFloat(data[q++]);
+      b.m_xf.q.s = Float.intBitsToFloat(data[q++]);
+      b.m_xf.q.c = Float.intBitsToFloat(data[q++]);
+      b.m_sweep.localCenter.x = Float.intBitsToFloat(data[q++]);
+      b.m_sweep.localCenter.y = Float.intBitsToFloat(data[q++]);
+      b.m_sweep.c0.x = Float.intBitsToFloat(data[q++]);
+      b.m_sweep.c0.y = Float.intBitsToFloat(data[q++]);
+      b.m_sweep.c.x = Float.intBitsToFloat(data[q++]);
+      b.m_sweep.c.y = Float.intBitsToFloat(data[q++]);
+      b.m_sweep.a0 = Float.intBitsToFloat(data[q++]);
+      b.m_sweep.a = Float.intBitsToFloat(data[q++]);
+      b.m_sweep.alpha0 = Float.intBitsToFloat(data[q++]);
+      b.m_linearVelocity.x = Float.intBitsToFloat(data[q++]);
+      b.m_linearVelocity.y = Float.intBitsToFloat(data[q++]);
+      b.m_angularVelocity = Float.intBitsToFloat(data[q++]);
+      b.m_force.x = Float.intBitsToFloat(data[q++]);
+      b.m_force.y = Float.intBitsToFloat(data[q++]);
+      b.m_torque = Float.intBitsToFloat(data[q++]);
+      b.m_sleepTime = Float.intBitsToFloat(data[q++]);
+    }
+
+    m_position = p;
+    for (Joint j = world.getJointList(); j != null; j = j.getNext()) {
+      j.readState(this);
+    }
+    assert (m_position == m_size);
+  }
+
+  private boolean proxiesMatch(World world) {
+    int p = HEADER_SIZE;
+    for (Body b = world.getBodyList(); b != null; b = b.m_next) {
+      for (Fixture f = b.m_fixtureList; f != null; f = f.m_next) {
+        for (int i = 0; i < f.m_proxyCount; i++) {
+          if (m_data[p] != f.m_proxies[i].proxyId) {
+            return false;
+          }
+          p += PROXY_SIZE;
+        }
+      }
+    }
+    return true;
+  }
+
+  private boolean contactsMatch(ContactManager contactManager, int p, int contactCount) {
+    if (contactManager.m_contactCount != contactCount) {
+      return false;
+    }
+    for (Contact c = contactManager.m_contactList; c != null; c = c.m_next) {
+      if (m_data[p] != c.m_fixtureA.m_proxies[c.m_indexA].proxyId
+          || m_data[p + 1] != c.m_fixtureB.m_proxies[c.m_indexB].proxyId) {
+        return false;
+      }
+      p += CONTACT_SIZE;
+    }
+    return true;
+  }
+
+  private static int putAABB(int[] data, int p, AABB aabb) {
+    data[p++] = Float.floatToRawIntBits(aabb.lowerBound.x);
+    data[p++] = Float.floatToRawIntBits(aabb.lowerBound.y);
+    data[p++] = Float.floatToRawIntBits(aabb.upperBound.x);
+    data[p++] = Float.floatToRawIntBits(aabb.upperBound.y);
+    return p;
+  }
+
+  private static int getAABB(int[] data, int p, AABB aabb) {
+    aabb.lowerBound.x = Float.intBitsToFloat(data[p++]);
+    aabb.lowerBound.y = Float.intBitsToFloat(data[p++]);
+    aabb.upperBound.x = Float.intBitsToFloat(data[p++]);
+    aabb.upperBound.y = Float.intBitsToFloat(data[p++]);
+    return p;
+  }
+}
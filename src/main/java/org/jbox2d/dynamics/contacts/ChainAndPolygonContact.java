@@ -23,6 +23,7 @@
  ******************************************************************************/
 package org.jbox2d.dynamics.contacts;
 
+import org.jbox2d.collision.Collision;
 import org.jbox2d.collision.Manifold;
 import org.jbox2d.collision.shapes.ChainShape;
 import org.jbox2d.collision.shapes.EdgeShape;
@@ -48,10 +49,10 @@ public class ChainAndPolygonContact extends Contact {
   private final EdgeShape edge = new EdgeShape();
 
   @Override
-  public void evaluate(Manifold manifold, Transform xfA, Transform xfB) {
+  public void evaluate(Manifold manifold, Transform xfA, Transform xfB, Collision collision) {
     ChainShape chain = (ChainShape) m_fixtureA.getShape();
     chain.getChildEdge(edge, m_indexA);
-    pool.getCollision().collideEdgeAndPolygon(manifold, edge, xfA,
+    collision.collideEdgeAndPolygon(manifold, edge, xfA,
         (PolygonShape) m_fixtureB.getShape(), xfB);
   }
 }
@@ -25,6 +25,7 @@ package org.jbox2d.dynamics.contacts;
 
 
 import org.jbox2d.callbacks.ContactListener;
+import org.jbox2d.collision.Collision;
 import org.jbox2d.collision.ContactID;
 import org.jbox2d.collision.Manifold;
 import org.jbox2d.collision.ManifoldPoint;
@@ -247,7 +248,15 @@ public abstract class Contact {
     return m_tangentSpeed;
   }
 
-  public abstract void evaluate(Manifold manifold, Transform xfA, Transform xfB);
+  public void evaluate(Manifold manifold, Transform xfA, Transform xfB) {
+    evaluate(manifold, xfA, xfB, pool.getCollision());
+  }
+
+  /**
+   * Evaluate the manifold with the given collision object, so contacts can be evaluated by
+   * different threads with their own pools.
+   */
+  public abstract void evaluate(Manifold manifold, Transform xfA, Transform xfB, Collision collision);
 
   /**
    * Flag this contact for filtering. Filtering will occur the next time step.
@@ -259,7 +268,23 @@ public abstract class Contact {
   // djm pooling
   private final Manifold oldManifold = new Manifold();
 
+  // results of updateManifold, applied by updateListener
+  private boolean m_updateTouching;
+  private boolean m_updateWasTouching;
+  private boolean m_updateSensor;
+
   public void update(ContactListener listener) {
+    updateManifold(pool.getCollision());
+    updateListener(listener);
+  }
+
+  /**
+   * First part of {@link #update(ContactListener)}: evaluates the manifold and carries over the
+   * warm starting impulses. Only this contact is modified, so different contacts can be updated
+   * concurrently, each thread with its own collision object. Must be followed by
+   * {@link #updateListener(ContactListener)}.
+   */
+  public void updateManifold(Collision collision) {
 
     oldManifold.set(m_manifold);
 
@@ -283,12 +308,12 @@ public abstract class Contact {
     if (sensor) {
       Shape shapeA = m_fixtureA.getShape();
       Shape shapeB = m_fixtureB.getShape();
-      touching = pool.getCollision().testOverlap(shapeA, m_indexA, shapeB, m_indexB, xfA, xfB);
+      touching = collision.testOverlap(shapeA, m_indexA, shapeB, m_indexB, xfA, xfB);
 
       // Sensors don't generate manifolds.
       m_manifold.pointCount = 0;
     } else {
-      evaluate(m_manifold, xfA, xfB);
+      evaluate(m_manifold, xfA, xfB, collision);
       touching = m_manifold.pointCount > 0;
 
       // Match old contact ids to new contact ids and copy the
@@ -309,11 +334,25 @@ public abstract class Contact {
           }
         }
       }
+    }
 
-      if (touching != wasTouching) {
-        bodyA.setAwake(true);
-        bodyB.setAwake(true);
-      }
+    m_updateTouching = touching;
+    m_updateWasTouching = wasTouching;
+    m_updateSensor = sensor;
+  }
+
+  /**
+   * Second part of {@link #update(ContactListener)}: wakes the bodies, updates the touching flag
+   * and calls the listener. Must be called on the stepping thread.
+   */
+  public void updateListener(ContactListener listener) {
+    boolean touching = m_updateTouching;
+    boolean wasTouching = m_updateWasTouching;
+    boolean sensor = m_updateSensor;
+
+    if (sensor == false && touching != wasTouching) {
+      m_fixtureA.getBody().setAwake(true);
+      m_fixtureB.getBody().setAwake(true);
     }
 
     if (touching) {
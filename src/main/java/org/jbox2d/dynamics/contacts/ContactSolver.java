@@ -23,6 +23,7 @@
  ******************************************************************************/
 package org.jbox2d.dynamics.contacts;
 
+import org.jbox2d.callbacks.ContactImpulse;
 import org.jbox2d.collision.Manifold;
 import org.jbox2d.collision.ManifoldPoint;
 import org.jbox2d.collision.WorldManifold;
@@ -78,7 +79,7 @@ public class ContactSolver {
   private final Vec2 temp1 = new Vec2();
   private final Vec2 temp2 = new Vec2();
 
-  public final void init(ContactSolverDef def) {
+  public void init(ContactSolverDef def) {
     // System.out.println("Initializing contact solver");
     m_step = def.step;
     m_count = def.count;
@@ -92,14 +93,7 @@ public class ContactSolver {
       }
     }
 
-    if (m_velocityConstraints.length < m_count) {
-      ContactVelocityConstraint[] old = m_velocityConstraints;
-      m_velocityConstraints = new ContactVelocityConstraint[MathUtils.max(old.length * 2, m_count)];
-      System.arraycopy(old, 0, m_velocityConstraints, 0, old.length);
-      for (int i = old.length; i < m_velocityConstraints.length; i++) {
-        m_velocityConstraints[i] = new ContactVelocityConstraint();
-      }
-    }
+    ensureVelocityConstraints(m_count);
 
     m_positions = def.positions;
     m_velocities = def.velocities;
@@ -122,20 +116,7 @@ public class ContactSolver {
       int pointCount = manifold.pointCount;
       assert (pointCount > 0);
 
-      ContactVelocityConstraint vc = m_velocityConstraints[i];
-      vc.friction = contact.m_friction;
-      vc.restitution = contact.m_restitution;
-      vc.tangentSpeed = contact.m_tangentSpeed;
-      vc.indexA = bodyA.m_islandIndex;
-      vc.indexB = bodyB.m_islandIndex;
-      vc.invMassA = bodyA.m_invMass;
-      vc.invMassB = bodyB.m_invMass;
-      vc.invIA = bodyA.m_invI;
-      vc.invIB = bodyB.m_invI;
-      vc.contactIndex = i;
-      vc.pointCount = pointCount;
-      vc.K.setZero();
-      vc.normalMass.setZero();
+      initVelocityConstraint(i, contact, bodyA, bodyB, manifold);
 
       ContactPositionConstraint pc = m_positionConstraints[i];
       pc.indexA = bodyA.m_islandIndex;
@@ -156,29 +137,69 @@ public class ContactSolver {
       // System.out.println("contact point count: " + pointCount);
       for (int j = 0; j < pointCount; j++) {
         ManifoldPoint cp = manifold.points[j];
-        VelocityConstraintPoint vcp = vc.points[j];
-
-        if (m_step.warmStarting) {
-          // assert(cp.normalImpulse == 0);
-          // System.out.println("contact normal impulse: " + cp.normalImpulse);
-          vcp.normalImpulse = m_step.dtRatio * cp.normalImpulse;
-          vcp.tangentImpulse = m_step.dtRatio * cp.tangentImpulse;
-        } else {
-          vcp.normalImpulse = 0;
-          vcp.tangentImpulse = 0;
-        }
-
-        vcp.rA.setZero();
-        vcp.rB.setZero();
-        vcp.normalMass = 0;
-        vcp.tangentMass = 0;
-        vcp.velocityBias = 0;
         pc.localPoints[j].x = cp.localPoint.x;
         pc.localPoints[j].y = cp.localPoint.y;
       }
     }
   }
 
+  /**
+   * Makes room for the velocity constraints of count contacts.
+   */
+  protected void ensureVelocityConstraints(int count) {
+    if (m_velocityConstraints.length < count) {
+      ContactVelocityConstraint[] old = m_velocityConstraints;
+      m_velocityConstraints = new ContactVelocityConstraint[MathUtils.max(old.length * 2, count)];
+      System.arraycopy(old, 0, m_velocityConstraints, 0, old.length);
+      for (int i = old.length; i < m_velocityConstraints.length; i++) {
+        m_velocityConstraints[i] = new ContactVelocityConstraint();
+      }
+    }
+  }
+
+  /**
+   * Initializes the velocity constraint of contact i, with the warm starting impulses.
+   */
+  protected void initVelocityConstraint(int i, Contact contact, Body bodyA, Body bodyB,
+      Manifold manifold) {
+    int pointCount = manifold.pointCount;
+    ContactVelocityConstraint vc = m_velocityConstraints[i];
+    vc.friction = contact.m_friction;
+    vc.restitution = contact.m_restitution;
+    vc.tangentSpeed = contact.m_tangentSpeed;
+    vc.indexA = bodyA.m_islandIndex;
+    vc.indexB = bodyB.m_islandIndex;
+    vc.invMassA = bodyA.m_invMass;
+    vc.invMassB = bodyB.m_invMass;
+    vc.invIA = bodyA.m_invI;
+    vc.invIB = bodyB.m_invI;
+    vc.contactIndex = i;
+    vc.pointCount = pointCount;
+    vc.K.setZero();
+    vc.normalMass.setZero();
+
+    for (int j = 0; j < pointCount; j++) {
+      ManifoldPoint cp = manifold.points[j];
+      VelocityConstraintPoint vcp = vc.points[j];
+
+      if (m_step.warmStarting) {
+        // assert(cp.normalImpulse == 0);
+        // System.out.println("contact normal impulse: " + cp.normalImpulse);
+        vcp.normalImpulse = m_step.dtRatio * cp.normalImpulse;
+        vcp.tangentImpulse = m_step.dtRatio * cp.tangentImpulse;
+      } else {
+        vcp.normalImpulse = 0;
+        vcp.tangentImpulse = 0;
+      }
+
+      vcp.rA.setZero();
+      vcp.rB.setZero();
+      vcp.normalMass = 0;
+      vcp.tangentMass = 0;
+      vcp.velocityBias = 0;
+    }
+  }
+
   // djm pooling, and from above
   private final Vec2 P = new Vec2();
   private final Vec2 temp = new Vec2();
@@ -227,7 +248,7 @@ public class ContactSolver {
   private final Transform xfB = new Transform();
   private final WorldManifold worldManifold = new WorldManifold();
 
-  public final void initializeVelocityConstraints() {
+  public void initializeVelocityConstraints() {
 
     // Warm start.
     for (int i = 0; i < m_count; ++i) {
@@ -342,7 +363,7 @@ public class ContactSolver {
   private final Vec2 P1 = new Vec2();
   private final Vec2 P2 = new Vec2();
 
-  public final void solveVelocityConstraints() {
+  public void solveVelocityConstraints() {
     for (int i = 0; i < m_count; ++i) {
       final ContactVelocityConstraint vc = m_velocityConstraints[i];
 
@@ -753,6 +774,32 @@ public class ContactSolver {
     }
   }
 
+  /**
+   * Tells whether joints change the body velocities between {@link #warmStart()} and the calls of
+   * {@link #solveVelocityConstraints()}. If they don't, the solver may keep its own copy of the
+   * velocities until {@link #storeVelocities()}.
+   */
+  public void setSharedVelocities(boolean shared) {
+  }
+
+  /**
+   * Writes the velocities kept by the solver back to the island velocities.
+   */
+  public void storeVelocities() {
+  }
+
+  /**
+   * Copies the impulses of the last velocity solve of contact i.
+   */
+  public void getImpulses(int i, ContactImpulse impulse) {
+    final ContactVelocityConstraint vc = m_velocityConstraints[i];
+    impulse.count = vc.pointCount;
+    for (int j = 0; j < vc.pointCount; ++j) {
+      impulse.normalImpulses[j] = vc.points[j].normalImpulse;
+      impulse.tangentImpulses[j] = vc.points[j].tangentImpulse;
+    }
+  }
+
   public void storeImpulses() {
     for (int i = 0; i < m_count; i++) {
       final ContactVelocityConstraint vc = m_velocityConstraints[i];
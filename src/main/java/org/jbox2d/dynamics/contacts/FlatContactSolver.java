@@ -0,0 +1,569 @@
+package org.jbox2d.dynamics.contacts;
+
+import org.jbox2d.callbacks.ContactImpulse;
+import org.jbox2d.collision.Manifold;
+import org.jbox2d.collision.WorldManifold;
+import org.jbox2d.common.MathUtils;
+import org.jbox2d.common.Settings;
+import org.jbox2d.common.Transform;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+
+/**
+ * Contact solver keeping the velocity constraints in one float array, constraint after constraint,
+ * and the body velocities in another one while they are solved, so the iterations walk memory
+ * linearly instead of chasing a constraint, its points and two velocity objects per contact. In
+ * islands without joints the velocities stay in the flat array over all iterations. Does the same
+ * arithmetic in the same order as {@link ContactSolver}, the results are identical. Position
+ * constraints are the objects of {@link ContactSolver}.
+ *
+ * This is an internal class.
+ */
+public class FlatContactSolver extends ContactSolver {
+
+  // constraint layout
+  private static final int NORMAL_X = 0;
+  private static final int NORMAL_Y = 1;
+  private static final int FRICTION = 2;
+  private static final int RESTITUTION = 3;
+  private static final int TANGENT_SPEED = 4;
+  private static final int INV_MASS_A = 5;
+  private static final int INV_MASS_B = 6;
+  private static final int INV_I_A = 7;
+  private static final int INV_I_B = 8;
+  // K is symmetric, K12 == K21
+  private static final int K_11 = 9;
+  private static final int K_12 = 10;
+  private static final int K_22 = 11;
+  private static final int NORMAL_MASS_11 = 12;
+  private static final int NORMAL_MASS_12 = 13;
+  private static final int NORMAL_MASS_21 = 14;
+  private static final int NORMAL_MASS_22 = 15;
+  private static final int POINTS = 16;
+
+  // point layout
+  private static final int R_A_X = 0;
+  private static final int R_A_Y = 1;
+  private static final int R_B_X = 2;
+  private static final int R_B_Y = 3;
+  private static final int NORMAL_IMPULSE = 4;
+  private static final int TANGENT_IMPULSE = 5;
+  private static final int NORMAL_MASS = 6;
+  private static final int TANGENT_MASS = 7;
+  private static final int VELOCITY_BIAS = 8;
+  private static final int POINT_SIZE = 9;
+
+  private static final int STRIDE = POINTS + Settings.maxManifoldPoints * POINT_SIZE;
+
+  private float[] m_data = new float[INITIAL_NUM_CONSTRAINTS * STRIDE];
+  // flat body indices A and B of every constraint
+  private int[] m_indices = new int[INITIAL_NUM_CONSTRAINTS * 2];
+  private int[] m_pointCounts = new int[INITIAL_NUM_CONSTRAINTS];
+
+  // bodies touched by the contacts in order of appearance, island index of every flat body and
+  // flat index + 1 of every island index, 0 for bodies without contacts
+  private int[] m_bodies = new int[64];
+  private int[] m_flatIndices = new int[64];
+  private int m_bodyCount;
+
+  // linear x, y and angular velocity of every flat body
+  private float[] m_v = new float[64 * 3];
+  private boolean m_sharedVelocities = true;
+  // m_v holds the newest velocities
+  private boolean m_velocitiesRead;
+
+  private final Transform xfA = new Transform();
+  private final Transform xfB = new Transform();
+  private final WorldManifold worldManifold = new WorldManifold();
+
+  @Override
+  public void init(ContactSolverDef def) {
+    m_bodyCount = 0;
+    m_velocitiesRead = false;
+    super.init(def);
+
+    for (int i = 0; i < m_bodyCount; i++) {
+      m_flatIndices[m_bodies[i]] = 0;
+    }
+    if (m_v.length < m_bodyCount * 3) {
+      m_v = new float[MathUtils.max(m_v.length * 2, m_bodyCount * 3)];
+    }
+  }
+
+  private int flatIndex(int islandIndex) {
+    if (m_flatIndices.length <= islandIndex) {
+      int[] old = m_flatIndices;
+      m_flatIndices = new int[MathUtils.max(old.length * 2, islandIndex + 1)];
+      System.arraycopy(old, 0, m_flatIndices, 0, old.length);
+    }
+    int index = m_flatIndices[islandIndex] - 1;
+    if (index < 0) {
+      if (m_bodyCount == m_bodies.length) {
+        int[] old = m_bodies;
+        m_bodies = new int[old.length * 2];
+        System.arraycopy(old, 0, m_bodies, 0, old.length);
+      }
+      index = m_bodyCount++;
+      m_bodies[index] = islandIndex;
+      m_flatIndices[islandIndex] = index + 1;
+    }
+    return index;
+  }
+
+  @Override
+  protected void ensureVelocityConstraints(int count) {
+    if (m_pointCounts.length < count) {
+      int capacity = MathUtils.max(m_pointCounts.length * 2, count);
+      m_data = new float[capacity * STRIDE];
+      m_indices = new int[capacity * 2];
+      m_pointCounts = new int[capacity];
+    }
+  }
+
+  @Override
+  protected void initVelocityConstraint(int i, Contact contact, Body bodyA, Body bodyB,
+      Manifold manifold) {
+    final float[] data = m_data;
+    final int c = i * STRIDE;
+    final int pointCount = manifold.pointCount;
+
+    data[c + FRICTION] = contact.m_friction;
+    data[c + RESTITUTION] = contact.m_restitution;
+    data[c + TANGENT_SPEED] = contact.m_tangentSpeed;
+    data[c + INV_MASS_A] = bodyA.m_invMass;
+    data[c + INV_MASS_B] = bodyB.m_invMass;
+    data[c + INV_I_A] = bodyA.m_invI;
+    data[c + INV_I_B] = bodyB.m_invI;
+    m_indices[i * 2] = flatIndex(bodyA.m_islandIndex);
+    m_indices[i * 2 + 1] = flatIndex(bodyB.m_islandIndex);
+    m_pointCounts[i] = pointCount;
+
+    for (int j = 0; j < pointCount; j++) {
+      final int p = c + POINTS + j * POINT_SIZE;
+      if (m_step.warmStarting) {
+        data[p + NORMAL_IMPULSE] = m_step.dtRatio * manifold.points[j].normalImpulse;
+        data[p + TANGENT_IMPULSE] = m_step.dtRatio * manifold.points[j].tangentImpulse;
+      } else {
+        data[p + NORMAL_IMPULSE] = 0;
+        data[p + TANGENT_IMPULSE] = 0;
+      }
+    }
+  }
+
+  @Override
+  public void initializeVelocityConstraints() {
+    final float[] data = m_data;
+
+    for (int i = 0; i < m_count; ++i) {
+      final int c = i * STRIDE;
+      ContactPositionConstraint pc = m_positionConstraints[i];
+      Manifold manifold = m_contacts[i].getManifold();
+
+      int indexA = pc.indexA;
+      int indexB = pc.indexB;
+
+      float mA = data[c + INV_MASS_A];
+      float mB = data[c + INV_MASS_B];
+      float iA = data[c + INV_I_A];
+      float iB = data[c + INV_I_B];
+      Vec2 localCenterA = pc.localCenterA;
+      Vec2 localCenterB = pc.localCenterB;
+
+      Vec2 cA = m_positions[indexA].c;
+      float aA = m_positions[indexA].a;
+      Vec2 vA = m_velocities[indexA].v;
+      float wA = m_velocities[indexA].w;
+
+      Vec2 cB = m_positions[indexB].c;
+      float aB = m_positions[indexB].a;
+      Vec2 vB = m_velocities[indexB].v;
+      float wB = m_velocities[indexB].w;
+
+      xfA.q.set(aA);
+      xfB.q.set(aB);
+      xfA.p.x = cA.x - (xfA.q.c * localCenterA.x - xfA.q.s * localCenterA.y);
+      xfA.p.y = cA.y - (xfA.q.s * localCenterA.x + xfA.q.c * localCenterA.y);
+      xfB.p.x = cB.x - (xfB.q.c * localCenterB.x - xfB.q.s * localCenterB.y);
+      xfB.p.y = cB.y - (xfB.q.s * localCenterB.x + xfB.q.c * localCenterB.y);
+
+      worldManifold.initialize(manifold, xfA, pc.radiusA, xfB, pc.radiusB);
+
+      final float normalx = worldManifold.normal.x;
+      final float normaly = worldManifold.normal.y;
+      data[c + NORMAL_X] = normalx;
+      data[c + NORMAL_Y] = normaly;
+      final float restitution = data[c + RESTITUTION];
+
+      int pointCount = m_pointCounts[i];
+      for (int j = 0; j < pointCount; ++j) {
+        final int p = c + POINTS + j * POINT_SIZE;
+        Vec2 point = worldManifold.points[j];
+
+        float rAx = point.x - cA.x;
+        float rAy = point.y - cA.y;
+        float rBx = point.x - cB.x;
+        float rBy = point.y - cB.y;
+        data[p + R_A_X] = rAx;
+        data[p + R_A_Y] = rAy;
+        data[p + R_B_X] = rBx;
+        data[p + R_B_Y] = rBy;
+
+        float rnA = rAx * normaly - rAy * normalx;
+        float rnB = rBx * normaly - rBy * normalx;
+
+        float kNormal = mA + mB + iA * rnA * rnA + iB * rnB * rnB;
+
+        data[p + NORMAL_MASS] = kNormal > 0.0f ? 1.0f / kNormal : 0.0f;
+
+        float tangentx = 1.0f * normaly;
+        float tangenty = -1.0f * normalx;
+
+        float rtA = rAx * tangenty - rAy * tangentx;
+        float rtB = rBx * tangenty - rBy * tangentx;
+
+        float kTangent = mA + mB + iA * rtA * rtA + iB * rtB * rtB;
+
+        data[p + TANGENT_MASS] = kTangent > 0.0f ? 1.0f / kTangent : 0.0f;
+
+        // Setup a velocity bias for restitution.
+        float velocityBias = 0.0f;
+        float tempx = vB.x + -wB * rBy - vA.x - (-wA * rAy);
+        float tempy = vB.y + wB * rBx - vA.y - (wA * rAx);
+        float vRel = normalx * tempx + normaly * tempy;
+        if (vRel < -Settings.velocityThreshold) {
+          velocityBias = -restitution * vRel;
+        }
+        data[p + VELOCITY_BIAS] = velocityBias;
+      }
+
+      // If we have two points, then prepare the block solver.
+      if (pointCount == 2) {
+        final int p1 = c + POINTS;
+        final int p2 = p1 + POINT_SIZE;
+
+        float rn1A = data[p1 + R_A_X] * normaly - data[p1 + R_A_Y] * normalx;
+        float rn1B = data[p1 + R_B_X] * normaly - data[p1 + R_B_Y] * normalx;
+        float rn2A = data[p2 + R_A_X] * normaly - data[p2 + R_A_Y] * normalx;
+        float rn2B = data[p2 + R_B_X] * normaly - data[p2 + R_B_Y] * normalx;
+
+        float k11 = mA + mB + iA * rn1A * rn1A + iB * rn1B * rn1B;
+        float k22 = mA + mB + iA * rn2A * rn2A + iB * rn2B * rn2B;
+        float k12 = mA + mB + iA * rn1A * rn2A + iB * rn1B * rn2B;
+        if (k11 * k11 < k_maxConditionNumber * (k11 * k22 - k12 * k12)) {
+          // K is safe to invert.
+          data[c + K_11] = k11;
+          data[c + K_12] = k12;
+          data[c + K_22] = k22;
+          float det = k11 * k22 - k12 * k12;
+          det = 1.0f / det;
+          data[c + NORMAL_MASS_11] = det * k22;
+          data[c + NORMAL_MASS_12] = -det * k12;
+          data[c + NORMAL_MASS_21] = -det * k12;
+          data[c + NORMAL_MASS_22] = det * k11;
+        } else {
+          // The constraints are redundant, just use one.
+          m_pointCounts[i] = 1;
+        }
+      }
+    }
+  }
+
+  @Override
+  public void warmStart() {
+    readVelocities();
+    final float[] data = m_data;
+    final float[] v = m_v;
+
+    for (int i = 0; i < m_count; ++i) {
+      final int c = i * STRIDE;
+      final int indexA = m_indices[i * 2] * 3;
+      final int indexB = m_indices[i * 2 + 1] * 3;
+      float mA = data[c + INV_MASS_A];
+      float iA = data[c + INV_I_A];
+      float mB = data[c + INV_MASS_B];
+      float iB = data[c + INV_I_B];
+      int pointCount = m_pointCounts[i];
+
+      float vAx = v[indexA], vAy = v[indexA + 1], wA = v[indexA + 2];
+      float vBx = v[indexB], vBy = v[indexB + 1], wB = v[indexB + 2];
+
+      float normalx = data[c + NORMAL_X];
+      float normaly = data[c + NORMAL_Y];
+      float tangentx = 1.0f * normaly;
+      float tangenty = -1.0f * normalx;
+
+      for (int j = 0; j < pointCount; ++j) {
+        final int p = c + POINTS + j * POINT_SIZE;
+        float normalImpulse = data[p + NORMAL_IMPULSE];
+        float tangentImpulse = data[p + TANGENT_IMPULSE];
+        float Px = tangentx * tangentImpulse + normalx * normalImpulse;
+        float Py = tangenty * tangentImpulse + normaly * normalImpulse;
+
+        wA -= iA * (data[p + R_A_X] * Py - data[p + R_A_Y] * Px);
+        vAx -= Px * mA;
+        vAy -= Py * mA;
+        wB += iB * (data[p + R_B_X] * Py - data[p + R_B_Y] * Px);
+        vBx += Px * mB;
+        vBy += Py * mB;
+      }
+
+      v[indexA] = vAx;
+      v[indexA + 1] = vAy;
+      v[indexA + 2] = wA;
+      v[indexB] = vBx;
+      v[indexB + 1] = vBy;
+      v[indexB + 2] = wB;
+    }
+    if (m_sharedVelocities) {
+      writeVelocities();
+    }
+  }
+
+  @Override
+  public void solveVelocityConstraints() {
+    readVelocities();
+    final float[] data = m_data;
+    final float[] v = m_v;
+
+    for (int i = 0; i < m_count; ++i) {
+      final int c = i * STRIDE;
+      final int indexA = m_indices[i * 2] * 3;
+      final int indexB = m_indices[i * 2 + 1] * 3;
+
+      float mA = data[c + INV_MASS_A];
+      float mB = data[c + INV_MASS_B];
+      float iA = data[c + INV_I_A];
+      float iB = data[c + INV_I_B];
+      int pointCount = m_pointCounts[i];
+
+      float vAx = v[indexA], vAy = v[indexA + 1], wA = v[indexA + 2];
+      float vBx = v[indexB], vBy = v[indexB + 1], wB = v[indexB + 2];
+
+      final float normalx = data[c + NORMAL_X];
+      final float normaly = data[c + NORMAL_Y];
+      final float tangentx = 1.0f * normaly;
+      final float tangenty = -1.0f * normalx;
+      final float friction = data[c + FRICTION];
+      final float tangentSpeed = data[c + TANGENT_SPEED];
+
+      // Solve tangent constraints
+      for (int j = 0; j < pointCount; ++j) {
+        final int p = c + POINTS + j * POINT_SIZE;
+        final float rAx = data[p + R_A_X], rAy = data[p + R_A_Y];
+        final float rBx = data[p + R_B_X], rBy = data[p + R_B_Y];
+        float dvx = -wB * rBy + vBx - vAx + wA * rAy;
+        float dvy = wB * rBx + vBy - vAy - wA * rAx;
+
+        // Compute tangent force
+        final float vt = dvx * tangentx + dvy * tangenty - tangentSpeed;
+        float lambda = data[p + TANGENT_MASS] * (-vt);
+
+        // Clamp the accumulated force
+        final float tangentImpulse = data[p + TANGENT_IMPULSE];
+        final float maxFriction = friction * data[p + NORMAL_IMPULSE];
+        final float newImpulse =
+            MathUtils.clamp(tangentImpulse + lambda, -maxFriction, maxFriction);
+        lambda = newImpulse - tangentImpulse;
+        data[p + TANGENT_IMPULSE] = newImpulse;
+
+        // Apply contact impulse
+        final float Px = tangentx * lambda;
+        final float Py = tangenty * lambda;
+
+        vAx -= Px * mA;
+        vAy -= Py * mA;
+        wA -= iA * (rAx * Py - rAy * Px);
+
+        vBx += Px * mB;
+        vBy += Py * mB;
+        wB += iB * (rBx * Py - rBy * Px);
+      }
+
+      // Solve normal constraints
+      if (pointCount == 1) {
+        final int p = c + POINTS;
+        final float rAx = data[p + R_A_X], rAy = data[p + R_A_Y];
+        final float rBx = data[p + R_B_X], rBy = data[p + R_B_Y];
+
+        // Relative velocity at contact
+        float dvx = -wB * rBy + vBx - vAx + wA * rAy;
+        float dvy = wB * rBx + vBy - vAy - wA * rAx;
+
+        // Compute normal impulse
+        final float vn = dvx * normalx + dvy * normaly;
+        float lambda = -data[p + NORMAL_MASS] * (vn - data[p + VELOCITY_BIAS]);
+
+        // Clamp the accumulated impulse
+        final float normalImpulse = data[p + NORMAL_IMPULSE];
+        float a = normalImpulse + lambda;
+        final float newImpulse = (a > 0.0f ? a : 0.0f);
+        lambda = newImpulse - normalImpulse;
+        data[p + NORMAL_IMPULSE] = newImpulse;
+
+        // Apply contact impulse
+        float Px = normalx * lambda;
+        float Py = normaly * lambda;
+
+        vAx -= Px * mA;
+        vAy -= Py * mA;
+        wA -= iA * (rAx * Py - rAy * Px);
+
+        vBx += Px * mB;
+        vBy += Py * mB;
+        wB += iB * (rBx * Py - rBy * Px);
+      } else {
+        // Block solver, see ContactSolver#solveVelocityConstraints() for the mini LCP.
+        final int p1 = c + POINTS;
+        final int p2 = p1 + POINT_SIZE;
+        final float r1Ax = data[p1 + R_A_X], r1Ay = data[p1 + R_A_Y];
+        final float r1Bx = data[p1 + R_B_X], r1By = data[p1 + R_B_Y];
+        final float r2Ax = data[p2 + R_A_X], r2Ay = data[p2 + R_A_Y];
+        final float r2Bx = data[p2 + R_B_X], r2By = data[p2 + R_B_Y];
+        final float ax = data[p1 + NORMAL_IMPULSE];
+        final float ay = data[p2 + NORMAL_IMPULSE];
+
+        assert (ax >= 0.0f && ay >= 0.0f);
+        // Relative velocity at contact
+        float dv1x = -wB * r1By + vBx - vAx + wA * r1Ay;
+        float dv1y = wB * r1Bx + vBy - vAy - wA * r1Ax;
+        float dv2x = -wB * r2By + vBx - vAx + wA * r2Ay;
+        float dv2y = wB * r2Bx + vBy - vAy - wA * r2Ax;
+
+        // Compute normal velocity
+        float vn1 = dv1x * normalx + dv1y * normaly;
+        float vn2 = dv2x * normalx + dv2y * normaly;
+
+        float bx = vn1 - data[p1 + VELOCITY_BIAS];
+        float by = vn2 - data[p2 + VELOCITY_BIAS];
+
+        // Compute b'
+        final float k11 = data[c + K_11], k12 = data[c + K_12], k22 = data[c + K_22];
+        bx -= k11 * ax + k12 * ay;
+        by -= k12 * ax + k22 * ay;
+
+        // Case 1: vn = 0, x' = - inv(A) * b'
+        float xx = -(data[c + NORMAL_MASS_11] * bx + data[c + NORMAL_MASS_12] * by);
+        float xy = -(data[c + NORMAL_MASS_21] * bx + data[c + NORMAL_MASS_22] * by);
+        boolean solved = true;
+        if (!(xx >= 0.0f && xy >= 0.0f)) {
+          // Case 2: vn1 = 0 and x2 = 0
+          xx = -data[p1 + NORMAL_MASS] * bx;
+          xy = 0.0f;
+          if (!(xx >= 0.0f && k12 * xx + by >= 0.0f)) {
+            // Case 3: vn2 = 0 and x1 = 0
+            xx = 0.0f;
+            xy = -data[p2 + NORMAL_MASS] * by;
+            if (!(xy >= 0.0f && k12 * xy + bx >= 0.0f)) {
+              // Case 4: x1 = 0 and x2 = 0
+              xx = 0.0f;
+              xy = 0.0f;
+              // No solution, give up. This is hit sometimes, but it doesn't seem to matter.
+              solved = bx >= 0.0f && by >= 0.0f;
+            }
+          }
+        }
+
+        if (solved) {
+          // Get the incremental impulse
+          float dx = xx - ax;
+          float dy = xy - ay;
+
+          // Apply incremental impulse
+          float P1x = normalx * dx;
+          float P1y = normaly * dx;
+          float P2x = normalx * dy;
+          float P2y = normaly * dy;
+          float Px = P1x + P2x;
+          float Py = P1y + P2y;
+
+          vAx -= Px * mA;
+          vAy -= Py * mA;
+          vBx += Px * mB;
+          vBy += Py * mB;
+
+          wA -= iA * ((r1Ax * P1y - r1Ay * P1x) + (r2Ax * P2y - r2Ay * P2x));
+          wB += iB * ((r1Bx * P1y - r1By * P1x) + (r2Bx * P2y - r2By * P2x));
+
+          // Accumulate
+          data[p1 + NORMAL_IMPULSE] = xx;
+          data[p2 + NORMAL_IMPULSE] = xy;
+        }
+      }
+
+      v[indexA] = vAx;
+      v[indexA + 1] = vAy;
+      v[indexA + 2] = wA;
+      v[indexB] = vBx;
+      v[indexB + 1] = vBy;
+      v[indexB + 2] = wB;
+    }
+    if (m_sharedVelocities) {
+      writeVelocities();
+    }
+  }
+
+  @Override
+  public void setSharedVelocities(boolean shared) {
+    m_sharedVelocities = shared;
+  }
+
+  @Override
+  public void storeVelocities() {
+    if (!m_sharedVelocities && m_velocitiesRead) {
+      writeVelocities();
+    }
+    m_velocitiesRead = false;
+  }
+
+  @Override
+  public void getImpulses(int i, ContactImpulse impulse) {
+    int pointCount = m_pointCounts[i];
+    impulse.count = pointCount;
+    for (int j = 0; j < pointCount; ++j) {
+      final int p = i * STRIDE + POINTS + j * POINT_SIZE;
+      impulse.normalImpulses[j] = m_data[p + NORMAL_IMPULSE];
+      impulse.tangentImpulses[j] = m_data[p + TANGENT_IMPULSE];
+    }
+  }
+
+  @Override
+  public void storeImpulses() {
+    for (int i = 0; i < m_count; i++) {
+      final Manifold manifold = m_contacts[i].getManifold();
+      int pointCount = m_pointCounts[i];
+      for (int j = 0; j < pointCount; j++) {
+        final int p = i * STRIDE + POINTS + j * POINT_SIZE;
+        manifold.points[j].normalImpulse = m_data[p + NORMAL_IMPULSE];
+        manifold.points[j].tangentImpulse = m_data[p + TANGENT_IMPULSE];
+      }
+    }
+  }
+
+  /**
+   * Copies the velocities of the bodies touched by the contacts into the flat array, unless it
+   * holds the newest ones because no joints are solved in between.
+   */
+  private void readVelocities() {
+    if (m_velocitiesRead && !m_sharedVelocities) {
+      return;
+    }
+    m_velocitiesRead = true;
+    final float[] v = m_v;
+    for (int i = 0; i < m_bodyCount; i++) {
+      Velocity velocity = m_velocities[m_bodies[i]];
+      v[i * 3] = velocity.v.x;
+      v[i * 3 + 1] = velocity.v.y;
+      v[i * 3 + 2] = velocity.w;
+    }
+  }
+
+  private void writeVelocities() {
+    final float[] v = m_v;
+    for (int i = 0; i < m_bodyCount; i++) {
+      Velocity velocity = m_velocities[m_bodies[i]];
+      velocity.v.x = v[i * 3];
+      velocity.v.y = v[i * 3 + 1];
+      velocity.w = v[i * 3 + 2];
+    }
+  }
+}
@@ -29,6 +29,7 @@ import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.Body;
 import org.jbox2d.dynamics.SolverData;
 import org.jbox2d.dynamics.World;
+import org.jbox2d.dynamics.WorldSnapshot;
 import org.jbox2d.dynamics.contacts.Position;
 import org.jbox2d.dynamics.contacts.Velocity;
 
@@ -255,4 +256,14 @@ public class ConstantVolumeJoint extends Joint {
   public float getReactionTorque(float inv_dt) {
     return 0;
   }
+
+  @Override
+  public void writeState(WorldSnapshot snapshot) {
+    snapshot.putFloat(m_impulse);
+  }
+
+  @Override
+  public void readState(WorldSnapshot snapshot) {
+    m_impulse = snapshot.getFloat();
+  }
 }
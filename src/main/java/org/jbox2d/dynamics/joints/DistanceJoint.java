@@ -51,6 +51,7 @@ import org.jbox2d.common.Rot;
 import org.jbox2d.common.Settings;
 import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.SolverData;
+import org.jbox2d.dynamics.WorldSnapshot;
 import org.jbox2d.pooling.IWorldPool;
 
 //C = norm(p2 - p1) - L
@@ -353,4 +354,14 @@ public class DistanceJoint extends Joint {
 
     return MathUtils.abs(C) < Settings.linearSlop;
   }
+
+  @Override
+  public void writeState(WorldSnapshot snapshot) {
+    snapshot.putFloat(m_impulse);
+  }
+
+  @Override
+  public void readState(WorldSnapshot snapshot) {
+    m_impulse = snapshot.getFloat();
+  }
 }
@@ -31,6 +31,7 @@ import org.jbox2d.common.MathUtils;
 import org.jbox2d.common.Rot;
 import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.SolverData;
+import org.jbox2d.dynamics.WorldSnapshot;
 import org.jbox2d.pooling.IWorldPool;
 
 /**
@@ -291,4 +292,18 @@ public class FrictionJoint extends Joint {
   public boolean solvePositionConstraints(final SolverData data) {
     return true;
   }
+
+  @Override
+  public void writeState(WorldSnapshot snapshot) {
+    snapshot.putFloat(m_linearImpulse.x);
+    snapshot.putFloat(m_linearImpulse.y);
+    snapshot.putFloat(m_angularImpulse);
+  }
+
+  @Override
+  public void readState(WorldSnapshot snapshot) {
+    m_linearImpulse.x = snapshot.getFloat();
+    m_linearImpulse.y = snapshot.getFloat();
+    m_angularImpulse = snapshot.getFloat();
+  }
 }
@@ -32,6 +32,7 @@ import org.jbox2d.common.Transform;
 import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.Body;
 import org.jbox2d.dynamics.SolverData;
+import org.jbox2d.dynamics.WorldSnapshot;
 import org.jbox2d.pooling.IWorldPool;
 
 //Gear Joint:
@@ -517,4 +518,14 @@ public class GearJoint extends Joint {
     // TODO_ERIN not implemented
     return linearError < Settings.linearSlop;
   }
+
+  @Override
+  public void writeState(WorldSnapshot snapshot) {
+    snapshot.putFloat(m_impulse);
+  }
+
+  @Override
+  public void readState(WorldSnapshot snapshot) {
+    m_impulse = snapshot.getFloat();
+  }
 }
@@ -27,6 +27,7 @@ import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.Body;
 import org.jbox2d.dynamics.SolverData;
 import org.jbox2d.dynamics.World;
+import org.jbox2d.dynamics.WorldSnapshot;
 import org.jbox2d.pooling.IWorldPool;
 
 // updated to rev 100
@@ -38,6 +39,8 @@ import org.jbox2d.pooling.IWorldPool;
  */
 public abstract class Joint {
 
+  static final LimitState[] LIMIT_STATES = LimitState.values();
+
   public static Joint create(World world, JointDef def) {
     // Joint joint = null;
     switch (def.type) {
@@ -226,6 +229,21 @@ public abstract class Joint {
    */
   public abstract boolean solvePositionConstraints(SolverData data);
 
+  /**
+   * Write the state the joint carries from step to step, its accumulated impulses used for warm
+   * starting. Override in joints with such state.
+   * 
+   * @param snapshot
+   */
+  public void writeState(WorldSnapshot snapshot) {}
+
+  /**
+   * Read the state written by {@link #writeState(WorldSnapshot)}.
+   * 
+   * @param snapshot
+   */
+  public void readState(WorldSnapshot snapshot) {}
+
   /**
    * Override to handle destruction of joint
    */
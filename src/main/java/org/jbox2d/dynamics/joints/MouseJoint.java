@@ -30,6 +30,7 @@ import org.jbox2d.common.Settings;
 import org.jbox2d.common.Transform;
 import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.SolverData;
+import org.jbox2d.dynamics.WorldSnapshot;
 import org.jbox2d.pooling.IWorldPool;
 
 /**
@@ -259,4 +260,15 @@ public class MouseJoint extends Joint {
     pool.pushVec2(3);
   }
 
+  @Override
+  public void writeState(WorldSnapshot snapshot) {
+    snapshot.putFloat(m_impulse.x);
+    snapshot.putFloat(m_impulse.y);
+  }
+
+  @Override
+  public void readState(WorldSnapshot snapshot) {
+    m_impulse.x = snapshot.getFloat();
+    m_impulse.y = snapshot.getFloat();
+  }
 }
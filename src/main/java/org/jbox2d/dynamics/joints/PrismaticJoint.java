@@ -32,6 +32,7 @@ import org.jbox2d.common.Vec2;
 import org.jbox2d.common.Vec3;
 import org.jbox2d.dynamics.Body;
 import org.jbox2d.dynamics.SolverData;
+import org.jbox2d.dynamics.WorldSnapshot;
 import org.jbox2d.pooling.IWorldPool;
 
 //Linear constraint (point-to-line)
@@ -805,4 +806,22 @@ public class PrismaticJoint extends Joint {
 
     return linearError <= Settings.linearSlop && angularError <= Settings.angularSlop;
   }
+
+  @Override
+  public void writeState(WorldSnapshot snapshot) {
+    snapshot.putFloat(m_impulse.x);
+    snapshot.putFloat(m_impulse.y);
+    snapshot.putFloat(m_impulse.z);
+    snapshot.putFloat(m_motorImpulse);
+    snapshot.putInt(m_limitState.ordinal());
+  }
+
+  @Override
+  public void readState(WorldSnapshot snapshot) {
+    m_impulse.x = snapshot.getFloat();
+    m_impulse.y = snapshot.getFloat();
+    m_impulse.z = snapshot.getFloat();
+    m_motorImpulse = snapshot.getFloat();
+    m_limitState = LIMIT_STATES[snapshot.getInt()];
+  }
 }
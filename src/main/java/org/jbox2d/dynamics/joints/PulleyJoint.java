@@ -31,6 +31,7 @@ import org.jbox2d.common.Rot;
 import org.jbox2d.common.Settings;
 import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.SolverData;
+import org.jbox2d.dynamics.WorldSnapshot;
 import org.jbox2d.pooling.IWorldPool;
 
 /**
@@ -390,4 +391,14 @@ public class PulleyJoint extends Joint {
 
     return linearError < Settings.linearSlop;
   }
+
+  @Override
+  public void writeState(WorldSnapshot snapshot) {
+    snapshot.putFloat(m_impulse);
+  }
+
+  @Override
+  public void readState(WorldSnapshot snapshot) {
+    m_impulse = snapshot.getFloat();
+  }
 }
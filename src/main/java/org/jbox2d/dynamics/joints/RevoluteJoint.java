@@ -32,6 +32,7 @@ import org.jbox2d.common.Vec2;
 import org.jbox2d.common.Vec3;
 import org.jbox2d.dynamics.Body;
 import org.jbox2d.dynamics.SolverData;
+import org.jbox2d.dynamics.WorldSnapshot;
 import org.jbox2d.pooling.IWorldPool;
 
 //Point-to-point constraint
@@ -551,4 +552,22 @@ public class RevoluteJoint extends Joint {
       m_upperAngle = upper;
     }
   }
+
+  @Override
+  public void writeState(WorldSnapshot snapshot) {
+    snapshot.putFloat(m_impulse.x);
+    snapshot.putFloat(m_impulse.y);
+    snapshot.putFloat(m_impulse.z);
+    snapshot.putFloat(m_motorImpulse);
+    snapshot.putInt(m_limitState.ordinal());
+  }
+
+  @Override
+  public void readState(WorldSnapshot snapshot) {
+    m_impulse.x = snapshot.getFloat();
+    m_impulse.y = snapshot.getFloat();
+    m_impulse.z = snapshot.getFloat();
+    m_motorImpulse = snapshot.getFloat();
+    m_limitState = LIMIT_STATES[snapshot.getInt()];
+  }
 }
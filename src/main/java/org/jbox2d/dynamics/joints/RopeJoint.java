@@ -5,6 +5,7 @@ import org.jbox2d.common.Rot;
 import org.jbox2d.common.Settings;
 import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.SolverData;
+import org.jbox2d.dynamics.WorldSnapshot;
 import org.jbox2d.pooling.IWorldPool;
 
 /**
@@ -273,4 +274,13 @@ public class RopeJoint extends Joint {
     return m_state;
   }
 
+  @Override
+  public void writeState(WorldSnapshot snapshot) {
+    snapshot.putFloat(m_impulse);
+  }
+
+  @Override
+  public void readState(WorldSnapshot snapshot) {
+    m_impulse = snapshot.getFloat();
+  }
 }
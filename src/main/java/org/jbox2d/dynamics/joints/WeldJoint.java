@@ -33,6 +33,7 @@ import org.jbox2d.common.Settings;
 import org.jbox2d.common.Vec2;
 import org.jbox2d.common.Vec3;
 import org.jbox2d.dynamics.SolverData;
+import org.jbox2d.dynamics.WorldSnapshot;
 import org.jbox2d.pooling.IWorldPool;
 
 //Point-to-point constraint
@@ -421,4 +422,18 @@ public class WeldJoint extends Joint {
 
     return positionError <= Settings.linearSlop && angularError <= Settings.angularSlop;
   }
+
+  @Override
+  public void writeState(WorldSnapshot snapshot) {
+    snapshot.putFloat(m_impulse.x);
+    snapshot.putFloat(m_impulse.y);
+    snapshot.putFloat(m_impulse.z);
+  }
+
+  @Override
+  public void readState(WorldSnapshot snapshot) {
+    m_impulse.x = snapshot.getFloat();
+    m_impulse.y = snapshot.getFloat();
+    m_impulse.z = snapshot.getFloat();
+  }
 }
@@ -29,6 +29,7 @@ import org.jbox2d.common.Settings;
 import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.Body;
 import org.jbox2d.dynamics.SolverData;
+import org.jbox2d.dynamics.WorldSnapshot;
 import org.jbox2d.pooling.IWorldPool;
 
 //Linear constraint (point-to-line)
@@ -495,4 +496,18 @@ public class WheelJoint extends Joint {
 
     return MathUtils.abs(C) <= Settings.linearSlop;
   }
+
+  @Override
+  public void writeState(WorldSnapshot snapshot) {
+    snapshot.putFloat(m_impulse);
+    snapshot.putFloat(m_motorImpulse);
+    snapshot.putFloat(m_springImpulse);
+  }
+
+  @Override
+  public void readState(WorldSnapshot snapshot) {
+    m_impulse = snapshot.getFloat();
+    m_motorImpulse = snapshot.getFloat();
+    m_springImpulse = snapshot.getFloat();
+  }
 }
@@ -0,0 +1,216 @@
+package org.jbox2d.profile;
+
+import java.util.Random;
+
+import org.jbox2d.callbacks.QueryCallback;
+import org.jbox2d.callbacks.RayCastCallback;
+import org.jbox2d.collision.AABB;
+import org.jbox2d.collision.broadphase.BroadPhaseType;
+import org.jbox2d.collision.shapes.ChainShape;
+import org.jbox2d.collision.shapes.PolygonShape;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.AABBQueryBatch;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.BodyDef;
+import org.jbox2d.dynamics.Fixture;
+import org.jbox2d.dynamics.RayCastBatch;
+import org.jbox2d.dynamics.World;
+
+/**
+ * Benchmark - 500 closest hit ray casts and 500 box queries in the level of
+ * {@link LevelBroadPhaseBenchmark}, one call per ray or box against one batch call.
+ */
+public class BatchQueryBenchmark extends BasicPerformanceTest implements RayCastCallback,
+    QueryCallback {
+  public static int iters = 200;
+  public static int warmup = 50;
+  public static int rays = 500;
+  public static float rayLength = 30f;
+  public static float boxSize = 6f;
+  public static int threads = 4;
+
+  private final World world;
+  private final RayCastBatch rayBatch;
+  private final RayCastBatch parallelRayBatch;
+  private final AABBQueryBatch boxBatch;
+  private final AABB aabb = new AABB();
+  private final Vec2 p1 = new Vec2();
+  private final Vec2 p2 = new Vec2();
+
+  // closest hit of the single ray cast
+  private Fixture fixture;
+  private float fraction;
+  private float normalX, normalY;
+  private int hits;
+  private int results;
+
+  public BatchQueryBenchmark() {
+    super(5, iters);
+    world = LevelBroadPhaseBenchmark.createLevel(BroadPhaseType.DYNAMIC_TREE);
+    for (int i = 0; i < 120; i++) {
+      world.step(1f / 60, 8, 3);
+    }
+    world.setSolverThreads(threads);
+
+    Random random = new Random(256);
+    float levelLength = LevelBroadPhaseBenchmark.chains * LevelBroadPhaseBenchmark.pieceLength;
+    rayBatch = new RayCastBatch(rays);
+    boxBatch = new AABBQueryBatch(rays);
+    for (int i = 0; i < rays; i++) {
+      float x = random.nextFloat() * levelLength;
+      float y = random.nextFloat() * 30 - 5;
+      float angle = random.nextFloat() * 6.2831855f;
+      rayBatch.add(x, y, x + (float) Math.cos(angle) * rayLength, y + (float) Math.sin(angle)
+          * rayLength);
+      boxBatch.add(x, y, x + boxSize, y + boxSize);
+    }
+    parallelRayBatch = new RayCastBatch(rays);
+    parallelRayBatch.parallel = true;
+    for (int i = 0; i < rays; i++) {
+      parallelRayBatch.add(rayBatch.rays[i * 4], rayBatch.rays[i * 4 + 1], rayBatch.rays[i * 4 + 2],
+          rayBatch.rays[i * 4 + 3]);
+    }
+  }
+
+  public static void main(String[] args) {
+    BatchQueryBenchmark benchmark = new BatchQueryBenchmark();
+    for (int i = 0; i < warmup; i++) {
+      for (int test = 0; test < 5; test++) {
+        benchmark.runTest(test);
+      }
+    }
+    benchmark.go();
+    benchmark.check();
+  }
+
+  /**
+   * Compares the batch results with the closest hits of the single calls, for the benchmark rays
+   * and for rays in a scene of boxes lying over a steep chain, where edges are tested after closer
+   * polygons.
+   */
+  public void check() {
+    runTest(1);
+    int mismatches = mismatches(world, rayBatch);
+
+    Random random = new Random(1);
+    World scene = new World(new Vec2(0, -10));
+    Body ground = scene.createBody(new BodyDef());
+    Vec2[] vertices = new Vec2[40];
+    for (int i = 0; i < vertices.length; i++) {
+      vertices[i] = new Vec2(i * 2, random.nextFloat() * 6);
+    }
+    ChainShape chain = new ChainShape();
+    chain.createChain(vertices, vertices.length);
+    ground.createFixture(chain, 0);
+    PolygonShape box = new PolygonShape();
+    for (int i = 0; i < 60; i++) {
+      box.setAsBox(0.3f + random.nextFloat(), 0.3f + random.nextFloat(),
+          new Vec2(random.nextFloat() * 80, random.nextFloat() * 7), random.nextFloat() * 3);
+      ground.createFixture(box, 0);
+    }
+    RayCastBatch sceneBatch = new RayCastBatch(rays);
+    for (int i = 0; i < rays; i++) {
+      float x = random.nextFloat() * 80;
+      float y = random.nextFloat() * 10;
+      float angle = random.nextFloat() * 6.2831855f;
+      sceneBatch.add(x, y, x + (float) Math.cos(angle) * 20, y + (float) Math.sin(angle) * 20);
+    }
+    scene.raycast(sceneBatch);
+    int sceneMismatches = mismatches(scene, sceneBatch);
+
+    runTest(4);
+    results = 0;
+    runTest(3);
+    println("ray hits: " + rayBatch.hitCount + ", box results: " + boxBatch.resultCount + " / "
+        + results + " (batch tests own AABBs), ray mismatches: " + mismatches
+        + ", chain scene ray hits: " + sceneBatch.hitCount + ", mismatches: " + sceneMismatches);
+  }
+
+  private int mismatches(World world, RayCastBatch batch) {
+    int mismatches = 0;
+    for (int i = 0; i < batch.count; i++) {
+      raycast(world, batch.rays, i);
+      if (fixture != batch.fixtures[i]
+          || (fixture != null && (fraction != batch.fractions[i]
+              || normalX != batch.normals[i * 2] || normalY != batch.normals[i * 2 + 1]))) {
+        mismatches++;
+      }
+    }
+    return mismatches;
+  }
+
+  private void raycast(World world, float[] r, int ray) {
+    p1.set(r[ray * 4], r[ray * 4 + 1]);
+    p2.set(r[ray * 4 + 2], r[ray * 4 + 3]);
+    fixture = null;
+    world.raycast(this, p1, p2);
+  }
+
+  @Override
+  public void runTest(int testNum) {
+    switch (testNum) {
+      case 0:
+        hits = 0;
+        for (int i = 0; i < rays; i++) {
+          raycast(world, rayBatch.rays, i);
+          if (fixture != null) {
+            hits++;
+          }
+        }
+        break;
+      case 1:
+        world.raycast(rayBatch);
+        break;
+      case 2:
+        world.raycast(parallelRayBatch);
+        break;
+      case 3:
+        float[] b = boxBatch.boxes;
+        for (int i = 0; i < rays; i++) {
+          aabb.lowerBound.set(b[i * 4], b[i * 4 + 1]);
+          aabb.upperBound.set(b[i * 4 + 2], b[i * 4 + 3]);
+          world.queryAABB(this, aabb);
+        }
+        break;
+      case 4:
+        world.queryAABB(boxBatch);
+        break;
+    }
+  }
+
+  @Override
+  public float reportFixture(Fixture fixture, Vec2 point, Vec2 normal, float fraction) {
+    // shapes can report hits beyond the clipped fraction, keep the closest one
+    if (this.fixture == null || fraction < this.fraction) {
+      this.fixture = fixture;
+      this.fraction = fraction;
+      normalX = normal.x;
+      normalY = normal.y;
+    }
+    return this.fraction;
+  }
+
+  @Override
+  public boolean reportFixture(Fixture fixture) {
+    results++;
+    return true;
+  }
+
+  @Override
+  public String getTestName(int testNum) {
+    switch (testNum) {
+      case 0:
+        return "Single ray casts";
+      case 1:
+        return "Ray cast batch";
+      case 2:
+        return "Parallel batch (" + threads + ")";
+      case 3:
+        return "Single box queries";
+      case 4:
+        return "Box query batch";
+      default:
+        return "";
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package org.jbox2d.profile;
+
+import java.util.Random;
+
+import org.jbox2d.collision.broadphase.BroadPhaseType;
+import org.jbox2d.collision.shapes.EdgeShape;
+import org.jbox2d.collision.shapes.PolygonShape;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.BodyDef;
+import org.jbox2d.dynamics.BodyType;
+import org.jbox2d.dynamics.World;
+
+/**
+ * Benchmark - 300 boxes spawned into a fresh world, one proxy insertion per fixture against
+ * {@link World#beginBatch()}/{@link World#endBatch()}, for both dynamic trees. The batch grows the
+ * node buffers of the trees while it builds its subtree.
+ */
+public class BatchSpawnBenchmark extends BasicPerformanceTest {
+  public static int iters = 100;
+  public static int warmup = 20;
+  public static int bodies = 300;
+
+  private static final BroadPhaseType[] TYPES = {BroadPhaseType.DYNAMIC_TREE,
+      BroadPhaseType.DYNAMIC_TREE, BroadPhaseType.FLAT_DYNAMIC_TREE,
+      BroadPhaseType.FLAT_DYNAMIC_TREE};
+
+  private final Vec2[] positions = new Vec2[bodies];
+  private final PolygonShape box = new PolygonShape();
+  private final BodyDef bd = new BodyDef();
+
+  public BatchSpawnBenchmark() {
+    super(4, iters);
+    Random random = new Random(256);
+    for (int i = 0; i < bodies; i++) {
+      positions[i] = new Vec2(random.nextFloat() * 100 - 50, random.nextFloat() * 40 + 1);
+    }
+    box.setAsBox(0.25f, 0.25f);
+    bd.type = BodyType.DYNAMIC;
+  }
+
+  public static void main(String[] args) {
+    BatchSpawnBenchmark benchmark = new BatchSpawnBenchmark();
+    for (int i = 0; i < warmup; i++) {
+      for (int test = 0; test < 4; test++) {
+        benchmark.runTest(test);
+      }
+    }
+    benchmark.go();
+    benchmark.check();
+  }
+
+  /**
+   * Prints the tree height and quality after the spawn and the contacts found by the next step.
+   */
+  public void check() {
+    for (int test = 0; test < 4; test++) {
+      World world = spawn(test);
+      int height = world.getTreeHeight();
+      float quality = world.getTreeQuality();
+      world.step(1f / 60, 8, 3);
+      println(getTestName(test) + ": tree height " + height + ", quality " + quality
+          + ", contacts " + world.getContactCount());
+    }
+  }
+
+  private World spawn(int testNum) {
+    World world = new World(new Vec2(0, -10), TYPES[testNum]);
+    EdgeShape ground = new EdgeShape();
+    ground.set(new Vec2(-60, 0), new Vec2(60, 0));
+    world.createBody(new BodyDef()).createFixture(ground, 0);
+
+    boolean batch = testNum % 2 == 1;
+    if (batch) {
+      world.beginBatch();
+    }
+    for (int i = 0; i < bodies; i++) {
+      bd.position.set(positions[i]);
+      world.createBody(bd).createFixture(box, 1);
+    }
+    if (batch) {
+      world.endBatch();
+    }
+    return world;
+  }
+
+  @Override
+  public void runTest(int testNum) {
+    spawn(testNum);
+  }
+
+  @Override
+  public String getTestName(int testNum) {
+    return TYPES[testNum] + (testNum % 2 == 1 ? " batch" : " single");
+  }
+}
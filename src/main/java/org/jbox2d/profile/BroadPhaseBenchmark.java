@@ -0,0 +1,137 @@
+package org.jbox2d.profile;
+
+import java.util.Random;
+
+import org.jbox2d.callbacks.TreeCallback;
+import org.jbox2d.callbacks.TreeRayCastCallback;
+import org.jbox2d.collision.AABB;
+import org.jbox2d.collision.RayCastInput;
+import org.jbox2d.collision.broadphase.BroadPhase;
+import org.jbox2d.collision.broadphase.BroadPhaseType;
+import org.jbox2d.common.Vec2;
+
+/**
+ * Benchmark - AABB queries and ray casts against 10k proxies, for every {@link BroadPhaseType}.
+ * All broad-phases get the same proxies inserted and moved in the same order, so they report the
+ * same hits.
+ */
+public class BroadPhaseBenchmark extends BasicPerformanceTest implements TreeCallback,
+    TreeRayCastCallback {
+  public static int iters = 20;
+  public static int warmup = 5;
+  public static int proxies = 10000;
+  public static int queries = 2000;
+  public static int raycasts = 2000;
+  public static float worldSize = 1000f;
+  public static float proxySize = 4f;
+  public static float querySize = 30f;
+  public static float rayLength = 150f;
+
+  private static final BroadPhaseType[] TYPES = BroadPhaseType.values();
+
+  private final BroadPhase[] broadPhases = new BroadPhase[TYPES.length];
+  private final AABB[] queryBoxes = new AABB[queries];
+  private final RayCastInput[] rays = new RayCastInput[raycasts];
+  private final long[] hits = new long[TYPES.length * 2];
+  private long hitCount;
+
+  public BroadPhaseBenchmark() {
+    super(TYPES.length * 2, iters);
+
+    Random random = new Random(256);
+    AABB[] boxes = new AABB[proxies];
+    for (int i = 0; i < proxies; i++) {
+      boxes[i] = randomBox(random, proxySize);
+    }
+    for (int i = 0; i < queries; i++) {
+      queryBoxes[i] = randomBox(random, querySize);
+    }
+    for (int i = 0; i < raycasts; i++) {
+      RayCastInput input = new RayCastInput();
+      input.p1.set(random.nextFloat() * worldSize, random.nextFloat() * worldSize);
+      float angle = random.nextFloat() * 6.2831855f;
+      input.p2.set(input.p1.x + (float) Math.cos(angle) * rayLength, input.p1.y
+          + (float) Math.sin(angle) * rayLength);
+      input.maxFraction = 1f;
+      rays[i] = input;
+    }
+
+    // moving proxies leaves the tree in the state it has during a simulation
+    Random moves = new Random(512);
+    AABB moved = new AABB();
+    Vec2 displacement = new Vec2();
+    for (int s = 0; s < broadPhases.length; s++) {
+      BroadPhase broadPhase = TYPES[s].create();
+      int[] ids = new int[proxies];
+      for (int i = 0; i < proxies; i++) {
+        ids[i] = broadPhase.createProxy(boxes[i], boxes[i]);
+      }
+      moves.setSeed(512);
+      for (int i = 0; i < proxies; i++) {
+        displacement.x = moves.nextFloat() * 2 * proxySize - proxySize;
+        displacement.y = moves.nextFloat() * 2 * proxySize - proxySize;
+        moved.lowerBound.set(boxes[i].lowerBound).addLocal(displacement);
+        moved.upperBound.set(boxes[i].upperBound).addLocal(displacement);
+        broadPhase.moveProxy(ids[i], moved, displacement);
+      }
+      broadPhases[s] = broadPhase;
+    }
+  }
+
+  private static AABB randomBox(Random random, float size) {
+    float x = random.nextFloat() * worldSize;
+    float y = random.nextFloat() * worldSize;
+    float w = (0.25f + random.nextFloat()) * size;
+    float h = (0.25f + random.nextFloat()) * size;
+    AABB box = new AABB();
+    box.lowerBound.set(x, y);
+    box.upperBound.set(x + w, y + h);
+    return box;
+  }
+
+  public static void main(String[] args) {
+    BroadPhaseBenchmark benchmark = new BroadPhaseBenchmark();
+    for (int i = 0; i < warmup; i++) {
+      for (int test = 0; test < TYPES.length * 2; test++) {
+        benchmark.runTest(test);
+      }
+    }
+    benchmark.go();
+    for (int test = 0; test < TYPES.length * 2; test++) {
+      benchmark.println(benchmark.getTestName(test) + " hits: " + benchmark.hits[test]);
+    }
+  }
+
+  @Override
+  public void runTest(int testNum) {
+    BroadPhase broadPhase = broadPhases[testNum / 2];
+    hitCount = 0;
+    if (testNum % 2 == 0) {
+      for (int i = 0; i < queries; i++) {
+        broadPhase.query(this, queryBoxes[i]);
+      }
+    } else {
+      for (int i = 0; i < raycasts; i++) {
+        broadPhase.raycast(this, rays[i]);
+      }
+    }
+    hits[testNum] = hitCount;
+  }
+
+  @Override
+  public boolean treeCallback(int proxyId) {
+    hitCount++;
+    return true;
+  }
+
+  @Override
+  public float raycastCallback(RayCastInput input, int proxyId) {
+    hitCount++;
+    return input.maxFraction;
+  }
+
+  @Override
+  public String getTestName(int testNum) {
+    return TYPES[testNum / 2] + (testNum % 2 == 0 ? " query" : " raycast");
+  }
+}
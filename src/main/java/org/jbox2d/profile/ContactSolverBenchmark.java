@@ -0,0 +1,151 @@
+package org.jbox2d.profile;
+
+import org.jbox2d.collision.shapes.CircleShape;
+import org.jbox2d.collision.shapes.EdgeShape;
+import org.jbox2d.collision.shapes.PolygonShape;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.BodyDef;
+import org.jbox2d.dynamics.BodyType;
+import org.jbox2d.dynamics.TimeStep;
+import org.jbox2d.dynamics.World;
+import org.jbox2d.dynamics.contacts.Contact;
+import org.jbox2d.dynamics.contacts.ContactSolver;
+import org.jbox2d.dynamics.contacts.ContactSolver.ContactSolverDef;
+import org.jbox2d.dynamics.contacts.FlatContactSolver;
+import org.jbox2d.dynamics.contacts.Position;
+import org.jbox2d.dynamics.contacts.Velocity;
+
+/**
+ * Benchmark - one velocity iteration of {@link ContactSolver} against {@link FlatContactSolver} on
+ * the touching contacts of settled piles of boxes and circles, at 1000, 5000 and 10000 contacts.
+ * The flat solver runs as in an island without joints, and with shared velocities as in an island
+ * with joints. Every run starts from the same velocities and solves {@link #iterations} iterations.
+ */
+public class ContactSolverBenchmark extends BasicPerformanceTest {
+  public static int iters = 10;
+  public static int iterations = 200;
+  public static int[] contactCounts = {1000, 5000, 10000};
+
+  public static int piles = 260;
+  public static int pileSize = 40;
+
+  private final Contact[] contacts;
+  private final Position[] positions;
+  private final Velocity[] velocities;
+  private final float[] initialVelocities;
+  private final TimeStep step = new TimeStep();
+  private final ContactSolver[] solvers = new ContactSolver[contactCounts.length * 3];
+
+  public ContactSolverBenchmark() {
+    super(contactCounts.length * 3, iters);
+    World world = new World(new Vec2(0, -10));
+    Body ground = world.createBody(new BodyDef());
+    EdgeShape edge = new EdgeShape();
+    edge.set(new Vec2(-100, 0), new Vec2(piles * 20 + 100, 0));
+    ground.createFixture(edge, 0);
+
+    PolygonShape box = new PolygonShape();
+    box.setAsBox(0.5f, 0.5f);
+    CircleShape circle = new CircleShape();
+    circle.m_radius = 0.5f;
+    BodyDef bd = new BodyDef();
+    bd.type = BodyType.DYNAMIC;
+    bd.allowSleep = false;
+    for (int pile = 0; pile < piles; pile++) {
+      for (int i = 0; i < pileSize; i++) {
+        bd.position.set(pile * 20 + (i % 4) * 1.1f, 0.6f + (i / 4) * 1.05f);
+        world.createBody(bd).createFixture(i % 3 == 0 ? circle : box, 1);
+      }
+    }
+    for (int i = 0; i < 120; i++) {
+      world.step(1f / 60, 8, 3);
+    }
+
+    // one island of all bodies
+    int bodyCount = world.getBodyCount();
+    positions = new Position[bodyCount];
+    velocities = new Velocity[bodyCount];
+    initialVelocities = new float[bodyCount * 3];
+    int index = 0;
+    for (Body b = world.getBodyList(); b != null; b = b.getNext(), index++) {
+      b.m_islandIndex = index;
+      positions[index] = new Position();
+      positions[index].c.set(b.m_sweep.c);
+      positions[index].a = b.m_sweep.a;
+      velocities[index] = new Velocity();
+      initialVelocities[index * 3] = b.m_linearVelocity.x;
+      initialVelocities[index * 3 + 1] = b.m_linearVelocity.y;
+      initialVelocities[index * 3 + 2] = b.m_angularVelocity;
+    }
+
+    int maxCount = contactCounts[contactCounts.length - 1];
+    contacts = new Contact[maxCount];
+    int count = 0;
+    for (Contact c = world.getContactList(); c != null && count < maxCount; c = c.getNext()) {
+      if (c.isTouching() && c.isEnabled() && !c.getFixtureA().isSensor()
+          && !c.getFixtureB().isSensor()) {
+        contacts[count++] = c;
+      }
+    }
+    if (count < maxCount) {
+      throw new IllegalStateException("Only " + count + " touching contacts, add piles");
+    }
+
+    step.dt = 1f / 60;
+    step.inv_dt = 60;
+    step.dtRatio = 1;
+    step.warmStarting = true;
+    ContactSolverDef def = new ContactSolverDef();
+    def.step = step;
+    def.contacts = contacts;
+    def.positions = positions;
+    def.velocities = velocities;
+    for (int i = 0; i < solvers.length; i++) {
+      solvers[i] = i % 3 == 0 ? new ContactSolver() : new FlatContactSolver();
+      def.count = contactCounts[i / 3];
+      resetVelocities();
+      solvers[i].init(def);
+      solvers[i].setSharedVelocities(i % 3 == 2);
+      solvers[i].initializeVelocityConstraints();
+    }
+  }
+
+  public static void main(String[] args) {
+    ContactSolverBenchmark benchmark = new ContactSolverBenchmark();
+    benchmark.go();
+    for (int i = 0; i < benchmark.solvers.length; i++) {
+      benchmark.printf("%-20s%14.3f us per iteration\n", benchmark.getTestName(i),
+          benchmark.getTestTime(i) * 1000 / iterations);
+    }
+  }
+
+  private void resetVelocities() {
+    for (int i = 0; i < velocities.length; i++) {
+      velocities[i].v.x = initialVelocities[i * 3];
+      velocities[i].v.y = initialVelocities[i * 3 + 1];
+      velocities[i].w = initialVelocities[i * 3 + 2];
+    }
+  }
+
+  @Override
+  public void runTest(int testNum) {
+    resetVelocities();
+    ContactSolver solver = solvers[testNum];
+    for (int i = 0; i < iterations; i++) {
+      solver.solveVelocityConstraints();
+    }
+    solver.storeVelocities();
+  }
+
+  @Override
+  public String getTestName(int testNum) {
+    String[] names = {"Object ", "Flat ", "Flat shared "};
+    return names[testNum % 3] + contactCounts[testNum / 3];
+  }
+
+  @Override
+  public int getFrames(int testNum) {
+    return iterations;
+  }
+}
@@ -0,0 +1,116 @@
+package org.jbox2d.profile;
+
+import java.util.Random;
+
+import org.jbox2d.collision.broadphase.BroadPhaseType;
+import org.jbox2d.collision.shapes.ChainShape;
+import org.jbox2d.collision.shapes.CircleShape;
+import org.jbox2d.collision.shapes.PolygonShape;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.BodyDef;
+import org.jbox2d.dynamics.BodyType;
+import org.jbox2d.dynamics.World;
+
+/**
+ * Benchmark - side scroller level, long along x with 5000 static fixtures (chain terrain pieces and
+ * platforms) and a few dynamic bodies rolling over it, for every {@link BroadPhaseType}. Reports the
+ * average time of the whole simulation and of the broad-phase part of it.
+ */
+public class LevelBroadPhaseBenchmark extends BasicPerformanceTest {
+  public static int iters = 5;
+  public static int frames = 600;
+  public static float timeStep = 1f / 60;
+  public static int velIters = 8;
+  public static int posIters = 3;
+
+  public static int chains = 4000;
+  public static int platforms = 1000;
+  public static int dynamicBodies = 150;
+  public static float pieceLength = 4f;
+
+  private static final BroadPhaseType[] TYPES = BroadPhaseType.values();
+
+  private final float[] broadphaseTimes = new float[TYPES.length];
+
+  public LevelBroadPhaseBenchmark() {
+    super(TYPES.length, iters);
+  }
+
+  public static void main(String[] args) {
+    LevelBroadPhaseBenchmark benchmark = new LevelBroadPhaseBenchmark();
+    benchmark.go();
+    for (int i = 0; i < TYPES.length; i++) {
+      benchmark.printf("%-20s%20.4f\n", TYPES[i] + " broadphase", benchmark.broadphaseTimes[i]
+          / iters);
+    }
+  }
+
+  public static World createLevel(BroadPhaseType type) {
+    World world = new World(new Vec2(0, -10), type);
+    Random random = new Random(256);
+
+    BodyDef bd = new BodyDef();
+    Body ground = world.createBody(bd);
+
+    // terrain, pieces of 3 edges
+    Vec2[] vertices = new Vec2[4];
+    float height = 0;
+    for (int i = 0; i < chains; i++) {
+      float x = i * pieceLength;
+      for (int j = 0; j < vertices.length; j++) {
+        vertices[j] = new Vec2(x + j * pieceLength / 3, height);
+        if (j < vertices.length - 1) {
+          height += random.nextFloat() * 0.6f - 0.3f;
+        }
+      }
+      ChainShape chain = new ChainShape();
+      chain.createChain(vertices, vertices.length);
+      ground.createFixture(chain, 0);
+    }
+
+    // platforms above the terrain
+    PolygonShape platform = new PolygonShape();
+    for (int i = 0; i < platforms; i++) {
+      float x = random.nextFloat() * chains * pieceLength;
+      float y = 6 + random.nextFloat() * 20;
+      platform.setAsBox(1 + random.nextFloat() * 2, 0.25f, new Vec2(x, y), 0);
+      ground.createFixture(platform, 0);
+    }
+
+    // rolling bodies
+    CircleShape circle = new CircleShape();
+    circle.m_radius = 0.5f;
+    PolygonShape box = new PolygonShape();
+    box.setAsBox(0.5f, 0.5f);
+    for (int i = 0; i < dynamicBodies; i++) {
+      bd = new BodyDef();
+      bd.type = BodyType.DYNAMIC;
+      bd.position.set(i * chains * pieceLength / dynamicBodies, 30);
+      bd.linearVelocity.set(8, 0);
+      Body body = world.createBody(bd);
+      body.createFixture(i % 2 == 0 ? circle : box, 1);
+    }
+
+    return world;
+  }
+
+  @Override
+  public void runTest(int testNum) {
+    World world = createLevel(TYPES[testNum]);
+    for (int i = 0; i < frames; i++) {
+      world.step(timeStep, velIters, posIters);
+      broadphaseTimes[testNum] += world.getProfile().broadphase;
+    }
+  }
+
+  @Override
+  public String getTestName(int testNum) {
+    return TYPES[testNum].toString();
+  }
+
+  @Override
+  public int getFrames(int testNum) {
+    return frames;
+  }
+}
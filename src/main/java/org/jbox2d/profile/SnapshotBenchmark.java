@@ -0,0 +1,115 @@
+package org.jbox2d.profile;
+
+import org.jbox2d.collision.shapes.CircleShape;
+import org.jbox2d.collision.shapes.EdgeShape;
+import org.jbox2d.collision.shapes.PolygonShape;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.BodyDef;
+import org.jbox2d.dynamics.BodyType;
+import org.jbox2d.dynamics.World;
+import org.jbox2d.dynamics.WorldSnapshot;
+
+/**
+ * Benchmark - {@link WorldSnapshot} of 25 piles of 40 bodies settling on the ground, 1000 dynamic
+ * bodies and about 2000 contacts. Compares a step with taking a snapshot, restoring it and a roll
+ * back of 4 steps, as a networked game does when it corrects a prediction.
+ */
+public class SnapshotBenchmark extends BasicPerformanceTest {
+  public static int iters = 10;
+  public static int frames = 100;
+  public static float timeStep = 1f / 60;
+  public static int velIters = 8;
+  public static int posIters = 3;
+
+  public static int piles = 25;
+  public static int pileSize = 40;
+  public static int rollbackSteps = 4;
+
+  private final World world;
+  private final WorldSnapshot snapshot = new WorldSnapshot();
+
+  public SnapshotBenchmark() {
+    super(4, iters);
+    world = new World(new Vec2(0, -10));
+    Body ground = world.createBody(new BodyDef());
+    EdgeShape edge = new EdgeShape();
+    edge.set(new Vec2(-100, 0), new Vec2(piles * 20 + 100, 0));
+    ground.createFixture(edge, 0);
+
+    PolygonShape box = new PolygonShape();
+    box.setAsBox(0.5f, 0.5f);
+    CircleShape circle = new CircleShape();
+    circle.m_radius = 0.5f;
+    BodyDef bd = new BodyDef();
+    bd.type = BodyType.DYNAMIC;
+    for (int pile = 0; pile < piles; pile++) {
+      for (int i = 0; i < pileSize; i++) {
+        bd.position.set(pile * 20 + (i % 4) * 1.1f, 0.6f + (i / 4) * 1.05f);
+        world.createBody(bd).createFixture(i % 3 == 0 ? circle : box, 1);
+      }
+    }
+    for (int i = 0; i < 120; i++) {
+      world.step(timeStep, velIters, posIters);
+    }
+  }
+
+  public static void main(String[] args) {
+    SnapshotBenchmark benchmark = new SnapshotBenchmark();
+    benchmark.go();
+    benchmark.println("snapshot size: " + benchmark.snapshot.getSize() * 4 + " bytes, contacts: "
+        + benchmark.world.getContactCount());
+  }
+
+  @Override
+  public void runTest(int testNum) {
+    switch (testNum) {
+      case 0:
+        for (int i = 0; i < frames; i++) {
+          world.step(timeStep, velIters, posIters);
+        }
+        break;
+      case 1:
+        for (int i = 0; i < frames; i++) {
+          world.snapshot(snapshot);
+        }
+        break;
+      case 2:
+        for (int i = 0; i < frames; i++) {
+          world.restore(snapshot);
+        }
+        break;
+      case 3:
+        for (int i = 0; i < frames; i++) {
+          world.snapshot(snapshot);
+          for (int j = 0; j < rollbackSteps; j++) {
+            world.step(timeStep, velIters, posIters);
+          }
+          world.restore(snapshot);
+          world.step(timeStep, velIters, posIters);
+        }
+        break;
+    }
+  }
+
+  @Override
+  public String getTestName(int testNum) {
+    switch (testNum) {
+      case 0:
+        return "Step";
+      case 1:
+        return "Snapshot";
+      case 2:
+        return "Restore";
+      case 3:
+        return "Rollback " + rollbackSteps + " steps";
+      default:
+        return "";
+    }
+  }
+
+  @Override
+  public int getFrames(int testNum) {
+    return frames;
+  }
+}
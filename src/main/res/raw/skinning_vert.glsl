@@ -0,0 +1,24 @@
+uniform mat4 u_MVPMatrix;		// A constant representing the combined model/view/projection matrix.
+uniform mat4 u_Bones[24];		// Bone palette, bone transformation * inverse bind translation.
+
+attribute vec4 a_Position;		// Per-vertex bind pose position.
+attribute vec2 a_TexCoordinate; // Per-vertex texture coordinate information we will pass in.
+attribute vec4 a_BoneIndex;		// Up to 4 bone indices per vertex.
+attribute vec4 a_BoneWeight;	// Weights of bones, unused influences has zero weight.
+
+varying vec2 v_TexCoordinate;   // This will be passed into the fragment shader.
+
+// The entry point for our vertex shader.
+void main()
+{
+	// Pass through the texture coordinate.
+	v_TexCoordinate = a_TexCoordinate;
+
+	// Blend bone matrices by weights.
+	mat4 skin = u_Bones[int(a_BoneIndex.x)] * a_BoneWeight.x
+	          + u_Bones[int(a_BoneIndex.y)] * a_BoneWeight.y
+	          + u_Bones[int(a_BoneIndex.z)] * a_BoneWeight.z
+	          + u_Bones[int(a_BoneIndex.w)] * a_BoneWeight.w;
+
+	gl_Position = u_MVPMatrix * (skin * a_Position);
+}